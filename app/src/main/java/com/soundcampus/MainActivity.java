@@ -13,6 +13,7 @@ import com.soundcampus.utils.AccessibilityHelper;
 import com.soundcampus.utils.PermissionManager;
 
 public class MainActivity extends AppCompatActivity {
+    private static final String TAG = "MainActivity";
     private Button navigationButton;
     private Button ocrButton;
     private Button settingsButton;
@@ -36,7 +37,8 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void initializeAccessibility() {
-        accessibilityHelper = new AccessibilityHelper(this);
+        accessibilityHelper = AccessibilityHelper.getInstance(this);
+        accessibilityHelper.attach(TAG);
         accessibilityHelper.speak(getString(R.string.welcome_message));
     }
 
@@ -112,12 +114,4 @@ public class MainActivity extends AppCompatActivity {
             accessibilityHelper.speak(getString(R.string.welcome_message));
         }
     }
-
-    @Override
-    protected void onDestroy() {
-        super.onDestroy();
-        if (accessibilityHelper != null) {
-            accessibilityHelper.shutdown();
-        }
-    }
 }
@@ -0,0 +1,33 @@
+package com.soundcampus;
+
+import android.app.Application;
+import android.content.pm.ApplicationInfo;
+import android.os.StrictMode;
+import com.soundcampus.utils.AccessibilityHelper;
+import java.util.Arrays;
+
+public class SoundCampusApplication extends Application {
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        if ((getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0) {
+            // Debug builds log disk access on the main thread, and the guidance steps that mark
+            // themselves with StrictMode.noteSlowCall should they ever run there.
+            StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder()
+                    .detectDiskReads()
+                    .detectDiskWrites()
+                    .detectCustomSlowCalls()
+                    .penaltyLog()
+                    .build());
+        }
+        // Start the speech engine now rather than when the first screen wants to talk, and render the
+        // prompts screens open with so they play without waiting for synthesis.
+        AccessibilityHelper.getInstance(this).prepareClips(AccessibilityHelper.CLIPS_SCREENS, Arrays.asList(
+                getString(R.string.welcome_message),
+                getString(R.string.navigation_button),
+                getString(R.string.ocr_button),
+                getString(R.string.navigation_title),
+                getString(R.string.ocr_title),
+                getString(R.string.please_aim_at_text)));
+    }
+}
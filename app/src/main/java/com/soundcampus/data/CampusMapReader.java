@@ -0,0 +1,290 @@
+package com.soundcampus.data;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+public class CampusMapReader {
+    private static final int HEAP_SAMPLE_INTERVAL = 256;
+
+    public interface Handler {
+        void onCampusName(String name);
+        // facilities is reused for the next location; copy it to keep it.
+        void onLocation(CampusLocation location, int floorCount, List<String> facilities);
+        void onPath(String fromId, String toId, double distance);
+        void onAccessibilityFeature(String feature);
+    }
+
+    public static class Stats {
+        private final int locationCount;
+        private final int pathCount;
+        private final long parseNanos;
+        private final long peakHeapBytes;
+        private final long sourceHash;
+
+        Stats(int locationCount, int pathCount, long parseNanos, long peakHeapBytes, long sourceHash) {
+            this.locationCount = locationCount;
+            this.pathCount = pathCount;
+            this.parseNanos = parseNanos;
+            this.peakHeapBytes = peakHeapBytes;
+            this.sourceHash = sourceHash;
+        }
+
+        public int getLocationCount() {
+            return locationCount;
+        }
+
+        public int getPathCount() {
+            return pathCount;
+        }
+
+        public double getParseMillis() {
+            return parseNanos / 1000000.0;
+        }
+
+        public long getPeakHeapBytes() {
+            return peakHeapBytes;
+        }
+
+        // FNV-1a over the JSON text, so two imports of the same map can be recognized.
+        public long getSourceHash() {
+            return sourceHash;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%d locations, %d paths in %.1f ms, peak heap +%d KB",
+                    locationCount, pathCount, getParseMillis(), peakHeapBytes / 1024);
+        }
+    }
+
+    private final HashingReader source;
+    private final JsonReader reader;
+    private final Handler handler;
+    private final Runtime runtime = Runtime.getRuntime();
+    private final long baselineHeap;
+    private final List<String> facilities = new ArrayList<>();
+    private long peakHeap;
+    private int locationCount = 0;
+    private int pathCount = 0;
+
+    private CampusMapReader(Reader input, Handler handler) {
+        this.source = new HashingReader(input);
+        this.reader = new JsonReader(source);
+        this.handler = handler;
+        this.baselineHeap = usedHeap();
+        this.peakHeap = baselineHeap;
+    }
+
+    public static Stats read(Reader input, Handler handler) throws IOException {
+        long startTime = System.nanoTime();
+        CampusMapReader mapReader = new CampusMapReader(input, handler);
+        mapReader.readRoot();
+        mapReader.sampleHeap();
+        mapReader.source.drain();
+        return new Stats(mapReader.locationCount, mapReader.pathCount, System.nanoTime() - startTime,
+                Math.max(0, mapReader.peakHeap - mapReader.baselineHeap), mapReader.source.hash);
+    }
+
+    private void readRoot() throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "campus_name":
+                    handler.onCampusName(reader.nextString());
+                    break;
+                case "locations":
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        readLocation();
+                    }
+                    reader.endArray();
+                    break;
+                case "paths":
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        readPath();
+                    }
+                    reader.endArray();
+                    break;
+                case "accessibility_features":
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        handler.onAccessibilityFeature(reader.nextString());
+                    }
+                    reader.endArray();
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+    }
+
+    private void readLocation() throws IOException {
+        String id = null;
+        String name = null;
+        double latitude = Double.NaN;
+        double longitude = Double.NaN;
+        String description = null;
+        String category = null;
+        int floorCount = 0;
+        facilities.clear();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String field = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                continue;
+            }
+            switch (field) {
+                case "id":
+                    id = reader.nextString();
+                    break;
+                case "name":
+                    name = reader.nextString();
+                    break;
+                case "latitude":
+                    latitude = reader.nextDouble();
+                    break;
+                case "longitude":
+                    longitude = reader.nextDouble();
+                    break;
+                case "description":
+                    description = reader.nextString();
+                    break;
+                case "category":
+                    category = reader.nextString();
+                    break;
+                case "floor_count":
+                    floorCount = reader.nextInt();
+                    break;
+                case "facilities":
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        facilities.add(reader.nextString());
+                    }
+                    reader.endArray();
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+
+        if (id == null || Double.isNaN(latitude) || Double.isNaN(longitude)) {
+            throw new IOException("Location is missing id or coordinates near " + reader.getPath());
+        }
+        handler.onLocation(new CampusLocation(id, name != null ? name : id, latitude, longitude,
+                description, category), floorCount, facilities);
+        if (++locationCount % HEAP_SAMPLE_INTERVAL == 0) {
+            sampleHeap();
+        }
+    }
+
+    private void readPath() throws IOException {
+        String from = null;
+        String to = null;
+        double distance = Double.NaN;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String field = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                continue;
+            }
+            switch (field) {
+                case "from":
+                    from = reader.nextString();
+                    break;
+                case "to":
+                    to = reader.nextString();
+                    break;
+                case "distance":
+                    distance = reader.nextDouble();
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+
+        if (from == null || to == null || Double.isNaN(distance)) {
+            throw new IOException("Path is missing from, to or distance near " + reader.getPath());
+        }
+        handler.onPath(from, to, distance);
+        if (++pathCount % HEAP_SAMPLE_INTERVAL == 0) {
+            sampleHeap();
+        }
+    }
+
+    private void sampleHeap() {
+        peakHeap = Math.max(peakHeap, usedHeap());
+    }
+
+    private long usedHeap() {
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static class HashingReader extends FilterReader {
+        private long hash = 0xcbf29ce484222325L;
+
+        HashingReader(Reader in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int c = super.read();
+            if (c >= 0) {
+                update((char) c);
+            }
+            return c;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            int count = super.read(buffer, offset, length);
+            for (int i = 0; i < count; i++) {
+                update(buffer[offset + i]);
+            }
+            return count;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = 0;
+            while (skipped < n && read() >= 0) {
+                skipped++;
+            }
+            return skipped;
+        }
+
+        // JsonReader stops wherever its buffer ended; hash the tail so the result does not depend on it.
+        void drain() throws IOException {
+            char[] buffer = new char[1024];
+            while (read(buffer, 0, buffer.length) >= 0) {
+            }
+        }
+
+        private void update(char c) {
+            hash = (hash ^ (c & 0xff)) * 0x100000001b3L;
+            hash = (hash ^ (c >>> 8)) * 0x100000001b3L;
+        }
+    }
+}
@@ -1,12 +1,28 @@
 package com.soundcampus.data;
 
+import android.content.ContentValues;
 import android.content.Context;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.text.TextUtils;
+import android.util.Log;
+import com.soundcampus.R;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
 
 public class DatabaseHelper extends SQLiteOpenHelper {
+    private static final String TAG = "DatabaseHelper";
     private static final String DATABASE_NAME = "soundcampus.db";
-    private static final int DATABASE_VERSION = 1;
+    private static final int DATABASE_VERSION = 5;
+    private static final int PROGRESS_INTERVAL = 1000;
 
     public static final String TABLE_LOCATIONS = "locations";
     public static final String COLUMN_ID = "id";
@@ -15,12 +31,23 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     public static final String COLUMN_LONGITUDE = "longitude";
     public static final String COLUMN_DESCRIPTION = "description";
     public static final String COLUMN_CATEGORY = "category";
+    public static final String COLUMN_FLOOR_COUNT = "floor_count";
+    public static final String COLUMN_FACILITIES = "facilities";
+    public static final String FACILITIES_SEPARATOR = ",";
 
     public static final String TABLE_ROUTES = "routes";
     public static final String COLUMN_START_ID = "start_id";
     public static final String COLUMN_END_ID = "end_id";
     public static final String COLUMN_DISTANCE = "distance";
 
+    public static final String TABLE_METADATA = "metadata";
+    public static final String COLUMN_KEY = "key";
+    public static final String COLUMN_VALUE = "value";
+    public static final String KEY_ROUTES_SIGNATURE = "routes_signature";
+    public static final String KEY_CAMPUS_NAME = "campus_name";
+    public static final String KEY_LOCATIONS_SIGNATURE = "locations_signature";
+    public static final String KEY_ACCESSIBILITY_FEATURES = "accessibility_features";
+
     private static final String CREATE_TABLE_LOCATIONS =
             "CREATE TABLE " + TABLE_LOCATIONS + " (" +
                     COLUMN_ID + " TEXT PRIMARY KEY, " +
@@ -28,9 +55,30 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                     COLUMN_LATITUDE + " REAL NOT NULL, " +
                     COLUMN_LONGITUDE + " REAL NOT NULL, " +
                     COLUMN_DESCRIPTION + " TEXT, " +
-                    COLUMN_CATEGORY + " TEXT" +
+                    COLUMN_CATEGORY + " TEXT, " +
+                    COLUMN_FLOOR_COUNT + " INTEGER, " +
+                    COLUMN_FACILITIES + " TEXT" +
                     ");";
 
+    private static final String INDEX_LOCATIONS_NAME = "idx_locations_name";
+
+    // Built once after a bulk import instead of being maintained row by row, as are the category
+    // index and the R*Tree.
+    private static final String CREATE_INDEX_LOCATIONS_NAME =
+            "CREATE INDEX IF NOT EXISTS " + INDEX_LOCATIONS_NAME +
+                    " ON " + TABLE_LOCATIONS + " (" + COLUMN_NAME + ");";
+
+    private static final String INSERT_LOCATION =
+            "INSERT OR REPLACE INTO " + TABLE_LOCATIONS + " (" +
+                    COLUMN_ID + ", " +
+                    COLUMN_NAME + ", " +
+                    COLUMN_LATITUDE + ", " +
+                    COLUMN_LONGITUDE + ", " +
+                    COLUMN_DESCRIPTION + ", " +
+                    COLUMN_CATEGORY + ", " +
+                    COLUMN_FLOOR_COUNT + ", " +
+                    COLUMN_FACILITIES + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
     private static final String CREATE_TABLE_ROUTES =
             "CREATE TABLE " + TABLE_ROUTES + " (" +
                     COLUMN_START_ID + " TEXT NOT NULL, " +
@@ -39,32 +87,192 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                     "PRIMARY KEY (" + COLUMN_START_ID + ", " + COLUMN_END_ID + ")" +
                     ");";
 
+    private static final String CREATE_TABLE_METADATA =
+            "CREATE TABLE " + TABLE_METADATA + " (" +
+                    COLUMN_KEY + " TEXT PRIMARY KEY, " +
+                    COLUMN_VALUE + " TEXT" +
+                    ");";
+
+    public interface ImportProgressListener {
+        void onImportProgress(int rowsImported);
+    }
+
+    private final Context context;
+    private CampusMapReader.Handler importListener;
+    private CampusMapReader.Stats lastImportStats;
+
     public DatabaseHelper(Context context) {
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        this.context = context;
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    public void setImportListener(CampusMapReader.Handler importListener) {
+        this.importListener = importListener;
+    }
+
+    public CampusMapReader.Stats getLastImportStats() {
+        return lastImportStats;
     }
 
     @Override
     public void onCreate(SQLiteDatabase db) {
         db.execSQL(CREATE_TABLE_LOCATIONS);
         db.execSQL(CREATE_TABLE_ROUTES);
-        insertDefaultLocations(db);
+        db.execSQL(CREATE_TABLE_METADATA);
+        createSpatialIndex(db);
+        importBundledMap(db);
     }
 
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
         db.execSQL("DROP TABLE IF EXISTS " + TABLE_LOCATIONS);
+        db.execSQL("DROP TABLE IF EXISTS " + LocationQueries.TABLE_LOCATIONS_RTREE);
         db.execSQL("DROP TABLE IF EXISTS " + TABLE_ROUTES);
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_METADATA);
         onCreate(db);
     }
 
-    private void insertDefaultLocations(SQLiteDatabase db) {
-        db.execSQL("INSERT INTO " + TABLE_LOCATIONS + " VALUES ('loc1', '第一教学楼', 39.9042, 116.4074, '主要教学区域', 'teaching');");
-        db.execSQL("INSERT INTO " + TABLE_LOCATIONS + " VALUES ('loc2', '第二教学楼', 39.9052, 116.4084, '理工科教学楼', 'teaching');");
-        db.execSQL("INSERT INTO " + TABLE_LOCATIONS + " VALUES ('loc3', '图书馆', 39.9062, 116.4094, '大学图书馆', 'library');");
-        db.execSQL("INSERT INTO " + TABLE_LOCATIONS + " VALUES ('loc4', '食堂', 39.9072, 116.4104, '学生食堂', 'cafeteria');");
-        db.execSQL("INSERT INTO " + TABLE_LOCATIONS + " VALUES ('loc5', '宿舍楼', 39.9082, 116.4114, '学生宿舍', 'dormitory');");
-        db.execSQL("INSERT INTO " + TABLE_LOCATIONS + " VALUES ('loc6', '实验楼', 39.9092, 116.4124, '实验室大楼', 'laboratory');");
-        db.execSQL("INSERT INTO " + TABLE_LOCATIONS + " VALUES ('loc7', '体育馆', 39.9102, 116.4134, '体育运动中心', 'gym');");
-        db.execSQL("INSERT INTO " + TABLE_LOCATIONS + " VALUES ('loc8', '行政楼', 39.9112, 116.4144, '行政办公区', 'admin');");
+    public static boolean hasLocationsRtree(SQLiteDatabase db) {
+        return DatabaseUtils.longForQuery(db, "SELECT COUNT(*) FROM sqlite_master WHERE type = 'table' AND name = ?",
+                new String[]{LocationQueries.TABLE_LOCATIONS_RTREE}) > 0;
+    }
+
+    private static void createSpatialIndex(SQLiteDatabase db) {
+        try {
+            db.execSQL(LocationQueries.CREATE_TABLE_RTREE);
+        } catch (SQLiteException e) {
+            Log.w(TAG, "R*Tree module unavailable, falling back to a latitude index", e);
+            db.execSQL(LocationQueries.CREATE_INDEX_LATITUDE);
+        }
+    }
+
+    public CampusMapReader.Stats importCampusMap(Reader json, ImportProgressListener progress) throws IOException {
+        lastImportStats = bulkImport(getWritableDatabase(), json, importListener, progress);
+        return lastImportStats;
+    }
+
+    // Throws so that onCreate/onUpgrade fail and the open helper rolls back, rather than stamping the
+    // new version on a half-imported map.
+    private void importBundledMap(SQLiteDatabase db) {
+        try (Reader reader = new InputStreamReader(
+                context.getResources().openRawResource(R.raw.campus_map), StandardCharsets.UTF_8)) {
+            lastImportStats = bulkImport(db, reader, importListener, null);
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "Failed to import campus map", e);
+            throw new SQLiteException("Failed to import campus map", e);
+        }
+    }
+
+    private static CampusMapReader.Stats bulkImport(final SQLiteDatabase db, Reader json,
+            final CampusMapReader.Handler listener, final ImportProgressListener progress) throws IOException {
+        final List<String> features = new ArrayList<>();
+        final int[] rows = new int[1];
+        CampusMapReader.Stats stats;
+        // onCreate/onUpgrade already run inside the open helper's transaction; a failed nested one
+        // would roll back the schema with it.
+        boolean ownTransaction = !db.inTransaction();
+        if (ownTransaction) {
+            db.beginTransaction();
+        }
+        try {
+            boolean rtree = hasLocationsRtree(db);
+            db.execSQL("DROP INDEX IF EXISTS " + INDEX_LOCATIONS_NAME);
+            db.execSQL(LocationQueries.DROP_INDEX_CATEGORY);
+            if (rtree) {
+                for (String sql : LocationQueries.DROP_RTREE_TRIGGERS) {
+                    db.execSQL(sql);
+                }
+                db.execSQL(LocationQueries.CLEAR_RTREE);
+            }
+            db.delete(TABLE_LOCATIONS, null, null);
+            final SQLiteStatement insert = db.compileStatement(INSERT_LOCATION);
+            try {
+                stats = CampusMapReader.read(json, new CampusMapReader.Handler() {
+                    @Override
+                    public void onCampusName(String name) {
+                        putMetadata(db, KEY_CAMPUS_NAME, name);
+                        if (listener != null) {
+                            listener.onCampusName(name);
+                        }
+                    }
+
+                    @Override
+                    public void onLocation(CampusLocation location, int floorCount, List<String> facilities) {
+                        insert.clearBindings();
+                        insert.bindString(1, location.getId());
+                        insert.bindString(2, location.getName());
+                        insert.bindDouble(3, location.getLatitude());
+                        insert.bindDouble(4, location.getLongitude());
+                        bindNullable(insert, 5, location.getDescription());
+                        bindNullable(insert, 6, location.getCategory());
+                        insert.bindLong(7, floorCount);
+                        insert.bindString(8, TextUtils.join(FACILITIES_SEPARATOR, facilities));
+                        insert.executeInsert();
+                        if (listener != null) {
+                            listener.onLocation(location, floorCount, facilities);
+                        }
+                        if (++rows[0] % PROGRESS_INTERVAL == 0 && progress != null) {
+                            progress.onImportProgress(rows[0]);
+                        }
+                    }
+
+                    @Override
+                    public void onPath(String fromId, String toId, double distance) {
+                        if (listener != null) {
+                            listener.onPath(fromId, toId, distance);
+                        }
+                    }
+
+                    @Override
+                    public void onAccessibilityFeature(String feature) {
+                        features.add(feature);
+                        if (listener != null) {
+                            listener.onAccessibilityFeature(feature);
+                        }
+                    }
+                });
+            } finally {
+                insert.close();
+            }
+            db.execSQL(CREATE_INDEX_LOCATIONS_NAME);
+            db.execSQL(LocationQueries.CREATE_INDEX_CATEGORY);
+            if (rtree) {
+                db.execSQL(LocationQueries.REBUILD_RTREE);
+                for (String sql : LocationQueries.CREATE_RTREE_TRIGGERS) {
+                    db.execSQL(sql);
+                }
+            }
+            putMetadata(db, KEY_ACCESSIBILITY_FEATURES, TextUtils.join("\n", features));
+            putMetadata(db, KEY_LOCATIONS_SIGNATURE, Long.toHexString(stats.getSourceHash()));
+            if (ownTransaction) {
+                db.setTransactionSuccessful();
+            }
+        } finally {
+            if (ownTransaction) {
+                db.endTransaction();
+            }
+        }
+        if (progress != null && rows[0] % PROGRESS_INTERVAL != 0) {
+            progress.onImportProgress(rows[0]);
+        }
+        Log.d(TAG, "Imported campus map: " + stats + String.format(Locale.ROOT, ", %.0f rows/s",
+                rows[0] / Math.max(stats.getParseMillis() / 1000.0, 1e-9)));
+        return stats;
+    }
+
+    private static void bindNullable(SQLiteStatement statement, int index, String value) {
+        if (value != null) {
+            statement.bindString(index, value);
+        } else {
+            statement.bindNull(index);
+        }
+    }
+
+    private static void putMetadata(SQLiteDatabase db, String key, String value) {
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_KEY, key);
+        values.put(COLUMN_VALUE, value);
+        db.insertWithOnConflict(TABLE_METADATA, null, values, SQLiteDatabase.CONFLICT_REPLACE);
     }
 }
@@ -0,0 +1,173 @@
+package com.soundcampus.data;
+
+import com.soundcampus.utils.LocationHelper;
+
+// Spatial queries over the locations table that run inside SQLite. Written against the schema in
+// DatabaseHelper but free of Android classes, so the benchmark module runs the same statements
+// against desktop SQLite.
+//
+// Arguments are bound as strings (all SQLiteDatabase.rawQuery accepts), so every numeric
+// parameter is CAST before it is compared.
+public final class LocationQueries {
+    public static final String TABLE_LOCATIONS_RTREE = "locations_rtree";
+
+    private static final double METERS_PER_DEGREE_LAT = Math.toRadians(1) * LocationHelper.EARTH_RADIUS_METERS;
+    private static final double NEAREST_START_RADIUS_METERS = 200;
+    private static final double NEAREST_RADIUS_GROWTH = 4;
+    private static final int NEAREST_MAX_EXPANSIONS = 4;
+
+    // Keys are the locations rowid; every box is a single point.
+    public static final String CREATE_TABLE_RTREE =
+            "CREATE VIRTUAL TABLE IF NOT EXISTS locations_rtree USING rtree(id, min_lat, max_lat, min_lon, max_lon);";
+
+    public static final String[] CREATE_RTREE_TRIGGERS = {
+            // INSERT OR REPLACE removes the old row without firing delete triggers, so drop its entry first.
+            "CREATE TRIGGER IF NOT EXISTS locations_rtree_replace BEFORE INSERT ON locations BEGIN " +
+                    "DELETE FROM locations_rtree WHERE id IN (SELECT rowid FROM locations WHERE id = NEW.id); END;",
+            "CREATE TRIGGER IF NOT EXISTS locations_rtree_insert AFTER INSERT ON locations BEGIN " +
+                    "INSERT OR REPLACE INTO locations_rtree VALUES " +
+                    "(NEW.rowid, NEW.latitude, NEW.latitude, NEW.longitude, NEW.longitude); END;",
+            "CREATE TRIGGER IF NOT EXISTS locations_rtree_update AFTER UPDATE OF latitude, longitude ON locations BEGIN " +
+                    "UPDATE locations_rtree SET min_lat = NEW.latitude, max_lat = NEW.latitude, " +
+                    "min_lon = NEW.longitude, max_lon = NEW.longitude WHERE id = NEW.rowid; END;",
+            "CREATE TRIGGER IF NOT EXISTS locations_rtree_delete AFTER DELETE ON locations BEGIN " +
+                    "DELETE FROM locations_rtree WHERE id = OLD.rowid; END;"
+    };
+
+    public static final String[] DROP_RTREE_TRIGGERS = {
+            "DROP TRIGGER IF EXISTS locations_rtree_replace;",
+            "DROP TRIGGER IF EXISTS locations_rtree_insert;",
+            "DROP TRIGGER IF EXISTS locations_rtree_update;",
+            "DROP TRIGGER IF EXISTS locations_rtree_delete;"
+    };
+
+    public static final String CLEAR_RTREE = "DELETE FROM locations_rtree;";
+
+    public static final String REBUILD_RTREE =
+            "INSERT INTO locations_rtree SELECT rowid, latitude, latitude, longitude, longitude FROM locations;";
+
+    public static final String CREATE_INDEX_CATEGORY =
+            "CREATE INDEX IF NOT EXISTS idx_locations_category ON locations (category);";
+
+    public static final String DROP_INDEX_CATEGORY = "DROP INDEX IF EXISTS idx_locations_category;";
+
+    // Bounding boxes use this instead when the platform SQLite was built without the R*Tree module.
+    public static final String CREATE_INDEX_LATITUDE =
+            "CREATE INDEX IF NOT EXISTS idx_locations_latitude ON locations (latitude);";
+
+    private static final String COLUMNS = "l.id, l.name, l.latitude, l.longitude, l.description, l.category";
+
+    // Equirectangular distance from ?1/?2 in square metres; ?3 and ?4 are the squared metres per
+    // degree of latitude and longitude.
+    private static final String DISTANCE_SQ =
+            "(l.latitude - CAST(?1 AS REAL)) * (l.latitude - CAST(?1 AS REAL)) * CAST(?3 AS REAL) + " +
+                    "(l.longitude - CAST(?2 AS REAL)) * (l.longitude - CAST(?2 AS REAL)) * CAST(?4 AS REAL)";
+
+    private LocationQueries() {
+    }
+
+    // ?1-?4: min lat, max lat, min lon, max lon.
+    public static String inBounds(boolean rtree) {
+        return "SELECT " + COLUMNS + fromBox(rtree, 1) + " ORDER BY l.name";
+    }
+
+    public static String[] inBoundsArgs(double minLatitude, double minLongitude,
+            double maxLatitude, double maxLongitude) {
+        return new String[]{
+                Double.toString(minLatitude), Double.toString(maxLatitude),
+                Double.toString(minLongitude), Double.toString(maxLongitude)
+        };
+    }
+
+    // ?1-?4 distance terms, ?5-?8 box, ?9 squared radius. Nearest first.
+    public static String withinRadius(boolean rtree) {
+        return "SELECT " + COLUMNS + ", " + DISTANCE_SQ + " AS distance_sq" + fromBox(rtree, 5) +
+                " AND distance_sq <= CAST(?9 AS REAL) ORDER BY distance_sq";
+    }
+
+    public static String[] withinRadiusArgs(double latitude, double longitude, double radiusMeters) {
+        return radiusArgs(latitude, longitude, radiusMeters, 9);
+    }
+
+    // As withinRadius, plus ?10 category and ?11 limit.
+    public static String nearestInCategory(boolean rtree) {
+        return "SELECT " + COLUMNS + ", " + DISTANCE_SQ + " AS distance_sq" + fromBox(rtree, 5) +
+                // Unary + keeps the planner on the R*Tree instead of walking the whole category index.
+                " AND distance_sq <= CAST(?9 AS REAL) AND +l.category = ?10" +
+                " ORDER BY distance_sq LIMIT CAST(?11 AS INTEGER)";
+    }
+
+    public static String[] nearestInCategoryArgs(double latitude, double longitude, double radiusMeters,
+            String category, int count) {
+        String[] args = radiusArgs(latitude, longitude, radiusMeters, 11);
+        args[9] = category;
+        args[10] = Integer.toString(count);
+        return args;
+    }
+
+    // Every row of the category through its index, for when the search radius stops paying off.
+    // ?1-?4 distance terms, ?5 category, ?6 limit.
+    public static String nearestInCategoryUnbounded() {
+        return "SELECT " + COLUMNS + ", " + DISTANCE_SQ + " AS distance_sq FROM locations l" +
+                " WHERE l.category = ?5 ORDER BY distance_sq LIMIT CAST(?6 AS INTEGER)";
+    }
+
+    public static String[] nearestInCategoryUnboundedArgs(double latitude, double longitude,
+            String category, int count) {
+        String[] args = distanceArgs(latitude, longitude, 6);
+        args[4] = category;
+        args[5] = Integer.toString(count);
+        return args;
+    }
+
+    // Radius for each round of nearestInCategory; infinite once the bounded rounds are used up.
+    public static double nearestSearchRadius(int round) {
+        return round < NEAREST_MAX_EXPANSIONS
+                ? NEAREST_START_RADIUS_METERS * Math.pow(NEAREST_RADIUS_GROWTH, round)
+                : Double.POSITIVE_INFINITY;
+    }
+
+    private static String fromBox(boolean rtree, int firstArg) {
+        String minLat = "CAST(?" + firstArg + " AS REAL)";
+        String maxLat = "CAST(?" + (firstArg + 1) + " AS REAL)";
+        String minLon = "CAST(?" + (firstArg + 2) + " AS REAL)";
+        String maxLon = "CAST(?" + (firstArg + 3) + " AS REAL)";
+        String exact = "l.latitude BETWEEN " + minLat + " AND " + maxLat +
+                " AND l.longitude BETWEEN " + minLon + " AND " + maxLon;
+        if (!rtree) {
+            return " FROM locations l WHERE " + exact;
+        }
+        // CROSS JOIN pins the R*Tree as the outer loop; with ANALYZE statistics on small tables the
+        // planner otherwise scans locations and probes the tree row by row. The tree keeps 32-bit
+        // floats rounded outwards, so the exact columns are checked again.
+        return " FROM locations_rtree r CROSS JOIN locations l ON l.rowid = r.id" +
+                " WHERE r.max_lat >= " + minLat + " AND r.min_lat <= " + maxLat +
+                " AND r.max_lon >= " + minLon + " AND r.min_lon <= " + maxLon + " AND " + exact;
+    }
+
+    private static String[] radiusArgs(double latitude, double longitude, double radiusMeters, int size) {
+        double latitudeDelta = radiusMeters / METERS_PER_DEGREE_LAT;
+        double longitudeDelta = radiusMeters / metersPerDegreeLon(latitude);
+        String[] args = distanceArgs(latitude, longitude, size);
+        args[4] = Double.toString(latitude - latitudeDelta);
+        args[5] = Double.toString(latitude + latitudeDelta);
+        args[6] = Double.toString(longitude - longitudeDelta);
+        args[7] = Double.toString(longitude + longitudeDelta);
+        args[8] = Double.toString(radiusMeters * radiusMeters);
+        return args;
+    }
+
+    private static String[] distanceArgs(double latitude, double longitude, int size) {
+        double metersPerDegreeLon = metersPerDegreeLon(latitude);
+        String[] args = new String[size];
+        args[0] = Double.toString(latitude);
+        args[1] = Double.toString(longitude);
+        args[2] = Double.toString(METERS_PER_DEGREE_LAT * METERS_PER_DEGREE_LAT);
+        args[3] = Double.toString(metersPerDegreeLon * metersPerDegreeLon);
+        return args;
+    }
+
+    private static double metersPerDegreeLon(double latitude) {
+        return METERS_PER_DEGREE_LAT * Math.max(Math.cos(Math.toRadians(latitude)), 1e-6);
+    }
+}
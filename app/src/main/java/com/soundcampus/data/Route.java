@@ -7,12 +7,23 @@ public class Route {
     private CampusLocation destination;
     private List<NavigationInstruction> instructions;
     private double totalDistance;
+    private double[] pathLatitudes;
+    private double[] pathLongitudes;
 
     public Route(CampusLocation start, CampusLocation destination, List<NavigationInstruction> instructions, double totalDistance) {
+        this(start, destination, instructions, totalDistance,
+                new double[]{start.getLatitude(), destination.getLatitude()},
+                new double[]{start.getLongitude(), destination.getLongitude()});
+    }
+
+    public Route(CampusLocation start, CampusLocation destination, List<NavigationInstruction> instructions,
+                 double totalDistance, double[] pathLatitudes, double[] pathLongitudes) {
         this.start = start;
         this.destination = destination;
         this.instructions = instructions;
         this.totalDistance = totalDistance;
+        this.pathLatitudes = pathLatitudes;
+        this.pathLongitudes = pathLongitudes;
     }
 
     public CampusLocation getStart() {
@@ -30,4 +41,16 @@ public class Route {
     public double getTotalDistance() {
         return totalDistance;
     }
+
+    public int getPathPointCount() {
+        return pathLatitudes.length;
+    }
+
+    public double getPathLatitude(int index) {
+        return pathLatitudes[index];
+    }
+
+    public double getPathLongitude(int index) {
+        return pathLongitudes[index];
+    }
 }
@@ -0,0 +1,109 @@
+package com.soundcampus.navigation;
+
+import com.soundcampus.utils.LocationHelper;
+import java.util.Arrays;
+
+public class AStarSearch {
+    private final PathGraph graph;
+    private final float[] distances;
+    private final int[] parents;
+    private final int[] seenStamps;
+    private final int[] closedStamps;
+    private final NodeHeap heap;
+    private int stamp = 0;
+    private int settledCount = 0;
+
+    public AStarSearch(PathGraph graph) {
+        this.graph = graph;
+        int nodeCount = graph.getNodeCount();
+        distances = new float[nodeCount];
+        parents = new int[nodeCount];
+        seenStamps = new int[nodeCount];
+        closedStamps = new int[nodeCount];
+        heap = new NodeHeap(Math.min(nodeCount, 1024));
+    }
+
+    public int[] findPath(int source, int target) {
+        if (source < 0 || target < 0) {
+            return null;
+        }
+        nextStamp();
+        heap.clear();
+        settledCount = 0;
+
+        double targetLat = graph.getLatitude(target);
+        double targetLon = graph.getLongitude(target);
+
+        distances[source] = 0f;
+        parents[source] = -1;
+        seenStamps[source] = stamp;
+        heap.push(source, (float) heuristic(source, targetLat, targetLon));
+
+        while (!heap.isEmpty()) {
+            int node = heap.pop();
+            if (closedStamps[node] == stamp) {
+                continue;
+            }
+            closedStamps[node] = stamp;
+            settledCount++;
+
+            if (node == target) {
+                return buildPath(target);
+            }
+
+            float nodeDistance = distances[node];
+            for (int edge = graph.getEdgeStart(node), end = graph.getEdgeEnd(node); edge < end; edge++) {
+                int next = graph.getEdgeTarget(edge);
+                if (closedStamps[next] == stamp) {
+                    continue;
+                }
+                float candidate = nodeDistance + graph.getEdgeWeight(edge);
+                if (seenStamps[next] != stamp || candidate < distances[next]) {
+                    seenStamps[next] = stamp;
+                    distances[next] = candidate;
+                    parents[next] = node;
+                    heap.push(next, candidate + (float) heuristic(next, targetLat, targetLon));
+                }
+            }
+        }
+        return null;
+    }
+
+    public float getPathDistance(int target) {
+        return closedStamps[target] == stamp ? distances[target] : Float.POSITIVE_INFINITY;
+    }
+
+    public int getSettledCount() {
+        return settledCount;
+    }
+
+    private double heuristic(int node, double targetLat, double targetLon) {
+        double lat = graph.getLatitude(node);
+        double lon = graph.getLongitude(node);
+        if (Double.isNaN(lat) || Double.isNaN(targetLat)) {
+            return 0;
+        }
+        return LocationHelper.calculateDistance(lat, lon, targetLat, targetLon);
+    }
+
+    private int[] buildPath(int target) {
+        int length = 0;
+        for (int node = target; node != -1; node = parents[node]) {
+            length++;
+        }
+        int[] path = new int[length];
+        for (int node = target, i = length - 1; node != -1; node = parents[node], i--) {
+            path[i] = node;
+        }
+        return path;
+    }
+
+    private void nextStamp() {
+        if (stamp == Integer.MAX_VALUE) {
+            Arrays.fill(seenStamps, 0);
+            Arrays.fill(closedStamps, 0);
+            stamp = 0;
+        }
+        stamp++;
+    }
+}
@@ -0,0 +1,458 @@
+package com.soundcampus.navigation;
+
+import com.soundcampus.data.CampusLocation;
+import com.soundcampus.data.CampusMapReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Compiled campus map read in place through a memory mapping; locations are read by index and only
+// materialized as CampusLocation on request. Layout (little endian, sections 8-byte aligned): header,
+// location records, location indices sorted by id, KD-tree slots, CSR path graph, string table.
+public class CampusMapFile {
+    private static final int MAGIC = 0x53434D46;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 96;
+    private static final int LOCATION_RECORD_SIZE = 40;
+
+    private final ByteBuffer buffer;
+    private final long sourceStamp;
+    private final long graphSignature;
+    private final long sourceHash;
+    private final int locationCount;
+    private final int nodeCount;
+    private final int edgeCount;
+    private final int stringCount;
+    private final int locationsOffset;
+    private final int idOrderOffset;
+    private final int spatialOffset;
+    private final int graphOffset;
+    private final int stringOffsetsOffset;
+    private final int stringBytesOffset;
+
+    private CampusMapFile(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a campus map file");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported campus map file version " + buffer.getInt(4));
+        }
+        sourceStamp = buffer.getLong(8);
+        graphSignature = buffer.getLong(16);
+        sourceHash = buffer.getLong(24);
+        locationCount = buffer.getInt(32);
+        nodeCount = buffer.getInt(36);
+        edgeCount = buffer.getInt(40);
+        stringCount = buffer.getInt(44);
+        locationsOffset = buffer.getInt(48);
+        idOrderOffset = buffer.getInt(52);
+        spatialOffset = buffer.getInt(56);
+        graphOffset = buffer.getInt(60);
+        stringOffsetsOffset = buffer.getInt(64);
+        stringBytesOffset = buffer.getInt(68);
+        if (buffer.getInt(72) != buffer.capacity()) {
+            throw new IOException("Truncated campus map file");
+        }
+    }
+
+    public static CampusMapFile open(File file) throws IOException {
+        try (RandomAccessFile input = new RandomAccessFile(file, "r");
+             FileChannel channel = input.getChannel()) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new CampusMapFile(mapped);
+        }
+    }
+
+    public static CampusMapFile wrap(ByteBuffer buffer) throws IOException {
+        return new CampusMapFile(buffer.duplicate());
+    }
+
+    public long getSourceStamp() {
+        return sourceStamp;
+    }
+
+    public long getGraphSignature() {
+        return graphSignature;
+    }
+
+    public long getSourceHash() {
+        return sourceHash;
+    }
+
+    public int getLocationCount() {
+        return locationCount;
+    }
+
+    public double getLatitude(int index) {
+        return buffer.getDouble(locationsOffset + index * LOCATION_RECORD_SIZE);
+    }
+
+    public double getLongitude(int index) {
+        return buffer.getDouble(locationsOffset + index * LOCATION_RECORD_SIZE + 8);
+    }
+
+    public String getId(int index) {
+        return getString(locationField(index, 0));
+    }
+
+    public String getName(int index) {
+        return getString(locationField(index, 1));
+    }
+
+    public String getDescription(int index) {
+        return getString(locationField(index, 2));
+    }
+
+    public String getCategory(int index) {
+        return getString(locationField(index, 3));
+    }
+
+    public int getFloorCount(int index) {
+        return locationField(index, 4);
+    }
+
+    public String getFacilities(int index) {
+        return getString(locationField(index, 5));
+    }
+
+    public CampusLocation getLocation(int index) {
+        return new CampusLocation(getId(index), getName(index), getLatitude(index), getLongitude(index),
+                getDescription(index), getCategory(index));
+    }
+
+    public int indexOf(String id) {
+        byte[] key = id.getBytes(StandardCharsets.UTF_8);
+        int lo = 0;
+        int hi = locationCount - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int location = buffer.getInt(idOrderOffset + mid * 4);
+            int compare = compareString(locationField(location, 0), key);
+            if (compare < 0) {
+                lo = mid + 1;
+            } else if (compare > 0) {
+                hi = mid - 1;
+            } else {
+                return location;
+            }
+        }
+        return -1;
+    }
+
+    public SpatialIndex getSpatialIndex() {
+        int doubles = locationCount * 8;
+        return SpatialIndex.wrap(
+                buffer.getDouble(spatialOffset),
+                slice(spatialOffset + 8, doubles).asDoubleBuffer(),
+                slice(spatialOffset + 8 + doubles, doubles).asDoubleBuffer(),
+                slice(spatialOffset + 8 + 2 * doubles, locationCount * 4).asIntBuffer()
+        );
+    }
+
+    public PathGraph toPathGraph() {
+        int offset = graphOffset;
+        double[] latitudes = new double[nodeCount];
+        slice(offset, nodeCount * 8).asDoubleBuffer().get(latitudes);
+        offset += nodeCount * 8;
+        double[] longitudes = new double[nodeCount];
+        slice(offset, nodeCount * 8).asDoubleBuffer().get(longitudes);
+        offset += nodeCount * 8;
+        String[] nodeIds = new String[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            nodeIds[i] = getString(buffer.getInt(offset + i * 4));
+        }
+        offset += nodeCount * 4;
+        int[] edgeOffsets = new int[nodeCount + 1];
+        slice(offset, (nodeCount + 1) * 4).asIntBuffer().get(edgeOffsets);
+        offset += (nodeCount + 1) * 4;
+        int[] edgeTargets = new int[edgeCount];
+        slice(offset, edgeCount * 4).asIntBuffer().get(edgeTargets);
+        offset += edgeCount * 4;
+        float[] edgeWeights = new float[edgeCount];
+        slice(offset, edgeCount * 4).asFloatBuffer().get(edgeWeights);
+        return PathGraph.fromArrays(nodeIds, latitudes, longitudes, edgeOffsets, edgeTargets, edgeWeights);
+    }
+
+    private int locationField(int index, int field) {
+        return buffer.getInt(locationsOffset + index * LOCATION_RECORD_SIZE + 16 + field * 4);
+    }
+
+    private String getString(int index) {
+        if (index < 0) {
+            return null;
+        }
+        int start = buffer.getInt(stringOffsetsOffset + index * 4);
+        int end = buffer.getInt(stringOffsetsOffset + index * 4 + 4);
+        byte[] bytes = new byte[end - start];
+        ByteBuffer view = buffer.duplicate();
+        view.position(stringBytesOffset + start);
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int compareString(int index, byte[] key) {
+        int start = stringBytesOffset + buffer.getInt(stringOffsetsOffset + index * 4);
+        int length = stringBytesOffset + buffer.getInt(stringOffsetsOffset + index * 4 + 4) - start;
+        int common = Math.min(length, key.length);
+        for (int i = 0; i < common; i++) {
+            int difference = (buffer.get(start + i) & 0xff) - (key[i] & 0xff);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return length - key.length;
+    }
+
+    private ByteBuffer slice(int offset, int length) {
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset);
+        view.limit(offset + length);
+        return view.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    public static void compile(Reader json, File output, long sourceStamp) throws IOException {
+        ByteBuffer compiled = compile(json, sourceStamp);
+        File temporary = new File(output.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temporary)) {
+            FileChannel channel = out.getChannel();
+            while (compiled.hasRemaining()) {
+                channel.write(compiled);
+            }
+            out.getFD().sync();
+        }
+        if (!temporary.renameTo(output)) {
+            temporary.delete();
+            throw new IOException("Could not replace " + output);
+        }
+    }
+
+    public static ByteBuffer compile(Reader json, long sourceStamp) throws IOException {
+        final List<CampusLocation> locations = new ArrayList<>();
+        final List<Integer> floorCounts = new ArrayList<>();
+        final List<String> facilities = new ArrayList<>();
+        final PathGraph.Builder graphBuilder = new PathGraph.Builder();
+        CampusMapReader.Stats stats = CampusMapReader.read(json, new CampusMapReader.Handler() {
+            @Override
+            public void onCampusName(String name) {
+            }
+
+            @Override
+            public void onLocation(CampusLocation location, int floorCount, List<String> locationFacilities) {
+                locations.add(location);
+                floorCounts.add(floorCount);
+                facilities.add(join(locationFacilities));
+                graphBuilder.onLocation(location, floorCount, locationFacilities);
+            }
+
+            @Override
+            public void onPath(String fromId, String toId, double distance) {
+                graphBuilder.onPath(fromId, toId, distance);
+            }
+
+            @Override
+            public void onAccessibilityFeature(String feature) {
+            }
+        });
+        PathGraph graph = graphBuilder.build();
+
+        final int count = locations.size();
+        Integer[] byName = new Integer[count];
+        Integer[] byId = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            byName[i] = i;
+            byId[i] = i;
+        }
+        // Same order as the locations query (ORDER BY name, which SQLite compares as UTF-8 bytes).
+        Arrays.sort(byName, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                int compare = compareUtf8(locations.get(a).getName(), locations.get(b).getName());
+                return compare != 0 ? compare : compareUtf8(locations.get(a).getId(), locations.get(b).getId());
+            }
+        });
+
+        StringTable strings = new StringTable();
+        int[] fields = new int[count * 6];
+        double[] latitudes = new double[count];
+        double[] longitudes = new double[count];
+        final String[] ids = new String[count];
+        for (int slot = 0; slot < count; slot++) {
+            int source = byName[slot];
+            CampusLocation location = locations.get(source);
+            latitudes[slot] = location.getLatitude();
+            longitudes[slot] = location.getLongitude();
+            ids[slot] = location.getId();
+            fields[slot * 6] = strings.add(location.getId());
+            fields[slot * 6 + 1] = strings.add(location.getName());
+            fields[slot * 6 + 2] = strings.add(location.getDescription());
+            fields[slot * 6 + 3] = strings.add(location.getCategory());
+            fields[slot * 6 + 4] = floorCounts.get(source);
+            fields[slot * 6 + 5] = strings.add(facilities.get(source));
+        }
+        Arrays.sort(byId, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return compareUtf8(ids[a], ids[b]);
+            }
+        });
+        int[] nodeIdStrings = new int[graph.getNodeCount()];
+        for (int node = 0; node < graph.getNodeCount(); node++) {
+            nodeIdStrings[node] = strings.add(graph.getNodeId(node));
+        }
+        SpatialIndex spatialIndex = SpatialIndex.build(latitudes, longitudes);
+
+        int nodes = graph.getNodeCount();
+        int edges = graph.getEdgeCount();
+        int locationsOffset = HEADER_SIZE;
+        int idOrderOffset = align(locationsOffset + count * LOCATION_RECORD_SIZE);
+        int spatialOffset = align(idOrderOffset + count * 4);
+        int graphOffset = align(spatialOffset + 8 + count * 20);
+        int stringOffsetsOffset = align(graphOffset + nodes * 20 + (nodes + 1) * 4 + edges * 8);
+        int stringBytesOffset = stringOffsetsOffset + (strings.size() + 1) * 4;
+        int totalSize = align(stringBytesOffset + strings.byteLength());
+
+        ByteBuffer out = ByteBuffer.allocate(totalSize).order(ByteOrder.LITTLE_ENDIAN);
+        for (int slot = 0; slot < count; slot++) {
+            int base = locationsOffset + slot * LOCATION_RECORD_SIZE;
+            out.putDouble(base, latitudes[slot]);
+            out.putDouble(base + 8, longitudes[slot]);
+            for (int field = 0; field < 6; field++) {
+                out.putInt(base + 16 + field * 4, fields[slot * 6 + field]);
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            out.putInt(idOrderOffset + i * 4, byId[i]);
+        }
+
+        out.putDouble(spatialOffset, spatialIndex.getOriginLatitude());
+        for (int slot = 0; slot < count; slot++) {
+            out.putDouble(spatialOffset + 8 + slot * 8, spatialIndex.getSlotX(slot));
+            out.putDouble(spatialOffset + 8 + count * 8 + slot * 8, spatialIndex.getSlotY(slot));
+            out.putInt(spatialOffset + 8 + count * 16 + slot * 4, spatialIndex.getSlotId(slot));
+        }
+
+        int offset = graphOffset;
+        for (int node = 0; node < nodes; node++) {
+            out.putDouble(offset + node * 8, graph.getLatitude(node));
+            out.putDouble(offset + nodes * 8 + node * 8, graph.getLongitude(node));
+            out.putInt(offset + nodes * 16 + node * 4, nodeIdStrings[node]);
+        }
+        offset += nodes * 20;
+        for (int node = 0; node <= nodes; node++) {
+            out.putInt(offset + node * 4, node < nodes ? graph.getEdgeStart(node) : edges);
+        }
+        offset += (nodes + 1) * 4;
+        for (int edge = 0; edge < edges; edge++) {
+            out.putInt(offset + edge * 4, graph.getEdgeTarget(edge));
+            out.putFloat(offset + edges * 4 + edge * 4, graph.getEdgeWeight(edge));
+        }
+
+        strings.writeTo(out, stringOffsetsOffset, stringBytesOffset);
+
+        out.putInt(0, MAGIC);
+        out.putInt(4, VERSION);
+        out.putLong(8, sourceStamp);
+        out.putLong(16, graph.computeSignature());
+        out.putLong(24, stats.getSourceHash());
+        out.putInt(32, count);
+        out.putInt(36, nodes);
+        out.putInt(40, edges);
+        out.putInt(44, strings.size());
+        out.putInt(48, locationsOffset);
+        out.putInt(52, idOrderOffset);
+        out.putInt(56, spatialOffset);
+        out.putInt(60, graphOffset);
+        out.putInt(64, stringOffsetsOffset);
+        out.putInt(68, stringBytesOffset);
+        out.putInt(72, totalSize);
+        out.position(0);
+        return out;
+    }
+
+    private static int align(int offset) {
+        return (offset + 7) & ~7;
+    }
+
+    private static String join(List<String> values) {
+        StringBuilder joined = new StringBuilder();
+        for (String value : values) {
+            if (joined.length() > 0) {
+                joined.append(',');
+            }
+            joined.append(value);
+        }
+        return joined.toString();
+    }
+
+    private static int compareUtf8(String a, String b) {
+        if (a == null || b == null) {
+            return a == null ? (b == null ? 0 : -1) : 1;
+        }
+        byte[] left = a.getBytes(StandardCharsets.UTF_8);
+        byte[] right = b.getBytes(StandardCharsets.UTF_8);
+        int common = Math.min(left.length, right.length);
+        for (int i = 0; i < common; i++) {
+            int difference = (left[i] & 0xff) - (right[i] & 0xff);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return left.length - right.length;
+    }
+
+    private static class StringTable {
+        private final Map<String, Integer> indices = new HashMap<>();
+        private final List<byte[]> values = new ArrayList<>();
+        private int byteLength = 0;
+
+        int add(String value) {
+            if (value == null) {
+                return -1;
+            }
+            Integer existing = indices.get(value);
+            if (existing != null) {
+                return existing;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            indices.put(value, values.size());
+            values.add(bytes);
+            byteLength += bytes.length;
+            return values.size() - 1;
+        }
+
+        int size() {
+            return values.size();
+        }
+
+        int byteLength() {
+            return byteLength;
+        }
+
+        void writeTo(ByteBuffer out, int offsetsOffset, int bytesOffset) {
+            int position = 0;
+            for (int i = 0; i < values.size(); i++) {
+                out.putInt(offsetsOffset + i * 4, position);
+                byte[] bytes = values.get(i);
+                for (int b = 0; b < bytes.length; b++) {
+                    out.put(bytesOffset + position + b, bytes[b]);
+                }
+                position += bytes.length;
+            }
+            out.putInt(offsetsOffset + values.size() * 4, position);
+        }
+    }
+}
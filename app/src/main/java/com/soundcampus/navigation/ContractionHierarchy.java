@@ -0,0 +1,495 @@
+package com.soundcampus.navigation;
+
+import com.soundcampus.utils.FloatList;
+import com.soundcampus.utils.IntList;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+public class ContractionHierarchy {
+    private static final int MAGIC = 0x53434348;
+    private static final int FORMAT_VERSION = 1;
+    private static final int WITNESS_SETTLE_LIMIT = 200;
+
+    private final long graphSignature;
+    private final int[] ranks;
+    private final int[] upOffsets;
+    private final int[] upTargets;
+    private final float[] upWeights;
+    private final int[] upMiddles;
+
+    private final float[][] distances;
+    private final int[][] parentEdges;
+    private final int[][] parents;
+    private final int[][] seenStamps;
+    private final int[][] settledStamps;
+    private final NodeHeap[] heaps;
+    private final IntList unpackStack = new IntList(64);
+    private int stamp = 0;
+    private int settledCount = 0;
+    private float lastDistance = Float.POSITIVE_INFINITY;
+
+    private ContractionHierarchy(long graphSignature, int[] ranks, int[] upOffsets,
+                                 int[] upTargets, float[] upWeights, int[] upMiddles) {
+        this.graphSignature = graphSignature;
+        this.ranks = ranks;
+        this.upOffsets = upOffsets;
+        this.upTargets = upTargets;
+        this.upWeights = upWeights;
+        this.upMiddles = upMiddles;
+
+        int nodeCount = ranks.length;
+        distances = new float[2][nodeCount];
+        parentEdges = new int[2][nodeCount];
+        parents = new int[2][nodeCount];
+        seenStamps = new int[2][nodeCount];
+        settledStamps = new int[2][nodeCount];
+        heaps = new NodeHeap[]{new NodeHeap(256), new NodeHeap(256)};
+    }
+
+    public boolean matches(PathGraph graph) {
+        return graph.getNodeCount() == ranks.length && graph.computeSignature() == graphSignature;
+    }
+
+    public int getNodeCount() {
+        return ranks.length;
+    }
+
+    public int getShortcutCount() {
+        int count = 0;
+        for (int middle : upMiddles) {
+            if (middle >= 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public int getSettledCount() {
+        return settledCount;
+    }
+
+    public float getLastDistance() {
+        return lastDistance;
+    }
+
+    public int[] findPath(int source, int target) {
+        lastDistance = Float.POSITIVE_INFINITY;
+        if (source < 0 || target < 0) {
+            return null;
+        }
+        nextStamp();
+        settledCount = 0;
+
+        float best = Float.POSITIVE_INFINITY;
+        int meeting = -1;
+        start(0, source);
+        start(1, target);
+
+        while (true) {
+            boolean progressed = false;
+            for (int side = 0; side < 2; side++) {
+                NodeHeap heap = heaps[side];
+                if (heap.isEmpty() || heap.peekKey() >= best) {
+                    continue;
+                }
+                progressed = true;
+                int node = heap.pop();
+                if (settledStamps[side][node] == stamp) {
+                    continue;
+                }
+                settledStamps[side][node] = stamp;
+                settledCount++;
+
+                float nodeDistance = distances[side][node];
+                int other = 1 - side;
+                if (seenStamps[other][node] == stamp) {
+                    float candidate = nodeDistance + distances[other][node];
+                    if (candidate < best) {
+                        best = candidate;
+                        meeting = node;
+                    }
+                }
+
+                if (isStalled(side, node, nodeDistance)) {
+                    continue;
+                }
+                for (int edge = upOffsets[node], end = upOffsets[node + 1]; edge < end; edge++) {
+                    int next = upTargets[edge];
+                    float candidate = nodeDistance + upWeights[edge];
+                    if (seenStamps[side][next] != stamp || candidate < distances[side][next]) {
+                        seenStamps[side][next] = stamp;
+                        distances[side][next] = candidate;
+                        parents[side][next] = node;
+                        parentEdges[side][next] = edge;
+                        heap.push(next, candidate);
+                    }
+                }
+            }
+            if (!progressed) {
+                break;
+            }
+        }
+
+        if (meeting == -1) {
+            return null;
+        }
+        lastDistance = best;
+        return unpackPath(source, meeting);
+    }
+
+    private boolean isStalled(int side, int node, float nodeDistance) {
+        for (int edge = upOffsets[node], end = upOffsets[node + 1]; edge < end; edge++) {
+            int higher = upTargets[edge];
+            if (seenStamps[side][higher] == stamp && distances[side][higher] + upWeights[edge] < nodeDistance) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void start(int side, int node) {
+        heaps[side].clear();
+        distances[side][node] = 0f;
+        parents[side][node] = -1;
+        parentEdges[side][node] = -1;
+        seenStamps[side][node] = stamp;
+        heaps[side].push(node, 0f);
+    }
+
+    private int[] unpackPath(int source, int meeting) {
+        IntList upward = new IntList(16);
+        for (int node = meeting; parents[0][node] != -1; node = parents[0][node]) {
+            upward.add(parentEdges[0][node]);
+            upward.add(parents[0][node]);
+            upward.add(node);
+        }
+
+        IntList path = new IntList(64);
+        path.add(source);
+        for (int i = upward.size() - 3; i >= 0; i -= 3) {
+            unpackEdge(upward.get(i + 1), upward.get(i + 2), upMiddles[upward.get(i)], path);
+        }
+        for (int node = meeting; parents[1][node] != -1; node = parents[1][node]) {
+            unpackEdge(node, parents[1][node], upMiddles[parentEdges[1][node]], path);
+        }
+        return path.toArray();
+    }
+
+    private void unpackEdge(int from, int to, int middle, IntList path) {
+        IntList stack = unpackStack;
+        stack.clear();
+        stack.add(from);
+        stack.add(to);
+        stack.add(middle);
+        while (stack.size() > 0) {
+            int mid = stack.pop();
+            int b = stack.pop();
+            int a = stack.pop();
+            if (mid < 0) {
+                path.add(b);
+                continue;
+            }
+            stack.add(mid);
+            stack.add(b);
+            stack.add(upMiddles[findUpEdge(mid, b)]);
+            stack.add(a);
+            stack.add(mid);
+            stack.add(upMiddles[findUpEdge(mid, a)]);
+        }
+    }
+
+    private int findUpEdge(int from, int to) {
+        for (int edge = upOffsets[from], end = upOffsets[from + 1]; edge < end; edge++) {
+            if (upTargets[edge] == to) {
+                return edge;
+            }
+        }
+        throw new IllegalStateException("Missing shortcut edge " + from + " -> " + to);
+    }
+
+    private void nextStamp() {
+        if (stamp == Integer.MAX_VALUE) {
+            for (int side = 0; side < 2; side++) {
+                Arrays.fill(seenStamps[side], 0);
+                Arrays.fill(settledStamps[side], 0);
+            }
+            stamp = 0;
+        }
+        stamp++;
+    }
+
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeLong(graphSignature);
+        out.writeInt(ranks.length);
+        for (int rank : ranks) {
+            out.writeInt(rank);
+        }
+        for (int offset : upOffsets) {
+            out.writeInt(offset);
+        }
+        out.writeInt(upTargets.length);
+        for (int i = 0; i < upTargets.length; i++) {
+            out.writeInt(upTargets[i]);
+            out.writeFloat(upWeights[i]);
+            out.writeInt(upMiddles[i]);
+        }
+        out.flush();
+    }
+
+    public static ContractionHierarchy readFrom(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+            throw new IOException("Unsupported contraction hierarchy format");
+        }
+        long signature = in.readLong();
+        int nodeCount = in.readInt();
+        int[] ranks = new int[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            ranks[i] = in.readInt();
+        }
+        int[] offsets = new int[nodeCount + 1];
+        for (int i = 0; i <= nodeCount; i++) {
+            offsets[i] = in.readInt();
+        }
+        int edgeCount = in.readInt();
+        int[] targets = new int[edgeCount];
+        float[] weights = new float[edgeCount];
+        int[] middles = new int[edgeCount];
+        for (int i = 0; i < edgeCount; i++) {
+            targets[i] = in.readInt();
+            weights[i] = in.readFloat();
+            middles[i] = in.readInt();
+        }
+        return new ContractionHierarchy(signature, ranks, offsets, targets, weights, middles);
+    }
+
+    public static ContractionHierarchy build(PathGraph graph) {
+        return new Contractor(graph).contract();
+    }
+
+    private static class Contractor {
+        private final PathGraph graph;
+        private final int nodeCount;
+        private final int[][] adjTargets;
+        private final float[][] adjWeights;
+        private final int[][] adjMiddles;
+        private final int[] adjSizes;
+        private final boolean[] contracted;
+        private final int[] deletedNeighbors;
+        private final int[] levels;
+
+        private final float[] witnessDistances;
+        private final int[] witnessStamps;
+        private final int[] witnessSettled;
+        private final NodeHeap witnessHeap = new NodeHeap(256);
+        private int witnessStamp = 0;
+
+        private final IntList upSources = new IntList(1024);
+        private final IntList upTargets = new IntList(1024);
+        private final FloatList upWeights = new FloatList(1024);
+        private final IntList upMiddles = new IntList(1024);
+
+        Contractor(PathGraph graph) {
+            this.graph = graph;
+            nodeCount = graph.getNodeCount();
+            adjTargets = new int[nodeCount][];
+            adjWeights = new float[nodeCount][];
+            adjMiddles = new int[nodeCount][];
+            adjSizes = new int[nodeCount];
+            contracted = new boolean[nodeCount];
+            deletedNeighbors = new int[nodeCount];
+            levels = new int[nodeCount];
+            witnessDistances = new float[nodeCount];
+            witnessStamps = new int[nodeCount];
+            witnessSettled = new int[nodeCount];
+
+            for (int node = 0; node < nodeCount; node++) {
+                int degree = graph.getEdgeEnd(node) - graph.getEdgeStart(node);
+                adjTargets[node] = new int[Math.max(degree, 2)];
+                adjWeights[node] = new float[Math.max(degree, 2)];
+                adjMiddles[node] = new int[Math.max(degree, 2)];
+            }
+            for (int node = 0; node < nodeCount; node++) {
+                for (int edge = graph.getEdgeStart(node); edge < graph.getEdgeEnd(node); edge++) {
+                    int target = graph.getEdgeTarget(edge);
+                    if (target != node) {
+                        addOrImprove(node, target, graph.getEdgeWeight(edge), -1);
+                    }
+                }
+            }
+        }
+
+        ContractionHierarchy contract() {
+            NodeHeap queue = new NodeHeap(nodeCount);
+            for (int node = 0; node < nodeCount; node++) {
+                queue.push(node, priority(node));
+            }
+
+            int[] ranks = new int[nodeCount];
+            int order = 0;
+            while (!queue.isEmpty()) {
+                int node = queue.pop();
+                if (contracted[node]) {
+                    continue;
+                }
+                float updated = priority(node);
+                if (!queue.isEmpty() && updated > queue.peekKey()) {
+                    queue.push(node, updated);
+                    continue;
+                }
+                contractNode(node);
+                ranks[node] = order++;
+            }
+
+            int edgeCount = upSources.size();
+            int[] offsets = new int[nodeCount + 1];
+            for (int i = 0; i < edgeCount; i++) {
+                offsets[upSources.get(i) + 1]++;
+            }
+            for (int i = 0; i < nodeCount; i++) {
+                offsets[i + 1] += offsets[i];
+            }
+            int[] cursor = Arrays.copyOf(offsets, nodeCount);
+            int[] targets = new int[edgeCount];
+            float[] weights = new float[edgeCount];
+            int[] middles = new int[edgeCount];
+            for (int i = 0; i < edgeCount; i++) {
+                int slot = cursor[upSources.get(i)]++;
+                targets[slot] = upTargets.get(i);
+                weights[slot] = upWeights.get(i);
+                middles[slot] = upMiddles.get(i);
+            }
+            return new ContractionHierarchy(graph.computeSignature(), ranks, offsets, targets, weights, middles);
+        }
+
+        private float priority(int node) {
+            int degree = 0;
+            for (int i = 0; i < adjSizes[node]; i++) {
+                if (!contracted[adjTargets[node][i]]) {
+                    degree++;
+                }
+            }
+            int shortcuts = processNeighbors(node, false);
+            return 2 * (shortcuts - degree) + deletedNeighbors[node] + levels[node];
+        }
+
+        private void contractNode(int node) {
+            processNeighbors(node, true);
+            for (int i = 0; i < adjSizes[node]; i++) {
+                int neighbor = adjTargets[node][i];
+                if (contracted[neighbor]) {
+                    continue;
+                }
+                upSources.add(node);
+                upTargets.add(neighbor);
+                upWeights.add(adjWeights[node][i]);
+                upMiddles.add(adjMiddles[node][i]);
+                deletedNeighbors[neighbor]++;
+                levels[neighbor] = Math.max(levels[neighbor], levels[node] + 1);
+            }
+            contracted[node] = true;
+        }
+
+        private int processNeighbors(int node, boolean apply) {
+            int size = adjSizes[node];
+            int[] targets = adjTargets[node];
+            float[] weights = adjWeights[node];
+            float maxOutgoing = 0f;
+            for (int i = 0; i < size; i++) {
+                if (!contracted[targets[i]]) {
+                    maxOutgoing = Math.max(maxOutgoing, weights[i]);
+                }
+            }
+
+            int shortcuts = 0;
+            for (int i = 0; i < size; i++) {
+                int from = targets[i];
+                if (contracted[from]) {
+                    continue;
+                }
+                witnessSearch(from, node, weights[i] + maxOutgoing);
+                for (int j = i + 1; j < size; j++) {
+                    int to = targets[j];
+                    if (contracted[to] || to == from) {
+                        continue;
+                    }
+                    float viaNode = weights[i] + weights[j];
+                    if (witnessStamps[to] == witnessStamp && witnessDistances[to] <= viaNode) {
+                        continue;
+                    }
+                    shortcuts++;
+                    if (apply) {
+                        addOrImprove(from, to, viaNode, node);
+                        addOrImprove(to, from, viaNode, node);
+                    }
+                }
+            }
+            return shortcuts;
+        }
+
+        private void witnessSearch(int source, int excluded, float limit) {
+            if (witnessStamp == Integer.MAX_VALUE) {
+                Arrays.fill(witnessStamps, 0);
+                Arrays.fill(witnessSettled, 0);
+                witnessStamp = 0;
+            }
+            witnessStamp++;
+            witnessHeap.clear();
+            witnessDistances[source] = 0f;
+            witnessStamps[source] = witnessStamp;
+            witnessHeap.push(source, 0f);
+
+            int settled = 0;
+            while (!witnessHeap.isEmpty() && settled < WITNESS_SETTLE_LIMIT) {
+                if (witnessHeap.peekKey() > limit) {
+                    break;
+                }
+                int node = witnessHeap.pop();
+                if (witnessSettled[node] == witnessStamp) {
+                    continue;
+                }
+                witnessSettled[node] = witnessStamp;
+                settled++;
+
+                float nodeDistance = witnessDistances[node];
+                for (int i = 0; i < adjSizes[node]; i++) {
+                    int next = adjTargets[node][i];
+                    if (next == excluded || contracted[next]) {
+                        continue;
+                    }
+                    float candidate = nodeDistance + adjWeights[node][i];
+                    if (witnessStamps[next] != witnessStamp || candidate < witnessDistances[next]) {
+                        witnessStamps[next] = witnessStamp;
+                        witnessDistances[next] = candidate;
+                        witnessHeap.push(next, candidate);
+                    }
+                }
+            }
+        }
+
+        private void addOrImprove(int from, int to, float weight, int middle) {
+            int size = adjSizes[from];
+            for (int i = 0; i < size; i++) {
+                if (adjTargets[from][i] == to) {
+                    if (weight < adjWeights[from][i]) {
+                        adjWeights[from][i] = weight;
+                        adjMiddles[from][i] = middle;
+                    }
+                    return;
+                }
+            }
+            if (size == adjTargets[from].length) {
+                adjTargets[from] = Arrays.copyOf(adjTargets[from], size * 2);
+                adjWeights[from] = Arrays.copyOf(adjWeights[from], size * 2);
+                adjMiddles[from] = Arrays.copyOf(adjMiddles[from], size * 2);
+            }
+            adjTargets[from][size] = to;
+            adjWeights[from][size] = weight;
+            adjMiddles[from][size] = middle;
+            adjSizes[from] = size + 1;
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package com.soundcampus.navigation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public class DistanceMatrix {
+    // 2048^2 floats is 16 MB; bigger POI sets get distances one row at a time instead.
+    public static final int MAX_POIS = 2048;
+    private static final float TIGHT_EDGE_EPSILON = 0.01f;
+
+    private final String[] poiIds;
+    private final Map<String, Integer> poiIndex;
+    private final float[] distances;
+    private final int[] nearest;
+
+    private DistanceMatrix(String[] poiIds, float[] distances) {
+        this.poiIds = poiIds;
+        this.distances = distances;
+        this.poiIndex = new HashMap<>();
+        for (int i = 0; i < poiIds.length; i++) {
+            poiIndex.put(poiIds[i], i);
+        }
+        this.nearest = new int[poiIds.length];
+        for (int row = 0; row < poiIds.length; row++) {
+            updateNearest(row);
+        }
+    }
+
+    public static DistanceMatrix compute(PathGraph graph, List<String> poiIds, ForkJoinPool pool) {
+        checkSize(poiIds.size());
+        String[] ids = poiIds.toArray(new String[0]);
+        float[] distances = new float[ids.length * ids.length];
+        int[] nodes = resolveNodes(graph, ids);
+        int[] rows = new int[ids.length];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = i;
+        }
+        pool.invoke(new RowsTask(graph, nodes, rows, distances));
+        return new DistanceMatrix(ids, distances);
+    }
+
+    public static DistanceMatrix fromRows(List<String> poiIds, float[] distances) {
+        checkSize(poiIds.size());
+        if (distances.length != poiIds.size() * poiIds.size()) {
+            throw new IllegalArgumentException("Distance matrix size does not match POI count");
+        }
+        return new DistanceMatrix(poiIds.toArray(new String[0]), distances);
+    }
+
+    private static void checkSize(int poiCount) {
+        if (poiCount > MAX_POIS) {
+            throw new IllegalArgumentException("Too many POIs for a distance matrix: " + poiCount);
+        }
+    }
+
+    public int size() {
+        return poiIds.length;
+    }
+
+    public String getPoiId(int index) {
+        return poiIds[index];
+    }
+
+    public float getDistance(int fromIndex, int toIndex) {
+        return distances[fromIndex * poiIds.length + toIndex];
+    }
+
+    public float getDistance(String fromId, String toId) {
+        Integer from = poiIndex.get(fromId);
+        Integer to = poiIndex.get(toId);
+        if (from == null || to == null) {
+            return Float.POSITIVE_INFINITY;
+        }
+        return getDistance(from, to);
+    }
+
+    public String findNearest(String fromId) {
+        Integer from = poiIndex.get(fromId);
+        if (from == null || nearest[from] < 0) {
+            return null;
+        }
+        return poiIds[nearest[from]];
+    }
+
+    public String findNearest(String fromId, Collection<String> candidateIds) {
+        Integer from = poiIndex.get(fromId);
+        if (from == null) {
+            return null;
+        }
+        String best = null;
+        float bestDistance = Float.POSITIVE_INFINITY;
+        for (String candidate : candidateIds) {
+            Integer to = poiIndex.get(candidate);
+            if (to == null || to.intValue() == from.intValue()) {
+                continue;
+            }
+            float distance = getDistance(from, to);
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = candidate;
+            }
+        }
+        return best;
+    }
+
+    public float[] getRow(int fromIndex) {
+        int n = poiIds.length;
+        return Arrays.copyOfRange(distances, fromIndex * n, fromIndex * n + n);
+    }
+
+    public int[] updateEdge(PathGraph oldGraph, PathGraph newGraph, String fromId, String toId,
+                            float oldWeight, float newWeight, ForkJoinPool pool) {
+        int a = oldGraph.indexOf(fromId);
+        int b = oldGraph.indexOf(toId);
+        if (a < 0 || b < 0) {
+            return new int[0];
+        }
+
+        int[] oldNodes = resolveNodes(oldGraph, poiIds);
+        float[] fromA = shortestDistances(oldGraph, a);
+        float[] fromB = shortestDistances(oldGraph, b);
+
+        List<Integer> affected = new ArrayList<>();
+        for (int row = 0; row < poiIds.length; row++) {
+            int node = oldNodes[row];
+            if (node < 0) {
+                continue;
+            }
+            float da = fromA[node];
+            float db = fromB[node];
+            boolean tight = Math.abs(da - db) >= oldWeight - TIGHT_EDGE_EPSILON;
+            boolean improves = da + newWeight < db || db + newWeight < da;
+            if ((newWeight > oldWeight && tight) || (newWeight < oldWeight && improves)) {
+                affected.add(row);
+            }
+        }
+
+        int[] rows = new int[affected.size()];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = affected.get(i);
+        }
+        if (rows.length > 0) {
+            pool.invoke(new RowsTask(newGraph, resolveNodes(newGraph, poiIds), rows, distances));
+            int n = poiIds.length;
+            for (int row : rows) {
+                for (int column = 0; column < n; column++) {
+                    distances[column * n + row] = distances[row * n + column];
+                }
+            }
+            for (int row = 0; row < n; row++) {
+                updateNearest(row);
+            }
+        }
+        return rows;
+    }
+
+    private void updateNearest(int row) {
+        int n = poiIds.length;
+        int best = -1;
+        float bestDistance = Float.POSITIVE_INFINITY;
+        for (int column = 0; column < n; column++) {
+            float distance = distances[row * n + column];
+            if (column != row && distance < bestDistance) {
+                bestDistance = distance;
+                best = column;
+            }
+        }
+        nearest[row] = best;
+    }
+
+    private static int[] resolveNodes(PathGraph graph, String[] ids) {
+        int[] nodes = new int[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            nodes[i] = graph.indexOf(ids[i]);
+        }
+        return nodes;
+    }
+
+    static float[] shortestDistances(PathGraph graph, int source) {
+        float[] result = new float[graph.getNodeCount()];
+        Arrays.fill(result, Float.POSITIVE_INFINITY);
+        boolean[] settled = new boolean[graph.getNodeCount()];
+        NodeHeap heap = new NodeHeap(64);
+        result[source] = 0f;
+        heap.push(source, 0f);
+        while (!heap.isEmpty()) {
+            int node = heap.pop();
+            if (settled[node]) {
+                continue;
+            }
+            settled[node] = true;
+            float nodeDistance = result[node];
+            for (int edge = graph.getEdgeStart(node), end = graph.getEdgeEnd(node); edge < end; edge++) {
+                int next = graph.getEdgeTarget(edge);
+                float candidate = nodeDistance + graph.getEdgeWeight(edge);
+                if (candidate < result[next]) {
+                    result[next] = candidate;
+                    heap.push(next, candidate);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static class RowsTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final PathGraph graph;
+        private final int[] nodes;
+        private final int[] rows;
+        private final float[] distances;
+
+        RowsTask(PathGraph graph, int[] nodes, int[] rows, float[] distances) {
+            this.graph = graph;
+            this.nodes = nodes;
+            this.rows = rows;
+            this.distances = distances;
+        }
+
+        @Override
+        protected void compute() {
+            List<RowTask> tasks = new ArrayList<>(rows.length);
+            for (int row : rows) {
+                tasks.add(new RowTask(graph, nodes, row, distances));
+            }
+            invokeAll(tasks);
+        }
+    }
+
+    private static class RowTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final PathGraph graph;
+        private final int[] nodes;
+        private final int row;
+        private final float[] distances;
+
+        RowTask(PathGraph graph, int[] nodes, int row, float[] distances) {
+            this.graph = graph;
+            this.nodes = nodes;
+            this.row = row;
+            this.distances = distances;
+        }
+
+        @Override
+        protected void compute() {
+            int n = nodes.length;
+            int offset = row * n;
+            if (nodes[row] < 0) {
+                Arrays.fill(distances, offset, offset + n, Float.POSITIVE_INFINITY);
+                distances[offset + row] = 0f;
+                return;
+            }
+            float[] fromSource = shortestDistances(graph, nodes[row]);
+            for (int column = 0; column < n; column++) {
+                int node = nodes[column];
+                distances[offset + column] = node >= 0 ? fromSource[node] : Float.POSITIVE_INFINITY;
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.soundcampus.navigation;
+
+import com.soundcampus.utils.LocationHelper;
+
+// Constant-velocity Kalman filter that smooths GPS fixes and estimates walking speed.
+public class LocationFilter {
+    // Random acceleration of a pedestrian, m/s²: enough to follow starts, stops and turns.
+    private static final double ACCELERATION_NOISE = 1.0;
+    // After a gap this long the velocity is stale; start over from the next fix.
+    private static final long RESET_GAP_MILLIS = 30000;
+    private static final double INITIAL_SPEED_VARIANCE = 4.0;
+    private static final double MIN_ACCURACY_METERS = 1.0;
+
+    private boolean initialized = false;
+    private double originLatitude;
+    private double originLongitude;
+    private double metersPerDegreeLatitude;
+    private double metersPerDegreeLongitude;
+    private long lastTimeMillis;
+
+    // Per axis (0 east, 1 north): position, velocity and the covariance [pp, pv, vv].
+    private final double[] position = new double[2];
+    private final double[] velocity = new double[2];
+    private final double[] covPP = new double[2];
+    private final double[] covPV = new double[2];
+    private final double[] covVV = new double[2];
+
+    private int updateCount = 0;
+    private int resetCount = 0;
+
+    public void reset() {
+        initialized = false;
+    }
+
+    public void update(long timeMillis, double latitude, double longitude, double accuracyMeters) {
+        double accuracy = Math.max(MIN_ACCURACY_METERS, accuracyMeters > 0 ? accuracyMeters : MIN_ACCURACY_METERS);
+        long dtMillis = timeMillis - lastTimeMillis;
+        if (initialized && dtMillis > RESET_GAP_MILLIS) {
+            initialized = false;
+            resetCount++;
+        }
+        if (!initialized) {
+            originLatitude = latitude;
+            originLongitude = longitude;
+            metersPerDegreeLatitude = Math.toRadians(LocationHelper.EARTH_RADIUS_METERS);
+            metersPerDegreeLongitude = metersPerDegreeLatitude * Math.cos(Math.toRadians(latitude));
+            for (int axis = 0; axis < 2; axis++) {
+                position[axis] = 0;
+                velocity[axis] = 0;
+                covPP[axis] = accuracy * accuracy;
+                covPV[axis] = 0;
+                covVV[axis] = INITIAL_SPEED_VARIANCE;
+            }
+            lastTimeMillis = timeMillis;
+            initialized = true;
+            updateCount++;
+            return;
+        }
+
+        double dt = Math.max(0, dtMillis) / 1000.0;
+        double r = accuracy * accuracy;
+        double[] measured = {
+                (longitude - originLongitude) * metersPerDegreeLongitude,
+                (latitude - originLatitude) * metersPerDegreeLatitude
+        };
+        double q = ACCELERATION_NOISE * ACCELERATION_NOISE;
+        for (int axis = 0; axis < 2; axis++) {
+            // Predict: x' = F x, P' = F P Fᵀ + Q with F = [[1, dt], [0, 1]].
+            double pp = covPP[axis] + dt * (2 * covPV[axis] + dt * covVV[axis]) + q * dt * dt * dt * dt / 4;
+            double pv = covPV[axis] + dt * covVV[axis] + q * dt * dt * dt / 2;
+            double vv = covVV[axis] + q * dt * dt;
+            double p = position[axis] + velocity[axis] * dt;
+
+            // Update with the measured position.
+            double s = pp + r;
+            double gainP = pp / s;
+            double gainV = pv / s;
+            double innovation = measured[axis] - p;
+            position[axis] = p + gainP * innovation;
+            velocity[axis] += gainV * innovation;
+            covPP[axis] = (1 - gainP) * pp;
+            covPV[axis] = (1 - gainP) * pv;
+            covVV[axis] = vv - gainV * pv;
+        }
+        lastTimeMillis = timeMillis;
+        updateCount++;
+    }
+
+    public boolean hasEstimate() {
+        return initialized;
+    }
+
+    public double getLatitude() {
+        return originLatitude + position[1] / metersPerDegreeLatitude;
+    }
+
+    public double getLongitude() {
+        return originLongitude + position[0] / metersPerDegreeLongitude;
+    }
+
+    // Metres per second over ground.
+    public double getSpeed() {
+        return initialized ? Math.sqrt(velocity[0] * velocity[0] + velocity[1] * velocity[1]) : 0;
+    }
+
+    // One standard deviation of the position estimate, in metres.
+    public double getAccuracy() {
+        return initialized ? Math.sqrt((covPP[0] + covPP[1]) / 2) : Double.NaN;
+    }
+
+    public long getTimeMillis() {
+        return lastTimeMillis;
+    }
+
+    public int getUpdateCount() {
+        return updateCount;
+    }
+
+    public int getResetCount() {
+        return resetCount;
+    }
+}
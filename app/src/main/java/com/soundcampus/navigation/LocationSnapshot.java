@@ -0,0 +1,90 @@
+package com.soundcampus.navigation;
+
+import com.soundcampus.data.CampusLocation;
+import java.util.AbstractList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public final class LocationSnapshot {
+    private final long version;
+    private final List<CampusLocation> locations;
+    private final Map<String, CampusLocation> locationsById;
+    private final SpatialIndex spatialIndex;
+    private final CampusMapFile mapFile;
+    private final long loadTimeNanos;
+
+    public LocationSnapshot(long version, List<CampusLocation> locations, long loadTimeNanos) {
+        this.version = version;
+        this.locations = Collections.unmodifiableList(locations);
+        this.loadTimeNanos = loadTimeNanos;
+
+        Map<String, CampusLocation> byId = new HashMap<>();
+        double[] latitudes = new double[locations.size()];
+        double[] longitudes = new double[locations.size()];
+        for (int i = 0; i < locations.size(); i++) {
+            CampusLocation location = locations.get(i);
+            byId.put(location.getId(), location);
+            latitudes[i] = location.getLatitude();
+            longitudes[i] = location.getLongitude();
+        }
+        this.locationsById = Collections.unmodifiableMap(byId);
+        this.spatialIndex = SpatialIndex.build(latitudes, longitudes);
+        this.mapFile = null;
+    }
+
+    public LocationSnapshot(long version, final CampusMapFile mapFile, long loadTimeNanos) {
+        this.version = version;
+        this.mapFile = mapFile;
+        this.loadTimeNanos = loadTimeNanos;
+        this.locations = new AbstractList<CampusLocation>() {
+            @Override
+            public CampusLocation get(int index) {
+                if (index < 0 || index >= mapFile.getLocationCount()) {
+                    throw new IndexOutOfBoundsException("Index: " + index);
+                }
+                return mapFile.getLocation(index);
+            }
+
+            @Override
+            public int size() {
+                return mapFile.getLocationCount();
+            }
+        };
+        this.locationsById = null;
+        this.spatialIndex = mapFile.getSpatialIndex();
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public List<CampusLocation> getLocations() {
+        return locations;
+    }
+
+    public CampusLocation getLocation(int index) {
+        return locations.get(index);
+    }
+
+    public CampusLocation getLocationById(String id) {
+        if (mapFile != null) {
+            int index = mapFile.indexOf(id);
+            return index >= 0 ? mapFile.getLocation(index) : null;
+        }
+        return locationsById.get(id);
+    }
+
+    public boolean isMapped() {
+        return mapFile != null;
+    }
+
+    public SpatialIndex getSpatialIndex() {
+        return spatialIndex;
+    }
+
+    public long getLoadTimeNanos() {
+        return loadTimeNanos;
+    }
+}
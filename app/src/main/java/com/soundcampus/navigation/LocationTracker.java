@@ -10,13 +10,22 @@ import android.os.Bundle;
 import android.util.Log;
 import androidx.core.app.ActivityCompat;
 
+// Delivers Kalman-smoothed GPS fixes, asking for them as often as SamplingPolicy decides from the
+// walking speed and the distance to the next maneuver (see setDistanceToNextManeuver).
 public class LocationTracker {
     private static final String TAG = "LocationTracker";
+    // Assumed when a fix does not report its accuracy.
+    private static final float DEFAULT_ACCURACY_METERS = 10;
     private Context context;
     private LocationManager locationManager;
     private LocationListener locationListener;
-    private Location currentLocation;
+    // Read from NavigationActivity's engine thread.
+    private volatile Location currentLocation;
     private LocationUpdateCallback callback;
+    private final LocationFilter filter = new LocationFilter();
+    private final SamplingPolicy samplingPolicy = new SamplingPolicy();
+    private volatile double distanceToManeuver = Double.NaN;
+    private int fixCount = 0;
 
     public interface LocationUpdateCallback {
         void onLocationUpdate(Location location);
@@ -41,11 +50,13 @@ public class LocationTracker {
         locationListener = new LocationListener() {
             @Override
             public void onLocationChanged(Location location) {
-                currentLocation = location;
+                fixCount++;
+                currentLocation = smooth(location);
                 if (callback != null) {
-                    callback.onLocationUpdate(location);
+                    callback.onLocationUpdate(currentLocation);
                 }
-                Log.d(TAG, "Location updated: " + location.getLatitude() + ", " + location.getLongitude());
+                Log.d(TAG, "Location updated: " + currentLocation.getLatitude() + ", " + currentLocation.getLongitude());
+                updateSampling();
             }
 
             @Override
@@ -67,15 +78,17 @@ public class LocationTracker {
         };
 
         try {
+            SamplingPolicy.Request request = samplingPolicy.getRequest();
             locationManager.requestLocationUpdates(
                     LocationManager.GPS_PROVIDER,
-                    2000,
-                    5,
+                    request.intervalMillis,
+                    request.minDistanceMeters,
                     locationListener
             );
 
             Location lastKnown = locationManager.getLastKnownLocation(LocationManager.GPS_PROVIDER);
             if (lastKnown != null) {
+                // Possibly old; shown, but kept out of the filter.
                 currentLocation = lastKnown;
                 if (callback != null) {
                     callback.onLocationUpdate(lastKnown);
@@ -89,6 +102,50 @@ public class LocationTracker {
         }
     }
 
+    private Location smooth(Location location) {
+        float accuracy = location.hasAccuracy() ? location.getAccuracy() : DEFAULT_ACCURACY_METERS;
+        filter.update(location.getElapsedRealtimeNanos() / 1000000, location.getLatitude(), location.getLongitude(),
+                accuracy);
+        Location smoothed = new Location(location);
+        smoothed.setLatitude(filter.getLatitude());
+        smoothed.setLongitude(filter.getLongitude());
+        smoothed.setSpeed((float) filter.getSpeed());
+        smoothed.setAccuracy((float) filter.getAccuracy());
+        return smoothed;
+    }
+
+    private void updateSampling() {
+        SamplingPolicy.Request previous = samplingPolicy.getRequest();
+        SamplingPolicy.Request request = samplingPolicy.update(filter.getSpeed(), distanceToManeuver,
+                filter.getAccuracy());
+        if (request.equals(previous) || locationListener == null) {
+            return;
+        }
+        Log.d(TAG, "Sampling " + request + " (speed " + filter.getSpeed() + " m/s, maneuver in "
+                + distanceToManeuver + " m)");
+        try {
+            // Registering the same listener again replaces its previous request.
+            locationManager.requestLocationUpdates(LocationManager.GPS_PROVIDER,
+                    request.intervalMillis, request.minDistanceMeters, locationListener);
+        } catch (SecurityException e) {
+            Log.e(TAG, "Security exception: " + e.getMessage());
+        }
+    }
+
+    // From NavigationEngine.getDistanceToNextManeuver() after each fix, on any thread; NaN when not
+    // navigating. Takes effect with the next fix.
+    public void setDistanceToNextManeuver(double meters) {
+        distanceToManeuver = meters;
+    }
+
+    public int getFixCount() {
+        return fixCount;
+    }
+
+    public int getSamplingChangeCount() {
+        return samplingPolicy.getChangeCount();
+    }
+
     public void stopTracking() {
         if (locationManager != null && locationListener != null) {
             locationManager.removeUpdates(locationListener);
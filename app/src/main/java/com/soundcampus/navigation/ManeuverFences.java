@@ -0,0 +1,192 @@
+package com.soundcampus.navigation;
+
+import com.soundcampus.data.NavigationInstruction;
+import com.soundcampus.data.Route;
+import com.soundcampus.utils.LocationHelper;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+// Trigger points along a route where guidance speaks, checked against each new fix.
+public class ManeuverFences {
+    public static final int PREPARE = 0;
+    public static final int ANNOUNCE = 1;
+    public static final int PASSED = 2;
+    public static final int ARRIVE = 3;
+
+    public static final int PREPARE_METERS = 30;
+    public static final int ANNOUNCE_METERS = 8;
+    private static final double PASSED_METERS = 3;
+    private static final double HYSTERESIS_METERS = 4;
+    // Legs shorter than this get no PREPARE; the instruction itself was just spoken with its distance.
+    private static final double MIN_PREPARE_LEG_METERS = PREPARE_METERS + 15;
+    // Fixes further than this from the route do not move progress; the replanner deals with them.
+    private static final double CORRIDOR_METERS = 40;
+    private static final double WINDOW_BEHIND_METERS = 30;
+    private static final double WINDOW_AHEAD_METERS = 120;
+    private static final int LOOKAHEAD = 4;
+
+    public static class Fence {
+        public final int kind;
+        public final int instructionIndex;
+        public final double position;
+
+        Fence(int kind, int instructionIndex, double position) {
+            this.kind = kind;
+            this.instructionIndex = instructionIndex;
+            this.position = position;
+        }
+    }
+
+    // Polyline vertices in metres east/north of the first one, and distance along the route to each.
+    private final double[] xs;
+    private final double[] ys;
+    private final double[] along;
+    private final double originLatitude;
+    private final double originLongitude;
+    private final double metersPerDegreeLatitude;
+    private final double metersPerDegreeLongitude;
+    private final Fence[] fences;
+
+    private int next = 0;
+    private double progress = 0;
+    private double lastPosition = Double.NaN;
+    private int checkedCount = 0;
+
+    public ManeuverFences(Route route) {
+        int count = route.getPathPointCount();
+        originLatitude = route.getPathLatitude(0);
+        originLongitude = route.getPathLongitude(0);
+        metersPerDegreeLatitude = Math.toRadians(LocationHelper.EARTH_RADIUS_METERS);
+        metersPerDegreeLongitude = metersPerDegreeLatitude * Math.cos(Math.toRadians(originLatitude));
+        xs = new double[count];
+        ys = new double[count];
+        along = new double[count];
+        for (int i = 0; i < count; i++) {
+            xs[i] = (route.getPathLongitude(i) - originLongitude) * metersPerDegreeLongitude;
+            ys[i] = (route.getPathLatitude(i) - originLatitude) * metersPerDegreeLatitude;
+            if (i > 0) {
+                along[i] = along[i - 1] + Math.hypot(xs[i] - xs[i - 1], ys[i] - ys[i - 1]);
+            }
+        }
+        double length = along[count - 1];
+
+        // Instruction distances come from edge weights; scale them onto the polyline's own length.
+        List<NavigationInstruction> instructions = route.getInstructions();
+        double total = 0;
+        for (NavigationInstruction instruction : instructions) {
+            total += instruction.getDistanceMeters();
+        }
+        double scale = total > 0 ? length / total : 1;
+
+        List<Fence> list = new ArrayList<>();
+        double legStart = 0;
+        for (int i = 0; i < instructions.size(); i++) {
+            NavigationInstruction instruction = instructions.get(i);
+            double turn = legStart + instruction.getDistanceMeters() * scale;
+            NavigationInstruction.Direction direction = instruction.getDirection();
+            if (direction == NavigationInstruction.Direction.LEFT || direction == NavigationInstruction.Direction.RIGHT) {
+                if (turn - legStart >= MIN_PREPARE_LEG_METERS) {
+                    list.add(new Fence(PREPARE, i, turn - PREPARE_METERS));
+                }
+                list.add(new Fence(ANNOUNCE, i, Math.max(legStart, turn - ANNOUNCE_METERS)));
+                list.add(new Fence(PASSED, i, turn + PASSED_METERS));
+            }
+            legStart = turn;
+        }
+        list.add(new Fence(ARRIVE, instructions.size() - 1,
+                Math.max(0, length - NavigationEngine.ARRIVAL_RADIUS_METERS)));
+        Collections.sort(list, new Comparator<Fence>() {
+            @Override
+            public int compare(Fence a, Fence b) {
+                int order = Double.compare(a.position, b.position);
+                return order != 0 ? order : Integer.compare(a.instructionIndex * 4 + a.kind,
+                        b.instructionIndex * 4 + b.kind);
+            }
+        });
+        fences = list.toArray(new Fence[0]);
+    }
+
+    // Moves progress to the fix and returns the fences it crossed, in route order; empty when none. A
+    // fence needs one fix HYSTERESIS_METERS past it or two in a row past it, so a stray fix stays quiet.
+    public List<Fence> update(double latitude, double longitude) {
+        double position = locate(latitude, longitude);
+        if (Double.isNaN(position)) {
+            lastPosition = Double.NaN;
+            return Collections.emptyList();
+        }
+        List<Fence> crossed = Collections.emptyList();
+        int end = Math.min(fences.length, next + LOOKAHEAD);
+        while (next < end) {
+            Fence fence = fences[next];
+            checkedCount++;
+            boolean confirmed = position >= fence.position + HYSTERESIS_METERS
+                    || (position >= fence.position && lastPosition >= fence.position);
+            if (!confirmed) {
+                break;
+            }
+            if (crossed.isEmpty()) {
+                crossed = new ArrayList<>(2);
+            }
+            crossed.add(fence);
+            next++;
+        }
+        progress = position;
+        lastPosition = position;
+        return crossed;
+    }
+
+    // Distance along the route of the closest point within the corridor, searched near the current
+    // progress first; NaN when the fix is off the route.
+    double locate(double latitude, double longitude) {
+        double x = (longitude - originLongitude) * metersPerDegreeLongitude;
+        double y = (latitude - originLatitude) * metersPerDegreeLatitude;
+        double position = nearestAlong(x, y, progress - WINDOW_BEHIND_METERS, progress + WINDOW_AHEAD_METERS);
+        if (Double.isNaN(position)) {
+            position = nearestAlong(x, y, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+        }
+        return position;
+    }
+
+    private double nearestAlong(double x, double y, double from, double to) {
+        double best = CORRIDOR_METERS * CORRIDOR_METERS;
+        double position = Double.NaN;
+        for (int i = 0; i + 1 < xs.length; i++) {
+            if (along[i + 1] < from || along[i] > to) {
+                continue;
+            }
+            double dx = xs[i + 1] - xs[i];
+            double dy = ys[i + 1] - ys[i];
+            double lengthSquared = dx * dx + dy * dy;
+            double t = lengthSquared > 0 ? ((x - xs[i]) * dx + (y - ys[i]) * dy) / lengthSquared : 0;
+            t = Math.max(0, Math.min(1, t));
+            double ex = xs[i] + t * dx - x;
+            double ey = ys[i] + t * dy - y;
+            double distanceSquared = ex * ex + ey * ey;
+            if (distanceSquared <= best) {
+                best = distanceSquared;
+                position = along[i] + t * (along[i + 1] - along[i]);
+            }
+        }
+        return position;
+    }
+
+    // Metres from the current progress to the next fence, NaN once all have fired.
+    public double getDistanceToNextFence() {
+        return next < fences.length ? Math.max(0, fences[next].position - progress) : Double.NaN;
+    }
+
+    public double getProgress() {
+        return progress;
+    }
+
+    public int getFenceCount() {
+        return fences.length;
+    }
+
+    // Fence comparisons made, for the cost per fix.
+    public int getCheckedCount() {
+        return checkedCount;
+    }
+}
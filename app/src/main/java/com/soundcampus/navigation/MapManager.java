@@ -1,106 +1,665 @@
 package com.soundcampus.navigation;
 
 import android.content.Context;
+import android.content.ContentValues;
+import android.content.pm.PackageManager;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.icu.text.Transliterator;
+import android.os.Build;
+import android.util.Log;
+import androidx.annotation.RequiresApi;
+import com.soundcampus.R;
 import com.soundcampus.data.CampusLocation;
+import com.soundcampus.data.CampusMapReader;
 import com.soundcampus.data.DatabaseHelper;
+import com.soundcampus.data.LocationQueries;
+import com.soundcampus.ocr.SignResolver;
+import com.soundcampus.utils.IntList;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class MapManager {
+    private static final String TAG = "MapManager";
+    private static final String MAP_FILE_NAME = "campus_map.scm";
+    private static final Object SNAPSHOT_LOCK = new Object();
+    private static final AtomicLong locationsVersion = new AtomicLong();
+    private static final AtomicLong cacheHits = new AtomicLong();
+    private static final AtomicLong cacheMisses = new AtomicLong();
+    private static final AtomicLong totalLoadTimeNanos = new AtomicLong();
+    private static volatile LocationSnapshot locationSnapshot;
+    private static final Object SEARCH_LOCK = new Object();
+    private static LocationSnapshot searchSnapshot;
+    private static SearchIndex searchIndex;
+    private Context context;
     private DatabaseHelper dbHelper;
     private SQLiteDatabase db;
+    private PathGraph pathGraph;
+    private ContractionHierarchy contractionHierarchy;
+    private SegmentIndex segmentIndex;
+    private DistanceMatrix distanceMatrix;
+    private CampusMapFile mapFile;
+    private boolean mapFileChecked = false;
+    private volatile Boolean locationsRtree;
 
     public MapManager(Context context) {
+        this.context = context;
         dbHelper = new DatabaseHelper(context);
+        PathGraph.Builder graphBuilder = new PathGraph.Builder();
+        dbHelper.setImportListener(graphBuilder);
         db = dbHelper.getReadableDatabase();
+        dbHelper.setImportListener(null);
+        if (dbHelper.getLastImportStats() != null) {
+            pathGraph = graphBuilder.build();
+        }
     }
 
     public List<CampusLocation> getAllLocations() {
-        List<CampusLocation> locations = new ArrayList<>();
+        return getLocationSnapshot().getLocations();
+    }
+
+    public CampusLocation getLocationById(String id) {
+        return getLocationSnapshot().getLocationById(id);
+    }
+
+    public CampusLocation findNearestLocation(double latitude, double longitude) {
+        LocationSnapshot snapshot = getLocationSnapshot();
+        int nearest = snapshot.getSpatialIndex().nearest(latitude, longitude);
+        return nearest >= 0 ? snapshot.getLocation(nearest) : null;
+    }
+
+    public List<CampusLocation> findNearestLocations(double latitude, double longitude, int count) {
+        LocationSnapshot snapshot = getLocationSnapshot();
+        int[] indices = new int[count];
+        double[] distances = new double[count];
+        int found = snapshot.getSpatialIndex().kNearest(latitude, longitude, indices, distances);
+        List<CampusLocation> result = new ArrayList<>(found);
+        for (int i = 0; i < found; i++) {
+            result.add(snapshot.getLocation(indices[i]));
+        }
+        return result;
+    }
+
+    public List<CampusLocation> findLocationsWithinRadius(double latitude, double longitude, double radiusMeters) {
+        LocationSnapshot snapshot = getLocationSnapshot();
+        IntList indices = new IntList(16);
+        snapshot.getSpatialIndex().withinRadius(latitude, longitude, radiusMeters, indices);
+        List<CampusLocation> result = new ArrayList<>(indices.size());
+        for (int i = 0; i < indices.size(); i++) {
+            result.add(snapshot.getLocation(indices.get(i)));
+        }
+        return result;
+    }
+
+    // Ranked fuzzy matches for a typed or dictated destination; pinyin and initials work too.
+    public List<CampusLocation> searchLocations(String query, int limit) {
+        LocationSnapshot snapshot = getLocationSnapshot();
+        SearchIndex index = getSearchIndex(snapshot);
+        int[] indices = new int[limit];
+        float[] scores = new float[limit];
+        long start = System.nanoTime();
+        int found = index.search(query, indices, scores);
+        List<CampusLocation> result = new ArrayList<>(found);
+        for (int i = 0; i < found; i++) {
+            result.add(snapshot.getLocation(indices[i]));
+        }
+        Log.d(TAG, "Search \"" + query + "\" found " + found + " in " + (System.nanoTime() - start) / 1000 + "us");
+        return result;
+    }
+
+    // Matches recognized sign text against the same index and snapshot the destination search uses.
+    public SignResolver createSignResolver() {
+        LocationSnapshot snapshot = getLocationSnapshot();
+        return new SignResolver(getSearchIndex(snapshot), snapshot.getLocations());
+    }
+
+    private SearchIndex getSearchIndex(LocationSnapshot snapshot) {
+        synchronized (SEARCH_LOCK) {
+            if (searchSnapshot != snapshot) {
+                long start = System.nanoTime();
+                // The ICU transliterator arrived in API 29; older devices match Chinese names only.
+                SearchIndex.Romanizer romanizer = Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q
+                        ? IcuRomanizer.INSTANCE : null;
+                searchIndex = SearchIndex.build(snapshot.getLocations(), queryFacilities(snapshot.getLocations()),
+                        romanizer);
+                searchSnapshot = snapshot;
+                Log.d(TAG, "Built search index over " + searchIndex.size() + " locations ("
+                        + searchIndex.getKeyCount() + " grams) in " + (System.nanoTime() - start) / 1000000 + "ms");
+            }
+            return searchIndex;
+        }
+    }
+
+    private List<String> queryFacilities(List<CampusLocation> locations) {
+        Map<String, String> byId = new HashMap<>();
         Cursor cursor = db.query(
                 DatabaseHelper.TABLE_LOCATIONS,
+                new String[]{DatabaseHelper.COLUMN_ID, DatabaseHelper.COLUMN_FACILITIES},
                 null,
                 null,
                 null,
                 null,
-                null,
-                DatabaseHelper.COLUMN_NAME
+                null
         );
-
         if (cursor != null) {
             while (cursor.moveToNext()) {
-                String id = cursor.getString(cursor.getColumnIndexOrThrow(DatabaseHelper.COLUMN_ID));
-                String name = cursor.getString(cursor.getColumnIndexOrThrow(DatabaseHelper.COLUMN_NAME));
-                double latitude = cursor.getDouble(cursor.getColumnIndexOrThrow(DatabaseHelper.COLUMN_LATITUDE));
-                double longitude = cursor.getDouble(cursor.getColumnIndexOrThrow(DatabaseHelper.COLUMN_LONGITUDE));
-                String description = cursor.getString(cursor.getColumnIndexOrThrow(DatabaseHelper.COLUMN_DESCRIPTION));
-                String category = cursor.getString(cursor.getColumnIndexOrThrow(DatabaseHelper.COLUMN_CATEGORY));
-
-                locations.add(new CampusLocation(id, name, latitude, longitude, description, category));
+                byId.put(cursor.getString(0), cursor.getString(1));
             }
             cursor.close();
         }
+        List<String> facilities = new ArrayList<>(locations.size());
+        for (CampusLocation location : locations) {
+            facilities.add(byId.get(location.getId()));
+        }
+        return facilities;
+    }
 
-        return locations;
+    public LocationSnapshot getLocationSnapshot() {
+        LocationSnapshot snapshot = locationSnapshot;
+        if (snapshot != null) {
+            cacheHits.incrementAndGet();
+            return snapshot;
+        }
+        CampusMapFile file = getMapFile();
+        boolean useMapFile = isMapFileCurrent(file);
+        synchronized (SNAPSHOT_LOCK) {
+            snapshot = locationSnapshot;
+            if (snapshot != null) {
+                cacheHits.incrementAndGet();
+                return snapshot;
+            }
+            cacheMisses.incrementAndGet();
+            long version = locationsVersion.get();
+            long start = System.nanoTime();
+            if (useMapFile) {
+                snapshot = new LocationSnapshot(version, file, System.nanoTime() - start);
+            } else {
+                snapshot = new LocationSnapshot(version, queryAllLocations(), System.nanoTime() - start);
+            }
+            totalLoadTimeNanos.addAndGet(snapshot.getLoadTimeNanos());
+            if (locationsVersion.get() == version) {
+                locationSnapshot = snapshot;
+            }
+            Log.d(TAG, "Loaded " + snapshot.getLocations().size() + " locations in "
+                    + snapshot.getLoadTimeNanos() / 1000 + "us (version " + version
+                    + (snapshot.isMapped() ? ", mapped" : "") + ")");
+            return snapshot;
+        }
     }
 
-    public CampusLocation getLocationById(String id) {
+    public static void invalidateLocations() {
+        synchronized (SNAPSHOT_LOCK) {
+            locationsVersion.incrementAndGet();
+            locationSnapshot = null;
+        }
+    }
+
+    public static long getCacheHits() {
+        return cacheHits.get();
+    }
+
+    public static long getCacheMisses() {
+        return cacheMisses.get();
+    }
+
+    public static long getTotalLoadTimeMillis() {
+        return totalLoadTimeNanos.get() / 1000000;
+    }
+
+    private List<CampusLocation> queryAllLocations() {
+        List<CampusLocation> locations = new ArrayList<>();
         Cursor cursor = db.query(
                 DatabaseHelper.TABLE_LOCATIONS,
                 null,
-                DatabaseHelper.COLUMN_ID + " = ?",
-                new String[]{id},
                 null,
                 null,
-                null
+                null,
+                null,
+                DatabaseHelper.COLUMN_NAME
         );
 
-        CampusLocation location = null;
-        if (cursor != null && cursor.moveToFirst()) {
-            String name = cursor.getString(cursor.getColumnIndexOrThrow(DatabaseHelper.COLUMN_NAME));
-            double latitude = cursor.getDouble(cursor.getColumnIndexOrThrow(DatabaseHelper.COLUMN_LATITUDE));
-            double longitude = cursor.getDouble(cursor.getColumnIndexOrThrow(DatabaseHelper.COLUMN_LONGITUDE));
-            String description = cursor.getString(cursor.getColumnIndexOrThrow(DatabaseHelper.COLUMN_DESCRIPTION));
-            String category = cursor.getString(cursor.getColumnIndexOrThrow(DatabaseHelper.COLUMN_CATEGORY));
+        if (cursor != null) {
+            readLocations(cursor, locations);
+        }
+
+        return locations;
+    }
+
+    public List<CampusLocation> queryLocationsInBounds(double minLatitude, double minLongitude,
+            double maxLatitude, double maxLongitude) {
+        return rawQueryLocations(LocationQueries.inBounds(hasLocationsRtree()),
+                LocationQueries.inBoundsArgs(minLatitude, minLongitude, maxLatitude, maxLongitude));
+    }
 
-            location = new CampusLocation(id, name, latitude, longitude, description, category);
-            cursor.close();
+    public List<CampusLocation> queryLocationsWithinRadius(double latitude, double longitude, double radiusMeters) {
+        return rawQueryLocations(LocationQueries.withinRadius(hasLocationsRtree()),
+                LocationQueries.withinRadiusArgs(latitude, longitude, radiusMeters));
+    }
+
+    public List<CampusLocation> queryNearestInCategory(double latitude, double longitude, String category, int count) {
+        if (count <= 0) {
+            return new ArrayList<>();
+        }
+        boolean rtree = hasLocationsRtree();
+        for (int round = 0; ; round++) {
+            double radius = LocationQueries.nearestSearchRadius(round);
+            if (Double.isInfinite(radius)) {
+                return rawQueryLocations(LocationQueries.nearestInCategoryUnbounded(),
+                        LocationQueries.nearestInCategoryUnboundedArgs(latitude, longitude, category, count));
+            }
+            List<CampusLocation> result = rawQueryLocations(LocationQueries.nearestInCategory(rtree),
+                    LocationQueries.nearestInCategoryArgs(latitude, longitude, radius, category, count));
+            // Anything outside the circle is farther than all of these, so a full circle is the answer.
+            if (result.size() == count) {
+                return result;
+            }
         }
+    }
 
-        return location;
+    private boolean hasLocationsRtree() {
+        Boolean rtree = locationsRtree;
+        if (rtree == null) {
+            rtree = DatabaseHelper.hasLocationsRtree(db);
+            locationsRtree = rtree;
+        }
+        return rtree;
     }
 
-    public CampusLocation findNearestLocation(double latitude, double longitude) {
-        List<CampusLocation> allLocations = getAllLocations();
-        CampusLocation nearest = null;
-        double minDistance = Double.MAX_VALUE;
+    private List<CampusLocation> rawQueryLocations(String sql, String[] args) {
+        List<CampusLocation> locations = new ArrayList<>();
+        Cursor cursor = db.rawQuery(sql, args);
+        if (cursor != null) {
+            readLocations(cursor, locations);
+        }
+        return locations;
+    }
 
-        for (CampusLocation location : allLocations) {
-            double distance = calculateDistance(latitude, longitude, location.getLatitude(), location.getLongitude());
-            if (distance < minDistance) {
-                minDistance = distance;
-                nearest = location;
+    private static void readLocations(Cursor cursor, List<CampusLocation> locations) {
+        int idColumn = cursor.getColumnIndexOrThrow(DatabaseHelper.COLUMN_ID);
+        int nameColumn = cursor.getColumnIndexOrThrow(DatabaseHelper.COLUMN_NAME);
+        int latitudeColumn = cursor.getColumnIndexOrThrow(DatabaseHelper.COLUMN_LATITUDE);
+        int longitudeColumn = cursor.getColumnIndexOrThrow(DatabaseHelper.COLUMN_LONGITUDE);
+        int descriptionColumn = cursor.getColumnIndexOrThrow(DatabaseHelper.COLUMN_DESCRIPTION);
+        int categoryColumn = cursor.getColumnIndexOrThrow(DatabaseHelper.COLUMN_CATEGORY);
+        while (cursor.moveToNext()) {
+            locations.add(new CampusLocation(
+                    cursor.getString(idColumn),
+                    cursor.getString(nameColumn),
+                    cursor.getDouble(latitudeColumn),
+                    cursor.getDouble(longitudeColumn),
+                    cursor.getString(descriptionColumn),
+                    cursor.getString(categoryColumn)
+            ));
+        }
+        cursor.close();
+    }
+
+    public synchronized CampusMapFile getMapFile() {
+        if (mapFileChecked) {
+            return mapFile;
+        }
+        mapFileChecked = true;
+        long start = System.nanoTime();
+        File file = new File(context.getFilesDir(), MAP_FILE_NAME);
+        long sourceStamp = getPackageStamp();
+        try {
+            if (file.exists()) {
+                CampusMapFile existing = CampusMapFile.open(file);
+                if (existing.getSourceStamp() == sourceStamp) {
+                    mapFile = existing;
+                }
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Discarding unreadable campus map file", e);
+        }
+        if (mapFile == null) {
+            try (Reader reader = new InputStreamReader(
+                    context.getResources().openRawResource(R.raw.campus_map), StandardCharsets.UTF_8)) {
+                CampusMapFile.compile(reader, file, sourceStamp);
+                mapFile = CampusMapFile.open(file);
+                Log.d(TAG, "Compiled campus map file (" + file.length() / 1024 + " KB)");
+            } catch (IOException | RuntimeException e) {
+                Log.e(TAG, "Failed to compile campus map file", e);
+                mapFile = null;
             }
         }
+        Log.d(TAG, "Campus map file ready in " + (System.nanoTime() - start) / 1000 + "us");
+        return mapFile;
+    }
+
+    // The DB and the map file each record a hash of the JSON they were built from.
+    private boolean isMapFileCurrent(CampusMapFile file) {
+        return file != null && Long.toHexString(file.getSourceHash())
+                .equals(readMetadata(DatabaseHelper.KEY_LOCATIONS_SIGNATURE));
+    }
+
+    public synchronized CampusMapReader.Stats importCampusMap(File json,
+            DatabaseHelper.ImportProgressListener progress) throws IOException {
+        PathGraph.Builder graphBuilder = new PathGraph.Builder();
+        CampusMapReader.Stats stats;
+        dbHelper.setImportListener(graphBuilder);
+        try (Reader reader = new InputStreamReader(new FileInputStream(json), StandardCharsets.UTF_8)) {
+            stats = dbHelper.importCampusMap(reader, progress);
+        } finally {
+            dbHelper.setImportListener(null);
+        }
+        pathGraph = graphBuilder.build();
+        contractionHierarchy = null;
+        segmentIndex = null;
+        distanceMatrix = null;
 
+        File file = new File(context.getFilesDir(), MAP_FILE_NAME);
+        try (Reader reader = new InputStreamReader(new FileInputStream(json), StandardCharsets.UTF_8)) {
+            CampusMapFile.compile(reader, file, getPackageStamp());
+            mapFile = CampusMapFile.open(file);
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "Failed to compile campus map file", e);
+            mapFile = null;
+        }
+        mapFileChecked = true;
+        invalidateLocations();
+        return stats;
+    }
+
+    private long getPackageStamp() {
+        try {
+            return context.getPackageManager().getPackageInfo(context.getPackageName(), 0).lastUpdateTime;
+        } catch (PackageManager.NameNotFoundException e) {
+            return 0;
+        }
+    }
+
+    public synchronized PathGraph getPathGraph() {
+        if (pathGraph == null) {
+            CampusMapFile file = getMapFile();
+            if (isMapFileCurrent(file)) {
+                long start = System.nanoTime();
+                pathGraph = file.toPathGraph();
+                Log.d(TAG, "Loaded campus path graph from map file in " + (System.nanoTime() - start) / 1000 + "us");
+                return pathGraph;
+            }
+            try (Reader reader = new InputStreamReader(
+                    context.getResources().openRawResource(R.raw.campus_map), StandardCharsets.UTF_8)) {
+                PathGraph.Builder builder = new PathGraph.Builder();
+                CampusMapReader.Stats stats = CampusMapReader.read(reader, builder);
+                pathGraph = builder.build();
+                Log.d(TAG, "Parsed campus path graph: " + stats);
+            } catch (IOException | RuntimeException e) {
+                Log.e(TAG, "Failed to load campus path graph", e);
+            }
+        }
+        return pathGraph;
+    }
+
+    public synchronized ContractionHierarchy getContractionHierarchy() {
+        if (contractionHierarchy == null) {
+            PathGraph graph = getPathGraph();
+            if (graph == null) {
+                return null;
+            }
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    context.getResources().openRawResource(R.raw.campus_map_ch)))) {
+                ContractionHierarchy hierarchy = ContractionHierarchy.readFrom(in);
+                if (hierarchy.matches(graph)) {
+                    contractionHierarchy = hierarchy;
+                } else {
+                    Log.w(TAG, "Contraction hierarchy is stale, falling back to A*");
+                }
+            } catch (IOException | RuntimeException e) {
+                Log.e(TAG, "Failed to load contraction hierarchy", e);
+            }
+        }
+        return contractionHierarchy;
+    }
+
+    public synchronized SegmentIndex getSegmentIndex() {
+        if (segmentIndex == null) {
+            PathGraph graph = getPathGraph();
+            if (graph != null) {
+                segmentIndex = SegmentIndex.build(graph);
+            }
+        }
+        return segmentIndex;
+    }
+
+    // Null without a graph, or when there are too many locations for a matrix; the distance queries
+    // below then search from the start location on demand.
+    public synchronized DistanceMatrix getDistanceMatrix() {
+        if (distanceMatrix == null) {
+            PathGraph graph = getPathGraph();
+            if (graph == null) {
+                return null;
+            }
+            List<String> poiIds = getLocationIds();
+            if (poiIds.size() > DistanceMatrix.MAX_POIS) {
+                return null;
+            }
+            String signature = computeRoutesSignature(graph, poiIds);
+            if (signature.equals(readMetadata(DatabaseHelper.KEY_ROUTES_SIGNATURE))) {
+                distanceMatrix = loadDistanceMatrix(poiIds);
+            } else {
+                distanceMatrix = DistanceMatrix.compute(graph, poiIds, ForkJoinPool.commonPool());
+                int[] rows = new int[distanceMatrix.size()];
+                for (int i = 0; i < rows.length; i++) {
+                    rows[i] = i;
+                }
+                saveDistanceRows(distanceMatrix, rows, signature, true);
+            }
+        }
+        return distanceMatrix;
+    }
+
+    public float getWalkingDistance(String fromId, String toId) {
+        DistanceMatrix matrix = getDistanceMatrix();
+        if (matrix != null) {
+            return matrix.getDistance(fromId, toId);
+        }
+        PathGraph graph = getPathGraph();
+        int from = graph != null ? graph.indexOf(fromId) : -1;
+        int to = graph != null ? graph.indexOf(toId) : -1;
+        if (from < 0 || to < 0) {
+            return Float.POSITIVE_INFINITY;
+        }
+        return DistanceMatrix.shortestDistances(graph, from)[to];
+    }
+
+    public CampusLocation findNearestByWalking(String fromId) {
+        DistanceMatrix matrix = getDistanceMatrix();
+        if (matrix != null) {
+            String nearestId = matrix.findNearest(fromId);
+            return nearestId != null ? getLocationById(nearestId) : null;
+        }
+        PathGraph graph = getPathGraph();
+        int from = graph != null ? graph.indexOf(fromId) : -1;
+        if (from < 0) {
+            return null;
+        }
+        float[] distances = DistanceMatrix.shortestDistances(graph, from);
+        CampusLocation nearest = null;
+        float nearestDistance = Float.POSITIVE_INFINITY;
+        for (CampusLocation location : getAllLocations()) {
+            int node = graph.indexOf(location.getId());
+            if (node >= 0 && node != from && distances[node] < nearestDistance) {
+                nearestDistance = distances[node];
+                nearest = location;
+            }
+        }
         return nearest;
     }
 
-    private double calculateDistance(double lat1, double lon1, double lat2, double lon2) {
-        final int EARTH_RADIUS = 6371000;
+    public synchronized void updatePathDistance(String fromId, String toId, float distance) {
+        PathGraph oldGraph = getPathGraph();
+        if (oldGraph == null) {
+            return;
+        }
+        int from = oldGraph.indexOf(fromId);
+        int to = oldGraph.indexOf(toId);
+        int edge = from >= 0 && to >= 0 ? oldGraph.findEdge(from, to) : -1;
+        if (edge < 0) {
+            throw new IllegalArgumentException("No path between " + fromId + " and " + toId);
+        }
+        // Only a matrix already in memory is patched; one built later starts from the new graph, and the
+        // saved rows no longer match its signature.
+        DistanceMatrix matrix = distanceMatrix;
+        float oldDistance = oldGraph.getEdgeWeight(edge);
+        PathGraph newGraph = oldGraph.withEdgeWeight(fromId, toId, distance);
+        int[] rows = matrix != null
+                ? matrix.updateEdge(oldGraph, newGraph, fromId, toId, oldDistance, distance, ForkJoinPool.commonPool())
+                : null;
+
+        pathGraph = newGraph;
+        contractionHierarchy = null;
+        segmentIndex = null;
+        if (matrix == null) {
+            return;
+        }
+        List<String> poiIds = new ArrayList<>();
+        for (int i = 0; i < matrix.size(); i++) {
+            poiIds.add(matrix.getPoiId(i));
+        }
+        saveDistanceRows(matrix, rows, computeRoutesSignature(newGraph, poiIds), false);
+        Log.d(TAG, "Recomputed " + rows.length + " of " + matrix.size() + " distance rows");
+    }
+
+    private List<String> getLocationIds() {
+        List<String> ids = new ArrayList<>();
+        for (CampusLocation location : getAllLocations()) {
+            ids.add(location.getId());
+        }
+        Collections.sort(ids);
+        return ids;
+    }
+
+    private String computeRoutesSignature(PathGraph graph, List<String> poiIds) {
+        return Long.toHexString(graph.computeSignature()) + ":" + Integer.toHexString(poiIds.hashCode());
+    }
 
-        double dLat = Math.toRadians(lat2 - lat1);
-        double dLon = Math.toRadians(lon2 - lon1);
+    private DistanceMatrix loadDistanceMatrix(List<String> poiIds) {
+        int n = poiIds.size();
+        Map<String, Integer> index = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            index.put(poiIds.get(i), i);
+        }
+        float[] distances = new float[n * n];
+        Arrays.fill(distances, Float.POSITIVE_INFINITY);
+        for (int i = 0; i < n; i++) {
+            distances[i * n + i] = 0f;
+        }
+
+        Cursor cursor = db.query(
+                DatabaseHelper.TABLE_ROUTES,
+                new String[]{DatabaseHelper.COLUMN_START_ID, DatabaseHelper.COLUMN_END_ID, DatabaseHelper.COLUMN_DISTANCE},
+                null,
+                null,
+                null,
+                null,
+                null
+        );
+        if (cursor != null) {
+            while (cursor.moveToNext()) {
+                Integer from = index.get(cursor.getString(0));
+                Integer to = index.get(cursor.getString(1));
+                if (from != null && to != null) {
+                    distances[from * n + to] = cursor.getFloat(2);
+                }
+            }
+            cursor.close();
+        }
+        return DistanceMatrix.fromRows(poiIds, distances);
+    }
 
-        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) +
-                Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) *
-                        Math.sin(dLon / 2) * Math.sin(dLon / 2);
+    private void saveDistanceRows(DistanceMatrix matrix, int[] rows, String signature, boolean replaceAll) {
+        SQLiteDatabase writable = dbHelper.getWritableDatabase();
+        int n = matrix.size();
+        writable.beginTransaction();
+        try {
+            if (replaceAll) {
+                writable.delete(DatabaseHelper.TABLE_ROUTES, null, null);
+            }
+            SQLiteStatement delete = writable.compileStatement(
+                    "DELETE FROM " + DatabaseHelper.TABLE_ROUTES +
+                            " WHERE " + DatabaseHelper.COLUMN_START_ID + " = ? OR " + DatabaseHelper.COLUMN_END_ID + " = ?");
+            SQLiteStatement insert = writable.compileStatement(
+                    "INSERT OR REPLACE INTO " + DatabaseHelper.TABLE_ROUTES + " (" +
+                            DatabaseHelper.COLUMN_START_ID + ", " +
+                            DatabaseHelper.COLUMN_END_ID + ", " +
+                            DatabaseHelper.COLUMN_DISTANCE + ") VALUES (?, ?, ?)");
 
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+            for (int row : rows) {
+                String rowId = matrix.getPoiId(row);
+                if (!replaceAll) {
+                    delete.bindString(1, rowId);
+                    delete.bindString(2, rowId);
+                    delete.executeUpdateDelete();
+                }
+                for (int column = 0; column < n; column++) {
+                    float distance = matrix.getDistance(row, column);
+                    if (Float.isInfinite(distance)) {
+                        continue;
+                    }
+                    String columnId = matrix.getPoiId(column);
+                    insert.bindString(1, rowId);
+                    insert.bindString(2, columnId);
+                    insert.bindDouble(3, distance);
+                    insert.executeInsert();
+                    if (!replaceAll && column != row) {
+                        insert.bindString(1, columnId);
+                        insert.bindString(2, rowId);
+                        insert.bindDouble(3, distance);
+                        insert.executeInsert();
+                    }
+                }
+            }
+            delete.close();
+            insert.close();
 
-        return EARTH_RADIUS * c;
+            writeMetadata(writable, DatabaseHelper.KEY_ROUTES_SIGNATURE, signature);
+            writable.setTransactionSuccessful();
+        } finally {
+            writable.endTransaction();
+        }
+    }
+
+    private static void writeMetadata(SQLiteDatabase target, String key, String value) {
+        ContentValues values = new ContentValues();
+        values.put(DatabaseHelper.COLUMN_KEY, key);
+        values.put(DatabaseHelper.COLUMN_VALUE, value);
+        target.insertWithOnConflict(DatabaseHelper.TABLE_METADATA, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    private String readMetadata(String key) {
+        Cursor cursor = db.query(
+                DatabaseHelper.TABLE_METADATA,
+                new String[]{DatabaseHelper.COLUMN_VALUE},
+                DatabaseHelper.COLUMN_KEY + " = ?",
+                new String[]{key},
+                null,
+                null,
+                null
+        );
+        String value = null;
+        if (cursor != null) {
+            if (cursor.moveToFirst()) {
+                value = cursor.getString(0);
+            }
+            cursor.close();
+        }
+        return value;
     }
 
     public void close() {
@@ -111,4 +670,30 @@ public class MapManager {
             dbHelper.close();
         }
     }
+
+    // Pinyin from the platform ICU transliterator, cached per character since it is slow per call.
+    @RequiresApi(api = Build.VERSION_CODES.Q)
+    private static class IcuRomanizer implements SearchIndex.Romanizer {
+        static final IcuRomanizer INSTANCE = new IcuRomanizer();
+        private static final char FIRST_HAN = '\u4e00';
+
+        private final String[] syllables = new String['\u9fff' - FIRST_HAN + 1];
+        private Transliterator transliterator;
+
+        @Override
+        public synchronized String romanize(char c) {
+            if (c < FIRST_HAN || c - FIRST_HAN >= syllables.length) {
+                return null;
+            }
+            String syllable = syllables[c - FIRST_HAN];
+            if (syllable == null) {
+                if (transliterator == null) {
+                    transliterator = Transliterator.getInstance("Han-Latin; Latin-ASCII");
+                }
+                syllable = SearchIndex.normalize(transliterator.transliterate(String.valueOf(c)));
+                syllables[c - FIRST_HAN] = syllable;
+            }
+            return syllable;
+        }
+    }
 }
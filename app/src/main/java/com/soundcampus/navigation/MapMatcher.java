@@ -0,0 +1,292 @@
+package com.soundcampus.navigation;
+
+import com.soundcampus.utils.IntList;
+import com.soundcampus.utils.LocationHelper;
+import java.util.Arrays;
+
+public class MapMatcher {
+    public static final double GPS_SIGMA_METERS = 8;
+    public static final double TRANSITION_BETA_METERS = 5;
+    public static final double SEARCH_RADIUS_METERS = 40;
+    public static final int MAX_CANDIDATES = 8;
+    public static final int WINDOW_SIZE = 8;
+
+    public static class Match {
+        private final int segment;
+        private final double fraction;
+        private final double latitude;
+        private final double longitude;
+        private final double offsetMeters;
+
+        Match(int segment, double fraction, double latitude, double longitude, double offsetMeters) {
+            this.segment = segment;
+            this.fraction = fraction;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.offsetMeters = offsetMeters;
+        }
+
+        public int getSegment() {
+            return segment;
+        }
+
+        public double getFraction() {
+            return fraction;
+        }
+
+        public double getLatitude() {
+            return latitude;
+        }
+
+        public double getLongitude() {
+            return longitude;
+        }
+
+        public double getOffsetMeters() {
+            return offsetMeters;
+        }
+    }
+
+    private final PathGraph graph;
+    private final SegmentIndex index;
+
+    private final int[][] segments = new int[WINDOW_SIZE][MAX_CANDIDATES];
+    private final double[][] fractions = new double[WINDOW_SIZE][MAX_CANDIDATES];
+    private final double[][] offsets = new double[WINDOW_SIZE][MAX_CANDIDATES];
+    private final double[][] scores = new double[WINDOW_SIZE][MAX_CANDIDATES];
+    private final int[][] backPointers = new int[WINDOW_SIZE][MAX_CANDIDATES];
+    private final int[] counts = new int[WINDOW_SIZE];
+    private int head = -1;
+    private int length = 0;
+    private double lastLatitude;
+    private double lastLongitude;
+
+    private final IntList queryResult = new IntList(64);
+    private final double[][] routeDistances = new double[MAX_CANDIDATES][MAX_CANDIDATES];
+    private final float[] nodeDistances;
+    private final int[] nodeStamps;
+    private final NodeHeap heap = new NodeHeap(64);
+    private int searchGeneration = 0;
+    private long settledCount = 0;
+
+    public MapMatcher(PathGraph graph) {
+        this(graph, SegmentIndex.build(graph));
+    }
+
+    public MapMatcher(PathGraph graph, SegmentIndex index) {
+        this.graph = graph;
+        this.index = index;
+        this.nodeDistances = new float[graph.getNodeCount()];
+        this.nodeStamps = new int[graph.getNodeCount()];
+    }
+
+    public void reset() {
+        head = -1;
+        length = 0;
+    }
+
+    public Match match(double latitude, double longitude) {
+        int slot = (head + 1) % WINDOW_SIZE;
+        int count = collectCandidates(latitude, longitude, slot);
+        if (count == 0) {
+            return null;
+        }
+
+        double[] score = scores[slot];
+        int[] back = backPointers[slot];
+        boolean connected = false;
+        if (length > 0) {
+            double straight = LocationHelper.calculateDistance(lastLatitude, lastLongitude, latitude, longitude);
+            computeRouteDistances(head, slot, straight * 2 + SEARCH_RADIUS_METERS * 2);
+            int previousCount = counts[head];
+            double[] previousScore = scores[head];
+            for (int j = 0; j < count; j++) {
+                double best = Double.NEGATIVE_INFINITY;
+                int bestFrom = -1;
+                for (int i = 0; i < previousCount; i++) {
+                    double route = routeDistances[i][j];
+                    if (Double.isInfinite(route)) {
+                        continue;
+                    }
+                    double candidate = previousScore[i] - Math.abs(route - straight) / TRANSITION_BETA_METERS;
+                    if (candidate > best) {
+                        best = candidate;
+                        bestFrom = i;
+                    }
+                }
+                score[j] = best + emission(offsets[slot][j]);
+                back[j] = bestFrom;
+                connected |= bestFrom >= 0;
+            }
+        }
+
+        if (!connected) {
+            length = 0;
+            for (int j = 0; j < count; j++) {
+                score[j] = emission(offsets[slot][j]);
+                back[j] = -1;
+            }
+        }
+
+        double max = Double.NEGATIVE_INFINITY;
+        int best = 0;
+        for (int j = 0; j < count; j++) {
+            if (score[j] > max) {
+                max = score[j];
+                best = j;
+            }
+        }
+        for (int j = 0; j < count; j++) {
+            score[j] -= max;
+        }
+
+        head = slot;
+        length = Math.min(length + 1, WINDOW_SIZE);
+        lastLatitude = latitude;
+        lastLongitude = longitude;
+
+        int segment = segments[slot][best];
+        double fraction = fractions[slot][best];
+        return new Match(segment, fraction, index.latitudeAt(segment, fraction),
+                index.longitudeAt(segment, fraction), offsets[slot][best]);
+    }
+
+    public int decodeWindow(IntList result) {
+        result.clear();
+        if (length == 0) {
+            return 0;
+        }
+        int slot = head;
+        int state = 0;
+        for (int j = 1; j < counts[slot]; j++) {
+            if (scores[slot][j] > scores[slot][state]) {
+                state = j;
+            }
+        }
+        for (int step = 0; step < length; step++) {
+            result.add(segments[slot][state]);
+            state = backPointers[slot][state];
+            if (state < 0) {
+                break;
+            }
+            slot = (slot - 1 + WINDOW_SIZE) % WINDOW_SIZE;
+        }
+        for (int i = 0, j = result.size() - 1; i < j; i++, j--) {
+            int swap = result.get(i);
+            result.set(i, result.get(j));
+            result.set(j, swap);
+        }
+        return result.size();
+    }
+
+    // Nodes settled by the transition searches since construction, for the cost per fix. Bounded by the
+    // search limit, so it does not grow with the size of the map.
+    public long getSettledCount() {
+        return settledCount;
+    }
+
+    private static double emission(double offsetMeters) {
+        double z = offsetMeters / GPS_SIGMA_METERS;
+        return -0.5 * z * z;
+    }
+
+    private int collectCandidates(double latitude, double longitude, int slot) {
+        queryResult.clear();
+        index.query(latitude, longitude, SEARCH_RADIUS_METERS, queryResult);
+        int[] slotSegments = segments[slot];
+        double[] slotFractions = fractions[slot];
+        double[] slotOffsets = offsets[slot];
+        int count = 0;
+        for (int i = 0; i < queryResult.size(); i++) {
+            int segment = queryResult.get(i);
+            double fraction = index.projectFraction(segment, latitude, longitude);
+            double offset = index.distanceTo(segment, fraction, latitude, longitude);
+            if (offset > SEARCH_RADIUS_METERS
+                    || (count == MAX_CANDIDATES && offset >= slotOffsets[count - 1])) {
+                continue;
+            }
+            int position = count < MAX_CANDIDATES ? count++ : count - 1;
+            while (position > 0 && slotOffsets[position - 1] > offset) {
+                slotSegments[position] = slotSegments[position - 1];
+                slotFractions[position] = slotFractions[position - 1];
+                slotOffsets[position] = slotOffsets[position - 1];
+                position--;
+            }
+            slotSegments[position] = segment;
+            slotFractions[position] = fraction;
+            slotOffsets[position] = offset;
+        }
+        counts[slot] = count;
+        return count;
+    }
+
+    private void computeRouteDistances(int fromSlot, int toSlot, double limit) {
+        int fromCount = counts[fromSlot];
+        int toCount = counts[toSlot];
+        for (int i = 0; i < fromCount; i++) {
+            Arrays.fill(routeDistances[i], 0, toCount, Double.POSITIVE_INFINITY);
+            int fromSegment = segments[fromSlot][i];
+            double fromFraction = fractions[fromSlot][i];
+            float fromWeight = index.getWeight(fromSegment);
+
+            for (int j = 0; j < toCount; j++) {
+                if (segments[toSlot][j] == fromSegment) {
+                    routeDistances[i][j] = Math.abs(fractions[toSlot][j] - fromFraction) * fromWeight;
+                }
+            }
+            relaxFrom(index.getFromNode(fromSegment), fromFraction * fromWeight, i, toSlot, limit);
+            relaxFrom(index.getToNode(fromSegment), (1 - fromFraction) * fromWeight, i, toSlot, limit);
+        }
+    }
+
+    private void relaxFrom(int source, double exitCost, int row, int toSlot, double limit) {
+        searchShortestPaths(source, (float) limit);
+        int toCount = counts[toSlot];
+        for (int j = 0; j < toCount; j++) {
+            int segment = segments[toSlot][j];
+            double fraction = fractions[toSlot][j];
+            float weight = index.getWeight(segment);
+            double viaFrom = distanceTo(index.getFromNode(segment)) + fraction * weight;
+            double viaTo = distanceTo(index.getToNode(segment)) + (1 - fraction) * weight;
+            double total = exitCost + Math.min(viaFrom, viaTo);
+            if (total < routeDistances[row][j]) {
+                routeDistances[row][j] = total;
+            }
+        }
+    }
+
+    private double distanceTo(int node) {
+        return nodeStamps[node] == searchGeneration ? nodeDistances[node] : Double.POSITIVE_INFINITY;
+    }
+
+    private void searchShortestPaths(int source, float limit) {
+        if (++searchGeneration == 0) {
+            Arrays.fill(nodeStamps, 0);
+            searchGeneration = 1;
+        }
+        heap.clear();
+        nodeStamps[source] = searchGeneration;
+        nodeDistances[source] = 0f;
+        heap.push(source, 0f);
+        while (!heap.isEmpty()) {
+            float key = heap.peekKey();
+            int node = heap.pop();
+            if (key > nodeDistances[node]) {
+                continue;
+            }
+            if (key > limit) {
+                break;
+            }
+            settledCount++;
+            for (int edge = graph.getEdgeStart(node), end = graph.getEdgeEnd(node); edge < end; edge++) {
+                int next = graph.getEdgeTarget(edge);
+                float candidate = key + graph.getEdgeWeight(edge);
+                if (nodeStamps[next] != searchGeneration || candidate < nodeDistances[next]) {
+                    nodeStamps[next] = searchGeneration;
+                    nodeDistances[next] = candidate;
+                    heap.push(next, candidate);
+                }
+            }
+        }
+    }
+}
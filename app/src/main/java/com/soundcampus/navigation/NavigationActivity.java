@@ -3,9 +3,15 @@ package com.soundcampus.navigation;
 import android.location.Location;
 import android.os.Bundle;
 import android.os.Handler;
+import android.os.StrictMode;
+import android.os.SystemClock;
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.util.Log;
 import android.view.View;
 import android.widget.ArrayAdapter;
 import android.widget.Button;
+import android.widget.EditText;
 import android.widget.Spinner;
 import android.widget.TextView;
 import android.widget.Toast;
@@ -16,26 +22,58 @@ import com.soundcampus.data.NavigationInstruction;
 import com.soundcampus.data.Route;
 import com.soundcampus.utils.AccessibilityHelper;
 import com.soundcampus.utils.LocationHelper;
+import com.soundcampus.utils.SpeechClipCache;
+import com.soundcampus.utils.UtteranceScheduler;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+// Map loading, routing, map matching and guidance all run on one engine thread, which takes location
+// fixes and button presses in the order they happen. The main thread only posts work there and draws
+// the NavigationState the engine thread publishes. Fields marked "engine thread" are only touched from
+// there.
 public class NavigationActivity extends AppCompatActivity {
+    private static final String TAG = "NavigationActivity";
+    // Location ids from a recognized sign (OcrActivity).
+    public static final String EXTRA_START_ID = "com.soundcampus.extra.START_ID";
+    public static final String EXTRA_DESTINATION_ID = "com.soundcampus.extra.DESTINATION_ID";
+    private static final int SEARCH_RESULT_LIMIT = 10;
+    private static final long SEARCH_ANNOUNCE_DELAY_MS = 600;
+
+    private EditText destinationSearch;
     private Spinner destinationSpinner;
     private TextView currentLocationText;
     private TextView navigationStatus;
     private Button startNavigationButton;
     private Button stopNavigationButton;
 
-    private MapManager mapManager;
     private LocationTracker locationTracker;
-    private RouteCalculator routeCalculator;
     private AccessibilityHelper accessibilityHelper;
+    private ArrayAdapter<CampusLocation> destinationAdapter;
+    private Handler navigationHandler;
+    private Runnable searchAnnouncement;
+    private long renderedVersion = -1;
+
+    private ExecutorService engineExecutor;
+    private volatile NavigationState state = NavigationState.EMPTY;
+    // Set in onDestroy; work still queued on the engine thread then neither speaks nor draws.
+    private volatile boolean destroyed = false;
 
+    // Engine thread.
+    private MapManager mapManager;
+    private RouteCalculator routeCalculator;
+    private NavigationEngine navigationEngine;
     private List<CampusLocation> locations;
-    private Route currentRoute;
-    private int currentInstructionIndex = 0;
-    private boolean isNavigating = false;
-    private Handler navigationHandler;
-    private Runnable navigationRunnable;
+    private CampusLocation signStart;
+    // When the fix being processed reached the app, 0 outside onLocation.
+    private long fixReceivedNanos = 0;
+    private int fixCount = 0;
+    private long totalFixLatencyNanos = 0;
+    private long maxFixLatencyNanos = 0;
+    private int announcementCount = 0;
+    private long totalAnnouncementLatencyNanos = 0;
+    private long maxAnnouncementLatencyNanos = 0;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -43,12 +81,18 @@ public class NavigationActivity extends AppCompatActivity {
         setContentView(R.layout.activity_navigation);
 
         initializeViews();
-        initializeManagers();
-        loadLocations();
+        accessibilityHelper = AccessibilityHelper.getInstance(this);
+        accessibilityHelper.attach(TAG);
+        accessibilityHelper.speak(getString(R.string.navigation_title));
+        locationTracker = new LocationTracker(this);
+        navigationHandler = new Handler();
+        engineExecutor = Executors.newSingleThreadExecutor();
+        runOnEngine(this::initializeManagers);
         setupListeners();
     }
 
     private void initializeViews() {
+        destinationSearch = findViewById(R.id.destinationSearch);
         destinationSpinner = findViewById(R.id.destinationSpinner);
         currentLocationText = findViewById(R.id.currentLocationText);
         navigationStatus = findViewById(R.id.navigationStatus);
@@ -56,25 +100,68 @@ public class NavigationActivity extends AppCompatActivity {
         stopNavigationButton = findViewById(R.id.stopNavigationButton);
     }
 
+    // Work handed to the engine thread; dropped once the screen is gone.
+    private void runOnEngine(Runnable task) {
+        if (!engineExecutor.isShutdown()) {
+            engineExecutor.execute(task);
+        }
+    }
+
+    // Engine thread: opens the database and loads the graph, hierarchy and indexes.
     private void initializeManagers() {
         mapManager = new MapManager(this);
-        locationTracker = new LocationTracker(this);
-        routeCalculator = new RouteCalculator();
-        accessibilityHelper = new AccessibilityHelper(this);
-        navigationHandler = new Handler();
+        routeCalculator = new RouteCalculator(mapManager.getPathGraph(), mapManager.getContractionHierarchy());
+        PathGraph graph = mapManager.getPathGraph();
+        MapMatcher mapMatcher = graph != null ? new MapMatcher(graph, mapManager.getSegmentIndex()) : null;
+        RouteReplanner replanner = graph != null
+                ? new RouteReplanner(graph, mapManager.getSegmentIndex(), routeCalculator)
+                : null;
+        navigationEngine = new NavigationEngine(new NavigationEngine.Listener() {
+            @Override
+            public void onInstruction(NavigationInstruction instruction, int index) {
+                announceInstruction(instruction);
+            }
 
-        accessibilityHelper.speak(getString(R.string.navigation_title));
-    }
+            @Override
+            public void onArrived() {
+                arriveAtDestination();
+            }
+
+            @Override
+            public void onRerouted(Route route, long latencyNanos) {
+                Log.d(TAG, "Rerouted in " + (latencyNanos / 1000) + " us");
+                prepareClips(route);
+                accessibilityHelper.speak(getString(R.string.rerouting),
+                        AccessibilityHelper.PRIORITY_STATUS, "reroute");
+            }
+
+            @Override
+            public void onApproaching(NavigationInstruction instruction, int index, int distanceMeters) {
+                announceApproach(instruction, distanceMeters);
+            }
+        }, mapMatcher, replanner);
 
-    private void loadLocations() {
         locations = mapManager.getAllLocations();
-        ArrayAdapter<CampusLocation> adapter = new ArrayAdapter<>(
+        String startId = getIntent().getStringExtra(EXTRA_START_ID);
+        if (startId != null) {
+            signStart = mapManager.getLocationById(startId);
+        }
+        final List<CampusLocation> choices = new ArrayList<>(locations);
+        runOnUiThread(() -> showLocations(choices));
+    }
+
+    private void showLocations(List<CampusLocation> choices) {
+        if (isDestroyed()) {
+            return;
+        }
+        destinationAdapter = new ArrayAdapter<>(
                 this,
                 android.R.layout.simple_spinner_item,
-                locations
+                choices
         );
-        adapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
-        destinationSpinner.setAdapter(adapter);
+        destinationAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        destinationSpinner.setAdapter(destinationAdapter);
+        selectSignDestination();
 
         locationTracker.startTracking(new LocationTracker.LocationUpdateCallback() {
             @Override
@@ -86,186 +173,324 @@ public class NavigationActivity extends AppCompatActivity {
             public void onLocationError(String error) {
                 runOnUiThread(() -> {
                     Toast.makeText(NavigationActivity.this, error, Toast.LENGTH_SHORT).show();
-                    accessibilityHelper.speak(error);
+                    accessibilityHelper.speak(error, AccessibilityHelper.PRIORITY_STATUS, "location_error");
                 });
             }
         });
     }
 
+    private void selectSignDestination() {
+        String destinationId = getIntent().getStringExtra(EXTRA_DESTINATION_ID);
+        for (int i = 0; destinationId != null && i < destinationAdapter.getCount(); i++) {
+            if (destinationId.equals(destinationAdapter.getItem(i).getId())) {
+                destinationSpinner.setSelection(i);
+                break;
+            }
+        }
+    }
+
     private void setupListeners() {
         startNavigationButton.setOnClickListener(v -> startNavigation());
         stopNavigationButton.setOnClickListener(v -> stopNavigation());
-    }
-
-    private void updateCurrentLocation(Location location) {
-        runOnUiThread(() -> {
-            CampusLocation nearest = mapManager.findNearestLocation(
-                    location.getLatitude(),
-                    location.getLongitude()
-            );
+        destinationSearch.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
 
-            if (nearest != null) {
-                double distance = LocationHelper.calculateDistance(
-                        location.getLatitude(),
-                        location.getLongitude(),
-                        nearest.getLatitude(),
-                        nearest.getLongitude()
-                );
-
-                String locationText = getString(R.string.current_location) + ": " +
-                        nearest.getName() + " (" + String.format("%.0f米", distance) + ")";
-                currentLocationText.setText(locationText);
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
             }
 
-            if (isNavigating && currentRoute != null) {
-                updateNavigationProgress(location);
+            @Override
+            public void afterTextChanged(Editable s) {
+                searchDestinations(s.toString().trim());
             }
         });
     }
 
-    private void startNavigation() {
-        if (!locationTracker.hasLocation()) {
-            Toast.makeText(this, R.string.error_no_location, Toast.LENGTH_SHORT).show();
-            accessibilityHelper.speak(getString(R.string.error_no_location));
+    private void searchDestinations(final String query) {
+        runOnEngine(() -> {
+            final List<CampusLocation> results = query.isEmpty()
+                    ? locations
+                    : mapManager.searchLocations(query, SEARCH_RESULT_LIMIT);
+            runOnUiThread(() -> showSearchResults(query, results));
+        });
+    }
+
+    private void showSearchResults(String query, final List<CampusLocation> results) {
+        if (searchAnnouncement != null) {
+            navigationHandler.removeCallbacks(searchAnnouncement);
+            searchAnnouncement = null;
+        }
+        if (destinationAdapter == null) {
+            return;
+        }
+        destinationAdapter.clear();
+        destinationAdapter.addAll(results);
+        if (!results.isEmpty()) {
+            destinationSpinner.setSelection(0);
+        }
+        if (query.isEmpty()) {
+            return;
+        }
+
+        // Speak once typing or dictation pauses rather than on every character.
+        searchAnnouncement = () -> {
+            searchAnnouncement = null;
+            accessibilityHelper.speak(results.isEmpty()
+                    ? getString(R.string.search_no_results)
+                    : getString(R.string.search_results, results.size(), results.get(0).getName()),
+                    AccessibilityHelper.PRIORITY_STATUS, "search");
+        };
+        navigationHandler.postDelayed(searchAnnouncement, SEARCH_ANNOUNCE_DELAY_MS);
+    }
+
+    private void updateCurrentLocation(final Location location) {
+        final long receivedNanos = SystemClock.elapsedRealtimeNanos();
+        runOnEngine(() -> processFix(location, receivedNanos));
+    }
+
+    // Engine thread.
+    private void processFix(Location location, long receivedNanos) {
+        if (destroyed) {
             return;
         }
+        // Reported by StrictMode should this ever end up on the main thread again.
+        StrictMode.noteSlowCall("NavigationActivity.processFix");
+        fixReceivedNanos = receivedNanos;
+        navigationEngine.onLocation(location.getLatitude(), location.getLongitude());
+        fixReceivedNanos = 0;
+        locationTracker.setDistanceToNextManeuver(navigationEngine.getDistanceToNextManeuver());
+
+        double latitude = navigationEngine.getLatitude();
+        double longitude = navigationEngine.getLongitude();
+        CampusLocation nearest = mapManager.findNearestLocation(latitude, longitude);
+        double distance = nearest != null
+                ? LocationHelper.calculateDistance(latitude, longitude, nearest.getLatitude(), nearest.getLongitude())
+                : 0;
+
+        long latency = SystemClock.elapsedRealtimeNanos() - receivedNanos;
+        fixCount++;
+        totalFixLatencyNanos += latency;
+        maxFixLatencyNanos = Math.max(maxFixLatencyNanos, latency);
+        publish(state.withLocation(navigationEngine.isNavigating(), latitude, longitude, nearest, distance, latency));
+    }
+
+    // Engine thread.
+    private void publish(NavigationState next) {
+        state = next;
+        if (!destroyed) {
+            runOnUiThread(this::renderState);
+        }
+    }
 
-        CampusLocation destination = (CampusLocation) destinationSpinner.getSelectedItem();
+    private void renderState() {
+        if (destroyed) {
+            return;
+        }
+        NavigationState current = state;
+        if (current.getVersion() == renderedVersion) {
+            return;
+        }
+        renderedVersion = current.getVersion();
+
+        CampusLocation nearest = current.getNearest();
+        if (nearest != null) {
+            String locationText = getString(R.string.current_location) + ": " +
+                    nearest.getName() + " (" + String.format("%.0f米", current.getNearestDistanceMeters()) + ")";
+            currentLocationText.setText(locationText);
+        }
+        navigationStatus.setText(current.getStatus() != null ? current.getStatus() : "");
+        startNavigationButton.setVisibility(current.isNavigating() ? View.GONE : View.VISIBLE);
+        stopNavigationButton.setVisibility(current.isNavigating() ? View.VISIBLE : View.GONE);
+    }
+
+    private void startNavigation() {
+        final CampusLocation destination = destinationAdapter != null
+                ? (CampusLocation) destinationSpinner.getSelectedItem()
+                : null;
         if (destination == null) {
             return;
         }
+        runOnEngine(() -> beginNavigation(destination));
+    }
 
-        Location currentLoc = locationTracker.getCurrentLocation();
-        CampusLocation start = mapManager.findNearestLocation(
-                currentLoc.getLatitude(),
-                currentLoc.getLongitude()
-        );
+    // Engine thread.
+    private void beginNavigation(CampusLocation destination) {
+        if (destroyed) {
+            return;
+        }
+        StrictMode.noteSlowCall("NavigationActivity.beginNavigation");
+        // A sign the user is standing at is as good a start as a GPS fix, and better indoors.
+        if (signStart == null && !locationTracker.hasLocation()) {
+            showError(R.string.error_no_location);
+            return;
+        }
 
+        CampusLocation start = signStart;
         if (start == null) {
-            Toast.makeText(this, R.string.error_no_route, Toast.LENGTH_SHORT).show();
-            accessibilityHelper.speak(getString(R.string.error_no_route));
-            return;
+            Location currentLoc = locationTracker.getCurrentLocation();
+            start = mapManager.findNearestLocation(
+                    currentLoc.getLatitude(),
+                    currentLoc.getLongitude()
+            );
         }
 
-        currentRoute = routeCalculator.calculateRoute(start, destination);
-        currentInstructionIndex = 0;
-        isNavigating = true;
+        if (start == null) {
+            showError(R.string.error_no_route);
+            return;
+        }
 
-        startNavigationButton.setVisibility(View.GONE);
-        stopNavigationButton.setVisibility(View.VISIBLE);
+        Route route = routeCalculator.calculateRoute(start, destination);
+        prepareClips(route);
 
         String startMessage = getString(R.string.navigation_started) + "，" +
                 getString(R.string.destination) + ": " + destination.getName();
         accessibilityHelper.speak(startMessage);
 
-        announceNextInstruction();
-        startNavigationUpdates();
+        navigationEngine.start(route);
+        publish(state.withStatus(navigationEngine.isNavigating(), state.getStatus()));
     }
 
-    private void stopNavigation() {
-        isNavigating = false;
-        currentRoute = null;
-        currentInstructionIndex = 0;
-
-        if (navigationRunnable != null) {
-            navigationHandler.removeCallbacks(navigationRunnable);
-        }
-
-        startNavigationButton.setVisibility(View.VISIBLE);
-        stopNavigationButton.setVisibility(View.GONE);
-        navigationStatus.setText("");
-
-        accessibilityHelper.speak(getString(R.string.navigation_stopped));
+    private void showError(int message) {
+        runOnUiThread(() -> Toast.makeText(this, message, Toast.LENGTH_SHORT).show());
+        accessibilityHelper.speak(getString(message));
     }
 
-    private void startNavigationUpdates() {
-        navigationRunnable = new Runnable() {
-            @Override
-            public void run() {
-                if (isNavigating && locationTracker.hasLocation()) {
-                    Location current = locationTracker.getCurrentLocation();
-                    updateNavigationProgress(current);
-                    navigationHandler.postDelayed(this, 5000);
-                }
-            }
-        };
-        navigationHandler.postDelayed(navigationRunnable, 5000);
+    private void stopNavigation() {
+        runOnEngine(() -> {
+            navigationEngine.stop();
+            publish(state.withStatus(false, null));
+            accessibilityHelper.speak(getString(R.string.navigation_stopped));
+        });
     }
 
-    private void updateNavigationProgress(Location currentLocation) {
-        if (currentRoute == null || currentInstructionIndex >= currentRoute.getInstructions().size()) {
-            return;
+    private String approachMessage(NavigationInstruction instruction, int distanceMeters) {
+        if (distanceMeters > ManeuverFences.ANNOUNCE_METERS) {
+            return String.format(getString(R.string.instruction_format), distanceMeters,
+                    instruction.getDirectionText());
         }
+        return getString(R.string.instruction_now, instruction.getDirectionText());
+    }
 
-        double distanceToDestination = LocationHelper.calculateDistance(
-                currentLocation.getLatitude(),
-                currentLocation.getLongitude(),
-                currentRoute.getDestination().getLatitude(),
-                currentRoute.getDestination().getLongitude()
-        );
+    private String instructionMessage(NavigationInstruction instruction) {
+        if (instruction.getDirection() == NavigationInstruction.Direction.ARRIVED) {
+            return instruction.getDescription();
+        }
+        return String.format(getString(R.string.instruction_format),
+                instruction.getDistanceMeters(),
+                instruction.getDirectionText());
+    }
 
-        if (distanceToDestination < 10) {
-            arriveAtDestination();
+    // Everything the route is going to say, rendered while the user is still getting going.
+    private void prepareClips(Route route) {
+        if (route == null) {
             return;
         }
-
-        NavigationInstruction currentInstruction = currentRoute.getInstructions().get(currentInstructionIndex);
-        
-        if (distanceToDestination < currentInstruction.getDistanceMeters() * 0.5) {
-            currentInstructionIndex++;
-            if (currentInstructionIndex < currentRoute.getInstructions().size()) {
-                announceNextInstruction();
+        List<String> phrases = new ArrayList<>();
+        for (NavigationInstruction instruction : route.getInstructions()) {
+            phrases.add(instructionMessage(instruction));
+            if (instruction.getDirection() == NavigationInstruction.Direction.LEFT
+                    || instruction.getDirection() == NavigationInstruction.Direction.RIGHT) {
+                phrases.add(approachMessage(instruction, ManeuverFences.PREPARE_METERS));
+                phrases.add(approachMessage(instruction, ManeuverFences.ANNOUNCE_METERS));
             }
         }
+        phrases.add(getString(R.string.arrived));
+        accessibilityHelper.prepareClips(AccessibilityHelper.CLIPS_ROUTE, phrases);
     }
 
-    private void announceNextInstruction() {
-        if (currentRoute == null || currentInstructionIndex >= currentRoute.getInstructions().size()) {
-            return;
-        }
+    // Engine thread.
+    private void announceInstruction(NavigationInstruction instruction) {
+        String message = instructionMessage(instruction);
 
-        NavigationInstruction instruction = currentRoute.getInstructions().get(currentInstructionIndex);
-        
-        String message;
-        if (instruction.getDirection() == NavigationInstruction.Direction.ARRIVED) {
-            message = instruction.getDescription();
-        } else {
-            message = String.format(getString(R.string.instruction_format),
-                    instruction.getDistanceMeters(),
-                    instruction.getDirectionText());
-        }
+        publish(state.withStatus(navigationEngine.isNavigating(), message));
+        // Keyed so a newer distance for the same turn replaces one still waiting to be spoken.
+        accessibilityHelper.speak(message, AccessibilityHelper.PRIORITY_MANEUVER, "instruction");
+        recordAnnouncement();
+    }
 
-        navigationStatus.setText(message);
-        accessibilityHelper.speak(message);
+    // Engine thread.
+    private void announceApproach(NavigationInstruction instruction, int distanceMeters) {
+        String message = approachMessage(instruction, distanceMeters);
+
+        publish(state.withStatus(navigationEngine.isNavigating(), message));
+        accessibilityHelper.speak(message, AccessibilityHelper.PRIORITY_MANEUVER, "instruction");
+        recordAnnouncement();
     }
 
+    // Engine thread.
     private void arriveAtDestination() {
-        isNavigating = false;
-        navigationStatus.setText(R.string.arrived);
-        accessibilityHelper.speak(getString(R.string.arrived));
-
-        startNavigationButton.setVisibility(View.VISIBLE);
-        stopNavigationButton.setVisibility(View.GONE);
+        publish(state.withStatus(false, getString(R.string.arrived)));
+        accessibilityHelper.speak(getString(R.string.arrived), AccessibilityHelper.PRIORITY_MANEUVER, null);
+        recordAnnouncement();
+    }
 
-        if (navigationRunnable != null) {
-            navigationHandler.removeCallbacks(navigationRunnable);
+    // Engine thread: from the fix reaching the app to the announcement being queued for speech.
+    private void recordAnnouncement() {
+        if (fixReceivedNanos == 0) {
+            return;
         }
+        long latency = SystemClock.elapsedRealtimeNanos() - fixReceivedNanos;
+        announcementCount++;
+        totalAnnouncementLatencyNanos += latency;
+        maxAnnouncementLatencyNanos = Math.max(maxAnnouncementLatencyNanos, latency);
+    }
+
+    // Engine thread.
+    private void logEngineMetrics() {
+        Log.d(TAG, "Engine: fixes=" + fixCount
+                + " meanFixUs=" + (fixCount > 0 ? totalFixLatencyNanos / fixCount / 1000 : 0)
+                + " maxFixUs=" + maxFixLatencyNanos / 1000
+                + " announcements=" + announcementCount
+                + " meanAnnounceUs="
+                + (announcementCount > 0 ? totalAnnouncementLatencyNanos / announcementCount / 1000 : 0)
+                + " maxAnnounceUs=" + maxAnnouncementLatencyNanos / 1000);
     }
 
     @Override
     protected void onDestroy() {
+        destroyed = true;
         super.onDestroy();
         if (locationTracker != null) {
+            Log.d(TAG, "Location: fixes=" + locationTracker.getFixCount()
+                    + " samplingChanges=" + locationTracker.getSamplingChangeCount());
             locationTracker.stopTracking();
         }
-        if (mapManager != null) {
-            mapManager.close();
-        }
         if (accessibilityHelper != null) {
-            accessibilityHelper.shutdown();
+            UtteranceScheduler speech = accessibilityHelper.getScheduler();
+            Log.d(TAG, "Speech: spoken=" + speech.getSpokenCount() + " coalesced=" + speech.getCoalescedCount()
+                    + " expired=" + speech.getExpiredCount() + " preempted=" + speech.getPreemptedCount()
+                    + " maxQueue=" + speech.getMaxQueueDepth() + " meanStartMs=" + speech.getMeanStartLatencyMillis()
+                    + " maxStartMs=" + speech.getMaxStartLatencyMillis());
+            SpeechClipCache clips = accessibilityHelper.getClipCache();
+            Log.d(TAG, "Speech clips: lookups=" + clips.getLookupCount() + " hitRate=" + clips.getHitRate()
+                    + " cachedFirstAudioMs=" + clips.getMeanCachedFirstAudioMillis()
+                    + " liveFirstAudioMs=" + clips.getMeanLiveFirstAudioMillis()
+                    + " files=" + clips.size() + " bytes=" + clips.getTotalBytes());
+            Log.d(TAG, "First speech after screen start: last=" + accessibilityHelper.getLastFirstSpeechMillis()
+                    + " ms, mean=" + accessibilityHelper.getMeanFirstSpeechMillis()
+                    + " ms, max=" + accessibilityHelper.getMaxFirstSpeechMillis() + " ms");
+            // The engine is shared; only what this screen was going to say goes.
+            accessibilityHelper.cancel("instruction");
+            accessibilityHelper.prepareClips(AccessibilityHelper.CLIPS_ROUTE, new ArrayList<String>());
         }
-        if (navigationRunnable != null) {
-            navigationHandler.removeCallbacks(navigationRunnable);
+        if (searchAnnouncement != null) {
+            navigationHandler.removeCallbacks(searchAnnouncement);
+        }
+        if (engineExecutor != null) {
+            // Queued work still runs before the thread ends; a fix being processed right now may
+            // have queued one more instruction, so cancel again behind it.
+            runOnEngine(() -> {
+                if (accessibilityHelper != null) {
+                    accessibilityHelper.cancel("instruction");
+                }
+                logEngineMetrics();
+                if (mapManager != null) {
+                    mapManager.close();
+                }
+            });
+            engineExecutor.shutdown();
         }
     }
 }
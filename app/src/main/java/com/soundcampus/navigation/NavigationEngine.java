@@ -0,0 +1,238 @@
+package com.soundcampus.navigation;
+
+import com.soundcampus.data.NavigationInstruction;
+import com.soundcampus.data.Route;
+import com.soundcampus.utils.LocationHelper;
+import java.util.List;
+
+// Guidance moves on when a fix crosses one of the route's ManeuverFences. The earlier rule (advance once
+// the straight-line distance to the destination drops below half the current leg, checked on every fix
+// and on a 5 s poll) is kept behind setGeofencing(false) so NavigationSimulator can compare the two.
+public class NavigationEngine {
+    public static final double ARRIVAL_RADIUS_METERS = 10;
+
+    public interface Listener {
+        void onInstruction(NavigationInstruction instruction, int index);
+        void onArrived();
+        void onRerouted(Route route, long latencyNanos);
+        // The turn ending instruction index is distanceMeters ahead: ManeuverFences.PREPARE_METERS for
+        // a heads-up, ManeuverFences.ANNOUNCE_METERS for "turn now".
+        void onApproaching(NavigationInstruction instruction, int index, int distanceMeters);
+    }
+
+    private final Listener listener;
+    private final MapMatcher mapMatcher;
+    private final RouteReplanner replanner;
+    private Route route;
+    private int currentInstructionIndex = 0;
+    private boolean navigating = false;
+    private boolean hasLocation = false;
+    private double lastLatitude;
+    private double lastLongitude;
+    private boolean geofencing = true;
+    private ManeuverFences fences;
+
+    public NavigationEngine(Listener listener) {
+        this(listener, null);
+    }
+
+    public NavigationEngine(Listener listener, MapMatcher mapMatcher) {
+        this(listener, mapMatcher, null);
+    }
+
+    public NavigationEngine(Listener listener, MapMatcher mapMatcher, RouteReplanner replanner) {
+        this.listener = listener;
+        this.mapMatcher = mapMatcher;
+        this.replanner = replanner;
+    }
+
+    public void setGeofencing(boolean geofencing) {
+        this.geofencing = geofencing;
+    }
+
+    public boolean isGeofencing() {
+        return geofencing;
+    }
+
+    public void start(Route route) {
+        this.route = route;
+        this.fences = geofencing ? new ManeuverFences(route) : null;
+        this.currentInstructionIndex = 0;
+        this.navigating = true;
+        // The window from the last trip would pull the first fixes of this one towards its streets.
+        if (mapMatcher != null) {
+            mapMatcher.reset();
+        }
+        if (replanner != null) {
+            replanner.start(route);
+        }
+        announceCurrentInstruction();
+    }
+
+    public void stop() {
+        navigating = false;
+        route = null;
+        fences = null;
+        currentInstructionIndex = 0;
+    }
+
+    public void onLocation(double latitude, double longitude) {
+        if (mapMatcher != null) {
+            MapMatcher.Match match = mapMatcher.match(latitude, longitude);
+            if (match != null) {
+                latitude = match.getLatitude();
+                longitude = match.getLongitude();
+            }
+        }
+        lastLatitude = latitude;
+        lastLongitude = longitude;
+        hasLocation = true;
+        if (navigating) {
+            updateProgress(latitude, longitude, true);
+        }
+    }
+
+    // Only the old rule needs polling; fences only move with a new fix.
+    public void reevaluate() {
+        if (navigating && hasLocation && !geofencing) {
+            updateProgress(lastLatitude, lastLongitude, false);
+        }
+    }
+
+    public boolean hasLocation() {
+        return hasLocation;
+    }
+
+    public double getLatitude() {
+        return lastLatitude;
+    }
+
+    public double getLongitude() {
+        return lastLongitude;
+    }
+
+    public boolean isNavigating() {
+        return navigating;
+    }
+
+    public Route getRoute() {
+        return route;
+    }
+
+    public int getCurrentInstructionIndex() {
+        return currentInstructionIndex;
+    }
+
+    public NavigationInstruction getCurrentInstruction() {
+        if (route == null || currentInstructionIndex >= route.getInstructions().size()) {
+            return null;
+        }
+        return route.getInstructions().get(currentInstructionIndex);
+    }
+
+    // Distance left to the next point where guidance will say something: the next fence, or under the
+    // old rule how much closer to the destination the walker has to get. NaN when not navigating.
+    public double getDistanceToNextManeuver() {
+        NavigationInstruction instruction = getCurrentInstruction();
+        if (!navigating || !hasLocation || instruction == null) {
+            return Double.NaN;
+        }
+        if (fences != null) {
+            return fences.getDistanceToNextFence();
+        }
+        double distanceToDestination = LocationHelper.calculateDistance(lastLatitude, lastLongitude,
+                route.getDestination().getLatitude(), route.getDestination().getLongitude());
+        double trigger = Math.max(ARRIVAL_RADIUS_METERS, instruction.getDistanceMeters() * 0.5);
+        return Math.max(0, distanceToDestination - trigger);
+    }
+
+    private void updateProgress(double latitude, double longitude, boolean freshFix) {
+        if (route == null || currentInstructionIndex >= route.getInstructions().size()) {
+            return;
+        }
+
+        double distanceToDestination = LocationHelper.calculateDistance(
+                latitude,
+                longitude,
+                route.getDestination().getLatitude(),
+                route.getDestination().getLongitude()
+        );
+
+        if (distanceToDestination < ARRIVAL_RADIUS_METERS) {
+            navigating = false;
+            listener.onArrived();
+            return;
+        }
+
+        if (freshFix && replanner != null && replanner.isOffRoute(route, latitude, longitude)) {
+            Route rerouted = replanner.replan(route, latitude, longitude);
+            if (rerouted != null) {
+                route = rerouted;
+                fences = geofencing ? new ManeuverFences(rerouted) : null;
+                currentInstructionIndex = 0;
+                listener.onRerouted(rerouted, replanner.getLastReplanNanos());
+                announceCurrentInstruction();
+                return;
+            }
+        }
+
+        if (fences != null) {
+            for (ManeuverFences.Fence fence : fences.update(latitude, longitude)) {
+                if (!onFence(fence)) {
+                    return;
+                }
+            }
+            return;
+        }
+
+        NavigationInstruction currentInstruction = route.getInstructions().get(currentInstructionIndex);
+
+        if (distanceToDestination < currentInstruction.getDistanceMeters() * 0.5) {
+            currentInstructionIndex++;
+            if (currentInstructionIndex < route.getInstructions().size()) {
+                announceCurrentInstruction();
+            }
+        }
+    }
+
+    // False once navigation has ended.
+    private boolean onFence(ManeuverFences.Fence fence) {
+        List<NavigationInstruction> instructions = route.getInstructions();
+        switch (fence.kind) {
+            case ManeuverFences.PREPARE:
+                listener.onApproaching(instructions.get(fence.instructionIndex), fence.instructionIndex,
+                        ManeuverFences.PREPARE_METERS);
+                return true;
+            case ManeuverFences.ANNOUNCE:
+                listener.onApproaching(instructions.get(fence.instructionIndex), fence.instructionIndex,
+                        ManeuverFences.ANNOUNCE_METERS);
+                return true;
+            case ManeuverFences.PASSED:
+                // Fences fire in route order, so this never moves guidance backwards.
+                if (fence.instructionIndex + 1 > currentInstructionIndex) {
+                    currentInstructionIndex = fence.instructionIndex + 1;
+                    if (currentInstructionIndex < instructions.size()
+                            && instructions.get(currentInstructionIndex).getDirection()
+                            != NavigationInstruction.Direction.ARRIVED) {
+                        announceCurrentInstruction();
+                    }
+                }
+                return true;
+            default:
+                navigating = false;
+                listener.onArrived();
+                return false;
+        }
+    }
+
+    public int getFenceChecks() {
+        return fences != null ? fences.getCheckedCount() : 0;
+    }
+
+    private void announceCurrentInstruction() {
+        NavigationInstruction instruction = getCurrentInstruction();
+        if (instruction != null) {
+            listener.onInstruction(instruction, currentInstructionIndex);
+        }
+    }
+}
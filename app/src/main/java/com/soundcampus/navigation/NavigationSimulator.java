@@ -0,0 +1,271 @@
+package com.soundcampus.navigation;
+
+import com.soundcampus.data.NavigationInstruction;
+import com.soundcampus.data.Route;
+import com.soundcampus.utils.LocationHelper;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.locks.LockSupport;
+
+// Replays a walk through NavigationEngine on a virtual clock, as NavigationActivity would feed it.
+// TraceReplay in the benchmark module reads recorded traces and reports on them.
+public class NavigationSimulator {
+    public static final long POLL_INTERVAL_MILLIS = 5000;
+
+    // Which of a trace's fixes reach the engine: every one (the reference for timing), those the old
+    // fixed 2 s / 5 m request would have delivered, or those SamplingPolicy asks for, smoothed by
+    // LocationFilter as LocationTracker does on device.
+    public static final int SAMPLING_ALL = 0;
+    public static final int SAMPLING_FIXED = 1;
+    public static final int SAMPLING_ADAPTIVE = 2;
+    // Traces are recorded at about 1 Hz; a fix half a period early still counts as on time.
+    private static final long SAMPLING_SLACK_MILLIS = 500;
+    private static final double DEFAULT_ACCURACY_METERS = 10;
+
+    public static class Fix {
+        public final long timeMillis;
+        public final double latitude;
+        public final double longitude;
+        // Reported accuracy in metres, 0 when the trace has none.
+        public final double accuracy;
+
+        public Fix(long timeMillis, double latitude, double longitude) {
+            this(timeMillis, latitude, longitude, 0);
+        }
+
+        public Fix(long timeMillis, double latitude, double longitude, double accuracy) {
+            this.timeMillis = timeMillis;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.accuracy = accuracy;
+        }
+    }
+
+    public static class Event {
+        public static final String ANNOUNCE = "announce";
+        public static final String APPROACH = "approach";
+        public static final String ARRIVED = "arrived";
+        public static final String REROUTE = "reroute";
+
+        public final long traceTimeMillis;
+        public final String type;
+        public final int instructionIndex;
+        public final NavigationInstruction instruction;
+        public final long latencyNanos;
+        // For APPROACH: how far ahead the turn is.
+        public final int distanceMeters;
+
+        Event(long traceTimeMillis, String type, int instructionIndex, NavigationInstruction instruction) {
+            this(traceTimeMillis, type, instructionIndex, instruction, 0);
+        }
+
+        Event(long traceTimeMillis, String type, int instructionIndex, NavigationInstruction instruction,
+              long latencyNanos) {
+            this(traceTimeMillis, type, instructionIndex, instruction, latencyNanos, 0);
+        }
+
+        Event(long traceTimeMillis, String type, int instructionIndex, NavigationInstruction instruction,
+              long latencyNanos, int distanceMeters) {
+            this.traceTimeMillis = traceTimeMillis;
+            this.type = type;
+            this.instructionIndex = instructionIndex;
+            this.instruction = instruction;
+            this.latencyNanos = latencyNanos;
+            this.distanceMeters = distanceMeters;
+        }
+
+        public String toCsv() {
+            if (REROUTE.equals(type)) {
+                return traceTimeMillis + "," + type + "," + instructionIndex + ",,,"
+                        + String.format(Locale.ROOT, "latency_us=%.1f", latencyNanos / 1000.0);
+            }
+            if (APPROACH.equals(type)) {
+                return traceTimeMillis + "," + type + "," + instructionIndex + ","
+                        + instruction.getDirection() + "," + distanceMeters + ",";
+            }
+            if (instruction == null) {
+                return traceTimeMillis + "," + type + "," + instructionIndex + ",,,";
+            }
+            return traceTimeMillis + "," + type + "," + instructionIndex + ","
+                    + instruction.getDirection() + "," + instruction.getDistanceMeters() + ","
+                    + instruction.getDescription().replace(',', ' ');
+        }
+    }
+
+    public static class Result {
+        public final List<Event> timeline;
+        public final long[] fixNanos;
+        public final long traceDurationMillis;
+        public final long wallNanos;
+        public final boolean arrived;
+
+        Result(List<Event> timeline, long[] fixNanos, long traceDurationMillis, long wallNanos, boolean arrived) {
+            this.timeline = timeline;
+            this.fixNanos = fixNanos;
+            this.traceDurationMillis = traceDurationMillis;
+            this.wallNanos = wallNanos;
+            this.arrived = arrived;
+        }
+
+        public double getMeanFixMicros() {
+            if (fixNanos.length == 0) {
+                return 0;
+            }
+            long total = 0;
+            for (long nanos : fixNanos) {
+                total += nanos;
+            }
+            return total / (double) fixNanos.length / 1000.0;
+        }
+
+        public double getFixPercentileMicros(double percentile) {
+            if (fixNanos.length == 0) {
+                return 0;
+            }
+            long[] sorted = fixNanos.clone();
+            Arrays.sort(sorted);
+            int index = (int) Math.min(sorted.length - 1, Math.floor(sorted.length * percentile));
+            return sorted[index] / 1000.0;
+        }
+
+        public int getRerouteCount() {
+            int count = 0;
+            for (Event event : timeline) {
+                if (Event.REROUTE.equals(event.type)) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        public double getMaxRerouteMicros() {
+            long max = 0;
+            for (Event event : timeline) {
+                max = Math.max(max, event.latencyNanos);
+            }
+            return max / 1000.0;
+        }
+
+        public double getSpeedup() {
+            return wallNanos > 0 ? traceDurationMillis * 1000000.0 / wallNanos : Double.POSITIVE_INFINITY;
+        }
+    }
+
+    private final double speedup;
+    private final PathGraph graph;
+    private final SegmentIndex segmentIndex;
+    private boolean polling = false;
+
+    public NavigationSimulator(double speedup) {
+        this(speedup, null);
+    }
+
+    public NavigationSimulator(double speedup, PathGraph graph) {
+        this.speedup = speedup;
+        this.graph = graph;
+        this.segmentIndex = graph != null ? SegmentIndex.build(graph) : null;
+    }
+
+    // Replays with NavigationEngine's old distance-to-destination rule and its 5 s poll instead of
+    // maneuver fences.
+    public void setPolling(boolean polling) {
+        this.polling = polling;
+    }
+
+    public Result run(Route route, List<Fix> trace) {
+        return run(route, trace, SAMPLING_ALL);
+    }
+
+    public Result run(Route route, List<Fix> trace, int sampling) {
+        final List<Event> timeline = new ArrayList<>();
+        final long[] clock = new long[1];
+        NavigationEngine engine = new NavigationEngine(new NavigationEngine.Listener() {
+            @Override
+            public void onInstruction(NavigationInstruction instruction, int index) {
+                timeline.add(new Event(clock[0], Event.ANNOUNCE, index, instruction));
+            }
+
+            @Override
+            public void onArrived() {
+                timeline.add(new Event(clock[0], Event.ARRIVED, -1, null));
+            }
+
+            @Override
+            public void onRerouted(Route route, long latencyNanos) {
+                timeline.add(new Event(clock[0], Event.REROUTE, -1, null, latencyNanos));
+            }
+
+            @Override
+            public void onApproaching(NavigationInstruction instruction, int index, int distanceMeters) {
+                timeline.add(new Event(clock[0], Event.APPROACH, index, instruction, 0, distanceMeters));
+            }
+        }, graph != null ? new MapMatcher(graph, segmentIndex) : null,
+                graph != null ? new RouteReplanner(graph, segmentIndex, new RouteCalculator(graph)) : null);
+
+        if (trace.isEmpty()) {
+            return new Result(timeline, new long[0], 0, 0, false);
+        }
+
+        long startTime = trace.get(0).timeMillis;
+        long wallStart = System.nanoTime();
+        long[] fixNanos = new long[trace.size()];
+        int processed = 0;
+        engine.setGeofencing(!polling);
+        long nextPoll = polling ? startTime + POLL_INTERVAL_MILLIS : Long.MAX_VALUE;
+        SamplingPolicy policy = new SamplingPolicy();
+        LocationFilter filter = new LocationFilter();
+        Fix lastDelivered = null;
+
+        engine.start(route);
+        for (Fix fix : trace) {
+            while (engine.isNavigating() && nextPoll <= fix.timeMillis) {
+                clock[0] = nextPoll - startTime;
+                engine.reevaluate();
+                nextPoll += POLL_INTERVAL_MILLIS;
+            }
+            if (!engine.isNavigating()) {
+                break;
+            }
+            if (sampling != SAMPLING_ALL && lastDelivered != null) {
+                SamplingPolicy.Request request = policy.getRequest();
+                if (fix.timeMillis - lastDelivered.timeMillis < request.intervalMillis - SAMPLING_SLACK_MILLIS
+                        || LocationHelper.calculateDistance(lastDelivered.latitude, lastDelivered.longitude,
+                        fix.latitude, fix.longitude) < request.minDistanceMeters) {
+                    continue;
+                }
+            }
+            lastDelivered = fix;
+
+            pace(wallStart, fix.timeMillis - startTime);
+            clock[0] = fix.timeMillis - startTime;
+            long fixStart = System.nanoTime();
+            if (sampling == SAMPLING_ADAPTIVE) {
+                filter.update(fix.timeMillis, fix.latitude, fix.longitude,
+                        fix.accuracy > 0 ? fix.accuracy : DEFAULT_ACCURACY_METERS);
+                engine.onLocation(filter.getLatitude(), filter.getLongitude());
+                policy.update(filter.getSpeed(), engine.getDistanceToNextManeuver(), filter.getAccuracy());
+            } else {
+                engine.onLocation(fix.latitude, fix.longitude);
+            }
+            fixNanos[processed++] = System.nanoTime() - fixStart;
+        }
+
+        long traceDuration = trace.get(trace.size() - 1).timeMillis - startTime;
+        boolean arrived = !timeline.isEmpty() && Event.ARRIVED.equals(timeline.get(timeline.size() - 1).type);
+        return new Result(timeline, Arrays.copyOf(fixNanos, processed), traceDuration,
+                System.nanoTime() - wallStart, arrived);
+    }
+
+    private void pace(long wallStart, long traceOffsetMillis) {
+        if (speedup <= 0) {
+            return;
+        }
+        long targetNanos = (long) (traceOffsetMillis * 1000000.0 / speedup);
+        long remaining = targetNanos - (System.nanoTime() - wallStart);
+        if (remaining > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+}
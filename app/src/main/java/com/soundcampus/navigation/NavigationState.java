@@ -0,0 +1,84 @@
+package com.soundcampus.navigation;
+
+import com.soundcampus.data.CampusLocation;
+
+// What the navigation screen shows, as of one step of the engine thread. Each step publishes a new
+// instance through a volatile field, so the UI reads a consistent state without locking and never
+// touches the engine itself.
+public final class NavigationState {
+    public static final NavigationState EMPTY = new NavigationState(0, false, false, 0, 0, null, 0, null, 0);
+
+    private final long version;
+    private final boolean navigating;
+    private final boolean hasLocation;
+    private final double latitude;
+    private final double longitude;
+    private final CampusLocation nearest;
+    private final double nearestDistanceMeters;
+    private final String status;
+    private final long fixLatencyNanos;
+
+    NavigationState(long version, boolean navigating, boolean hasLocation, double latitude, double longitude,
+                    CampusLocation nearest, double nearestDistanceMeters, String status, long fixLatencyNanos) {
+        this.version = version;
+        this.navigating = navigating;
+        this.hasLocation = hasLocation;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.nearest = nearest;
+        this.nearestDistanceMeters = nearestDistanceMeters;
+        this.status = status;
+        this.fixLatencyNanos = fixLatencyNanos;
+    }
+
+    public NavigationState withLocation(boolean navigating, double latitude, double longitude,
+                                        CampusLocation nearest, double nearestDistanceMeters, long fixLatencyNanos) {
+        return new NavigationState(version + 1, navigating, true, latitude, longitude, nearest,
+                nearestDistanceMeters, status, fixLatencyNanos);
+    }
+
+    // status null clears it.
+    public NavigationState withStatus(boolean navigating, String status) {
+        return new NavigationState(version + 1, navigating, hasLocation, latitude, longitude, nearest,
+                nearestDistanceMeters, status, fixLatencyNanos);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public boolean isNavigating() {
+        return navigating;
+    }
+
+    public boolean hasLocation() {
+        return hasLocation;
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    // Nearest campus location to the matched position, or null.
+    public CampusLocation getNearest() {
+        return nearest;
+    }
+
+    public double getNearestDistanceMeters() {
+        return nearestDistanceMeters;
+    }
+
+    // The last instruction or arrival message, or null.
+    public String getStatus() {
+        return status;
+    }
+
+    // From the fix reaching the app to this state being published.
+    public long getFixLatencyNanos() {
+        return fixLatencyNanos;
+    }
+}
@@ -0,0 +1,244 @@
+package com.soundcampus.navigation;
+
+import com.google.gson.JsonIOException;
+import com.soundcampus.data.CampusLocation;
+import com.soundcampus.data.CampusMapReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class PathGraph {
+    private final String[] nodeIds;
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final int[] edgeOffsets;
+    private final int[] edgeTargets;
+    private final float[] edgeWeights;
+    private final Map<String, Integer> nodeIndex;
+
+    private PathGraph(String[] nodeIds, double[] latitudes, double[] longitudes,
+                      int[] edgeOffsets, int[] edgeTargets, float[] edgeWeights,
+                      Map<String, Integer> nodeIndex) {
+        this.nodeIds = nodeIds;
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+        this.edgeOffsets = edgeOffsets;
+        this.edgeTargets = edgeTargets;
+        this.edgeWeights = edgeWeights;
+        this.nodeIndex = nodeIndex;
+    }
+
+    public int getNodeCount() {
+        return nodeIds.length;
+    }
+
+    public int getEdgeCount() {
+        return edgeTargets.length;
+    }
+
+    public int indexOf(String id) {
+        Integer index = nodeIndex.get(id);
+        return index != null ? index : -1;
+    }
+
+    public String getNodeId(int node) {
+        return nodeIds[node];
+    }
+
+    public double getLatitude(int node) {
+        return latitudes[node];
+    }
+
+    public double getLongitude(int node) {
+        return longitudes[node];
+    }
+
+    public int getEdgeStart(int node) {
+        return edgeOffsets[node];
+    }
+
+    public int getEdgeEnd(int node) {
+        return edgeOffsets[node + 1];
+    }
+
+    public int getEdgeTarget(int edge) {
+        return edgeTargets[edge];
+    }
+
+    public float getEdgeWeight(int edge) {
+        return edgeWeights[edge];
+    }
+
+    public int findEdge(int from, int to) {
+        int best = -1;
+        for (int edge = edgeOffsets[from], end = edgeOffsets[from + 1]; edge < end; edge++) {
+            if (edgeTargets[edge] == to && (best == -1 || edgeWeights[edge] < edgeWeights[best])) {
+                best = edge;
+            }
+        }
+        return best;
+    }
+
+    public PathGraph withEdgeWeight(String fromId, String toId, float weight) {
+        int from = indexOf(fromId);
+        int to = indexOf(toId);
+        if (from < 0 || to < 0 || findEdge(from, to) < 0) {
+            throw new IllegalArgumentException("No path between " + fromId + " and " + toId);
+        }
+        float[] weights = edgeWeights.clone();
+        for (int edge = edgeOffsets[from]; edge < edgeOffsets[from + 1]; edge++) {
+            if (edgeTargets[edge] == to) {
+                weights[edge] = weight;
+            }
+        }
+        for (int edge = edgeOffsets[to]; edge < edgeOffsets[to + 1]; edge++) {
+            if (edgeTargets[edge] == from) {
+                weights[edge] = weight;
+            }
+        }
+        return new PathGraph(nodeIds, latitudes, longitudes, edgeOffsets, edgeTargets, weights, nodeIndex);
+    }
+
+    public long computeSignature() {
+        long hash = 0xcbf29ce484222325L;
+        for (String id : nodeIds) {
+            for (int i = 0; i < id.length(); i++) {
+                hash = (hash ^ id.charAt(i)) * 0x100000001b3L;
+            }
+            hash = (hash ^ 0xff) * 0x100000001b3L;
+        }
+        for (int i = 0; i < edgeTargets.length; i++) {
+            hash = (hash ^ edgeTargets[i]) * 0x100000001b3L;
+            hash = (hash ^ Float.floatToIntBits(edgeWeights[i])) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    static PathGraph fromArrays(String[] nodeIds, double[] latitudes, double[] longitudes,
+                                int[] edgeOffsets, int[] edgeTargets, float[] edgeWeights) {
+        Map<String, Integer> nodeIndex = new HashMap<>(nodeIds.length * 2);
+        for (int i = 0; i < nodeIds.length; i++) {
+            nodeIndex.put(nodeIds[i], i);
+        }
+        return new PathGraph(nodeIds, latitudes, longitudes, edgeOffsets, edgeTargets, edgeWeights, nodeIndex);
+    }
+
+    public static PathGraph fromJson(Reader reader) {
+        Builder builder = new Builder();
+        try {
+            CampusMapReader.read(reader, builder);
+        } catch (IOException e) {
+            throw new JsonIOException(e);
+        }
+        return builder.build();
+    }
+
+    public static class Builder implements CampusMapReader.Handler {
+        private final Map<String, Integer> nodeIndex = new HashMap<>();
+        private String[] nodeIds = new String[16];
+        private double[] latitudes = new double[16];
+        private double[] longitudes = new double[16];
+        private int nodeCount = 0;
+
+        private int[] edgeSources = new int[32];
+        private int[] edgeTargets = new int[32];
+        private float[] edgeWeights = new float[32];
+        private int edgeCount = 0;
+
+        public int addNode(String id, double latitude, double longitude) {
+            Integer existing = nodeIndex.get(id);
+            if (existing != null) {
+                latitudes[existing] = latitude;
+                longitudes[existing] = longitude;
+                return existing;
+            }
+            if (nodeCount == nodeIds.length) {
+                int capacity = nodeCount * 2;
+                nodeIds = Arrays.copyOf(nodeIds, capacity);
+                latitudes = Arrays.copyOf(latitudes, capacity);
+                longitudes = Arrays.copyOf(longitudes, capacity);
+            }
+            nodeIds[nodeCount] = id;
+            latitudes[nodeCount] = latitude;
+            longitudes[nodeCount] = longitude;
+            nodeIndex.put(id, nodeCount);
+            return nodeCount++;
+        }
+
+        public void addEdge(String fromId, String toId, double distance) {
+            Integer from = nodeIndex.get(fromId);
+            Integer to = nodeIndex.get(toId);
+            if (from == null) {
+                from = addNode(fromId, Double.NaN, Double.NaN);
+            }
+            if (to == null) {
+                to = addNode(toId, Double.NaN, Double.NaN);
+            }
+            addDirectedEdge(from, to, (float) distance);
+            addDirectedEdge(to, from, (float) distance);
+        }
+
+        @Override
+        public void onCampusName(String name) {
+        }
+
+        @Override
+        public void onLocation(CampusLocation location, int floorCount, List<String> facilities) {
+            addNode(location.getId(), location.getLatitude(), location.getLongitude());
+        }
+
+        @Override
+        public void onPath(String fromId, String toId, double distance) {
+            addEdge(fromId, toId, distance);
+        }
+
+        @Override
+        public void onAccessibilityFeature(String feature) {
+        }
+
+        private void addDirectedEdge(int from, int to, float weight) {
+            if (edgeCount == edgeSources.length) {
+                int capacity = edgeCount * 2;
+                edgeSources = Arrays.copyOf(edgeSources, capacity);
+                edgeTargets = Arrays.copyOf(edgeTargets, capacity);
+                edgeWeights = Arrays.copyOf(edgeWeights, capacity);
+            }
+            edgeSources[edgeCount] = from;
+            edgeTargets[edgeCount] = to;
+            edgeWeights[edgeCount] = weight;
+            edgeCount++;
+        }
+
+        public PathGraph build() {
+            int[] offsets = new int[nodeCount + 1];
+            for (int i = 0; i < edgeCount; i++) {
+                offsets[edgeSources[i] + 1]++;
+            }
+            for (int i = 0; i < nodeCount; i++) {
+                offsets[i + 1] += offsets[i];
+            }
+
+            int[] cursor = Arrays.copyOf(offsets, nodeCount);
+            int[] targets = new int[edgeCount];
+            float[] weights = new float[edgeCount];
+            for (int i = 0; i < edgeCount; i++) {
+                int slot = cursor[edgeSources[i]]++;
+                targets[slot] = edgeTargets[i];
+                weights[slot] = edgeWeights[i];
+            }
+
+            return new PathGraph(
+                    Arrays.copyOf(nodeIds, nodeCount),
+                    Arrays.copyOf(latitudes, nodeCount),
+                    Arrays.copyOf(longitudes, nodeCount),
+                    offsets,
+                    targets,
+                    weights,
+                    new HashMap<>(nodeIndex)
+            );
+        }
+    }
+}
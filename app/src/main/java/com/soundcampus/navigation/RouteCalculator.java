@@ -8,8 +8,118 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class RouteCalculator {
+    private static final double TURN_THRESHOLD_DEGREES = 30;
+
+    private final PathGraph graph;
+    private final AStarSearch search;
+    private final ContractionHierarchy hierarchy;
+
+    public RouteCalculator(PathGraph graph) {
+        this(graph, null);
+    }
+
+    public RouteCalculator(PathGraph graph, ContractionHierarchy hierarchy) {
+        this.graph = graph;
+        this.search = graph != null ? new AStarSearch(graph) : null;
+        this.hierarchy = hierarchy;
+    }
 
     public Route calculateRoute(CampusLocation start, CampusLocation destination) {
+        if (graph != null) {
+            int source = graph.indexOf(start.getId());
+            int target = graph.indexOf(destination.getId());
+            int[] path = hierarchy != null
+                    ? hierarchy.findPath(source, target)
+                    : search.findPath(source, target);
+            if (path != null) {
+                double totalDistance = hierarchy != null
+                        ? hierarchy.getLastDistance()
+                        : search.getPathDistance(target);
+                return createRoute(start, destination, path, 0, totalDistance);
+            }
+        }
+        return calculateDirectRoute(start, destination);
+    }
+
+    public boolean usesContractionHierarchy() {
+        return hierarchy != null;
+    }
+
+    Route createRoute(CampusLocation start, CampusLocation destination, int[] path,
+                      double leadDistance, double pathDistance) {
+        double[] latitudes = new double[path.length + 1];
+        double[] longitudes = new double[path.length + 1];
+        latitudes[0] = start.getLatitude();
+        longitudes[0] = start.getLongitude();
+        for (int i = 0; i < path.length; i++) {
+            latitudes[i + 1] = graph.getLatitude(path[i]);
+            longitudes[i + 1] = graph.getLongitude(path[i]);
+        }
+        return new Route(start, destination, buildInstructions(path, destination, leadDistance),
+                leadDistance + pathDistance, latitudes, longitudes);
+    }
+
+    private List<NavigationInstruction> buildInstructions(int[] path, CampusLocation destination, double leadDistance) {
+        List<NavigationInstruction> instructions = new ArrayList<>();
+        double legDistance = leadDistance;
+        double previousBearing = Double.NaN;
+
+        for (int i = 0; i + 1 < path.length; i++) {
+            int from = path[i];
+            int to = path[i + 1];
+            double segment = graph.getEdgeWeight(graph.findEdge(from, to));
+            double bearing = LocationHelper.calculateBearing(
+                    graph.getLatitude(from), graph.getLongitude(from),
+                    graph.getLatitude(to), graph.getLongitude(to)
+            );
+
+            if (!Double.isNaN(previousBearing) && !Double.isNaN(bearing)) {
+                NavigationInstruction.Direction turn = getTurnDirection(bearing - previousBearing);
+                if (turn != NavigationInstruction.Direction.STRAIGHT) {
+                    instructions.add(createLegInstruction(turn, (int) Math.round(legDistance)));
+                    legDistance = 0;
+                }
+            }
+
+            legDistance += segment;
+            if (!Double.isNaN(bearing)) {
+                previousBearing = bearing;
+            }
+        }
+
+        if (legDistance > 0 || instructions.isEmpty()) {
+            instructions.add(createLegInstruction(NavigationInstruction.Direction.STRAIGHT, (int) Math.round(legDistance)));
+        }
+
+        instructions.add(new NavigationInstruction(
+                NavigationInstruction.Direction.ARRIVED,
+                0,
+                "已到达 " + destination.getName()
+        ));
+        return instructions;
+    }
+
+    private NavigationInstruction createLegInstruction(NavigationInstruction.Direction direction, int distanceMeters) {
+        String description = "直行 " + distanceMeters + " 米";
+        if (direction == NavigationInstruction.Direction.LEFT) {
+            description += "后左转";
+        } else if (direction == NavigationInstruction.Direction.RIGHT) {
+            description += "后右转";
+        }
+        return new NavigationInstruction(direction, distanceMeters, description);
+    }
+
+    private NavigationInstruction.Direction getTurnDirection(double bearingChange) {
+        double delta = ((bearingChange % 360) + 540) % 360 - 180;
+        if (delta > TURN_THRESHOLD_DEGREES) {
+            return NavigationInstruction.Direction.RIGHT;
+        } else if (delta < -TURN_THRESHOLD_DEGREES) {
+            return NavigationInstruction.Direction.LEFT;
+        }
+        return NavigationInstruction.Direction.STRAIGHT;
+    }
+
+    private Route calculateDirectRoute(CampusLocation start, CampusLocation destination) {
         List<NavigationInstruction> instructions = new ArrayList<>();
         
         double distance = LocationHelper.calculateDistance(
@@ -0,0 +1,221 @@
+package com.soundcampus.navigation;
+
+import com.soundcampus.data.CampusLocation;
+import com.soundcampus.data.Route;
+import com.soundcampus.utils.IntList;
+import com.soundcampus.utils.LocationHelper;
+import java.util.Arrays;
+
+public class RouteReplanner {
+    public static final double CORRIDOR_METERS = 25;
+    public static final int OFF_ROUTE_CONFIRMATIONS = 2;
+    private static final double[] SEARCH_RADII_METERS = {40, 160, 640};
+
+    private final PathGraph graph;
+    private final SegmentIndex segmentIndex;
+    private final RouteCalculator routeCalculator;
+
+    // Shortest-path tree rooted at the destination, grown lazily and kept across reroutes.
+    private final float[] distances;
+    private final int[] parents;
+    private final int[] seenStamps;
+    private final int[] closedStamps;
+    private final NodeHeap heap;
+    private int stamp = 0;
+    private int treeRoot = -1;
+
+    private final IntList candidates = new IntList(64);
+    private int offRouteCount = 0;
+    private int replanCount = 0;
+    private long lastReplanNanos = 0;
+    private long maxReplanNanos = 0;
+    private long totalReplanNanos = 0;
+
+    public RouteReplanner(PathGraph graph, SegmentIndex segmentIndex, RouteCalculator routeCalculator) {
+        this.graph = graph;
+        this.segmentIndex = segmentIndex;
+        this.routeCalculator = routeCalculator;
+        int nodeCount = graph.getNodeCount();
+        distances = new float[nodeCount];
+        parents = new int[nodeCount];
+        seenStamps = new int[nodeCount];
+        closedStamps = new int[nodeCount];
+        heap = new NodeHeap(Math.min(nodeCount, 1024));
+    }
+
+    public void start(Route route) {
+        offRouteCount = 0;
+        int root = graph.indexOf(route.getDestination().getId());
+        if (root != treeRoot) {
+            resetTree(root);
+        }
+    }
+
+    public boolean isOffRoute(Route route, double latitude, double longitude) {
+        if (corridorDistance(route, latitude, longitude) > CORRIDOR_METERS) {
+            offRouteCount++;
+        } else {
+            offRouteCount = 0;
+        }
+        return offRouteCount >= OFF_ROUTE_CONFIRMATIONS;
+    }
+
+    public Route replan(Route route, double latitude, double longitude) {
+        long startTime = System.nanoTime();
+        offRouteCount = 0;
+        if (treeRoot < 0) {
+            return null;
+        }
+
+        int segment = findNearestSegment(latitude, longitude);
+        if (segment < 0) {
+            return null;
+        }
+        float weight = segmentIndex.getWeight(segment);
+        double fraction = segmentIndex.projectFraction(segment, latitude, longitude);
+        int fromNode = segmentIndex.getFromNode(segment);
+        int toNode = segmentIndex.getToNode(segment);
+        double viaFrom = fraction * weight + settle(fromNode);
+        double viaTo = (1 - fraction) * weight + settle(toNode);
+        if (Double.isInfinite(viaFrom) && Double.isInfinite(viaTo)) {
+            return null;
+        }
+
+        int node = viaFrom <= viaTo ? fromNode : toNode;
+        double leadDistance = viaFrom <= viaTo ? fraction * weight : (1 - fraction) * weight;
+        CampusLocation start = new CampusLocation(graph.getNodeId(node), "当前位置",
+                segmentIndex.latitudeAt(segment, fraction), segmentIndex.longitudeAt(segment, fraction), "", "");
+        Route rerouted = routeCalculator.createRoute(start, route.getDestination(), pathToRoot(node),
+                leadDistance, distances[node]);
+
+        lastReplanNanos = System.nanoTime() - startTime;
+        maxReplanNanos = Math.max(maxReplanNanos, lastReplanNanos);
+        totalReplanNanos += lastReplanNanos;
+        replanCount++;
+        return rerouted;
+    }
+
+    public int getReplanCount() {
+        return replanCount;
+    }
+
+    public long getLastReplanNanos() {
+        return lastReplanNanos;
+    }
+
+    public long getMaxReplanNanos() {
+        return maxReplanNanos;
+    }
+
+    public double getMeanReplanMillis() {
+        return replanCount > 0 ? totalReplanNanos / (double) replanCount / 1000000.0 : 0;
+    }
+
+    public static double corridorDistance(Route route, double latitude, double longitude) {
+        double metersPerDegreeLat = Math.toRadians(1) * LocationHelper.EARTH_RADIUS_METERS;
+        double metersPerDegreeLon = metersPerDegreeLat * Math.cos(Math.toRadians(latitude));
+        double best = Double.POSITIVE_INFINITY;
+        double previousX = Double.NaN;
+        double previousY = Double.NaN;
+        for (int i = 0; i < route.getPathPointCount(); i++) {
+            double x = (route.getPathLongitude(i) - longitude) * metersPerDegreeLon;
+            double y = (route.getPathLatitude(i) - latitude) * metersPerDegreeLat;
+            if (Double.isNaN(x) || Double.isNaN(y)) {
+                continue;
+            }
+            double distance;
+            if (Double.isNaN(previousX)) {
+                distance = Math.sqrt(x * x + y * y);
+            } else {
+                double dx = x - previousX;
+                double dy = y - previousY;
+                double lengthSq = dx * dx + dy * dy;
+                double t = lengthSq > 0 ? -(previousX * dx + previousY * dy) / lengthSq : 0;
+                t = t < 0 ? 0 : t > 1 ? 1 : t;
+                double px = previousX + dx * t;
+                double py = previousY + dy * t;
+                distance = Math.sqrt(px * px + py * py);
+            }
+            best = Math.min(best, distance);
+            previousX = x;
+            previousY = y;
+        }
+        return best;
+    }
+
+    private int findNearestSegment(double latitude, double longitude) {
+        for (double radius : SEARCH_RADII_METERS) {
+            candidates.clear();
+            segmentIndex.query(latitude, longitude, radius, candidates);
+            int best = -1;
+            double bestOffset = radius;
+            for (int i = 0; i < candidates.size(); i++) {
+                int segment = candidates.get(i);
+                double fraction = segmentIndex.projectFraction(segment, latitude, longitude);
+                double offset = segmentIndex.distanceTo(segment, fraction, latitude, longitude);
+                if (offset <= bestOffset) {
+                    bestOffset = offset;
+                    best = segment;
+                }
+            }
+            if (best >= 0) {
+                return best;
+            }
+        }
+        return -1;
+    }
+
+    private void resetTree(int root) {
+        if (stamp == Integer.MAX_VALUE) {
+            Arrays.fill(seenStamps, 0);
+            Arrays.fill(closedStamps, 0);
+            stamp = 0;
+        }
+        stamp++;
+        heap.clear();
+        treeRoot = root;
+        if (root >= 0) {
+            distances[root] = 0f;
+            parents[root] = -1;
+            seenStamps[root] = stamp;
+            heap.push(root, 0f);
+        }
+    }
+
+    private double settle(int target) {
+        while (closedStamps[target] != stamp && !heap.isEmpty()) {
+            int node = heap.pop();
+            if (closedStamps[node] == stamp) {
+                continue;
+            }
+            closedStamps[node] = stamp;
+            float nodeDistance = distances[node];
+            for (int edge = graph.getEdgeStart(node), end = graph.getEdgeEnd(node); edge < end; edge++) {
+                int next = graph.getEdgeTarget(edge);
+                if (closedStamps[next] == stamp) {
+                    continue;
+                }
+                float candidate = nodeDistance + graph.getEdgeWeight(edge);
+                if (seenStamps[next] != stamp || candidate < distances[next]) {
+                    seenStamps[next] = stamp;
+                    distances[next] = candidate;
+                    parents[next] = node;
+                    heap.push(next, candidate);
+                }
+            }
+        }
+        return closedStamps[target] == stamp ? distances[target] : Double.POSITIVE_INFINITY;
+    }
+
+    private int[] pathToRoot(int node) {
+        int length = 0;
+        for (int current = node; current != -1; current = parents[current]) {
+            length++;
+        }
+        int[] path = new int[length];
+        for (int current = node, i = 0; current != -1; current = parents[current], i++) {
+            path[i] = current;
+        }
+        return path;
+    }
+}
@@ -0,0 +1,108 @@
+package com.soundcampus.navigation;
+
+// Picks how often to ask for GPS fixes from walking speed and distance to the next maneuver.
+public class SamplingPolicy {
+    public static final long FIXED_INTERVAL_MILLIS = 2000;
+    public static final float FIXED_MIN_DISTANCE_METERS = 5;
+
+    private static final long[] INTERVALS_MILLIS = {1000, 2000, 4000, 8000};
+    // Fixes wanted between now and the maneuver.
+    private static final double FIXES_BEFORE_MANEUVER = 4;
+    // Within this distance of a maneuver every fix counts: fastest rate, no distance filter.
+    private static final double NEAR_MANEUVER_METERS = 25;
+    private static final double STATIONARY_SPEED = 0.3;
+    // Below this a walker is assumed to be setting off, not to take forever.
+    private static final double MIN_WALKING_SPEED = 0.8;
+    private static final double POOR_ACCURACY_METERS = 25;
+    // Off navigation, fixes only feed the "current location" readout.
+    private static final int IDLE_STEP = 2;
+
+    public static class Request {
+        public final long intervalMillis;
+        public final float minDistanceMeters;
+
+        Request(long intervalMillis, float minDistanceMeters) {
+            this.intervalMillis = intervalMillis;
+            this.minDistanceMeters = minDistanceMeters;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Request)) {
+                return false;
+            }
+            Request request = (Request) other;
+            return intervalMillis == request.intervalMillis && minDistanceMeters == request.minDistanceMeters;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) intervalMillis * 31 + Float.floatToIntBits(minDistanceMeters);
+        }
+
+        @Override
+        public String toString() {
+            return intervalMillis + " ms / " + minDistanceMeters + " m";
+        }
+    }
+
+    private Request current = new Request(FIXED_INTERVAL_MILLIS, FIXED_MIN_DISTANCE_METERS);
+    private Request pendingSlower;
+    private int changeCount = 0;
+
+    public Request getRequest() {
+        return current;
+    }
+
+    // distanceToManeuverMeters is NaN when not navigating; speed and accuracy come from LocationFilter.
+    // Returns the request to use from now on, which is the previous one unless it should change. A
+    // faster request applies at once; a slower one only when two updates in a row ask for it.
+    public Request update(double speedMetersPerSecond, double distanceToManeuverMeters, double accuracyMeters) {
+        Request next = choose(speedMetersPerSecond, distanceToManeuverMeters, accuracyMeters);
+        if (next.equals(current)) {
+            pendingSlower = null;
+        } else if (next.intervalMillis < current.intervalMillis) {
+            apply(next);
+        } else if (next.equals(pendingSlower)) {
+            apply(next);
+        } else {
+            pendingSlower = next;
+        }
+        return current;
+    }
+
+    private void apply(Request next) {
+        current = next;
+        pendingSlower = null;
+        changeCount++;
+    }
+
+    static Request choose(double speed, double distanceToManeuver, double accuracy) {
+        int step;
+        float minDistance = FIXED_MIN_DISTANCE_METERS;
+        if (Double.isNaN(distanceToManeuver)) {
+            step = speed < STATIONARY_SPEED ? INTERVALS_MILLIS.length - 1 : IDLE_STEP;
+        } else if (distanceToManeuver < NEAR_MANEUVER_METERS) {
+            step = 0;
+            minDistance = 0;
+        } else if (speed < STATIONARY_SPEED) {
+            // Standing: the distance filter wakes us as soon as the user walks off.
+            step = INTERVALS_MILLIS.length - 1;
+        } else {
+            double secondsToManeuver = distanceToManeuver / Math.max(speed, MIN_WALKING_SPEED);
+            long wanted = (long) (secondsToManeuver * 1000 / FIXES_BEFORE_MANEUVER);
+            step = 0;
+            while (step + 1 < INTERVALS_MILLIS.length && INTERVALS_MILLIS[step + 1] <= wanted) {
+                step++;
+            }
+        }
+        if (accuracy > POOR_ACCURACY_METERS && step == 0) {
+            step = 1;
+        }
+        return new Request(INTERVALS_MILLIS[step], minDistance);
+    }
+
+    public int getChangeCount() {
+        return changeCount;
+    }
+}
@@ -0,0 +1,706 @@
+package com.soundcampus.navigation;
+
+import com.soundcampus.data.CampusLocation;
+import com.soundcampus.utils.IntList;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+// Destination search over name, facilities, category and description. Every field is indexed as
+// character bigrams (plus single Han characters and a start-of-text marker) in CSR postings;
+// names and facilities are also indexed by their toneless pinyin and name initials, so "tsg",
+// "tushuguan" and a dictated homophone all reach 图书馆. Candidates sharing enough grams with the
+// query are verified with a bounded substring edit distance and ranked by field weight.
+//
+// Names have their own postings, searched first; the other fields are only searched while they
+// could still place in the top k, so common words in descriptions do not flood every query.
+public class SearchIndex {
+    public interface Romanizer {
+        // Lowercase toneless pinyin for a Han character, or null when there is none.
+        String romanize(char c);
+    }
+
+    private static final char START = '\u0001';
+    private static final int CANDIDATE_LIMIT = 256;
+    // Grams a single edit can break: two bigrams, plus the unigram of a substituted Han character.
+    private static final int GRAMS_PER_EDIT = 2;
+    private static final int HAN_GRAMS_PER_EDIT = 3;
+    // A gram in at least 1/32 of the documents is stored as a bitset, which is then no larger than
+    // its int postings and answers "does this candidate have it" in one load.
+    private static final int DENSE_FRACTION = 32;
+    private static final long MISSING = Long.MAX_VALUE;
+
+    private static final byte NAME = 0;
+    private static final byte NAME_PINYIN = 1;
+    private static final byte NAME_INITIALS = 2;
+    private static final byte FACILITY = 3;
+    private static final byte FACILITY_PINYIN = 4;
+    private static final byte CATEGORY = 5;
+    private static final byte DESCRIPTION = 6;
+    private static final float[] WEIGHTS = {1f, 0.9f, 0.8f, 0.6f, 0.5f, 0.5f, 0.4f};
+    private static final float EXACT_BONUS = 0.3f;
+    private static final float PREFIX_BONUS = 0.15f;
+
+    private final Romanizer romanizer;
+    private final int documentCount;
+    private final Postings names;
+    private final Postings details;
+    private final int[] nameGrams;
+    private final int[] documentTextStart;
+    private final int[] textStart;
+    private final byte[] textKinds;
+    private final char[] chars;
+    private final CharBuffer charView;
+
+    private final int[] countStamps;
+    private final int[] counts;
+    private final int[] scoreStamps;
+    private final float[] scores;
+    private int countStamp = 0;
+    private int scoreStamp = 0;
+    private final IntList candidates = new IntList(256);
+    private final IntList scored = new IntList(256);
+    private final IntList queryGrams = new IntList(32);
+    private int[] editRow = new int[32];
+
+    private SearchIndex(Romanizer romanizer, int documentCount, Postings names, Postings details, int[] nameGrams,
+            int[] documentTextStart, int[] textStart, byte[] textKinds, char[] chars) {
+        this.romanizer = romanizer;
+        this.documentCount = documentCount;
+        this.names = names;
+        this.details = details;
+        this.nameGrams = nameGrams;
+        this.documentTextStart = documentTextStart;
+        this.textStart = textStart;
+        this.textKinds = textKinds;
+        this.chars = chars;
+        this.charView = CharBuffer.wrap(chars);
+        this.countStamps = new int[documentCount];
+        this.counts = new int[documentCount];
+        this.scoreStamps = new int[documentCount];
+        this.scores = new float[documentCount];
+    }
+
+    // facilities holds one comma-separated string per location, or null.
+    public static SearchIndex build(List<CampusLocation> locations, List<String> facilities, Romanizer romanizer) {
+        int n = locations.size();
+        StringBuilder text = new StringBuilder();
+        IntList starts = new IntList(n * 8);
+        IntList documentStarts = new IntList(n + 1);
+        ByteList kinds = new ByteList(n * 8);
+        IntList documentKeys = new IntList(128);
+        LongList namePairs = new LongList(n * 16);
+        LongList detailPairs = new LongList(n * 16);
+        int[] nameGrams = new int[n];
+
+        for (int doc = 0; doc < n; doc++) {
+            CampusLocation location = locations.get(doc);
+            documentStarts.add(starts.size());
+            int firstText = starts.size();
+            String name = normalize(location.getName());
+            addText(text, starts, kinds, name, NAME);
+            nameGrams[doc] = countInnerGrams(name, documentKeys);
+            if (romanizer != null && containsHan(name)) {
+                addText(text, starts, kinds, romanize(name, romanizer, false), NAME_PINYIN);
+                addText(text, starts, kinds, romanize(name, romanizer, true), NAME_INITIALS);
+            }
+            int firstDetail = starts.size();
+            String facilityList = facilities != null ? facilities.get(doc) : null;
+            if (facilityList != null) {
+                for (String facility : facilityList.split(",")) {
+                    String normalized = normalize(facility);
+                    addText(text, starts, kinds, normalized, FACILITY);
+                    if (romanizer != null && containsHan(normalized)) {
+                        addText(text, starts, kinds, romanize(normalized, romanizer, false), FACILITY_PINYIN);
+                    }
+                }
+            }
+            addText(text, starts, kinds, normalize(location.getCategory()), CATEGORY);
+            addText(text, starts, kinds, normalize(location.getDescription()), DESCRIPTION);
+
+            addPairs(text, starts, firstText, firstDetail, doc, documentKeys, namePairs);
+            addPairs(text, starts, firstDetail, starts.size(), doc, documentKeys, detailPairs);
+        }
+        documentStarts.add(starts.size());
+
+        char[] chars = new char[text.length()];
+        text.getChars(0, text.length(), chars, 0);
+        return new SearchIndex(romanizer, n, Postings.build(namePairs, n), Postings.build(detailPairs, n),
+                nameGrams, documentStarts.toArray(), starts.toArray(), kinds.toArray(), chars);
+    }
+
+    public int size() {
+        return documentCount;
+    }
+
+    public int getKeyCount() {
+        return names.keys.length + details.keys.length;
+    }
+
+    public int getPostingCount() {
+        return names.postings.length + details.postings.length;
+    }
+
+    public int getDenseKeyCount() {
+        return names.denseCount + details.denseCount;
+    }
+
+    // Fills result with location indices, best first, and returns how many were found.
+    public synchronized int search(String query, int[] result, float[] resultScores) {
+        if (scoreStamp == Integer.MAX_VALUE) {
+            Arrays.fill(scoreStamps, 0);
+            scoreStamp = 0;
+        }
+        scoreStamp++;
+        scored.clear();
+        String normalized = normalize(query);
+        if (normalized.isEmpty() || documentCount == 0) {
+            return 0;
+        }
+        // Dictation often lands on a homophone, which has the same toneless pinyin as the intended name.
+        String pinyin = romanizer != null && containsHan(normalized) ? romanize(normalized, romanizer, false) : null;
+        int k = Math.min(result.length, resultScores.length);
+        searchPostings(names, NAME, FACILITY, normalized, pinyin, k);
+        if (countScoredAtLeast(WEIGHTS[FACILITY] * (1f + EXACT_BONUS)) < k) {
+            searchPostings(details, FACILITY, WEIGHTS.length, normalized, pinyin, k);
+        }
+
+        int count = 0;
+        for (int i = 0; i < scored.size(); i++) {
+            int doc = scored.get(i);
+            float score = scores[doc];
+            if (count == k && !ranksBefore(doc, score, result[k - 1], resultScores[k - 1])) {
+                continue;
+            }
+            int position = count < k ? count++ : k - 1;
+            while (position > 0 && ranksBefore(doc, score, result[position - 1], resultScores[position - 1])) {
+                result[position] = result[position - 1];
+                resultScores[position] = resultScores[position - 1];
+                position--;
+            }
+            result[position] = doc;
+            resultScores[position] = score;
+        }
+        return count;
+    }
+
+    // Locations whose whole name appears in text, as on a photographed sign where the name sits among
+    // other words. Names of four or more characters may carry one OCR misread, seven or more two.
+    // Fills result with location indices, the most matched characters first, and edits with the
+    // misreads each needed.
+    public synchronized int findNamesIn(String text, int[] result, int[] resultEdits) {
+        String normalized = normalize(text);
+        int k = Math.min(result.length, resultEdits.length);
+        if (normalized.isEmpty() || documentCount == 0 || k == 0) {
+            return 0;
+        }
+        queryGrams.clear();
+        collectGrams(normalized, 0, normalized.length(), queryGrams);
+        int[] grams = queryGrams.toArray();
+        Arrays.sort(grams);
+
+        if (countStamp == Integer.MAX_VALUE) {
+            Arrays.fill(countStamps, 0);
+            countStamp = 0;
+        }
+        countStamp++;
+        candidates.clear();
+        for (int g = 0; g < grams.length; g++) {
+            if ((g > 0 && grams[g] == grams[g - 1]) || (grams[g] >>> 16) == START) {
+                continue;
+            }
+            int slot = Arrays.binarySearch(names.keys, grams[g]);
+            if (slot >= 0) {
+                countAll(names, slot);
+            }
+        }
+
+        int count = 0;
+        for (int i = 0; i < candidates.size(); i++) {
+            int doc = candidates.get(i);
+            int t = documentTextStart[doc];
+            int start = textStart[t];
+            int length = (t + 1 < textStart.length ? textStart[t + 1] : chars.length) - start;
+            int maxEdits = length <= 3 ? 0 : length <= 6 ? 1 : 2;
+            if (counts[doc] < nameGrams[doc] - HAN_GRAMS_PER_EDIT * maxEdits) {
+                continue;
+            }
+            int edits = substringDistance(charView.subSequence(start, start + length), normalized,
+                    0, normalized.length(), maxEdits);
+            if (edits > maxEdits) {
+                continue;
+            }
+            int matched = length - edits;
+            if (count == k && !namedBefore(doc, matched, edits, result[k - 1], resultEdits[k - 1])) {
+                continue;
+            }
+            int position = count < k ? count++ : k - 1;
+            while (position > 0 && namedBefore(doc, matched, edits, result[position - 1], resultEdits[position - 1])) {
+                result[position] = result[position - 1];
+                resultEdits[position] = resultEdits[position - 1];
+                position--;
+            }
+            result[position] = doc;
+            resultEdits[position] = edits;
+        }
+        return count;
+    }
+
+    private boolean namedBefore(int doc, int matched, int edits, int otherDoc, int otherEdits) {
+        int otherMatched = nameLength(otherDoc) - otherEdits;
+        if (matched != otherMatched) {
+            return matched > otherMatched;
+        }
+        return edits != otherEdits ? edits < otherEdits : doc < otherDoc;
+    }
+
+    private void searchPostings(Postings postings, int firstKind, int endKind, String query, String pinyin, int k) {
+        // Exact substrings first; an exact match needs every gram, so only the rarest list admits
+        // candidates and common queries stay cheap.
+        searchVariant(postings, firstKind, endKind, query, 0);
+        if (pinyin != null) {
+            searchVariant(postings, firstKind, endKind, pinyin, 0);
+        }
+        // Typos are only looked for while they could still reach the top k.
+        int maxEdits = maxEdits(query);
+        if (maxEdits > 0 && countScoredAtLeast(WEIGHTS[firstKind] * (1f - 1f / (query.length() + 1))) < k) {
+            searchVariant(postings, firstKind, endKind, query, maxEdits);
+        }
+    }
+
+    private int countScoredAtLeast(float score) {
+        int count = 0;
+        for (int i = 0; i < scored.size(); i++) {
+            if (scores[scored.get(i)] >= score) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static int maxEdits(String query) {
+        // A Han character carries about as much as a pinyin syllable, so Han queries tolerate edits sooner.
+        if (containsHan(query)) {
+            return query.length() <= 2 ? 0 : 1;
+        }
+        return query.length() <= 3 ? 0 : query.length() <= 6 ? 1 : 2;
+    }
+
+    private void searchVariant(Postings postings, int firstKind, int endKind, String query, int maxEdits) {
+        queryGrams.clear();
+        collectGrams(query, 0, query.length(), queryGrams);
+        int[] grams = queryGrams.toArray();
+        Arrays.sort(grams);
+        int distinct = 0;
+        int innerGrams = 0;
+        for (int g = 0; g < grams.length; g++) {
+            if (g > 0 && grams[g] == grams[g - 1]) {
+                continue;
+            }
+            grams[distinct++] = grams[g];
+            if ((grams[g] >>> 16) != START) {
+                innerGrams++;
+            }
+        }
+
+        // Rarest postings first. A document sharing minShared of the distinct grams must hold one of
+        // the rarest distinct - minShared + 1, so only those lists admit candidates; the common grams
+        // (pinyin bigrams like "an" are in most documents) only add to candidates already found.
+        long[] bySize = new long[distinct];
+        for (int g = 0; g < distinct; g++) {
+            int slot = Arrays.binarySearch(postings.keys, grams[g]);
+            bySize[g] = slot >= 0 ? ((long) postings.frequency[slot] << 32) | slot : MISSING;
+        }
+        Arrays.sort(bySize);
+        int perEdit = containsHan(query) ? HAN_GRAMS_PER_EDIT : GRAMS_PER_EDIT;
+        int minShared = Math.max(1, innerGrams - perEdit * maxEdits);
+        int admitting = distinct - minShared + 1;
+
+        if (countStamp == Integer.MAX_VALUE) {
+            Arrays.fill(countStamps, 0);
+            countStamp = 0;
+        }
+        countStamp++;
+        candidates.clear();
+        int words = postings.words;
+        for (int g = 0; g < distinct; g++) {
+            if (bySize[g] == MISSING) {
+                continue;
+            }
+            int slot = (int) bySize[g];
+            int dense = postings.denseSlot[slot];
+            int start = postings.start[slot];
+            int end = postings.start[slot + 1];
+            if (g < admitting) {
+                countAll(postings, slot);
+            } else if (dense >= 0) {
+                for (int i = 0, base = dense * words; i < candidates.size(); i++) {
+                    int doc = candidates.get(i);
+                    if ((postings.denseBits[base + (doc >>> 6)] & (1L << doc)) != 0) {
+                        counts[doc]++;
+                    }
+                }
+            } else if (candidates.size() * 16 < end - start) {
+                for (int i = 0; i < candidates.size(); i++) {
+                    int doc = candidates.get(i);
+                    if (Arrays.binarySearch(postings.postings, start, end, doc) >= 0) {
+                        counts[doc]++;
+                    }
+                }
+            } else {
+                for (int p = start; p < end; p++) {
+                    int doc = postings.postings[p];
+                    if (countStamps[doc] == countStamp) {
+                        counts[doc]++;
+                    }
+                }
+            }
+        }
+
+        // Verify the best-covered candidates first, at most CANDIDATE_LIMIT of them.
+        int[] histogram = new int[distinct + 1];
+        for (int i = 0; i < candidates.size(); i++) {
+            histogram[counts[candidates.get(i)]]++;
+        }
+        int cutoff = distinct;
+        int selected = histogram[distinct];
+        while (cutoff > minShared && selected + histogram[cutoff - 1] <= CANDIDATE_LIMIT) {
+            cutoff--;
+            selected += histogram[cutoff];
+        }
+        int budget = CANDIDATE_LIMIT;
+        // What is left of the budget goes to the first level that did not fit whole.
+        int partial = cutoff > minShared ? CANDIDATE_LIMIT - selected : 0;
+        for (int i = 0; i < candidates.size(); i++) {
+            int doc = candidates.get(i);
+            int shared = counts[doc];
+            if (shared >= cutoff ? budget-- > 0 : shared == cutoff - 1 && partial-- > 0) {
+                verify(doc, firstKind, endKind, query, maxEdits);
+            }
+        }
+    }
+
+    private void countAll(Postings postings, int slot) {
+        int dense = postings.denseSlot[slot];
+        if (dense >= 0) {
+            for (int w = 0, base = dense * postings.words; w < postings.words; w++) {
+                for (long bits = postings.denseBits[base + w]; bits != 0; bits &= bits - 1) {
+                    count((w << 6) + Long.numberOfTrailingZeros(bits));
+                }
+            }
+        } else {
+            for (int p = postings.start[slot], end = postings.start[slot + 1]; p < end; p++) {
+                count(postings.postings[p]);
+            }
+        }
+    }
+
+    private void count(int doc) {
+        if (countStamps[doc] != countStamp) {
+            countStamps[doc] = countStamp;
+            counts[doc] = 0;
+            candidates.add(doc);
+        }
+        counts[doc]++;
+    }
+
+    private void verify(int doc, int firstKind, int endKind, String query, int maxEdits) {
+        float best = 0f;
+        for (int t = documentTextStart[doc]; t < documentTextStart[doc + 1]; t++) {
+            int kind = textKinds[t];
+            if (kind < firstKind || kind >= endKind || WEIGHTS[kind] <= best) {
+                continue;
+            }
+            int start = textStart[t];
+            int end = t + 1 < textStart.length ? textStart[t + 1] : chars.length;
+            int edits = maxEdits == 0
+                    ? (indexOf(start, end, query) >= 0 ? 0 : 1)
+                    : substringDistance(query, charView, start, end, maxEdits);
+            if (edits > maxEdits) {
+                continue;
+            }
+            float weight = WEIGHTS[kind];
+            float score = weight * (1f - edits / (query.length() + 1f));
+            if (edits == 0 && indexOf(start, Math.min(end, start + query.length()), query) == start) {
+                score += weight * (end - start == query.length() ? EXACT_BONUS : PREFIX_BONUS);
+            }
+            best = Math.max(best, score);
+        }
+        if (best <= 0f) {
+            return;
+        }
+        if (scoreStamps[doc] != scoreStamp) {
+            scoreStamps[doc] = scoreStamp;
+            scores[doc] = best;
+            scored.add(doc);
+        } else if (best > scores[doc]) {
+            scores[doc] = best;
+        }
+    }
+
+    private boolean ranksBefore(int doc, float score, int otherDoc, float otherScore) {
+        if (score != otherScore) {
+            return score > otherScore;
+        }
+        int length = nameLength(doc);
+        int otherLength = nameLength(otherDoc);
+        return length != otherLength ? length < otherLength : doc < otherDoc;
+    }
+
+    private int nameLength(int doc) {
+        int t = documentTextStart[doc];
+        return (t + 1 < textStart.length ? textStart[t + 1] : chars.length) - textStart[t];
+    }
+
+    // Fewest edits turning pattern into any substring of text[start, end), capped at maxEdits + 1.
+    private int substringDistance(CharSequence pattern, CharSequence text, int start, int end, int maxEdits) {
+        int m = pattern.length();
+        if (editRow.length <= m) {
+            editRow = new int[m + 1];
+        }
+        int[] row = editRow;
+        for (int i = 0; i <= m; i++) {
+            row[i] = i;
+        }
+        int best = row[m];
+        for (int j = start; j < end && best > 0; j++) {
+            char c = text.charAt(j);
+            int diagonal = row[0];
+            for (int i = 1; i <= m; i++) {
+                int above = row[i];
+                int value = Math.min(Math.min(above, row[i - 1]) + 1, diagonal + (pattern.charAt(i - 1) == c ? 0 : 1));
+                row[i] = value;
+                diagonal = above;
+            }
+            best = Math.min(best, row[m]);
+        }
+        return Math.min(best, maxEdits + 1);
+    }
+
+    private int indexOf(int start, int end, String query) {
+        for (int i = start, last = end - query.length(); i <= last; i++) {
+            int j = 0;
+            while (j < query.length() && chars[i + j] == query.charAt(j)) {
+                j++;
+            }
+            if (j == query.length()) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static void addText(StringBuilder text, IntList starts, ByteList kinds, String value, byte kind) {
+        if (value == null || value.isEmpty()) {
+            return;
+        }
+        starts.add(text.length());
+        kinds.add(kind);
+        text.append(value);
+    }
+
+    private static void addPairs(StringBuilder text, IntList starts, int firstText, int endText, int doc,
+            IntList documentKeys, LongList pairs) {
+        documentKeys.clear();
+        for (int t = firstText; t < endText; t++) {
+            int end = t + 1 < starts.size() ? starts.get(t + 1) : text.length();
+            collectGrams(text, starts.get(t), end, documentKeys);
+        }
+        int[] unique = documentKeys.toArray();
+        Arrays.sort(unique);
+        for (int i = 0; i < unique.length; i++) {
+            if (i == 0 || unique[i] != unique[i - 1]) {
+                pairs.add(((long) unique[i] << 32) | doc);
+            }
+        }
+    }
+
+    private static int countInnerGrams(String value, IntList scratch) {
+        scratch.clear();
+        collectGrams(value, 0, value.length(), scratch);
+        int[] grams = scratch.toArray();
+        Arrays.sort(grams);
+        int count = 0;
+        for (int g = 0; g < grams.length; g++) {
+            if ((g == 0 || grams[g] != grams[g - 1]) && (grams[g] >>> 16) != START) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static void collectGrams(CharSequence text, int start, int end, IntList result) {
+        if (start == end) {
+            return;
+        }
+        result.add(key(START, text.charAt(start)));
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (isHan(c)) {
+                result.add(key(c, '\0'));
+            }
+            if (i + 1 < end) {
+                result.add(key(c, text.charAt(i + 1)));
+            }
+        }
+    }
+
+    private static int key(char first, char second) {
+        return (first << 16) | second;
+    }
+
+    public static String normalize(String value) {
+        if (value == null) {
+            return "";
+        }
+        StringBuilder normalized = new StringBuilder(value.length());
+        String lower = value.toLowerCase(Locale.ROOT);
+        for (int i = 0; i < lower.length(); i++) {
+            char c = lower.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                normalized.append(c);
+            }
+        }
+        return normalized.toString();
+    }
+
+    static String romanize(String normalized, Romanizer romanizer, boolean initialsOnly) {
+        StringBuilder out = new StringBuilder(normalized.length() * 4);
+        for (int i = 0; i < normalized.length(); i++) {
+            char c = normalized.charAt(i);
+            String syllable = isHan(c) ? romanizer.romanize(c) : null;
+            if (syllable == null || syllable.isEmpty()) {
+                out.append(c);
+            } else if (initialsOnly) {
+                out.append(syllable.charAt(0));
+            } else {
+                out.append(syllable);
+            }
+        }
+        return out.toString();
+    }
+
+    private static boolean containsHan(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (isHan(value.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isHan(char c) {
+        return c >= '\u4e00' && c <= '\u9fff';
+    }
+
+    // Gram to document postings in CSR form; grams common enough to be dense keep a bitset instead.
+    private static final class Postings {
+        final int[] keys;
+        final int[] frequency;
+        final int[] start;
+        final int[] postings;
+        final int[] denseSlot;
+        final long[] denseBits;
+        final int denseCount;
+        final int words;
+
+        private Postings(int[] keys, int[] frequency, int[] start, int[] postings, int[] denseSlot,
+                long[] denseBits, int denseCount, int words) {
+            this.keys = keys;
+            this.frequency = frequency;
+            this.start = start;
+            this.postings = postings;
+            this.denseSlot = denseSlot;
+            this.denseBits = denseBits;
+            this.denseCount = denseCount;
+            this.words = words;
+        }
+
+        // pairs are (key << 32 | doc), unique per document.
+        static Postings build(LongList pairList, int documentCount) {
+            long[] pairs = pairList.values;
+            int pairCount = pairList.size;
+            Arrays.sort(pairs, 0, pairCount);
+            IntList keyList = new IntList(1024);
+            IntList frequencyList = new IntList(1024);
+            for (int i = 0; i < pairCount; i++) {
+                int key = (int) (pairs[i] >> 32);
+                if (i == 0 || key != keyList.get(keyList.size() - 1)) {
+                    keyList.add(key);
+                    frequencyList.add(0);
+                }
+                frequencyList.set(frequencyList.size() - 1, frequencyList.get(frequencyList.size() - 1) + 1);
+            }
+            int[] keys = keyList.toArray();
+            int[] frequency = frequencyList.toArray();
+
+            int words = (documentCount + 63) >>> 6;
+            int denseThreshold = Math.max(documentCount / DENSE_FRACTION, 64);
+            int[] denseSlot = new int[keys.length];
+            int denseCount = 0;
+            int sparseCount = 0;
+            for (int k = 0; k < keys.length; k++) {
+                if (frequency[k] >= denseThreshold) {
+                    denseSlot[k] = denseCount++;
+                } else {
+                    denseSlot[k] = -1;
+                    sparseCount += frequency[k];
+                }
+            }
+
+            int[] start = new int[keys.length + 1];
+            int[] postings = new int[sparseCount];
+            long[] denseBits = new long[denseCount * words];
+            for (int k = 0, i = 0, p = 0; k < keys.length; k++) {
+                start[k] = p;
+                for (int end = i + frequency[k]; i < end; i++) {
+                    int doc = (int) pairs[i];
+                    if (denseSlot[k] >= 0) {
+                        denseBits[denseSlot[k] * words + (doc >>> 6)] |= 1L << doc;
+                    } else {
+                        postings[p++] = doc;
+                    }
+                }
+                start[k + 1] = p;
+            }
+            return new Postings(keys, frequency, start, postings, denseSlot, denseBits, denseCount, words);
+        }
+    }
+
+    private static class LongList {
+        long[] values;
+        int size = 0;
+
+        LongList(int initialCapacity) {
+            values = new long[Math.max(initialCapacity, 4)];
+        }
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+
+    private static class ByteList {
+        private byte[] values;
+        private int size = 0;
+
+        ByteList(int initialCapacity) {
+            values = new byte[Math.max(initialCapacity, 4)];
+        }
+
+        void add(byte value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        byte[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package com.soundcampus.navigation;
+
+import com.soundcampus.utils.IntList;
+import com.soundcampus.utils.LocationHelper;
+import java.util.Arrays;
+
+public class SegmentIndex {
+    public static final double DEFAULT_CELL_SIZE_METERS = 50;
+
+    private final double metersPerDegreeLat;
+    private final double metersPerDegreeLon;
+    private final int[] fromNodes;
+    private final int[] toNodes;
+    private final float[] weights;
+    private final double[] x1;
+    private final double[] y1;
+    private final double[] x2;
+    private final double[] y2;
+    private final double minX;
+    private final double minY;
+    private final double cellSize;
+    private final int columns;
+    private final int rows;
+    private final int[] cellStart;
+    private final int[] cellSegments;
+    private final int[] seen;
+    private int generation = 0;
+
+    private SegmentIndex(PathGraph graph, double requestedCellSize) {
+        double latitudeSum = 0;
+        int located = 0;
+        for (int node = 0; node < graph.getNodeCount(); node++) {
+            if (!Double.isNaN(graph.getLatitude(node))) {
+                latitudeSum += graph.getLatitude(node);
+                located++;
+            }
+        }
+        double originLatitude = located > 0 ? latitudeSum / located : 0;
+        metersPerDegreeLat = Math.toRadians(1) * LocationHelper.EARTH_RADIUS_METERS;
+        metersPerDegreeLon = metersPerDegreeLat * Math.cos(Math.toRadians(originLatitude));
+
+        IntList from = new IntList(graph.getEdgeCount() / 2);
+        IntList to = new IntList(graph.getEdgeCount() / 2);
+        for (int node = 0; node < graph.getNodeCount(); node++) {
+            if (Double.isNaN(graph.getLatitude(node))) {
+                continue;
+            }
+            for (int edge = graph.getEdgeStart(node), end = graph.getEdgeEnd(node); edge < end; edge++) {
+                int target = graph.getEdgeTarget(edge);
+                if (target > node && !Double.isNaN(graph.getLatitude(target)) && graph.findEdge(node, target) == edge) {
+                    from.add(node);
+                    to.add(target);
+                }
+            }
+        }
+
+        int count = from.size();
+        fromNodes = from.toArray();
+        toNodes = to.toArray();
+        weights = new float[count];
+        x1 = new double[count];
+        y1 = new double[count];
+        x2 = new double[count];
+        y2 = new double[count];
+        double lowX = Double.MAX_VALUE;
+        double lowY = Double.MAX_VALUE;
+        double highX = -Double.MAX_VALUE;
+        double highY = -Double.MAX_VALUE;
+        for (int s = 0; s < count; s++) {
+            weights[s] = graph.getEdgeWeight(graph.findEdge(fromNodes[s], toNodes[s]));
+            x1[s] = graph.getLongitude(fromNodes[s]) * metersPerDegreeLon;
+            y1[s] = graph.getLatitude(fromNodes[s]) * metersPerDegreeLat;
+            x2[s] = graph.getLongitude(toNodes[s]) * metersPerDegreeLon;
+            y2[s] = graph.getLatitude(toNodes[s]) * metersPerDegreeLat;
+            lowX = Math.min(lowX, Math.min(x1[s], x2[s]));
+            lowY = Math.min(lowY, Math.min(y1[s], y2[s]));
+            highX = Math.max(highX, Math.max(x1[s], x2[s]));
+            highY = Math.max(highY, Math.max(y1[s], y2[s]));
+        }
+        if (count == 0) {
+            lowX = lowY = highX = highY = 0;
+        }
+
+        double size = requestedCellSize;
+        while ((long) (Math.floor((highX - lowX) / size) + 1) * (long) (Math.floor((highY - lowY) / size) + 1)
+                > 4L * Math.max(count, 1)) {
+            size *= 2;
+        }
+        minX = lowX;
+        minY = lowY;
+        cellSize = size;
+        columns = (int) Math.floor((highX - lowX) / size) + 1;
+        rows = (int) Math.floor((highY - lowY) / size) + 1;
+
+        cellStart = new int[columns * rows + 1];
+        for (int s = 0; s < count; s++) {
+            forEachCell(s, null);
+        }
+        for (int cell = 0; cell < columns * rows; cell++) {
+            cellStart[cell + 1] += cellStart[cell];
+        }
+        cellSegments = new int[cellStart[columns * rows]];
+        int[] fill = new int[columns * rows];
+        for (int s = 0; s < count; s++) {
+            forEachCell(s, fill);
+        }
+        seen = new int[count];
+    }
+
+    public static SegmentIndex build(PathGraph graph) {
+        return new SegmentIndex(graph, DEFAULT_CELL_SIZE_METERS);
+    }
+
+    public static SegmentIndex build(PathGraph graph, double cellSizeMeters) {
+        return new SegmentIndex(graph, cellSizeMeters);
+    }
+
+    private void forEachCell(int s, int[] fill) {
+        int c0 = column(Math.min(x1[s], x2[s]));
+        int c1 = column(Math.max(x1[s], x2[s]));
+        int r0 = row(Math.min(y1[s], y2[s]));
+        int r1 = row(Math.max(y1[s], y2[s]));
+        for (int r = r0; r <= r1; r++) {
+            for (int c = c0; c <= c1; c++) {
+                int cell = r * columns + c;
+                if (fill == null) {
+                    cellStart[cell + 1]++;
+                } else {
+                    cellSegments[cellStart[cell] + fill[cell]++] = s;
+                }
+            }
+        }
+    }
+
+    private int column(double x) {
+        return Math.max(0, Math.min(columns - 1, (int) Math.floor((x - minX) / cellSize)));
+    }
+
+    private int row(double y) {
+        return Math.max(0, Math.min(rows - 1, (int) Math.floor((y - minY) / cellSize)));
+    }
+
+    public int getSegmentCount() {
+        return fromNodes.length;
+    }
+
+    public int getFromNode(int segment) {
+        return fromNodes[segment];
+    }
+
+    public int getToNode(int segment) {
+        return toNodes[segment];
+    }
+
+    public float getWeight(int segment) {
+        return weights[segment];
+    }
+
+    public int query(double latitude, double longitude, double radiusMeters, IntList result) {
+        if (fromNodes.length == 0) {
+            return 0;
+        }
+        double x = longitude * metersPerDegreeLon;
+        double y = latitude * metersPerDegreeLat;
+        if (x + radiusMeters < minX || y + radiusMeters < minY
+                || x - radiusMeters > minX + columns * cellSize || y - radiusMeters > minY + rows * cellSize) {
+            return 0;
+        }
+
+        if (++generation == 0) {
+            Arrays.fill(seen, 0);
+            generation = 1;
+        }
+        int before = result.size();
+        int c0 = column(x - radiusMeters);
+        int c1 = column(x + radiusMeters);
+        int r0 = row(y - radiusMeters);
+        int r1 = row(y + radiusMeters);
+        for (int r = r0; r <= r1; r++) {
+            for (int c = c0; c <= c1; c++) {
+                int cell = r * columns + c;
+                for (int i = cellStart[cell], end = cellStart[cell + 1]; i < end; i++) {
+                    int s = cellSegments[i];
+                    if (seen[s] != generation) {
+                        seen[s] = generation;
+                        result.add(s);
+                    }
+                }
+            }
+        }
+        return result.size() - before;
+    }
+
+    public double projectFraction(int segment, double latitude, double longitude) {
+        double x = longitude * metersPerDegreeLon;
+        double y = latitude * metersPerDegreeLat;
+        double dx = x2[segment] - x1[segment];
+        double dy = y2[segment] - y1[segment];
+        double lengthSq = dx * dx + dy * dy;
+        if (lengthSq == 0) {
+            return 0;
+        }
+        double t = ((x - x1[segment]) * dx + (y - y1[segment]) * dy) / lengthSq;
+        return t < 0 ? 0 : t > 1 ? 1 : t;
+    }
+
+    public double distanceTo(int segment, double fraction, double latitude, double longitude) {
+        double dx = x1[segment] + (x2[segment] - x1[segment]) * fraction - longitude * metersPerDegreeLon;
+        double dy = y1[segment] + (y2[segment] - y1[segment]) * fraction - latitude * metersPerDegreeLat;
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    public double latitudeAt(int segment, double fraction) {
+        return (y1[segment] + (y2[segment] - y1[segment]) * fraction) / metersPerDegreeLat;
+    }
+
+    public double longitudeAt(int segment, double fraction) {
+        return (x1[segment] + (x2[segment] - x1[segment]) * fraction) / metersPerDegreeLon;
+    }
+}
@@ -0,0 +1,278 @@
+package com.soundcampus.navigation;
+
+import com.soundcampus.utils.IntList;
+import com.soundcampus.utils.LocationHelper;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+
+public class SpatialIndex {
+    private final double originLatitude;
+    private final double metersPerDegreeLat;
+    private final double metersPerDegreeLon;
+    private final DoubleBuffer xs;
+    private final DoubleBuffer ys;
+    private final IntBuffer ids;
+
+    private SpatialIndex(double originLatitude, DoubleBuffer xs, DoubleBuffer ys, IntBuffer ids) {
+        this.originLatitude = originLatitude;
+        this.metersPerDegreeLat = Math.toRadians(1) * LocationHelper.EARTH_RADIUS_METERS;
+        this.metersPerDegreeLon = metersPerDegreeLat * Math.cos(Math.toRadians(originLatitude));
+        this.xs = xs;
+        this.ys = ys;
+        this.ids = ids;
+    }
+
+    public static SpatialIndex build(double[] latitudes, double[] longitudes) {
+        int n = latitudes.length;
+        double latitudeSum = 0;
+        for (double latitude : latitudes) {
+            latitudeSum += latitude;
+        }
+        double originLatitude = n > 0 ? latitudeSum / n : 0;
+        double metersPerDegreeLat = Math.toRadians(1) * LocationHelper.EARTH_RADIUS_METERS;
+        double metersPerDegreeLon = metersPerDegreeLat * Math.cos(Math.toRadians(originLatitude));
+
+        double[] xs = new double[n];
+        double[] ys = new double[n];
+        int[] ids = new int[n];
+        for (int i = 0; i < n; i++) {
+            xs[i] = longitudes[i] * metersPerDegreeLon;
+            ys[i] = latitudes[i] * metersPerDegreeLat;
+            ids[i] = i;
+        }
+
+        buildRange(xs, ys, ids, 0, n, 0);
+        return new SpatialIndex(originLatitude, DoubleBuffer.wrap(xs), DoubleBuffer.wrap(ys), IntBuffer.wrap(ids));
+    }
+
+    static SpatialIndex wrap(double originLatitude, DoubleBuffer xs, DoubleBuffer ys, IntBuffer ids) {
+        return new SpatialIndex(originLatitude, xs, ys, ids);
+    }
+
+    public int size() {
+        return ids.limit();
+    }
+
+    double getSlotX(int slot) {
+        return xs.get(slot);
+    }
+
+    double getSlotY(int slot) {
+        return ys.get(slot);
+    }
+
+    int getSlotId(int slot) {
+        return ids.get(slot);
+    }
+
+    public double getOriginLatitude() {
+        return originLatitude;
+    }
+
+    public int nearest(double latitude, double longitude) {
+        if (ids.limit() == 0) {
+            return -1;
+        }
+        double x = longitude * metersPerDegreeLon;
+        double y = latitude * metersPerDegreeLat;
+        return ids.get(nearestInRange(0, ids.limit(), 0, x, y, -1, Double.MAX_VALUE));
+    }
+
+    public int kNearest(double latitude, double longitude, int[] result, double[] distances) {
+        int k = Math.min(result.length, ids.limit());
+        if (k == 0) {
+            return 0;
+        }
+        double x = longitude * metersPerDegreeLon;
+        double y = latitude * metersPerDegreeLat;
+        int count = kNearestInRange(0, ids.limit(), 0, x, y, k, result, distances, 0);
+
+        for (int i = count - 1; i > 0; i--) {
+            swapHeap(result, distances, 0, i);
+            siftDown(result, distances, 0, i);
+        }
+        for (int i = 0; i < count; i++) {
+            result[i] = ids.get(result[i]);
+            distances[i] = Math.sqrt(distances[i]);
+        }
+        return count;
+    }
+
+    public int withinRadius(double latitude, double longitude, double radiusMeters, IntList result) {
+        double x = longitude * metersPerDegreeLon;
+        double y = latitude * metersPerDegreeLat;
+        int before = result.size();
+        radiusInRange(0, ids.limit(), 0, x, y, radiusMeters * radiusMeters, result);
+        return result.size() - before;
+    }
+
+    private static void buildRange(double[] xs, double[] ys, int[] ids, int lo, int hi, int depth) {
+        if (hi - lo <= 1) {
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        select(xs, ys, ids, lo, hi - 1, mid, (depth & 1) == 0 ? xs : ys);
+        buildRange(xs, ys, ids, lo, mid, depth + 1);
+        buildRange(xs, ys, ids, mid + 1, hi, depth + 1);
+    }
+
+    private static void select(double[] xs, double[] ys, int[] ids, int lo, int hi, int k, double[] keys) {
+        while (hi > lo) {
+            double pivot = keys[(lo + hi) >>> 1];
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (keys[i] < pivot) {
+                    i++;
+                }
+                while (keys[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(xs, ys, ids, i, j);
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) {
+                hi = j;
+            } else if (k >= i) {
+                lo = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private static void swap(double[] xs, double[] ys, int[] ids, int i, int j) {
+        double x = xs[i];
+        xs[i] = xs[j];
+        xs[j] = x;
+        double y = ys[i];
+        ys[i] = ys[j];
+        ys[j] = y;
+        int id = ids[i];
+        ids[i] = ids[j];
+        ids[j] = id;
+    }
+
+    private int nearestInRange(int lo, int hi, int depth, double x, double y, int best, double bestDistSq) {
+        if (lo >= hi) {
+            return best;
+        }
+        int mid = (lo + hi) >>> 1;
+        double dx = xs.get(mid) - x;
+        double dy = ys.get(mid) - y;
+        double distSq = dx * dx + dy * dy;
+        if (distSq < bestDistSq) {
+            best = mid;
+            bestDistSq = distSq;
+        }
+
+        double delta = (depth & 1) == 0 ? x - xs.get(mid) : y - ys.get(mid);
+        int nearLo = delta < 0 ? lo : mid + 1;
+        int nearHi = delta < 0 ? mid : hi;
+        int farLo = delta < 0 ? mid + 1 : lo;
+        int farHi = delta < 0 ? hi : mid;
+
+        best = nearestInRange(nearLo, nearHi, depth + 1, x, y, best, bestDistSq);
+        bestDistSq = squaredDistance(best, x, y);
+        if (delta * delta < bestDistSq) {
+            best = nearestInRange(farLo, farHi, depth + 1, x, y, best, bestDistSq);
+        }
+        return best;
+    }
+
+    private double squaredDistance(int slot, double x, double y) {
+        double dx = xs.get(slot) - x;
+        double dy = ys.get(slot) - y;
+        return dx * dx + dy * dy;
+    }
+
+    private int kNearestInRange(int lo, int hi, int depth, double x, double y, int k,
+                                int[] heap, double[] heapDistSq, int count) {
+        if (lo >= hi) {
+            return count;
+        }
+        int mid = (lo + hi) >>> 1;
+        double distSq = squaredDistance(mid, x, y);
+        if (count < k) {
+            heap[count] = mid;
+            heapDistSq[count] = distSq;
+            siftUp(heap, heapDistSq, count);
+            count++;
+        } else if (distSq < heapDistSq[0]) {
+            heap[0] = mid;
+            heapDistSq[0] = distSq;
+            siftDown(heap, heapDistSq, 0, count);
+        }
+
+        double delta = (depth & 1) == 0 ? x - xs.get(mid) : y - ys.get(mid);
+        if (delta < 0) {
+            count = kNearestInRange(lo, mid, depth + 1, x, y, k, heap, heapDistSq, count);
+            if (count < k || delta * delta < heapDistSq[0]) {
+                count = kNearestInRange(mid + 1, hi, depth + 1, x, y, k, heap, heapDistSq, count);
+            }
+        } else {
+            count = kNearestInRange(mid + 1, hi, depth + 1, x, y, k, heap, heapDistSq, count);
+            if (count < k || delta * delta < heapDistSq[0]) {
+                count = kNearestInRange(lo, mid, depth + 1, x, y, k, heap, heapDistSq, count);
+            }
+        }
+        return count;
+    }
+
+    private void radiusInRange(int lo, int hi, int depth, double x, double y, double radiusSq, IntList result) {
+        if (lo >= hi) {
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        if (squaredDistance(mid, x, y) <= radiusSq) {
+            result.add(ids.get(mid));
+        }
+        double delta = (depth & 1) == 0 ? x - xs.get(mid) : y - ys.get(mid);
+        if (delta < 0 || delta * delta <= radiusSq) {
+            radiusInRange(lo, mid, depth + 1, x, y, radiusSq, result);
+        }
+        if (delta >= 0 || delta * delta <= radiusSq) {
+            radiusInRange(mid + 1, hi, depth + 1, x, y, radiusSq, result);
+        }
+    }
+
+    private static void siftUp(int[] heap, double[] keys, int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (keys[parent] >= keys[i]) {
+                break;
+            }
+            swapHeap(heap, keys, parent, i);
+            i = parent;
+        }
+    }
+
+    private static void siftDown(int[] heap, double[] keys, int i, int size) {
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && keys[child + 1] > keys[child]) {
+                child++;
+            }
+            if (keys[i] >= keys[child]) {
+                break;
+            }
+            swapHeap(heap, keys, i, child);
+            i = child;
+        }
+    }
+
+    private static void swapHeap(int[] heap, double[] keys, int i, int j) {
+        int node = heap[i];
+        heap[i] = heap[j];
+        heap[j] = node;
+        double key = keys[i];
+        keys[i] = keys[j];
+        keys[j] = key;
+    }
+}
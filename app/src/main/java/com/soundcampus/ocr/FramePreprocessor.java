@@ -0,0 +1,216 @@
+package com.soundcampus.ocr;
+
+import java.util.ArrayDeque;
+
+// Cuts out and shrinks camera frames for ML Kit, and skips frames that show nothing new.
+public class FramePreprocessor {
+    // ML Kit reads Chinese reliably from about 24 px per character.
+    private static final int TARGET_TEXT_HEIGHT = 24;
+    // The smallest line we aim to read fills 1/24 of the region's short side.
+    private static final int SMALLEST_TEXT_FRACTION = 24;
+    // Region kept, as a fraction of the upright picture: most of the width, the middle of the height.
+    private static final float ROI_WIDTH = 0.9f;
+    private static final float ROI_HEIGHT = 0.6f;
+
+    private static final int GRID = 32;
+    private static final int CELL_SAMPLES = 4;
+    // Differences are taken after removing the mean shift, so auto exposure alone is no change.
+    private static final int CELL_THRESHOLD = 12;
+    private static final int CHANGED_CELLS = GRID * GRID / 25;
+    private static final int POOL_SIZE = 2;
+
+    public static class Frame {
+        private final byte[] data;
+        private final int width;
+        private final int height;
+
+        Frame(byte[] data, int width, int height) {
+            this.data = data;
+            this.width = width;
+            this.height = height;
+        }
+
+        // NV21: width * height luminance bytes followed by interleaved chroma fixed at 128.
+        public byte[] getData() {
+            return data;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+    }
+
+    private final ArrayDeque<Frame> pool = new ArrayDeque<>(POOL_SIZE);
+    private int[] grid = new int[GRID * GRID];
+    private int[] reference = new int[GRID * GRID];
+    private boolean hasReference = false;
+    private int referenceWidth;
+    private int referenceHeight;
+    private int[] columnStart = new int[0];
+    private int[] rowSums = new int[0];
+
+    private int frameCount = 0;
+    private int skippedCount = 0;
+    private long totalNanos = 0;
+    private long maxNanos = 0;
+
+    // Returns null when the frame can be skipped; otherwise a pooled frame to hand back through
+    // release() once recognition is done with it. force recognizes even an unchanged frame.
+    public synchronized Frame process(byte[] luminance, int rowStride, int width, int height,
+            int rotationDegrees, boolean force) {
+        long startTime = System.nanoTime();
+        frameCount++;
+        boolean upright = rotationDegrees % 180 == 0;
+        int roiWidth = even(width * (upright ? ROI_WIDTH : ROI_HEIGHT));
+        int roiHeight = even(height * (upright ? ROI_HEIGHT : ROI_WIDTH));
+        int left = even((width - roiWidth) / 2f);
+        int top = even((height - roiHeight) / 2f);
+
+        sampleGrid(luminance, rowStride, left, top, roiWidth, roiHeight);
+        boolean changed = !hasReference || referenceWidth != width || referenceHeight != height
+                || countChangedCells() > CHANGED_CELLS;
+        if (!changed && !force) {
+            skippedCount++;
+            record(startTime);
+            return null;
+        }
+        int[] swap = reference;
+        reference = grid;
+        grid = swap;
+        hasReference = true;
+        referenceWidth = width;
+        referenceHeight = height;
+
+        int shortSide = Math.min(roiWidth, roiHeight);
+        float scale = Math.min(1f, TARGET_TEXT_HEIGHT * SMALLEST_TEXT_FRACTION / (float) shortSide);
+        int outWidth = Math.max(2, even(roiWidth * scale));
+        int outHeight = Math.max(2, even(roiHeight * scale));
+        Frame frame = acquire(outWidth, outHeight);
+        downscale(luminance, rowStride, left, top, roiWidth, roiHeight, frame.data, outWidth, outHeight);
+        record(startTime);
+        return frame;
+    }
+
+    public synchronized void release(Frame frame) {
+        if (frame != null && pool.size() < POOL_SIZE) {
+            pool.push(frame);
+        }
+    }
+
+    // The next frame is recognized whatever it shows, e.g. after the previous recognition failed.
+    public synchronized void reset() {
+        hasReference = false;
+    }
+
+    private Frame acquire(int width, int height) {
+        while (!pool.isEmpty()) {
+            Frame frame = pool.pop();
+            if (frame.width == width && frame.height == height) {
+                return frame;
+            }
+        }
+        byte[] data = new byte[width * height * 3 / 2];
+        // Chroma never changes, so it is filled once per buffer.
+        for (int i = width * height; i < data.length; i++) {
+            data[i] = (byte) 128;
+        }
+        return new Frame(data, width, height);
+    }
+
+    private void sampleGrid(byte[] luminance, int rowStride, int left, int top, int roiWidth, int roiHeight) {
+        for (int gy = 0; gy < GRID; gy++) {
+            for (int gx = 0; gx < GRID; gx++) {
+                int sum = 0;
+                for (int sy = 0; sy < CELL_SAMPLES; sy++) {
+                    int y = top + (int) ((gy * CELL_SAMPLES + sy + 0.5f) * roiHeight / (GRID * CELL_SAMPLES));
+                    int rowOffset = y * rowStride;
+                    for (int sx = 0; sx < CELL_SAMPLES; sx++) {
+                        int x = left + (int) ((gx * CELL_SAMPLES + sx + 0.5f) * roiWidth / (GRID * CELL_SAMPLES));
+                        sum += luminance[rowOffset + x] & 0xff;
+                    }
+                }
+                grid[gy * GRID + gx] = sum / (CELL_SAMPLES * CELL_SAMPLES);
+            }
+        }
+    }
+
+    private int countChangedCells() {
+        int shift = 0;
+        for (int i = 0; i < grid.length; i++) {
+            shift += grid[i] - reference[i];
+        }
+        shift /= grid.length;
+        int changed = 0;
+        for (int i = 0; i < grid.length; i++) {
+            if (Math.abs(grid[i] - reference[i] - shift) > CELL_THRESHOLD) {
+                changed++;
+            }
+        }
+        return changed;
+    }
+
+    // Box filter: every source pixel of the region is read once and lands in exactly one output pixel.
+    private void downscale(byte[] luminance, int rowStride, int left, int top, int roiWidth, int roiHeight,
+            byte[] out, int outWidth, int outHeight) {
+        if (columnStart.length < outWidth + 1) {
+            columnStart = new int[outWidth + 1];
+            rowSums = new int[outWidth];
+        }
+        for (int x = 0; x <= outWidth; x++) {
+            columnStart[x] = left + (int) ((long) x * roiWidth / outWidth);
+        }
+        int sourceRow = top;
+        for (int y = 0; y < outHeight; y++) {
+            int rowEnd = top + (int) ((long) (y + 1) * roiHeight / outHeight);
+            int rows = rowEnd - sourceRow;
+            for (int x = 0; x < outWidth; x++) {
+                rowSums[x] = 0;
+            }
+            for (; sourceRow < rowEnd; sourceRow++) {
+                int rowOffset = sourceRow * rowStride;
+                for (int x = 0; x < outWidth; x++) {
+                    int sum = 0;
+                    for (int sx = columnStart[x]; sx < columnStart[x + 1]; sx++) {
+                        sum += luminance[rowOffset + sx] & 0xff;
+                    }
+                    rowSums[x] += sum;
+                }
+            }
+            int outOffset = y * outWidth;
+            for (int x = 0; x < outWidth; x++) {
+                out[outOffset + x] = (byte) (rowSums[x] / (rows * (columnStart[x + 1] - columnStart[x])));
+            }
+        }
+    }
+
+    private void record(long startTime) {
+        long nanos = System.nanoTime() - startTime;
+        totalNanos += nanos;
+        maxNanos = Math.max(maxNanos, nanos);
+    }
+
+    private static int even(float value) {
+        return ((int) value) & ~1;
+    }
+
+    public synchronized int getFrameCount() {
+        return frameCount;
+    }
+
+    // Frames judged unchanged since the last recognized one.
+    public synchronized int getSkippedCount() {
+        return skippedCount;
+    }
+
+    public synchronized double getMeanMillis() {
+        return frameCount > 0 ? totalNanos / (double) frameCount / 1000000.0 : 0;
+    }
+
+    public synchronized double getMaxMillis() {
+        return maxNanos / 1000000.0;
+    }
+}
@@ -1,8 +1,10 @@
 package com.soundcampus.ocr;
 
 import android.Manifest;
+import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.os.Bundle;
+import android.util.Size;
 import android.util.Log;
 import android.view.View;
 import android.widget.Button;
@@ -13,7 +15,6 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.camera.core.Camera;
 import androidx.camera.core.CameraSelector;
 import androidx.camera.core.ImageAnalysis;
-import androidx.camera.core.ImageProxy;
 import androidx.camera.core.Preview;
 import androidx.camera.lifecycle.ProcessCameraProvider;
 import androidx.camera.view.PreviewView;
@@ -21,7 +22,12 @@ import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.soundcampus.R;
+import com.soundcampus.data.CampusLocation;
+import com.soundcampus.navigation.MapManager;
+import com.soundcampus.navigation.NavigationActivity;
 import com.soundcampus.utils.AccessibilityHelper;
+import java.io.File;
+import java.io.IOException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -29,18 +35,39 @@ import java.util.concurrent.Executors;
 public class OcrActivity extends AppCompatActivity {
     private static final String TAG = "OcrActivity";
     private static final int CAMERA_PERMISSION_CODE = 100;
+    // ML Kit takes a few hundred ms per frame on mid-range phones; reading faster only heats the device.
+    private static final float CONTINUOUS_FPS = 2f;
+    // Enough detail for small door plates; FramePreprocessor crops and scales it back down for ML Kit.
+    private static final Size ANALYSIS_RESOLUTION = new Size(720, 1280);
+    private static final int OCR_CACHE_ENTRIES = 128;
+    // Door plates never change and notice boards rarely within a week.
+    private static final long OCR_CACHE_TTL_MS = 7 * 24 * 60 * 60 * 1000L;
+    // pHash bits two views of the same sign may differ by after exposure changes and small shifts. Only
+    // continuous scans are answered from the cache; a capture the user asks for is always read.
+    private static final int OCR_CACHE_MAX_DISTANCE = 6;
+    private static final String OCR_CACHE_FILE = "ocr_cache.bin";
 
     private PreviewView cameraPreview;
     private TextView statusText;
     private TextView recognizedText;
     private Button captureButton;
     private Button repeatButton;
+    private Button continuousButton;
+    private Button startHereButton;
+    private Button navigateHereButton;
 
     private ProcessCameraProvider cameraProvider;
     private Camera camera;
     private ExecutorService cameraExecutor;
     private TextRecognizer textRecognizer;
+    private OcrResultCache ocrCache;
+    private StreamingAnalyzer streamingAnalyzer;
     private AccessibilityHelper accessibilityHelper;
+    // Camera thread: opening it may import the bundled map.
+    private MapManager mapManager;
+    // Built on the camera thread; null until the search index is ready.
+    private volatile SignResolver signResolver;
+    private CampusLocation signLocation;
 
     private String lastRecognizedText = "";
     private boolean isProcessing = false;
@@ -66,18 +93,57 @@ public class OcrActivity extends AppCompatActivity {
         recognizedText = findViewById(R.id.recognizedText);
         captureButton = findViewById(R.id.captureButton);
         repeatButton = findViewById(R.id.repeatButton);
+        continuousButton = findViewById(R.id.continuousButton);
+        startHereButton = findViewById(R.id.startHereButton);
+        navigateHereButton = findViewById(R.id.navigateHereButton);
     }
 
     private void initializeComponents() {
         cameraExecutor = Executors.newSingleThreadExecutor();
-        textRecognizer = new TextRecognizer();
-        accessibilityHelper = new AccessibilityHelper(this);
+        ocrCache = new OcrResultCache(OCR_CACHE_ENTRIES, OCR_CACHE_TTL_MS, OCR_CACHE_MAX_DISTANCE);
+        cameraExecutor.execute(() -> {
+            try {
+                Log.d(TAG, "Restored " + ocrCache.load(new File(getFilesDir(), OCR_CACHE_FILE)) + " cached signs");
+            } catch (IOException e) {
+                Log.w(TAG, "Could not read OCR cache", e);
+            }
+        });
+        textRecognizer = new TextRecognizer(ocrCache);
+        streamingAnalyzer = new StreamingAnalyzer(textRecognizer, CONTINUOUS_FPS, new StreamingAnalyzer.Listener() {
+            @Override
+            public void onText(String text, boolean requested) {
+                runOnUiThread(() -> {
+                    if (!isDestroyed()) {
+                        handleRecognitionSuccess(text, requested);
+                    }
+                });
+            }
+
+            // Also reached when onDestroy closes the recognizer under a frame still in ML Kit.
+            @Override
+            public void onFailure(Exception e) {
+                runOnUiThread(() -> {
+                    if (!isDestroyed()) {
+                        handleRecognitionFailure(e);
+                    }
+                });
+            }
+        });
+        accessibilityHelper = AccessibilityHelper.getInstance(this);
+        accessibilityHelper.attach(TAG);
+        cameraExecutor.execute(() -> {
+            mapManager = new MapManager(this);
+            signResolver = mapManager.createSignResolver();
+        });
 
         accessibilityHelper.speak(getString(R.string.ocr_title));
         accessibilityHelper.speakQueued(getString(R.string.please_aim_at_text));
 
         captureButton.setOnClickListener(v -> captureAndRecognize());
         repeatButton.setOnClickListener(v -> repeatLastText());
+        continuousButton.setOnClickListener(v -> toggleContinuous());
+        startHereButton.setOnClickListener(v -> navigateFromSign(NavigationActivity.EXTRA_START_ID));
+        navigateHereButton.setOnClickListener(v -> navigateFromSign(NavigationActivity.EXTRA_DESTINATION_ID));
     }
 
     private boolean checkCameraPermission() {
@@ -106,6 +172,9 @@ public class OcrActivity extends AppCompatActivity {
         ListenableFuture<ProcessCameraProvider> cameraProviderFuture = ProcessCameraProvider.getInstance(this);
 
         cameraProviderFuture.addListener(() -> {
+            if (isDestroyed()) {
+                return;
+            }
             try {
                 cameraProvider = cameraProviderFuture.get();
                 bindCameraUseCases();
@@ -125,8 +194,11 @@ public class OcrActivity extends AppCompatActivity {
                 .build();
 
         ImageAnalysis imageAnalysis = new ImageAnalysis.Builder()
+                .setTargetResolution(ANALYSIS_RESOLUTION)
                 .setBackpressureStrategy(ImageAnalysis.STRATEGY_KEEP_ONLY_LATEST)
                 .build();
+        // Bound once; captures and continuous reading just tell the analyzer which frames to keep.
+        imageAnalysis.setAnalyzer(cameraExecutor, streamingAnalyzer);
 
         try {
             cameraProvider.unbindAll();
@@ -149,55 +221,35 @@ public class OcrActivity extends AppCompatActivity {
         isProcessing = true;
         statusText.setText(R.string.processing);
         accessibilityHelper.speak(getString(R.string.processing));
+        streamingAnalyzer.requestCapture();
+    }
 
-        ImageAnalysis imageAnalysis = new ImageAnalysis.Builder()
-                .setBackpressureStrategy(ImageAnalysis.STRATEGY_KEEP_ONLY_LATEST)
-                .build();
-
-        imageAnalysis.setAnalyzer(cameraExecutor, new ImageAnalysis.Analyzer() {
-            @Override
-            public void analyze(@NonNull ImageProxy image) {
-                textRecognizer.recognizeText(image, new TextRecognizer.RecognitionCallback() {
-                    @Override
-                    public void onSuccess(String text) {
-                        runOnUiThread(() -> handleRecognitionSuccess(text));
-                    }
-
-                    @Override
-                    public void onFailure(Exception e) {
-                        runOnUiThread(() -> handleRecognitionFailure(e));
-                    }
-                });
-                
-                imageAnalysis.clearAnalyzer();
-            }
-        });
-
-        try {
-            cameraProvider.unbindAll();
-            
-            Preview preview = new Preview.Builder().build();
-            preview.setSurfaceProvider(cameraPreview.getSurfaceProvider());
-            
-            CameraSelector cameraSelector = new CameraSelector.Builder()
-                    .requireLensFacing(CameraSelector.LENS_FACING_BACK)
-                    .build();
-
-            camera = cameraProvider.bindToLifecycle(
-                    this,
-                    cameraSelector,
-                    preview,
-                    imageAnalysis
-            );
-        } catch (Exception e) {
-            Log.e(TAG, "Error binding camera for capture", e);
-            handleRecognitionFailure(e);
+    private void toggleContinuous() {
+        boolean continuous = !streamingAnalyzer.isContinuous();
+        streamingAnalyzer.setContinuous(continuous);
+        continuousButton.setText(continuous ? R.string.stop_continuous_ocr : R.string.start_continuous_ocr);
+        statusText.setText(continuous ? R.string.continuous_ocr_on : R.string.please_aim_at_text);
+        accessibilityHelper.speak(getString(continuous ? R.string.continuous_ocr_on : R.string.continuous_ocr_off));
+        if (!continuous) {
+            Log.d(TAG, "Continuous OCR: frames=" + streamingAnalyzer.getFrameCount()
+                    + " inferences=" + streamingAnalyzer.getInferenceCount()
+                    + " throttled=" + streamingAnalyzer.getThrottledCount()
+                    + " dropped=" + streamingAnalyzer.getDroppedCount()
+                    + " unchanged=" + streamingAnalyzer.getUnchangedCount()
+                    + " duplicates=" + streamingAnalyzer.getDuplicateCount()
+                    + " meanMs=" + streamingAnalyzer.getMeanLatencyMillis()
+                    + " maxMs=" + streamingAnalyzer.getMaxLatencyMillis()
+                    + " preprocessMs=" + textRecognizer.getPreprocessor().getMeanMillis()
+                    + " cacheHitRate=" + ocrCache.getHitRate());
         }
     }
 
-    private void handleRecognitionSuccess(String text) {
-        isProcessing = false;
-        
+    // Continuous results only arrive when the scene text changed; requested ones always do.
+    private void handleRecognitionSuccess(String text, boolean requested) {
+        if (requested) {
+            isProcessing = false;
+        }
+
         if (text == null || text.isEmpty()) {
             statusText.setText(R.string.no_text_found);
             recognizedText.setText("");
@@ -211,6 +263,32 @@ public class OcrActivity extends AppCompatActivity {
             
             accessibilityHelper.speak(getString(R.string.text_recognized) + ": " + text);
         }
+        announceSignLocation(text);
+    }
+
+    private void announceSignLocation(String text) {
+        SignResolver resolver = signResolver;
+        SignResolver.Match match = resolver != null ? resolver.resolve(text, Double.NaN, Double.NaN) : null;
+        signLocation = match != null ? match.getLocation() : null;
+        // A signpost names somewhere else, so it can only be a destination.
+        startHereButton.setVisibility(match != null && !match.isDirectional() ? View.VISIBLE : View.GONE);
+        navigateHereButton.setVisibility(match != null ? View.VISIBLE : View.GONE);
+        if (match == null) {
+            return;
+        }
+        Log.d(TAG, "Sign \"" + match.getLine() + "\" -> " + signLocation.getId() + " (" + match.getEdits()
+                + " edits) in " + resolver.getLastResolveNanos() / 1000 + "us");
+        accessibilityHelper.speakQueued(getString(
+                match.isDirectional() ? R.string.sign_direction : R.string.sign_location, signLocation.getName()));
+    }
+
+    private void navigateFromSign(String extra) {
+        if (signLocation == null) {
+            return;
+        }
+        Intent intent = new Intent(this, NavigationActivity.class);
+        intent.putExtra(extra, signLocation.getId());
+        startActivity(intent);
     }
 
     private void handleRecognitionFailure(Exception e) {
@@ -230,17 +308,34 @@ public class OcrActivity extends AppCompatActivity {
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        if (cameraExecutor != null) {
-            cameraExecutor.shutdown();
-        }
-        if (textRecognizer != null) {
-            textRecognizer.close();
-        }
-        if (accessibilityHelper != null) {
-            accessibilityHelper.shutdown();
-        }
+        // No new frames reach the analyzer once the camera is unbound.
         if (cameraProvider != null) {
             cameraProvider.unbindAll();
         }
+        if (cameraExecutor != null) {
+            if (ocrCache != null) {
+                final File cacheFile = new File(getFilesDir(), OCR_CACHE_FILE);
+                cameraExecutor.execute(() -> {
+                    try {
+                        ocrCache.save(cacheFile);
+                        Log.d(TAG, "OCR cache: " + ocrCache.getHitCount() + "/" + ocrCache.getLookupCount()
+                                + " hits, " + ocrCache.size() + " entries");
+                    } catch (IOException e) {
+                        Log.w(TAG, "Could not save OCR cache", e);
+                    }
+                });
+            }
+            // After whatever is still queued, so no frame being analyzed reaches a closed recognizer and
+            // nothing reads a closed database.
+            cameraExecutor.execute(() -> {
+                if (textRecognizer != null) {
+                    textRecognizer.close();
+                }
+                if (mapManager != null) {
+                    mapManager.close();
+                }
+            });
+            cameraExecutor.shutdown();
+        }
     }
 }
@@ -0,0 +1,273 @@
+package com.soundcampus.ocr;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Recognized text by perceptual hash of the frame, so the same sign is not sent to ML Kit twice.
+public class OcrResultCache {
+    private static final int FILE_VERSION = 1;
+    private static final int SAMPLE_SIDE = 32;
+    private static final int SAMPLES_PER_BLOCK = 4;
+    private static final int DCT_SIDE = 8;
+    // Hit count (lookups after the first recognition) a sign needs to be saved to the file.
+    private static final int PERSIST_MIN_HITS = 1;
+    // Below this standard deviation (grey levels) the frame is a wall or the sky and its hash is noise.
+    private static final float MIN_CONTRAST = 6f;
+
+    // Returned by hash() for frames too flat to identify; never stored or looked up. A real hash has
+    // about half its bits set, so it is never 0.
+    public static final long NO_HASH = 0;
+
+    private static class CachedText {
+        final long hash;
+        final String text;
+        final long createdMillis;
+        int hits;
+
+        CachedText(long hash, String text, long createdMillis, int hits) {
+            this.hash = hash;
+            this.text = text;
+            this.createdMillis = createdMillis;
+            this.hits = hits;
+        }
+    }
+
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final int maxDistance;
+    private final LinkedHashMap<Long, CachedText> entries;
+
+    private final float[] samples = new float[SAMPLE_SIDE * SAMPLE_SIDE];
+    private final float[] rows = new float[SAMPLE_SIDE * DCT_SIDE];
+    private final float[] coefficients = new float[DCT_SIDE * DCT_SIDE];
+    private final float[] sorted = new float[DCT_SIDE * DCT_SIDE - 1];
+    private static final float[] COSINES = new float[DCT_SIDE * SAMPLE_SIDE];
+
+    static {
+        for (int k = 0; k < DCT_SIDE; k++) {
+            for (int n = 0; n < SAMPLE_SIDE; n++) {
+                COSINES[k * SAMPLE_SIDE + n] = (float) Math.cos(Math.PI * (n + 0.5) * k / SAMPLE_SIDE);
+            }
+        }
+    }
+
+    private int lookups = 0;
+    private int hits = 0;
+    private int expired = 0;
+    private int evictions = 0;
+
+    public OcrResultCache(int maxEntries, long ttlMillis, int maxDistance) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.maxDistance = maxDistance;
+        this.entries = new LinkedHashMap<Long, CachedText>(maxEntries * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, CachedText> eldest) {
+                if (size() > OcrResultCache.this.maxEntries) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    // pHash: the frame is averaged down to 32x32, the 8x8 lowest DCT frequencies are kept, and each
+    // bit says whether a coefficient is above their median (DC left out). Exposure and sensor noise
+    // barely move it; a different sign moves many bits. Layouts that differ only in small print, such as
+    // two door plates of the same design, can still land within the tolerance.
+    public synchronized long hash(byte[] luminance, int width, int height) {
+        float total = 0;
+        float squares = 0;
+        for (int by = 0; by < SAMPLE_SIDE; by++) {
+            for (int bx = 0; bx < SAMPLE_SIDE; bx++) {
+                int sum = 0;
+                for (int sy = 0; sy < SAMPLES_PER_BLOCK; sy++) {
+                    int y = (by * SAMPLES_PER_BLOCK + sy) * height / (SAMPLE_SIDE * SAMPLES_PER_BLOCK);
+                    for (int sx = 0; sx < SAMPLES_PER_BLOCK; sx++) {
+                        int x = (bx * SAMPLES_PER_BLOCK + sx) * width / (SAMPLE_SIDE * SAMPLES_PER_BLOCK);
+                        sum += luminance[y * width + x] & 0xff;
+                    }
+                }
+                samples[by * SAMPLE_SIDE + bx] = sum;
+                total += sum;
+                squares += (float) sum * sum;
+            }
+        }
+        int count = SAMPLE_SIDE * SAMPLE_SIDE;
+        float mean = total / count;
+        float contrast = MIN_CONTRAST * SAMPLES_PER_BLOCK * SAMPLES_PER_BLOCK;
+        if (squares / count - mean * mean < contrast * contrast) {
+            return NO_HASH;
+        }
+        // Separable DCT-II, only the low frequencies: rows first, then columns.
+        for (int y = 0; y < SAMPLE_SIDE; y++) {
+            for (int k = 0; k < DCT_SIDE; k++) {
+                float sum = 0;
+                for (int n = 0; n < SAMPLE_SIDE; n++) {
+                    sum += samples[y * SAMPLE_SIDE + n] * COSINES[k * SAMPLE_SIDE + n];
+                }
+                rows[y * DCT_SIDE + k] = sum;
+            }
+        }
+        for (int ky = 0; ky < DCT_SIDE; ky++) {
+            for (int kx = 0; kx < DCT_SIDE; kx++) {
+                float sum = 0;
+                for (int n = 0; n < SAMPLE_SIDE; n++) {
+                    sum += rows[n * DCT_SIDE + kx] * COSINES[ky * SAMPLE_SIDE + n];
+                }
+                coefficients[ky * DCT_SIDE + kx] = sum;
+            }
+        }
+        System.arraycopy(coefficients, 1, sorted, 0, sorted.length);
+        Arrays.sort(sorted);
+        float median = sorted[sorted.length / 2];
+        long hash = 0;
+        for (int i = 0; i < coefficients.length; i++) {
+            if (coefficients[i] > median) {
+                hash |= 1L << i;
+            }
+        }
+        return hash;
+    }
+
+    // Text of the closest entry within maxDistance bits, or null.
+    public synchronized String get(long hash) {
+        if (hash == NO_HASH) {
+            return null;
+        }
+        lookups++;
+        long now = System.currentTimeMillis();
+        CachedText best = null;
+        int bestDistance = maxDistance + 1;
+        for (Iterator<CachedText> it = entries.values().iterator(); it.hasNext(); ) {
+            CachedText entry = it.next();
+            if (now - entry.createdMillis > ttlMillis) {
+                it.remove();
+                expired++;
+                continue;
+            }
+            int distance = Long.bitCount(entry.hash ^ hash);
+            if (distance < bestDistance) {
+                best = entry;
+                bestDistance = distance;
+            }
+        }
+        if (best == null) {
+            return null;
+        }
+        // get() moves it to the most recently used end.
+        entries.get(best.hash);
+        best.hits++;
+        hits++;
+        return best.text;
+    }
+
+    // Nearby entries with other text go, so a lookup can no longer answer this view with them.
+    public synchronized void put(long hash, String text) {
+        if (hash == NO_HASH) {
+            return;
+        }
+        for (Iterator<CachedText> it = entries.values().iterator(); it.hasNext(); ) {
+            CachedText entry = it.next();
+            if (Long.bitCount(entry.hash ^ hash) <= maxDistance && !entry.text.equals(text)) {
+                it.remove();
+            }
+        }
+        entries.put(hash, new CachedText(hash, text, System.currentTimeMillis(), 0));
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    // Writes the entries seen more than once, oldest use first so load() restores the LRU order.
+    public void save(File file) throws IOException {
+        List<CachedText> kept = new ArrayList<>();
+        synchronized (this) {
+            for (CachedText entry : entries.values()) {
+                if (entry.hits >= PERSIST_MIN_HITS) {
+                    kept.add(entry);
+                }
+            }
+        }
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(FILE_VERSION);
+            out.writeInt(kept.size());
+            for (CachedText entry : kept) {
+                out.writeLong(entry.hash);
+                out.writeLong(entry.createdMillis);
+                out.writeInt(entry.hits);
+                out.writeUTF(entry.text);
+            }
+        }
+        if (!temp.renameTo(file)) {
+            throw new IOException("Could not replace " + file);
+        }
+    }
+
+    // Returns the number of entries restored; a missing or foreign file restores nothing.
+    public int load(File file) throws IOException {
+        if (!file.exists()) {
+            return 0;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != FILE_VERSION) {
+                return 0;
+            }
+            int count = in.readInt();
+            long now = System.currentTimeMillis();
+            int restored = 0;
+            synchronized (this) {
+                for (int i = 0; i < count; i++) {
+                    long hash = in.readLong();
+                    long createdMillis = in.readLong();
+                    int entryHits = in.readInt();
+                    CachedText entry = new CachedText(hash, in.readUTF(), createdMillis, entryHits);
+                    if (now - entry.createdMillis <= ttlMillis) {
+                        entries.put(entry.hash, entry);
+                        restored++;
+                    }
+                }
+            }
+            return restored;
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized int getLookupCount() {
+        return lookups;
+    }
+
+    public synchronized int getHitCount() {
+        return hits;
+    }
+
+    public synchronized double getHitRate() {
+        return lookups > 0 ? hits / (double) lookups : 0;
+    }
+
+    public synchronized int getExpiredCount() {
+        return expired;
+    }
+
+    public synchronized int getEvictionCount() {
+        return evictions;
+    }
+}
@@ -0,0 +1,65 @@
+package com.soundcampus.ocr;
+
+import com.soundcampus.navigation.SearchIndex;
+
+// Decides when a continuous scan has a new sign in view worth speaking.
+public class SceneTracker {
+    // A new reading has to repeat before it replaces the scene, so one garbled frame stays quiet.
+    private static final int STABLE_READINGS = 2;
+
+    private int sceneHash = 0;
+    private int pendingHash = 0;
+    private int pendingCount = 0;
+    private String pendingText;
+    private int duplicateCount = 0;
+
+    // True when text is a new, stable scene.
+    public synchronized boolean onReading(String text) {
+        String normalized = SearchIndex.normalize(text);
+        // An empty frame (camera moving) does not clear the scene, so coming back to it stays quiet.
+        if (normalized.isEmpty()) {
+            pendingCount = 0;
+            return false;
+        }
+        int hash = normalized.hashCode();
+        if (hash == sceneHash) {
+            duplicateCount++;
+            pendingCount = 0;
+            return false;
+        }
+        if (hash != pendingHash) {
+            pendingHash = hash;
+            pendingCount = 0;
+        }
+        pendingText = text;
+        return confirm();
+    }
+
+    // A frame FramePreprocessor found unchanged since the last reading, so it would read the same.
+    // Returns the pending text when this makes it a stable scene, otherwise null.
+    public synchronized String onUnchangedFrame() {
+        if (pendingCount == 0) {
+            return null;
+        }
+        return confirm() ? pendingText : null;
+    }
+
+    // The next stable reading is reported even if it was the last scene.
+    public synchronized void reset() {
+        sceneHash = 0;
+        pendingCount = 0;
+    }
+
+    public synchronized int getDuplicateCount() {
+        return duplicateCount;
+    }
+
+    private boolean confirm() {
+        if (++pendingCount < STABLE_READINGS) {
+            return false;
+        }
+        sceneHash = pendingHash;
+        pendingCount = 0;
+        return true;
+    }
+}
@@ -0,0 +1,148 @@
+package com.soundcampus.ocr;
+
+import com.soundcampus.data.CampusLocation;
+import com.soundcampus.navigation.SearchIndex;
+import com.soundcampus.utils.LocationHelper;
+import java.util.List;
+import java.util.regex.Pattern;
+
+// Turns recognized sign text into the campus location it names. Runs on every recognized frame,
+// so repeated text is answered from the previous result.
+public class SignResolver {
+    private static final int CANDIDATES_PER_LINE = 8;
+    // Arrows or a distance mean the sign points somewhere else rather than marking where it hangs.
+    private static final Pattern DIRECTIONAL = Pattern.compile(
+            "[←→↑↓↖↗↘↙➔➜➝➞⇐⇒⇦⇨]|\\d+\\s*(米|公里|m\\b|km\\b|M\\b)|前方|方向|往前|左转|右转|直行");
+
+    public static class Match {
+        private final CampusLocation location;
+        private final String line;
+        private final int edits;
+        private final boolean directional;
+
+        Match(CampusLocation location, String line, int edits, boolean directional) {
+            this.location = location;
+            this.line = line;
+            this.edits = edits;
+            this.directional = directional;
+        }
+
+        public CampusLocation getLocation() {
+            return location;
+        }
+
+        public String getLine() {
+            return line;
+        }
+
+        public int getEdits() {
+            return edits;
+        }
+
+        // True for signposts; the user is near the sign, not at the location it names.
+        public boolean isDirectional() {
+            return directional;
+        }
+    }
+
+    private final SearchIndex index;
+    private final List<CampusLocation> locations;
+    private final int[] candidates = new int[CANDIDATES_PER_LINE];
+    private final int[] candidateEdits = new int[CANDIDATES_PER_LINE];
+
+    private String lastText;
+    private Match lastMatch;
+    private int resolveCount = 0;
+    private int cacheHits = 0;
+    private long lastResolveNanos = 0;
+    private long maxResolveNanos = 0;
+    private long totalResolveNanos = 0;
+
+    public SignResolver(SearchIndex index, List<CampusLocation> locations) {
+        this.index = index;
+        this.locations = locations;
+    }
+
+    // latitude/longitude, when known, pick between equally good matches such as two signs for 食堂.
+    public synchronized Match resolve(String text, double latitude, double longitude) {
+        resolveCount++;
+        if (text != null && text.equals(lastText)) {
+            cacheHits++;
+            return lastMatch;
+        }
+        long startTime = System.nanoTime();
+        Match match = match(text, latitude, longitude);
+        lastResolveNanos = System.nanoTime() - startTime;
+        maxResolveNanos = Math.max(maxResolveNanos, lastResolveNanos);
+        totalResolveNanos += lastResolveNanos;
+        lastText = text;
+        lastMatch = match;
+        return match;
+    }
+
+    public synchronized Match match(String text, double latitude, double longitude) {
+        if (text == null || text.isEmpty()) {
+            return null;
+        }
+        Match best = null;
+        int bestMatched = 0;
+        double bestDistance = Double.POSITIVE_INFINITY;
+        // Two different names fitting equally well (第—教学楼 could be 第一 or 第二) is a guess, not a match.
+        boolean ambiguous = false;
+        String[] lines = text.split("\n");
+        // A name can wrap across lines on narrow door plates, so the joined text gets a turn as well.
+        for (int l = 0; l <= lines.length; l++) {
+            String line = l < lines.length ? lines[l].trim() : text.replace('\n', ' ');
+            if (line.isEmpty() || (l == lines.length && (lines.length == 1 || best != null))) {
+                continue;
+            }
+            int found = index.findNamesIn(line, candidates, candidateEdits);
+            for (int i = 0; i < found; i++) {
+                CampusLocation location = locations.get(candidates[i]);
+                int matched = SearchIndex.normalize(location.getName()).length() - candidateEdits[i];
+                double distance = Double.isNaN(latitude) || Double.isNaN(longitude)
+                        ? 0
+                        : LocationHelper.calculateDistance(latitude, longitude,
+                                location.getLatitude(), location.getLongitude());
+                if (matched < bestMatched) {
+                    continue;
+                }
+                if (matched == bestMatched) {
+                    if (!location.getName().equals(best.getLocation().getName())) {
+                        ambiguous = true;
+                    }
+                    if (distance >= bestDistance) {
+                        continue;
+                    }
+                } else {
+                    ambiguous = false;
+                }
+                best = new Match(location, line, candidateEdits[i], DIRECTIONAL.matcher(line).find());
+                bestMatched = matched;
+                bestDistance = distance;
+            }
+        }
+        return ambiguous ? null : best;
+    }
+
+    public synchronized int getResolveCount() {
+        return resolveCount;
+    }
+
+    public synchronized int getCacheHits() {
+        return cacheHits;
+    }
+
+    public synchronized long getLastResolveNanos() {
+        return lastResolveNanos;
+    }
+
+    public synchronized long getMaxResolveNanos() {
+        return maxResolveNanos;
+    }
+
+    public synchronized double getMeanResolveMillis() {
+        int computed = resolveCount - cacheHits;
+        return computed > 0 ? totalResolveNanos / (double) computed / 1000000.0 : 0;
+    }
+}
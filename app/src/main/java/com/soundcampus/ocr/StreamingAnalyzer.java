@@ -0,0 +1,191 @@
+package com.soundcampus.ocr;
+
+import android.util.Log;
+import androidx.annotation.NonNull;
+import androidx.camera.core.ImageAnalysis;
+import androidx.camera.core.ImageProxy;
+
+// The one analyzer bound to the camera for the lifetime of OcrActivity. A capture request reads the
+// next frame; continuous mode reads at most targetFps frames a second and reports text only once it
+// differs from what was last reported. Everything else is closed straight away.
+public class StreamingAnalyzer implements ImageAnalysis.Analyzer {
+    private static final String TAG = "StreamingAnalyzer";
+    private static final int STATS_LOG_INTERVAL = 50;
+
+    public interface Listener {
+        // requested is true for the answer to requestCapture(), which is reported even when unchanged.
+        void onText(String text, boolean requested);
+        void onFailure(Exception e);
+    }
+
+    private final TextRecognizer recognizer;
+    private final Listener listener;
+    private final long minIntervalNanos;
+    private final SceneTracker scene = new SceneTracker();
+
+    private volatile boolean continuous = false;
+    private volatile boolean captureRequested = false;
+    private boolean inFlight = false;
+    private long lastInferenceNanos = 0;
+    private long lastFrameTimestamp = 0;
+    private long frameIntervalNanos = Long.MAX_VALUE;
+
+    private int frameCount = 0;
+    private int inferenceCount = 0;
+    private int throttledCount = 0;
+    private int droppedCount = 0;
+    private int unchangedCount = 0;
+    private long lastLatencyNanos = 0;
+    private long maxLatencyNanos = 0;
+    private long totalLatencyNanos = 0;
+
+    public StreamingAnalyzer(TextRecognizer recognizer, float targetFps, Listener listener) {
+        this.recognizer = recognizer;
+        this.listener = listener;
+        this.minIntervalNanos = (long) (1000000000L / targetFps);
+    }
+
+    public void setContinuous(boolean continuous) {
+        this.continuous = continuous;
+        if (continuous) {
+            // Starting a scan re-reads whatever is in view, even if it was spoken before.
+            scene.reset();
+            recognizer.getPreprocessor().reset();
+        }
+    }
+
+    public boolean isContinuous() {
+        return continuous;
+    }
+
+    public void requestCapture() {
+        captureRequested = true;
+    }
+
+    @Override
+    public void analyze(@NonNull ImageProxy image) {
+        final boolean requested;
+        final long startNanos = System.nanoTime();
+        synchronized (this) {
+            frameCount++;
+            countDroppedFrames(image.getImageInfo().getTimestamp());
+            requested = captureRequested;
+            if (inFlight) {
+                droppedCount++;
+                image.close();
+                return;
+            }
+            if (!requested && (!continuous || startNanos - lastInferenceNanos < minIntervalNanos)) {
+                throttledCount++;
+                image.close();
+                return;
+            }
+            captureRequested = false;
+            inFlight = true;
+            lastInferenceNanos = startNanos;
+        }
+
+        boolean recognizing = false;
+        try {
+            recognizing = recognizer.recognizeFrame(image, requested, new TextRecognizer.RecognitionCallback() {
+                @Override
+                public void onSuccess(String text) {
+                    boolean report = finishInference(startNanos, text) || requested;
+                    if (report) {
+                        listener.onText(text, requested);
+                    }
+                }
+
+                @Override
+                public void onFailure(Exception e) {
+                    finishInference(startNanos, null);
+                    if (requested) {
+                        listener.onFailure(e);
+                    }
+                }
+            });
+            if (!recognizing) {
+                synchronized (this) {
+                    unchangedCount++;
+                }
+                // The frame still shows what was last read, so it counts as reading it again.
+                String stable = scene.onUnchangedFrame();
+                if (stable != null) {
+                    listener.onText(stable, false);
+                }
+            }
+        } finally {
+            // Also when recognizeFrame throws, or no frame would ever be read again.
+            if (!recognizing) {
+                synchronized (this) {
+                    inFlight = false;
+                }
+            }
+        }
+    }
+
+    // KEEP_ONLY_LATEST discards frames silently while one is held, so they show up as gaps in the
+    // sensor timestamps. The shortest gap seen is taken as the camera's frame interval.
+    private void countDroppedFrames(long timestamp) {
+        if (lastFrameTimestamp > 0 && timestamp > lastFrameTimestamp) {
+            long gap = timestamp - lastFrameTimestamp;
+            frameIntervalNanos = Math.min(frameIntervalNanos, gap);
+            droppedCount += Math.max(0, Math.round(gap / (double) frameIntervalNanos) - 1);
+        }
+        lastFrameTimestamp = timestamp;
+    }
+
+    // True when text is a new, stable scene.
+    private synchronized boolean finishInference(long startNanos, String text) {
+        inFlight = false;
+        inferenceCount++;
+        lastLatencyNanos = System.nanoTime() - startNanos;
+        maxLatencyNanos = Math.max(maxLatencyNanos, lastLatencyNanos);
+        totalLatencyNanos += lastLatencyNanos;
+        if (inferenceCount % STATS_LOG_INTERVAL == 0) {
+            Log.d(TAG, "frames=" + frameCount + " inferences=" + inferenceCount + " throttled=" + throttledCount
+                    + " dropped=" + droppedCount + " unchanged=" + unchangedCount + " duplicates=" + scene.getDuplicateCount()
+                    + " meanMs=" + getMeanLatencyMillis() + " maxMs=" + maxLatencyNanos / 1000000);
+        }
+        return text != null && scene.onReading(text);
+    }
+
+    public synchronized int getFrameCount() {
+        return frameCount;
+    }
+
+    public synchronized int getInferenceCount() {
+        return inferenceCount;
+    }
+
+    // Frames skipped to hold the target rate, or because neither a capture nor a scan wanted them.
+    public synchronized int getThrottledCount() {
+        return throttledCount;
+    }
+
+    // Camera frames never delivered because the previous one was still being recognized.
+    public synchronized int getDroppedCount() {
+        return droppedCount;
+    }
+
+    // Frames FramePreprocessor found unchanged since the last recognition, so ML Kit never ran.
+    public synchronized int getUnchangedCount() {
+        return unchangedCount;
+    }
+
+    public int getDuplicateCount() {
+        return scene.getDuplicateCount();
+    }
+
+    public synchronized long getLastLatencyMillis() {
+        return lastLatencyNanos / 1000000;
+    }
+
+    public synchronized long getMaxLatencyMillis() {
+        return maxLatencyNanos / 1000000;
+    }
+
+    public synchronized double getMeanLatencyMillis() {
+        return inferenceCount > 0 ? totalLatencyNanos / (double) inferenceCount / 1000000.0 : 0;
+    }
+}
@@ -1,5 +1,6 @@
 package com.soundcampus.ocr;
 
+import android.graphics.ImageFormat;
 import android.media.Image;
 import android.util.Log;
 import androidx.annotation.NonNull;
@@ -8,10 +9,14 @@ import com.google.mlkit.vision.common.InputImage;
 import com.google.mlkit.vision.text.Text;
 import com.google.mlkit.vision.text.TextRecognition;
 import com.google.mlkit.vision.text.chinese.ChineseTextRecognizerOptions;
+import java.nio.ByteBuffer;
 
 public class TextRecognizer {
     private static final String TAG = "TextRecognizer";
     private com.google.mlkit.vision.text.TextRecognizer recognizer;
+    private final FramePreprocessor preprocessor = new FramePreprocessor();
+    private byte[] luminance = new byte[0];
+    private final OcrResultCache cache;
 
     public interface RecognitionCallback {
         void onSuccess(String text);
@@ -19,6 +24,12 @@ public class TextRecognizer {
     }
 
     public TextRecognizer() {
+        this(null);
+    }
+
+    // cache, when given, answers frames that look like an earlier one without running ML Kit.
+    public TextRecognizer(OcrResultCache cache) {
+        this.cache = cache;
         recognizer = TextRecognition.getClient(new ChineseTextRecognizerOptions.Builder().build());
     }
 
@@ -47,6 +58,77 @@ public class TextRecognizer {
                 });
     }
 
+    // Copies the luminance plane out, closes the camera image straight away and recognizes the
+    // pre-processed frame. Returns false, without calling back, when the frame shows nothing new
+    // since the last one recognized; force recognizes it anyway, bypassing the cache.
+    public boolean recognizeFrame(@NonNull ImageProxy imageProxy, boolean force, RecognitionCallback callback) {
+        if (imageProxy.getFormat() != ImageFormat.YUV_420_888) {
+            recognizeText(imageProxy, callback);
+            return true;
+        }
+        int rowStride;
+        int width;
+        int height;
+        int rotation;
+        try {
+            ImageProxy.PlaneProxy plane = imageProxy.getPlanes()[0];
+            ByteBuffer buffer = plane.getBuffer();
+            buffer.rewind();
+            int size = buffer.remaining();
+            if (luminance.length < size) {
+                luminance = new byte[size];
+            }
+            buffer.get(luminance, 0, size);
+            // Planes are unusable once the image is closed.
+            rowStride = plane.getRowStride();
+            width = imageProxy.getWidth();
+            height = imageProxy.getHeight();
+            rotation = imageProxy.getImageInfo().getRotationDegrees();
+        } finally {
+            imageProxy.close();
+        }
+
+        final FramePreprocessor.Frame frame =
+                preprocessor.process(luminance, rowStride, width, height, rotation, force);
+        if (frame == null) {
+            return false;
+        }
+        final long hash = cache != null
+                ? cache.hash(frame.getData(), frame.getWidth(), frame.getHeight())
+                : OcrResultCache.NO_HASH;
+        // A requested capture always reads the frame: two door plates of the same design can hash within
+        // the tolerance, and the answer to "read this" must be the sign in view. Its result replaces the entry.
+        String cached = cache != null && !force ? cache.get(hash) : null;
+        if (cached != null) {
+            preprocessor.release(frame);
+            callback.onSuccess(cached);
+            return true;
+        }
+        InputImage image = InputImage.fromByteArray(frame.getData(), frame.getWidth(), frame.getHeight(),
+                rotation, InputImage.IMAGE_FORMAT_NV21);
+        recognizer.process(image)
+                .addOnSuccessListener(visionText -> {
+                    preprocessor.release(frame);
+                    String text = extractText(visionText);
+                    // An empty read is as likely blur as a blank wall, so it is not remembered.
+                    if (cache != null && !text.isEmpty()) {
+                        cache.put(hash, text);
+                    }
+                    callback.onSuccess(text);
+                })
+                .addOnFailureListener(e -> {
+                    Log.e(TAG, "Text recognition failed", e);
+                    preprocessor.release(frame);
+                    preprocessor.reset();
+                    callback.onFailure(e);
+                });
+        return true;
+    }
+
+    public FramePreprocessor getPreprocessor() {
+        return preprocessor;
+    }
+
     private String extractText(Text visionText) {
         StringBuilder result = new StringBuilder();
         
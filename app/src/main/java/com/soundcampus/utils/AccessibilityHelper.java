@@ -1,19 +1,110 @@
 package com.soundcampus.utils;
 
 import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.speech.tts.TextToSpeech;
 import android.speech.tts.UtteranceProgressListener;
 import android.util.Log;
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
+// One speech engine for the whole process: created when the application starts, so its start-up runs
+// while the first screen inflates, and shared by every activity instead of each paying for its own.
+// Activities get it with getInstance() and attach() in onCreate; they do not shut it down.
 public class AccessibilityHelper {
     private static final String TAG = "AccessibilityHelper";
+
+    public static final String CLIPS_SCREENS = "screens";
+    public static final String CLIPS_ROUTE = "route";
+
+    public static final int PRIORITY_SAFETY = UtteranceScheduler.PRIORITY_SAFETY;
+    public static final int PRIORITY_MANEUVER = UtteranceScheduler.PRIORITY_MANEUVER;
+    public static final int PRIORITY_STATUS = UtteranceScheduler.PRIORITY_STATUS;
+    public static final int PRIORITY_INFO = UtteranceScheduler.PRIORITY_INFO;
+
+    private static final float SPEECH_RATE = 0.9f;
+    private static final long CLIP_CACHE_BYTES = 16L * 1024 * 1024;
+
+    private static AccessibilityHelper instance;
+
     private TextToSpeech tts;
+    private SpeechClipPlayer clipPlayer;
+    // Prepared phrases that had to be synthesized live: utterance id -> when speak() was called.
+    private final Map<String, Long> liveSpeakTimes = new HashMap<>();
+    // The screen last attached and when, until its first speech is heard.
+    private String attachedScreen;
+    private long attachedMillis = -1;
+    private long lastFirstSpeechMillis = -1;
+    private long maxFirstSpeechMillis = 0;
+    private long totalFirstSpeechMillis = 0;
+    private int firstSpeechCount = 0;
     private boolean isInitialized = false;
     private Context context;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final UtteranceScheduler scheduler = new UtteranceScheduler(new UtteranceScheduler.Output() {
+        @Override
+        public void speak(String text, String utteranceId) {
+            if (clipPlayer.play(text, utteranceId, clipListener)) {
+                return;
+            }
+            if (clipPlayer.isExpected(text)) {
+                synchronized (liveSpeakTimes) {
+                    liveSpeakTimes.put(utteranceId, SystemClock.elapsedRealtime());
+                }
+            }
+            // The scheduler hands over one utterance at a time, so flushing never drops anything of ours.
+            if (tts.speak(text, TextToSpeech.QUEUE_FLUSH, null, utteranceId) == TextToSpeech.ERROR) {
+                // No callback follows a rejected request.
+                Log.e(TAG, "Speech rejected: " + utteranceId);
+                scheduler.onDone(utteranceId);
+            }
+        }
+
+        @Override
+        public void stop() {
+            clipPlayer.stop();
+            tts.stop();
+        }
+
+        @Override
+        public void schedule(Runnable task, long delayMillis) {
+            handler.postDelayed(task, delayMillis);
+        }
 
-    public AccessibilityHelper(Context context) {
+        @Override
+        public long now() {
+            return SystemClock.elapsedRealtime();
+        }
+    });
+
+    private final SpeechClipPlayer.Listener clipListener = new SpeechClipPlayer.Listener() {
+        @Override
+        public void onClipStart(String utteranceId) {
+            onSpeechStart(utteranceId);
+        }
+
+        @Override
+        public void onClipDone(String utteranceId) {
+            scheduler.onDone(utteranceId);
+        }
+    };
+
+    public static synchronized AccessibilityHelper getInstance(Context context) {
+        if (instance == null) {
+            instance = new AccessibilityHelper(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private AccessibilityHelper(Context context) {
         this.context = context;
+        clipPlayer = new SpeechClipPlayer(context,
+                new SpeechClipCache(new File(context.getCacheDir(), "speech_clips"), CLIP_CACHE_BYTES), SPEECH_RATE);
         initializeTts();
     }
 
@@ -25,8 +116,9 @@ public class AccessibilityHelper {
                     Log.e(TAG, "Chinese language not supported");
                 } else {
                     isInitialized = true;
-                    tts.setSpeechRate(0.9f);
+                    tts.setSpeechRate(SPEECH_RATE);
                     tts.setPitch(1.0f);
+                    scheduler.setReady(true);
                 }
             } else {
                 Log.e(TAG, "TTS initialization failed");
@@ -37,46 +129,125 @@ public class AccessibilityHelper {
             @Override
             public void onStart(String utteranceId) {
                 Log.d(TAG, "Speech started: " + utteranceId);
+                Long speakTime;
+                synchronized (liveSpeakTimes) {
+                    speakTime = liveSpeakTimes.remove(utteranceId);
+                }
+                if (speakTime != null) {
+                    clipPlayer.getCache().recordFirstAudio(false, SystemClock.elapsedRealtime() - speakTime);
+                }
+                onSpeechStart(utteranceId);
             }
 
             @Override
             public void onDone(String utteranceId) {
                 Log.d(TAG, "Speech completed: " + utteranceId);
+                scheduler.onDone(utteranceId);
             }
 
             @Override
             public void onError(String utteranceId) {
                 Log.e(TAG, "Speech error: " + utteranceId);
+                scheduler.onDone(utteranceId);
+            }
+
+            @Override
+            public void onStop(String utteranceId, boolean interrupted) {
+                scheduler.onDone(utteranceId);
             }
         });
     }
 
-    public void speak(String text) {
-        if (isInitialized && text != null && !text.isEmpty()) {
-            tts.speak(text, TextToSpeech.QUEUE_FLUSH, null, String.valueOf(System.currentTimeMillis()));
-        } else {
-            Log.w(TAG, "TTS not initialized or text is empty");
+    private void onSpeechStart(String utteranceId) {
+        scheduler.onStart(utteranceId);
+        synchronized (this) {
+            if (attachedMillis < 0) {
+                return;
+            }
+            lastFirstSpeechMillis = SystemClock.elapsedRealtime() - attachedMillis;
+            maxFirstSpeechMillis = Math.max(maxFirstSpeechMillis, lastFirstSpeechMillis);
+            totalFirstSpeechMillis += lastFirstSpeechMillis;
+            firstSpeechCount++;
+            attachedMillis = -1;
+            Log.d(TAG, "First speech for " + attachedScreen + " after " + lastFirstSpeechMillis + " ms");
         }
     }
 
+    // Called from an activity's onCreate; times how long until the screen is first heard.
+    public synchronized void attach(String screen) {
+        attachedScreen = screen;
+        attachedMillis = SystemClock.elapsedRealtime();
+    }
+
+    // A direct answer to something the user did: replaces status and info messages, queued or being
+    // spoken, but waits for a turn instruction or safety warning to finish.
+    public void speak(String text) {
+        scheduler.enqueue(text, PRIORITY_STATUS, null, true);
+    }
+
     public void speakQueued(String text) {
-        if (isInitialized && text != null && !text.isEmpty()) {
-            tts.speak(text, TextToSpeech.QUEUE_ADD, null, String.valueOf(System.currentTimeMillis()));
-        }
+        scheduler.enqueue(text, PRIORITY_INFO, null, false);
+    }
+
+    // key, when not null, names what the message is about; a newer message with the same key replaces
+    // a queued older one and the key is spoken at most every few seconds.
+    public void speak(String text, int priority, String key) {
+        scheduler.enqueue(text, priority, key, false);
     }
 
     public void stop() {
-        if (tts != null && tts.isSpeaking()) {
-            tts.stop();
-        }
+        scheduler.clear();
+    }
+
+    // Drops pending messages with this key; the engine stays up for the other screens.
+    public void cancel(String key) {
+        scheduler.cancel(key);
+    }
+
+    // Renders these phrases ahead of time so they start without synthesis delay when spoken, replacing
+    // what was prepared under the same group before: CLIPS_ROUTE for everything the current route is
+    // going to say, CLIPS_SCREENS for the prompts screens speak on opening.
+    public void prepareClips(String group, List<String> phrases) {
+        clipPlayer.prepare(group, phrases);
+    }
+
+    public SpeechClipCache getClipCache() {
+        return clipPlayer.getCache();
     }
 
     public boolean isSpeaking() {
-        return tts != null && tts.isSpeaking();
+        return scheduler.isBusy() || (tts != null && tts.isSpeaking());
+    }
+
+    public UtteranceScheduler getScheduler() {
+        return scheduler;
+    }
+
+    // From attach() to the first audible speech, over the screens opened so far.
+    public synchronized long getLastFirstSpeechMillis() {
+        return lastFirstSpeechMillis;
+    }
+
+    public synchronized long getMaxFirstSpeechMillis() {
+        return maxFirstSpeechMillis;
     }
 
+    public synchronized double getMeanFirstSpeechMillis() {
+        return firstSpeechCount > 0 ? totalFirstSpeechMillis / (double) firstSpeechCount : 0;
+    }
+
+    // Only for when the process is going away; activities leave the engine running.
     public void shutdown() {
+        synchronized (AccessibilityHelper.class) {
+            if (instance == this) {
+                instance = null;
+            }
+        }
         if (tts != null) {
+            scheduler.setReady(false);
+            scheduler.clear();
+            handler.removeCallbacksAndMessages(null);
+            clipPlayer.shutdown();
             tts.stop();
             tts.shutdown();
             isInitialized = false;
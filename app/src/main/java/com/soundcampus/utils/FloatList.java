@@ -0,0 +1,39 @@
+package com.soundcampus.utils;
+
+import java.util.Arrays;
+
+public class FloatList {
+    private float[] values;
+    private int size = 0;
+
+    public FloatList(int initialCapacity) {
+        values = new float[Math.max(initialCapacity, 4)];
+    }
+
+    public void add(float value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = value;
+    }
+
+    public float get(int index) {
+        return values[index];
+    }
+
+    public void set(int index, float value) {
+        values[index] = value;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public float[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+}
@@ -0,0 +1,43 @@
+package com.soundcampus.utils;
+
+import java.util.Arrays;
+
+public class IntList {
+    private int[] values;
+    private int size = 0;
+
+    public IntList(int initialCapacity) {
+        values = new int[Math.max(initialCapacity, 4)];
+    }
+
+    public void add(int value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = value;
+    }
+
+    public int get(int index) {
+        return values[index];
+    }
+
+    public void set(int index, int value) {
+        values[index] = value;
+    }
+
+    public int pop() {
+        return values[--size];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public int[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+}
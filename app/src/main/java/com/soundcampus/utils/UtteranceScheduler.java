@@ -0,0 +1,288 @@
+package com.soundcampus.utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Decides what the TTS engine says next, handing it one utterance at a time.
+public class UtteranceScheduler {
+    public static final int PRIORITY_SAFETY = 0;
+    public static final int PRIORITY_MANEUVER = 1;
+    public static final int PRIORITY_STATUS = 2;
+    public static final int PRIORITY_INFO = 3;
+
+    // Per class; a message still queued past it describes a moment gone and is dropped.
+    private static final long[] DEADLINE_MS = {10000, 6000, 8000, 15000};
+    // A keyed STATUS or INFO message is spoken at most this often, the latest version winning.
+    private static final long KEY_MIN_INTERVAL_MS = 3000;
+    // An utterance not reported done within this long is given up on, in case the callback was lost.
+    private static final long WATCHDOG_MS = 5000;
+    private static final long WATCHDOG_MS_PER_CHAR = 400;
+
+    public interface Output {
+        void speak(String text, String utteranceId);
+        void stop();
+        // Runs task after delayMillis; used for rate-limited messages and the completion watchdog.
+        void schedule(Runnable task, long delayMillis);
+        long now();
+    }
+
+    private static class Utterance {
+        final String id;
+        final String text;
+        final int priority;
+        final String key;
+        final long enqueuedMillis;
+        long deadlineMillis;
+
+        Utterance(String id, String text, int priority, String key, long enqueuedMillis) {
+            this.id = id;
+            this.text = text;
+            this.priority = priority;
+            this.key = key;
+            this.enqueuedMillis = enqueuedMillis;
+            this.deadlineMillis = enqueuedMillis + DEADLINE_MS[priority];
+        }
+    }
+
+    private final Output output;
+    private final List<Utterance> queue = new ArrayList<>();
+    private final Map<String, Long> lastKeyStart = new HashMap<>();
+    private final Runnable pumpTask = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (UtteranceScheduler.this) {
+                wakeScheduled = false;
+                pump();
+            }
+        }
+    };
+    private Utterance current;
+    private boolean started;
+    private boolean ready = false;
+    private boolean wakeScheduled = false;
+    private long nextId = 0;
+
+    private int maxQueueDepth = 0;
+    private int spokenCount = 0;
+    private int coalescedCount = 0;
+    private int expiredCount = 0;
+    private int preemptedCount = 0;
+    private int timedOutCount = 0;
+    private long lastStartLatencyMillis = 0;
+    private long maxStartLatencyMillis = 0;
+    private long totalStartLatencyMillis = 0;
+
+    public UtteranceScheduler(Output output) {
+        this.output = output;
+    }
+
+    // Until the engine is ready messages wait in the queue; the wait for the engine does not count
+    // against their deadlines, so nothing said while it starts up is lost.
+    public synchronized void setReady(boolean ready) {
+        if (ready && !this.ready) {
+            long now = output.now();
+            for (Utterance utterance : queue) {
+                utterance.deadlineMillis = Math.max(utterance.deadlineMillis, now + DEADLINE_MS[utterance.priority]);
+            }
+        }
+        this.ready = ready;
+        pump();
+    }
+
+    // A queued message with the same key is replaced. flush drops queued and current messages of the
+    // same or lower class first, for direct answers to something the user just did.
+    public synchronized void enqueue(String text, int priority, String key, boolean flush) {
+        if (text == null || text.isEmpty()) {
+            return;
+        }
+        Utterance utterance = new Utterance("u" + nextId++, text, priority, key, output.now());
+        for (int i = queue.size() - 1; i >= 0; i--) {
+            Utterance queued = queue.get(i);
+            if (flush && queued.priority >= priority) {
+                queue.remove(i);
+            } else if (key != null && key.equals(queued.key)) {
+                queue.remove(i);
+                coalescedCount++;
+            }
+        }
+        queue.add(utterance);
+        maxQueueDepth = Math.max(maxQueueDepth, queue.size());
+
+        if (current != null && (preempts(utterance, current) || (flush && current.priority >= priority))) {
+            preemptedCount++;
+            if (current.priority == PRIORITY_MANEUVER && !isQueued(current.key)) {
+                queue.add(0, current);
+            }
+            // Forget it before stopping so its late completion callback is ignored.
+            current = null;
+            output.stop();
+        }
+        pump();
+    }
+
+    public synchronized void onStart(String utteranceId) {
+        if (current != null && current.id.equals(utteranceId) && !started) {
+            started = true;
+            lastStartLatencyMillis = output.now() - current.enqueuedMillis;
+            maxStartLatencyMillis = Math.max(maxStartLatencyMillis, lastStartLatencyMillis);
+            totalStartLatencyMillis += lastStartLatencyMillis;
+            spokenCount++;
+        }
+    }
+
+    // Also for errors and interruptions: the engine is free again either way.
+    public synchronized void onDone(String utteranceId) {
+        if (current != null && current.id.equals(utteranceId)) {
+            current = null;
+            pump();
+        }
+    }
+
+    public synchronized void clear() {
+        queue.clear();
+        if (current != null) {
+            current = null;
+            output.stop();
+        }
+    }
+
+    // Drops queued and current messages with this key, e.g. the turn instructions of a screen that closed.
+    public synchronized void cancel(String key) {
+        for (int i = queue.size() - 1; i >= 0; i--) {
+            if (key.equals(queue.get(i).key)) {
+                queue.remove(i);
+            }
+        }
+        if (current != null && key.equals(current.key)) {
+            current = null;
+            output.stop();
+            pump();
+        }
+    }
+
+    public synchronized boolean isBusy() {
+        return current != null || !queue.isEmpty();
+    }
+
+    private boolean isQueued(String key) {
+        if (key == null) {
+            return false;
+        }
+        for (Utterance queued : queue) {
+            if (key.equals(queued.key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // SAFETY cuts off anything else and MANEUVER cuts off INFO; a cut-off instruction is spoken again.
+    private static boolean preempts(Utterance next, Utterance playing) {
+        if (next.priority == PRIORITY_SAFETY) {
+            return playing.priority != PRIORITY_SAFETY;
+        }
+        return next.priority == PRIORITY_MANEUVER && playing.priority == PRIORITY_INFO;
+    }
+
+    private void pump() {
+        if (current != null || !ready) {
+            return;
+        }
+        long now = output.now();
+        Utterance best = null;
+        long wakeAt = Long.MAX_VALUE;
+        for (int i = queue.size() - 1; i >= 0; i--) {
+            Utterance utterance = queue.get(i);
+            if (now > utterance.deadlineMillis) {
+                queue.remove(i);
+                expiredCount++;
+                continue;
+            }
+            Long keyStart = utterance.key != null && utterance.priority >= PRIORITY_STATUS
+                    ? lastKeyStart.get(utterance.key)
+                    : null;
+            if (keyStart != null && now < keyStart + KEY_MIN_INTERVAL_MS) {
+                wakeAt = Math.min(wakeAt, keyStart + KEY_MIN_INTERVAL_MS);
+                continue;
+            }
+            // Walking backwards, so <= keeps the earliest of equal priority.
+            if (best == null || utterance.priority <= best.priority) {
+                best = utterance;
+            }
+        }
+        if (best == null) {
+            if (wakeAt != Long.MAX_VALUE && !wakeScheduled) {
+                wakeScheduled = true;
+                output.schedule(pumpTask, wakeAt - now);
+            }
+            return;
+        }
+        queue.remove(best);
+        if (best.key != null) {
+            lastKeyStart.put(best.key, now);
+        }
+        current = best;
+        started = false;
+        final String id = best.id;
+        output.schedule(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (UtteranceScheduler.this) {
+                    if (current != null && current.id.equals(id)) {
+                        timedOutCount++;
+                        current = null;
+                        output.stop();
+                        pump();
+                    }
+                }
+            }
+        }, WATCHDOG_MS + best.text.length() * WATCHDOG_MS_PER_CHAR);
+        output.speak(best.text, best.id);
+    }
+
+    public synchronized int getQueueDepth() {
+        return queue.size();
+    }
+
+    public synchronized int getMaxQueueDepth() {
+        return maxQueueDepth;
+    }
+
+    public synchronized int getSpokenCount() {
+        return spokenCount;
+    }
+
+    // Queued messages replaced by a newer one with the same key.
+    public synchronized int getCoalescedCount() {
+        return coalescedCount;
+    }
+
+    // Messages dropped unspoken because their deadline passed in the queue.
+    public synchronized int getExpiredCount() {
+        return expiredCount;
+    }
+
+    public synchronized int getPreemptedCount() {
+        return preemptedCount;
+    }
+
+    // Utterances whose completion never arrived and were cut off by the watchdog.
+    public synchronized int getTimedOutCount() {
+        return timedOutCount;
+    }
+
+    // From enqueue() to the engine reporting that speech started.
+    public synchronized long getLastStartLatencyMillis() {
+        return lastStartLatencyMillis;
+    }
+
+    public synchronized long getMaxStartLatencyMillis() {
+        return maxStartLatencyMillis;
+    }
+
+    public synchronized double getMeanStartLatencyMillis() {
+        return spokenCount > 0 ? totalStartLatencyMillis / (double) spokenCount : 0;
+    }
+}
@@ -0,0 +1,115 @@
+package com.soundcampus.navigation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.soundcampus.data.CampusLocation;
+import com.soundcampus.utils.IntList;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CampusMapFileTest {
+    private static final String MAP = "{"
+            + "\"campus_name\": \"示范大学\","
+            + "\"locations\": ["
+            + "{\"id\": \"loc3\", \"name\": \"图书馆\", \"latitude\": 39.9062, \"longitude\": 116.4094,"
+            + " \"description\": \"大学图书馆\", \"category\": \"library\", \"floor_count\": 4,"
+            + " \"facilities\": [\"阅览室\", \"自习室\"]},"
+            + "{\"id\": \"loc1\", \"name\": \"第一教学楼\", \"latitude\": 39.9042, \"longitude\": 116.4074,"
+            + " \"description\": \"主要教学区域\", \"category\": \"teaching\", \"floor_count\": 5,"
+            + " \"facilities\": [\"教室\"]},"
+            + "{\"id\": \"gate\", \"name\": \"南门\", \"latitude\": 39.9030, \"longitude\": 116.4060,"
+            + " \"description\": \"校园正门\", \"category\": \"gate\", \"floor_count\": 1,"
+            + " \"facilities\": []},"
+            + "{\"id\": \"loc2\", \"name\": \"第二教学楼\", \"latitude\": 39.9052, \"longitude\": 116.4084,"
+            + " \"description\": \"理工科教学楼\", \"category\": \"teaching\", \"floor_count\": 6,"
+            + " \"facilities\": [\"教室\", \"计算机室\"]}"
+            + "],"
+            + "\"paths\": ["
+            + "{\"from\": \"gate\", \"to\": \"loc1\", \"distance\": 120},"
+            + "{\"from\": \"loc1\", \"to\": \"loc2\", \"distance\": 150},"
+            + "{\"from\": \"loc2\", \"to\": \"loc3\", \"distance\": 200}"
+            + "],"
+            + "\"accessibility_features\": [\"盲道覆盖主要路径\"]"
+            + "}";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static CampusMapFile compiled(long stamp) throws IOException {
+        return CampusMapFile.wrap(CampusMapFile.compile(new StringReader(MAP), stamp));
+    }
+
+    @Test
+    public void findsEveryLocationById() throws IOException {
+        CampusMapFile map = compiled(1L);
+
+        assertEquals(4, map.getLocationCount());
+        for (String id : new String[] {"loc1", "loc2", "loc3", "gate"}) {
+            int index = map.indexOf(id);
+            assertTrue(index >= 0);
+            assertEquals(id, map.getId(index));
+        }
+        assertEquals(-1, map.indexOf("loc4"));
+        assertEquals(-1, map.indexOf(""));
+
+        CampusLocation library = map.getLocation(map.indexOf("loc3"));
+        assertEquals("图书馆", library.getName());
+        assertEquals(39.9062, library.getLatitude(), 1e-9);
+        assertEquals(116.4094, library.getLongitude(), 1e-9);
+        assertEquals("library", library.getCategory());
+        assertEquals(4, map.getFloorCount(map.indexOf("loc3")));
+    }
+
+    @Test
+    public void spatialIndexReturnsLocationIndexes() throws IOException {
+        CampusMapFile map = compiled(1L);
+        SpatialIndex index = map.getSpatialIndex();
+
+        assertEquals(map.indexOf("loc2"), index.nearest(39.9053, 116.4085));
+        assertEquals(map.indexOf("gate"), index.nearest(39.9000, 116.4000));
+
+        int[] nearest = new int[2];
+        double[] distances = new double[2];
+        assertEquals(2, index.kNearest(39.9043, 116.4075, nearest, distances));
+        assertEquals(map.indexOf("loc1"), nearest[0]);
+        assertTrue(distances[0] <= distances[1]);
+
+        IntList within = new IntList(4);
+        assertEquals(1, index.withinRadius(39.9062, 116.4094, 50, within));
+        assertEquals(map.indexOf("loc3"), within.get(0));
+    }
+
+    @Test
+    public void pathGraphKeepsNodesAndDistances() throws IOException {
+        PathGraph graph = compiled(1L).toPathGraph();
+
+        int gate = graph.indexOf("gate");
+        int library = graph.indexOf("loc3");
+        assertTrue(gate >= 0 && library >= 0);
+        AStarSearch search = new AStarSearch(graph);
+        int[] path = search.findPath(gate, library);
+        assertEquals(4, path.length);
+        assertEquals(470, search.getPathDistance(library), 0.01f);
+        // Paths are walkable both ways.
+        assertEquals(150, graph.getEdgeWeight(graph.findEdge(graph.indexOf("loc2"), graph.indexOf("loc1"))), 0.01f);
+    }
+
+    @Test
+    public void fileRoundTripKeepsStampAndContent() throws IOException {
+        File file = folder.newFile("campus_map.bin");
+        CampusMapFile.compile(new StringReader(MAP), file, 42L);
+
+        CampusMapFile opened = CampusMapFile.open(file);
+        CampusMapFile wrapped = compiled(42L);
+
+        assertEquals(42L, opened.getSourceStamp());
+        assertEquals(wrapped.getSourceHash(), opened.getSourceHash());
+        assertEquals(wrapped.getGraphSignature(), opened.getGraphSignature());
+        assertEquals("南门", opened.getName(opened.indexOf("gate")));
+    }
+}
@@ -0,0 +1,113 @@
+package com.soundcampus.navigation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.soundcampus.utils.LocationHelper;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import org.junit.Test;
+
+public class ContractionHierarchyTest {
+    private static final double ORIGIN_LATITUDE = 39.9042;
+    private static final double ORIGIN_LONGITUDE = 116.4074;
+    private static final int QUERIES = 300;
+
+    // Random points within about 1 km, each joined to a few random nodes close by in index order, with
+    // detours of up to 50% over the straight line; the last few nodes stay unconnected.
+    static PathGraph randomGraph(int nodes, long seed) {
+        Random random = new Random(seed);
+        PathGraph.Builder builder = new PathGraph.Builder();
+        double[] latitudes = new double[nodes];
+        double[] longitudes = new double[nodes];
+        for (int i = 0; i < nodes; i++) {
+            latitudes[i] = ORIGIN_LATITUDE + random.nextDouble() * 0.01;
+            longitudes[i] = ORIGIN_LONGITUDE + random.nextDouble() * 0.01;
+            builder.addNode("n" + i, latitudes[i], longitudes[i]);
+        }
+        for (int i = 1; i < nodes - 5; i++) {
+            for (int k = 0; k < 2; k++) {
+                int j = Math.max(0, i - 1 - random.nextInt(8));
+                double straight = LocationHelper.calculateDistance(latitudes[i], longitudes[i],
+                        latitudes[j], longitudes[j]);
+                builder.addEdge("n" + i, "n" + j, straight * (1 + random.nextDouble() * 0.5));
+            }
+        }
+        return builder.build();
+    }
+
+    @Test
+    public void sameDistancesAsAStarOnRandomGraphs() {
+        for (long seed = 1; seed <= 5; seed++) {
+            PathGraph graph = randomGraph(400, seed);
+            ContractionHierarchy hierarchy = ContractionHierarchy.build(graph);
+            AStarSearch search = new AStarSearch(graph);
+            Random random = new Random(seed);
+            for (int i = 0; i < QUERIES; i++) {
+                int source = random.nextInt(graph.getNodeCount());
+                int target = random.nextInt(graph.getNodeCount());
+                int[] plain = search.findPath(source, target);
+                int[] contracted = hierarchy.findPath(source, target);
+
+                assertEquals(plain == null, contracted == null);
+                if (plain != null) {
+                    assertEquals(search.getPathDistance(target), hierarchy.getLastDistance(), 0.01f);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void unpackedPathUsesOnlyGraphEdges() {
+        PathGraph graph = randomGraph(400, 7);
+        ContractionHierarchy hierarchy = ContractionHierarchy.build(graph);
+        assertTrue(hierarchy.getShortcutCount() > 0);
+
+        int[] path = hierarchy.findPath(3, 390);
+        assertNotNull(path);
+        assertEquals(3, path[0]);
+        assertEquals(390, path[path.length - 1]);
+        float length = 0;
+        for (int i = 0; i + 1 < path.length; i++) {
+            int edge = graph.findEdge(path[i], path[i + 1]);
+            assertTrue(edge >= 0);
+            length += graph.getEdgeWeight(edge);
+        }
+        assertEquals(hierarchy.getLastDistance(), length, 0.01f);
+    }
+
+    @Test
+    public void unconnectedNodeHasNoPath() {
+        PathGraph graph = randomGraph(100, 3);
+        ContractionHierarchy hierarchy = ContractionHierarchy.build(graph);
+
+        assertNull(hierarchy.findPath(10, graph.getNodeCount() - 1));
+        assertEquals(Float.POSITIVE_INFINITY, hierarchy.getLastDistance(), 0f);
+    }
+
+    @Test
+    public void fileRoundTripAnswersTheSame() throws IOException {
+        PathGraph graph = randomGraph(200, 11);
+        ContractionHierarchy hierarchy = ContractionHierarchy.build(graph);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        hierarchy.writeTo(new DataOutputStream(bytes));
+
+        ContractionHierarchy restored = ContractionHierarchy.readFrom(
+                new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertTrue(restored.matches(graph));
+        assertFalse(restored.matches(randomGraph(200, 12)));
+        for (int target = 0; target < 190; target += 7) {
+            hierarchy.findPath(0, target);
+            restored.findPath(0, target);
+            assertEquals(hierarchy.getLastDistance(), restored.getLastDistance(), 0f);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.soundcampus.navigation;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Test;
+
+public class DistanceMatrixTest {
+    private static final ForkJoinPool POOL = ForkJoinPool.commonPool();
+
+    private static List<String> poiIds(PathGraph graph, int count, long seed) {
+        List<String> ids = new ArrayList<>();
+        for (int node = 0; node < graph.getNodeCount(); node++) {
+            ids.add(graph.getNodeId(node));
+        }
+        Collections.shuffle(ids, new Random(seed));
+        return new ArrayList<>(ids.subList(0, count));
+    }
+
+    private static void assertSameDistances(DistanceMatrix expected, DistanceMatrix actual) {
+        for (int row = 0; row < expected.size(); row++) {
+            assertArrayEquals(expected.getRow(row), actual.getRow(row), 0.01f);
+        }
+    }
+
+    @Test
+    public void matchesSingleSourceSearches() {
+        PathGraph graph = ContractionHierarchyTest.randomGraph(300, 5);
+        List<String> ids = poiIds(graph, 40, 5);
+        DistanceMatrix matrix = DistanceMatrix.compute(graph, ids, POOL);
+
+        for (int row = 0; row < ids.size(); row++) {
+            float[] distances = DistanceMatrix.shortestDistances(graph, graph.indexOf(ids.get(row)));
+            for (int column = 0; column < ids.size(); column++) {
+                assertEquals(distances[graph.indexOf(ids.get(column))], matrix.getDistance(row, column), 0.01f);
+            }
+        }
+    }
+
+    @Test
+    public void updateEdgeGivesTheSameMatrixAsARecompute() {
+        Random random = new Random(9);
+        for (int round = 0; round < 20; round++) {
+            PathGraph graph = ContractionHierarchyTest.randomGraph(200, round);
+            List<String> ids = poiIds(graph, 60, round);
+            DistanceMatrix matrix = DistanceMatrix.compute(graph, ids, POOL);
+
+            int from = 1 + random.nextInt(graph.getNodeCount() - 10);
+            int edge = graph.getEdgeStart(from) + random.nextInt(graph.getEdgeEnd(from) - graph.getEdgeStart(from));
+            String fromId = graph.getNodeId(from);
+            String toId = graph.getNodeId(graph.getEdgeTarget(edge));
+            float oldWeight = graph.getEdgeWeight(edge);
+            // Alternately a closed-off stretch and a new shortcut.
+            float newWeight = round % 2 == 0 ? oldWeight * 4 : oldWeight * 0.1f;
+            PathGraph changed = graph.withEdgeWeight(fromId, toId, newWeight);
+
+            matrix.updateEdge(graph, changed, fromId, toId, oldWeight, newWeight, POOL);
+
+            assertSameDistances(DistanceMatrix.compute(changed, ids, POOL), matrix);
+        }
+    }
+
+    @Test
+    public void unchangedRowsAreNotRecomputed() {
+        PathGraph graph = ContractionHierarchyTest.randomGraph(200, 21);
+        List<String> ids = poiIds(graph, 60, 21);
+        DistanceMatrix matrix = DistanceMatrix.compute(graph, ids, POOL);
+        int edge = graph.getEdgeStart(50);
+        String fromId = graph.getNodeId(50);
+        String toId = graph.getNodeId(graph.getEdgeTarget(edge));
+        float weight = graph.getEdgeWeight(edge);
+
+        int[] rows = matrix.updateEdge(graph, graph.withEdgeWeight(fromId, toId, weight), fromId, toId,
+                weight, weight, POOL);
+
+        assertEquals(0, rows.length);
+    }
+
+    @Test
+    public void refusesMoreLocationsThanTheCap() {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i <= DistanceMatrix.MAX_POIS; i++) {
+            ids.add("p" + i);
+        }
+        try {
+            DistanceMatrix.fromRows(ids, new float[0]);
+            fail();
+        } catch (IllegalArgumentException expected) {
+            // Checked before anything of ids.size() squared is allocated.
+        }
+    }
+}
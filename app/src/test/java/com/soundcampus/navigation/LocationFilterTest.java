@@ -0,0 +1,100 @@
+package com.soundcampus.navigation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.soundcampus.utils.LocationHelper;
+import java.util.Random;
+import org.junit.Test;
+
+public class LocationFilterTest {
+    private static final double LATITUDE = 39.9042;
+    private static final double LONGITUDE = 116.4074;
+    private static final double METERS_PER_DEGREE = Math.toRadians(LocationHelper.EARTH_RADIUS_METERS);
+
+    private static double east(double meters) {
+        return LONGITUDE + meters / (METERS_PER_DEGREE * Math.cos(Math.toRadians(LATITUDE)));
+    }
+
+    @Test
+    public void firstFixIsTakenAsIs() {
+        LocationFilter filter = new LocationFilter();
+        assertFalse(filter.hasEstimate());
+
+        filter.update(0, LATITUDE, LONGITUDE, 5);
+
+        assertTrue(filter.hasEstimate());
+        assertEquals(LATITUDE, filter.getLatitude(), 1e-9);
+        assertEquals(LONGITUDE, filter.getLongitude(), 1e-9);
+        assertEquals(0, filter.getSpeed(), 1e-9);
+        assertEquals(5, filter.getAccuracy(), 1e-9);
+    }
+
+    @Test
+    public void convergesOnWalkingSpeed() {
+        LocationFilter filter = new LocationFilter();
+        for (int second = 0; second <= 30; second++) {
+            filter.update(second * 1000L, LATITUDE, east(1.4 * second), 3);
+        }
+
+        assertEquals(1.4, filter.getSpeed(), 0.05);
+        assertEquals(0, LocationHelper.calculateDistance(filter.getLatitude(), filter.getLongitude(),
+                LATITUDE, east(1.4 * 30)), 0.5);
+    }
+
+    @Test
+    public void smoothsNoisyFixes() {
+        LocationFilter filter = new LocationFilter();
+        Random random = new Random(3);
+        double fixError = 0;
+        double filteredError = 0;
+        for (int second = 0; second <= 120; second++) {
+            double trueEast = 1.4 * second;
+            double noisyLatitude = LATITUDE + random.nextGaussian() * 5 / METERS_PER_DEGREE;
+            double noisyLongitude = east(trueEast + random.nextGaussian() * 5);
+            filter.update(second * 1000L, noisyLatitude, noisyLongitude, 5);
+            if (second >= 30) {
+                fixError += LocationHelper.calculateDistance(noisyLatitude, noisyLongitude, LATITUDE, east(trueEast));
+                filteredError += LocationHelper.calculateDistance(filter.getLatitude(), filter.getLongitude(),
+                        LATITUDE, east(trueEast));
+            }
+        }
+
+        assertTrue("filtered " + filteredError + " raw " + fixError, filteredError < fixError * 0.75);
+        assertTrue("accuracy " + filter.getAccuracy(), filter.getAccuracy() < 5);
+        assertEquals(121, filter.getUpdateCount());
+        assertEquals(0, filter.getResetCount());
+    }
+
+    @Test
+    public void startsOverAfterAGap() {
+        LocationFilter filter = new LocationFilter();
+        for (int second = 0; second < 20; second++) {
+            filter.update(second * 1000L, LATITUDE, east(1.4 * second), 3);
+        }
+        assertTrue(filter.getSpeed() > 1);
+
+        // 40 s later and 500 m away: nothing of the old track should be left.
+        filter.update(59000, LATITUDE, east(500), 3);
+
+        assertEquals(1, filter.getResetCount());
+        assertEquals(LATITUDE, filter.getLatitude(), 1e-9);
+        assertEquals(east(500), filter.getLongitude(), 1e-9);
+        assertEquals(0, filter.getSpeed(), 1e-9);
+    }
+
+    @Test
+    public void resetForgetsTheEstimate() {
+        LocationFilter filter = new LocationFilter();
+        filter.update(0, LATITUDE, LONGITUDE, 3);
+        filter.update(1000, LATITUDE, east(1.4), 3);
+
+        filter.reset();
+        assertFalse(filter.hasEstimate());
+        filter.update(2000, LATITUDE, east(100), 3);
+
+        assertEquals(east(100), filter.getLongitude(), 1e-9);
+        assertEquals(0, filter.getSpeed(), 1e-9);
+    }
+}
@@ -0,0 +1,124 @@
+package com.soundcampus.navigation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.soundcampus.data.CampusLocation;
+import com.soundcampus.data.NavigationInstruction;
+import com.soundcampus.data.Route;
+import com.soundcampus.utils.LocationHelper;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+public class ManeuverFencesTest {
+    private static final double LATITUDE = 39.9042;
+    private static final double LONGITUDE = 116.4074;
+    private static final double METERS_PER_DEGREE = Math.toRadians(LocationHelper.EARTH_RADIUS_METERS);
+
+    private static double latitude(double north) {
+        return LATITUDE + north / METERS_PER_DEGREE;
+    }
+
+    private static double longitude(double east) {
+        return LONGITUDE + east / (METERS_PER_DEGREE * Math.cos(Math.toRadians(LATITUDE)));
+    }
+
+    // 100 m east, turn left, 60 m north.
+    private static Route lRoute() {
+        List<NavigationInstruction> instructions = Arrays.asList(
+                new NavigationInstruction(NavigationInstruction.Direction.LEFT, 100, "直行 100 米后左转"),
+                new NavigationInstruction(NavigationInstruction.Direction.STRAIGHT, 60, "直行 60 米"),
+                new NavigationInstruction(NavigationInstruction.Direction.ARRIVED, 0, "已到达 终点"));
+        return new Route(
+                new CampusLocation("a", "起点", latitude(0), longitude(0), "", ""),
+                new CampusLocation("b", "终点", latitude(60), longitude(100), "", ""),
+                instructions, 160,
+                new double[]{latitude(0), latitude(0), latitude(60)},
+                new double[]{longitude(0), longitude(100), longitude(100)});
+    }
+
+    // A fix this far along the route, on it.
+    private static List<ManeuverFences.Fence> walkTo(ManeuverFences fences, double along) {
+        return along <= 100
+                ? fences.update(latitude(0), longitude(along))
+                : fences.update(latitude(along - 100), longitude(100));
+    }
+
+    @Test
+    public void firesEachFenceOnceInRouteOrder() {
+        ManeuverFences fences = new ManeuverFences(lRoute());
+        List<Integer> kinds = new ArrayList<>();
+        List<Integer> firedAt = new ArrayList<>();
+        for (int along = 0; along <= 160; along++) {
+            for (ManeuverFences.Fence fence : walkTo(fences, along)) {
+                kinds.add(fence.kind);
+                firedAt.add(along);
+                assertEquals(fence.kind == ManeuverFences.ARRIVE ? 2 : 0, fence.instructionIndex);
+            }
+        }
+
+        assertEquals(4, fences.getFenceCount());
+        assertEquals(Arrays.asList(ManeuverFences.PREPARE, ManeuverFences.ANNOUNCE, ManeuverFences.PASSED,
+                ManeuverFences.ARRIVE), kinds);
+        // 30 m and 8 m before the turn, 3 m after, 10 m before the end; each fires on the second fix
+        // past it, well before a single fix would have to be HYSTERESIS_METERS beyond.
+        int[] positions = {70, 92, 103, 150};
+        for (int i = 0; i < positions.length; i++) {
+            assertTrue("fence " + i + " fired at " + firedAt.get(i),
+                    firedAt.get(i) > positions[i] && firedAt.get(i) <= positions[i] + 2);
+        }
+        assertTrue(Double.isNaN(fences.getDistanceToNextFence()));
+    }
+
+    @Test
+    public void oneFixThrownAheadDoesNotFire() {
+        ManeuverFences fences = new ManeuverFences(lRoute());
+        walkTo(fences, 60);
+
+        // 2 m past the PREPARE fence, then back behind it.
+        assertTrue(walkTo(fences, 72).isEmpty());
+        assertTrue(walkTo(fences, 65).isEmpty());
+        assertEquals(5, fences.getDistanceToNextFence(), 0.01);
+    }
+
+    @Test
+    public void aFixWellPastTheFenceFiresAlone() {
+        ManeuverFences fences = new ManeuverFences(lRoute());
+        walkTo(fences, 60);
+
+        List<ManeuverFences.Fence> crossed = walkTo(fences, 75);
+
+        assertEquals(1, crossed.size());
+        assertEquals(ManeuverFences.PREPARE, crossed.get(0).kind);
+    }
+
+    @Test
+    public void fixOffTheRouteIsIgnored() {
+        ManeuverFences fences = new ManeuverFences(lRoute());
+        walkTo(fences, 50);
+
+        // 50 m from both legs, outside the corridor.
+        assertTrue(Double.isNaN(fences.locate(latitude(50), longitude(50))));
+        assertTrue(fences.update(latitude(50), longitude(50)).isEmpty());
+        assertEquals(50, fences.getProgress(), 0.01);
+    }
+
+    @Test
+    public void shortLegGetsNoPrepareFence() {
+        List<NavigationInstruction> instructions = Arrays.asList(
+                new NavigationInstruction(NavigationInstruction.Direction.RIGHT, 20, "直行 20 米后右转"),
+                new NavigationInstruction(NavigationInstruction.Direction.STRAIGHT, 40, "直行 40 米"),
+                new NavigationInstruction(NavigationInstruction.Direction.ARRIVED, 0, "已到达 终点"));
+        Route route = new Route(
+                new CampusLocation("a", "起点", latitude(0), longitude(0), "", ""),
+                new CampusLocation("b", "终点", latitude(-40), longitude(20), "", ""),
+                instructions, 60,
+                new double[]{latitude(0), latitude(0), latitude(-40)},
+                new double[]{longitude(0), longitude(20), longitude(20)});
+
+        // ANNOUNCE, PASSED and ARRIVE.
+        assertEquals(3, new ManeuverFences(route).getFenceCount());
+    }
+}
@@ -0,0 +1,131 @@
+package com.soundcampus.navigation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import com.soundcampus.utils.IntList;
+import com.soundcampus.utils.LocationHelper;
+import java.util.Random;
+import org.junit.Test;
+
+public class MapMatcherTest {
+    private static final double ORIGIN_LATITUDE = 39.9042;
+    private static final double ORIGIN_LONGITUDE = 116.4074;
+    private static final double STEP_DEGREES = 0.0002;
+    // 71 x 71 nodes: 2 * 71 * 70 = 9940 undirected edges.
+    private static final int SIDE = 71;
+
+    private static PathGraph grid(int side) {
+        PathGraph.Builder builder = new PathGraph.Builder();
+        for (int row = 0; row < side; row++) {
+            for (int column = 0; column < side; column++) {
+                builder.addNode("n" + row + "_" + column, latitude(row), longitude(column));
+            }
+        }
+        for (int row = 0; row < side; row++) {
+            for (int column = 0; column < side; column++) {
+                if (column + 1 < side) {
+                    builder.addEdge("n" + row + "_" + column, "n" + row + "_" + (column + 1),
+                            LocationHelper.calculateDistance(latitude(row), longitude(column),
+                                    latitude(row), longitude(column + 1)));
+                }
+                if (row + 1 < side) {
+                    builder.addEdge("n" + row + "_" + column, "n" + (row + 1) + "_" + column,
+                            LocationHelper.calculateDistance(latitude(row), longitude(column),
+                                    latitude(row + 1), longitude(column)));
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    private static double latitude(int row) {
+        return ORIGIN_LATITUDE + row * STEP_DEGREES;
+    }
+
+    private static double longitude(int column) {
+        return ORIGIN_LONGITUDE + column * STEP_DEGREES;
+    }
+
+    // A random walk along the grid streets, 7 fixes per block, with noiseMeters of GPS error.
+    private static double[][] walk(int fixes, double noiseMeters, long seed) {
+        Random random = new Random(seed);
+        double[] latitudes = new double[fixes];
+        double[] longitudes = new double[fixes];
+        int row = SIDE / 2;
+        int column = SIDE / 2;
+        int count = 0;
+        while (count < fixes) {
+            int direction = random.nextInt(4);
+            int nextRow = row + (direction == 0 ? 1 : direction == 1 ? -1 : 0);
+            int nextColumn = column + (direction == 2 ? 1 : direction == 3 ? -1 : 0);
+            if (nextRow < 0 || nextColumn < 0 || nextRow >= SIDE || nextColumn >= SIDE) {
+                continue;
+            }
+            for (int step = 0; step < 7 && count < fixes; step++, count++) {
+                double f = step / 7.0;
+                double latitude = latitude(row) + (latitude(nextRow) - latitude(row)) * f;
+                double longitude = longitude(column) + (longitude(nextColumn) - longitude(column)) * f;
+                latitudes[count] = latitude + random.nextGaussian() * noiseMeters / 111320.0;
+                longitudes[count] = longitude + random.nextGaussian() * noiseMeters
+                        / (111320.0 * Math.cos(Math.toRadians(latitude)));
+            }
+            row = nextRow;
+            column = nextColumn;
+        }
+        return new double[][]{latitudes, longitudes};
+    }
+
+    // Wall-clock latency is MapMatchingBenchmark's job; here the work per fix is counted instead, which
+    // is the same on any machine. The same walk on a map four times as large must cost exactly as much.
+    @Test
+    public void workPerFixDoesNotGrowWithTheMap() {
+        double[][] fixes = walk(4096, 6, 29);
+
+        long small = settledNodes(new MapMatcher(grid(SIDE)), fixes);
+        long large = settledNodes(new MapMatcher(grid(2 * SIDE)), fixes);
+
+        // The walk never gets near the edge of the small map, so the searches see the same streets.
+        assertEquals(small, large);
+    }
+
+    private static long settledNodes(MapMatcher matcher, double[][] fixes) {
+        for (int i = 0; i < fixes[0].length; i++) {
+            MapMatcher.Match match = matcher.match(fixes[0][i], fixes[1][i]);
+            assertNotNull(match);
+            assertTrue(match.getOffsetMeters() <= MapMatcher.SEARCH_RADIUS_METERS);
+        }
+        return matcher.getSettledCount();
+    }
+
+    @Test
+    public void snapsNoisyFixesOntoTheStreet() {
+        MapMatcher matcher = new MapMatcher(grid(11));
+        // Walking east along row 5, 3 m north of the street.
+        double north = 3 / 111320.0;
+        MapMatcher.Match match = null;
+        for (int i = 0; i < 10; i++) {
+            match = matcher.match(latitude(5) + north, longitude(3) + i * STEP_DEGREES / 10);
+            assertNotNull(match);
+        }
+        assertEquals(latitude(5), match.getLatitude(), 1e-7);
+        assertEquals(3, match.getOffsetMeters(), 0.1);
+    }
+
+    @Test
+    public void resetForgetsThePreviousTrip() {
+        MapMatcher matcher = new MapMatcher(grid(11));
+        for (int i = 0; i < 5; i++) {
+            matcher.match(latitude(2), longitude(2) + i * STEP_DEGREES / 5);
+        }
+        matcher.reset();
+        IntList window = new IntList(8);
+
+        assertEquals(0, matcher.decodeWindow(window));
+        MapMatcher.Match match = matcher.match(latitude(8), longitude(8) + STEP_DEGREES / 2);
+        assertNotNull(match);
+        assertEquals(1, matcher.decodeWindow(window));
+        assertEquals(latitude(8), match.getLatitude(), 1e-7);
+    }
+}
@@ -0,0 +1,85 @@
+package com.soundcampus.navigation;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class SamplingPolicyTest {
+    private static final double WALKING = 1.4;
+    private static final double GOOD_FIX = 5;
+
+    @Test
+    public void fastestRateWithoutDistanceFilterNearAManeuver() {
+        SamplingPolicy.Request request = SamplingPolicy.choose(WALKING, 10, GOOD_FIX);
+
+        assertEquals(1000, request.intervalMillis);
+        assertEquals(0, request.minDistanceMeters, 0);
+    }
+
+    @Test
+    public void intervalLeavesFourFixesBeforeTheManeuver() {
+        // 40 m at 1.4 m/s is 28 s: 4 s steps fit four times, 8 s ones do not.
+        assertEquals(4000, SamplingPolicy.choose(WALKING, 40, GOOD_FIX).intervalMillis);
+        assertEquals(8000, SamplingPolicy.choose(WALKING, 200, GOOD_FIX).intervalMillis);
+        assertEquals(2000, SamplingPolicy.choose(3.0, 40, GOOD_FIX).intervalMillis);
+    }
+
+    @Test
+    public void standingStillUsesTheSlowestRateWithDistanceFilter() {
+        SamplingPolicy.Request request = SamplingPolicy.choose(0.1, 100, GOOD_FIX);
+
+        assertEquals(8000, request.intervalMillis);
+        assertEquals(SamplingPolicy.FIXED_MIN_DISTANCE_METERS, request.minDistanceMeters, 0);
+    }
+
+    @Test
+    public void offNavigationStaysSlow() {
+        assertEquals(4000, SamplingPolicy.choose(WALKING, Double.NaN, GOOD_FIX).intervalMillis);
+        assertEquals(8000, SamplingPolicy.choose(0.1, Double.NaN, GOOD_FIX).intervalMillis);
+    }
+
+    @Test
+    public void poorFixesAreNotRequestedEverySecond() {
+        assertEquals(2000, SamplingPolicy.choose(WALKING, 10, 40).intervalMillis);
+    }
+
+    @Test
+    public void speedsUpAtOnce() {
+        SamplingPolicy policy = new SamplingPolicy();
+
+        assertEquals(1000, policy.update(WALKING, 10, GOOD_FIX).intervalMillis);
+        assertEquals(1, policy.getChangeCount());
+    }
+
+    @Test
+    public void slowsDownOnlyWhenTwoUpdatesInARowAgree() {
+        SamplingPolicy policy = new SamplingPolicy();
+        assertEquals(SamplingPolicy.FIXED_INTERVAL_MILLIS, policy.getRequest().intervalMillis);
+
+        assertEquals(2000, policy.update(WALKING, 200, GOOD_FIX).intervalMillis);
+        assertEquals(8000, policy.update(WALKING, 200, GOOD_FIX).intervalMillis);
+        assertEquals(1, policy.getChangeCount());
+    }
+
+    @Test
+    public void disagreeingSlowerRequestsDoNotApply() {
+        SamplingPolicy policy = new SamplingPolicy();
+
+        // 8 s, then 4 s: each is asked for once, so neither applies yet.
+        assertEquals(2000, policy.update(WALKING, 200, GOOD_FIX).intervalMillis);
+        assertEquals(2000, policy.update(WALKING, 40, GOOD_FIX).intervalMillis);
+        assertEquals(4000, policy.update(WALKING, 40, GOOD_FIX).intervalMillis);
+        assertEquals(1, policy.getChangeCount());
+    }
+
+    @Test
+    public void keepingTheCurrentRequestClearsAPendingSlowDown() {
+        SamplingPolicy policy = new SamplingPolicy();
+
+        policy.update(WALKING, 200, GOOD_FIX);
+        // 2 s is the current request; 7 s to the turn at 1.4 m/s wants it again.
+        policy.update(WALKING, 30, GOOD_FIX);
+        assertEquals(2000, policy.update(WALKING, 200, GOOD_FIX).intervalMillis);
+        assertEquals(0, policy.getChangeCount());
+    }
+}
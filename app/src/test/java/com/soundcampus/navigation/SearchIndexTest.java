@@ -0,0 +1,110 @@
+package com.soundcampus.navigation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.soundcampus.data.CampusLocation;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+public class SearchIndexTest {
+    private static final Map<Character, String> PINYIN = new HashMap<>();
+
+    static {
+        String[][] syllables = {
+                {"图", "tu"}, {"书", "shu"}, {"馆", "guan"}, {"管", "guan"}, {"第", "di"}, {"一", "yi"},
+                {"二", "er"}, {"教", "jiao"}, {"学", "xue"}, {"楼", "lou"}, {"食", "shi"}, {"堂", "tang"},
+                {"体", "ti"}, {"育", "yu"}, {"宿", "su"}, {"舍", "she"}, {"阅", "yue"}, {"览", "lan"},
+                {"室", "shi"}, {"餐", "can"}, {"厅", "ting"}, {"南", "nan"}, {"门", "men"}
+        };
+        for (String[] pair : syllables) {
+            PINYIN.put(pair[0].charAt(0), pair[1]);
+        }
+    }
+
+    private static final SearchIndex.Romanizer ROMANIZER = new SearchIndex.Romanizer() {
+        @Override
+        public String romanize(char c) {
+            return PINYIN.get(c);
+        }
+    };
+
+    private static final List<CampusLocation> LOCATIONS = Arrays.asList(
+            new CampusLocation("loc1", "第一教学楼", 39.9042, 116.4074, "主要教学区域，毗邻图书馆", "teaching"),
+            new CampusLocation("loc2", "第二教学楼", 39.9052, 116.4084, "理工科教学楼", "teaching"),
+            new CampusLocation("loc3", "图书馆", 39.9062, 116.4094, "大学图书馆，藏书丰富", "library"),
+            new CampusLocation("loc4", "食堂", 39.9072, 116.4104, "学生食堂", "cafeteria"),
+            new CampusLocation("loc5", "宿舍楼", 39.9082, 116.4114, "学生宿舍", "dormitory"),
+            new CampusLocation("loc6", "南门", 39.9030, 116.4060, "校园正门", "gate"));
+    private static final List<String> FACILITIES = Arrays.asList(
+            "教室,自习室", "教室,计算机室", "阅览室,自习室", "餐厅", "宿舍,洗衣房", null);
+
+    private static String top(SearchIndex index, String query) {
+        int[] result = new int[3];
+        float[] scores = new float[3];
+        int count = index.search(query, result, scores);
+        return count == 0 ? null : LOCATIONS.get(result[0]).getId();
+    }
+
+    @Test
+    public void normalizeDropsCaseAndPunctuation() {
+        assertEquals("图书馆3f", SearchIndex.normalize(" 图书馆，3F! "));
+        assertEquals("", SearchIndex.normalize(null));
+    }
+
+    @Test
+    public void exactNameOutranksMentionsElsewhere() {
+        SearchIndex index = SearchIndex.build(LOCATIONS, FACILITIES, ROMANIZER);
+
+        // "图书馆" is also in the first teaching building's description.
+        assertEquals("loc3", top(index, "图书馆"));
+        assertEquals("loc2", top(index, "第二教学楼"));
+        assertEquals("loc3", top(index, "阅览室"));
+    }
+
+    @Test
+    public void findsNamesByPinyinAndInitials() {
+        SearchIndex index = SearchIndex.build(LOCATIONS, FACILITIES, ROMANIZER);
+
+        assertEquals("loc3", top(index, "tushuguan"));
+        assertEquals("loc3", top(index, "TuShu Guan"));
+        assertEquals("loc3", top(index, "tsg"));
+        assertEquals("loc1", top(index, "dyjxl"));
+        // A dictated homophone has the same pinyin as the name.
+        assertEquals("loc3", top(index, "图书管"));
+    }
+
+    @Test
+    public void toleratesTypos() {
+        SearchIndex index = SearchIndex.build(LOCATIONS, FACILITIES, ROMANIZER);
+
+        assertEquals("loc3", top(index, "tushugan"));
+        assertEquals("loc5", top(index, "sushelo"));
+        assertEquals("loc2", top(index, "第二教楼"));
+    }
+
+    @Test
+    public void withoutRomanizerOnlyHanMatches() {
+        SearchIndex index = SearchIndex.build(LOCATIONS, FACILITIES, null);
+
+        assertEquals("loc3", top(index, "图书馆"));
+        assertNull(top(index, "tushuguan"));
+    }
+
+    @Test
+    public void findsNamesInsideSignText() {
+        SearchIndex index = SearchIndex.build(LOCATIONS, FACILITIES, ROMANIZER);
+        int[] result = new int[4];
+        int[] edits = new int[4];
+
+        int count = index.findNamesIn("前方50米 第二教学搂 右转", result, edits);
+
+        assertTrue(count > 0);
+        assertEquals("loc2", LOCATIONS.get(result[0]).getId());
+        assertEquals(1, edits[0]);
+    }
+}
@@ -0,0 +1,113 @@
+package com.soundcampus.ocr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class FramePreprocessorTest {
+    private static final int PADDING = 64;
+
+    // Checkerboard of 40 px squares, offset by shift pixels, brightened by exposure.
+    private static byte[] frame(int width, int height, int shift, int exposure) {
+        int stride = width + PADDING;
+        byte[] data = new byte[stride * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int square = ((x + shift) / 40 + y / 40) % 2;
+                data[y * stride + x] = (byte) (square == 0 ? 50 + exposure : 200 + exposure);
+            }
+        }
+        return data;
+    }
+
+    private static byte[] uniform(int width, int height, int value) {
+        byte[] data = new byte[(width + PADDING) * height];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) value;
+        }
+        return data;
+    }
+
+    @Test
+    public void smallFrameKeepsRegionAtFullResolution() {
+        FramePreprocessor preprocessor = new FramePreprocessor();
+        FramePreprocessor.Frame frame = preprocessor.process(frame(1280, 720, 0, 0), 1280 + PADDING, 1280, 720, 0, false);
+
+        assertNotNull(frame);
+        assertEquals(1152, frame.getWidth());
+        assertEquals(432, frame.getHeight());
+        assertEquals(1152 * 432 * 3 / 2, frame.getData().length);
+    }
+
+    @Test
+    public void rotatedFrameKeepsTheUprightProportions() {
+        FramePreprocessor preprocessor = new FramePreprocessor();
+        FramePreprocessor.Frame frame = preprocessor.process(frame(1280, 720, 0, 0), 1280 + PADDING, 1280, 720, 90, false);
+
+        // The 768x648 region of the upright picture, its short side brought down to 576.
+        assertNotNull(frame);
+        assertTrue(Math.abs(frame.getHeight() - 576) <= 2);
+        assertTrue(Math.abs(frame.getWidth() - 682) <= 2);
+    }
+
+    @Test
+    public void largeFrameIsDownscaled() {
+        FramePreprocessor preprocessor = new FramePreprocessor();
+        FramePreprocessor.Frame frame = preprocessor.process(uniform(4000, 3000, 77), 4000 + PADDING, 4000, 3000, 0, false);
+
+        assertNotNull(frame);
+        // Short side of the 3600x1800 region brought down to 24 lines of 24 px.
+        assertTrue(Math.abs(frame.getHeight() - 576) <= 2);
+        assertTrue(Math.abs(frame.getWidth() - 2 * frame.getHeight()) <= 2);
+        byte[] data = frame.getData();
+        int luminance = frame.getWidth() * frame.getHeight();
+        for (int i = 0; i < luminance; i++) {
+            assertEquals(77, data[i] & 0xff);
+        }
+        for (int i = luminance; i < data.length; i++) {
+            assertEquals(128, data[i] & 0xff);
+        }
+    }
+
+    @Test
+    public void unchangedFrameIsSkipped() {
+        FramePreprocessor preprocessor = new FramePreprocessor();
+        byte[] data = frame(1280, 720, 0, 0);
+
+        assertNotNull(preprocessor.process(data, 1280 + PADDING, 1280, 720, 0, false));
+        assertNull(preprocessor.process(data, 1280 + PADDING, 1280, 720, 0, false));
+        assertEquals(2, preprocessor.getFrameCount());
+        assertEquals(1, preprocessor.getSkippedCount());
+    }
+
+    @Test
+    public void exposureShiftIsNotAChange() {
+        FramePreprocessor preprocessor = new FramePreprocessor();
+
+        assertNotNull(preprocessor.process(frame(1280, 720, 0, 0), 1280 + PADDING, 1280, 720, 0, false));
+        assertNull(preprocessor.process(frame(1280, 720, 0, 30), 1280 + PADDING, 1280, 720, 0, false));
+    }
+
+    @Test
+    public void movedContentIsAChange() {
+        FramePreprocessor preprocessor = new FramePreprocessor();
+
+        assertNotNull(preprocessor.process(frame(1280, 720, 0, 0), 1280 + PADDING, 1280, 720, 0, false));
+        assertNotNull(preprocessor.process(frame(1280, 720, 20, 0), 1280 + PADDING, 1280, 720, 0, false));
+    }
+
+    @Test
+    public void forceAndResetRecognizeAnUnchangedFrame() {
+        FramePreprocessor preprocessor = new FramePreprocessor();
+        byte[] data = frame(1280, 720, 0, 0);
+
+        assertNotNull(preprocessor.process(data, 1280 + PADDING, 1280, 720, 0, false));
+        assertNotNull(preprocessor.process(data, 1280 + PADDING, 1280, 720, 0, true));
+        preprocessor.reset();
+        assertNotNull(preprocessor.process(data, 1280 + PADDING, 1280, 720, 0, false));
+        assertEquals(0, preprocessor.getSkippedCount());
+    }
+}
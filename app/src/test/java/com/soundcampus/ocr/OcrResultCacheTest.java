@@ -0,0 +1,46 @@
+package com.soundcampus.ocr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import org.junit.Test;
+
+public class OcrResultCacheTest {
+    private static final long PLATE = 0x5a5a_3c3c_0f0f_f0f0L;
+
+    @Test
+    public void nearbyHashFindsTheSign() {
+        OcrResultCache cache = new OcrResultCache(16, 60000, 6);
+        cache.put(PLATE, "A101");
+
+        assertEquals("A101", cache.get(PLATE ^ 0b10110L));
+        assertNull(cache.get(~PLATE));
+    }
+
+    @Test
+    public void freshReadingReplacesANearbyEntryWithOtherText() {
+        OcrResultCache cache = new OcrResultCache(16, 60000, 6);
+        cache.put(PLATE, "A101");
+
+        // A requested capture of the look-alike plate next door.
+        long nextDoor = PLATE ^ 0b1100L;
+        cache.put(nextDoor, "A103");
+
+        assertEquals(1, cache.size());
+        assertEquals("A103", cache.get(PLATE));
+    }
+
+    @Test
+    public void flatFrameIsNeverStored() {
+        OcrResultCache cache = new OcrResultCache(16, 60000, 6);
+        byte[] wall = new byte[64 * 64];
+        Arrays.fill(wall, (byte) 90);
+
+        long hash = cache.hash(wall, 64, 64);
+        cache.put(hash, "A101");
+
+        assertEquals(OcrResultCache.NO_HASH, hash);
+        assertEquals(0, cache.size());
+    }
+}
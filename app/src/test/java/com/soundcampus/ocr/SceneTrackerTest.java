@@ -0,0 +1,116 @@
+package com.soundcampus.ocr;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SceneTrackerTest {
+    private static final int WIDTH = 1280;
+    private static final int HEIGHT = 720;
+
+    private FramePreprocessor preprocessor;
+    private SceneTracker scene;
+    private final List<String> spoken = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        preprocessor = new FramePreprocessor();
+        scene = new SceneTracker();
+        spoken.clear();
+    }
+
+    // Checkerboard of 40 px squares, offset by shift pixels.
+    private static byte[] frame(int shift) {
+        byte[] data = new byte[WIDTH * HEIGHT];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                data[y * WIDTH + x] = (byte) (((x + shift) / 40 + y / 40) % 2 == 0 ? 50 : 200);
+            }
+        }
+        return data;
+    }
+
+    // What StreamingAnalyzer does with one frame of a continuous scan, ML Kit reading it as text.
+    private void feed(byte[] luminance, String text) {
+        FramePreprocessor.Frame frame = preprocessor.process(luminance, WIDTH, WIDTH, HEIGHT, 0, false);
+        if (frame != null) {
+            preprocessor.release(frame);
+            if (scene.onReading(text)) {
+                spoken.add(text);
+            }
+        } else {
+            String stable = scene.onUnchangedFrame();
+            if (stable != null) {
+                spoken.add(stable);
+            }
+        }
+    }
+
+    @Test
+    public void steadySignIsSpokenOnceFromTheSecondFrame() {
+        byte[] sign = frame(0);
+
+        feed(sign, "A101 教室");
+        assertEquals(0, spoken.size());
+        feed(sign, "A101 教室");
+        assertEquals(1, spoken.size());
+        for (int i = 0; i < 5; i++) {
+            feed(sign, "A101 教室");
+        }
+
+        assertEquals(1, spoken.size());
+        assertEquals("A101 教室", spoken.get(0));
+        assertEquals(6, preprocessor.getSkippedCount());
+    }
+
+    @Test
+    public void readingThatDoesNotRepeatStaysQuiet() {
+        feed(frame(0), "A1O1 教");
+        feed(frame(100), "A101 教室");
+        assertEquals(0, spoken.size());
+
+        feed(frame(100), "A101 教室");
+        assertEquals(1, spoken.size());
+        assertEquals("A101 教室", spoken.get(0));
+    }
+
+    @Test
+    public void emptyReadingIsNotConfirmedByUnchangedFrames() {
+        byte[] wall = frame(0);
+        for (int i = 0; i < 4; i++) {
+            feed(wall, "");
+        }
+        assertEquals(0, spoken.size());
+    }
+
+    @Test
+    public void startingAScanAgainRereadsTheSameSign() {
+        byte[] sign = frame(0);
+        feed(sign, "A101 教室");
+        feed(sign, "A101 教室");
+
+        // What StreamingAnalyzer.setContinuous(true) does.
+        scene.reset();
+        preprocessor.reset();
+        feed(sign, "A101 教室");
+        feed(sign, "A101 教室");
+
+        assertEquals(2, spoken.size());
+    }
+
+    @Test
+    public void comingBackToTheLastSignStaysQuiet() {
+        byte[] sign = frame(0);
+        feed(sign, "A101 教室");
+        feed(sign, "A101 教室");
+        feed(frame(100), "");
+        feed(sign, "A101 教室");
+        feed(sign, "A101 教室");
+
+        assertEquals(1, spoken.size());
+        assertEquals(1, scene.getDuplicateCount());
+    }
+}
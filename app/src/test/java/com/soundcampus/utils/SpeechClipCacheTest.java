@@ -0,0 +1,69 @@
+package com.soundcampus.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SpeechClipCacheTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static void write(File file, int bytes) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[bytes]);
+        }
+    }
+
+    @Test
+    public void constructorLeavesTheDiskAlone() throws IOException {
+        File directory = new File(folder.getRoot(), "clips");
+
+        SpeechClipCache cache = new SpeechClipCache(directory, 1000);
+        assertFalse(directory.exists());
+
+        cache.init();
+        assertTrue(directory.isDirectory());
+    }
+
+    @Test
+    public void firstUseRestoresClipsAndDropsInterruptedSynthesis() throws IOException {
+        File directory = folder.newFolder("clips");
+        write(new File(directory, "a.wav"), 100);
+        write(new File(directory, "b.tmp"), 100);
+        SpeechClipCache cache = new SpeechClipCache(directory, 1000);
+
+        assertNotNull(cache.get("a"));
+        assertEquals(1, cache.size());
+        assertEquals(100, cache.getTotalBytes());
+        assertFalse(new File(directory, "b.tmp").exists());
+    }
+
+    @Test
+    public void leastRecentlyUsedClipGoesOverTheLimit() throws IOException {
+        SpeechClipCache cache = new SpeechClipCache(folder.newFolder("clips"), 250);
+        for (String key : new String[]{"a", "b"}) {
+            File temp = cache.tempFile(key);
+            write(temp, 100);
+            cache.commit(key, temp);
+        }
+        cache.get("a");
+
+        File temp = cache.tempFile("c");
+        write(temp, 100);
+        cache.commit("c", temp);
+
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(200, cache.getTotalBytes());
+    }
+}
@@ -0,0 +1,198 @@
+package com.soundcampus.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+public class UtteranceSchedulerTest {
+    // Stands in for TextToSpeech and the main-thread handler, on a manual clock.
+    private static class FakeOutput implements UtteranceScheduler.Output {
+        final List<String> spoken = new ArrayList<>();
+        final List<String> ids = new ArrayList<>();
+        final List<Runnable> tasks = new ArrayList<>();
+        final List<Long> dueTimes = new ArrayList<>();
+        int stops = 0;
+        long now = 0;
+
+        @Override
+        public void speak(String text, String utteranceId) {
+            spoken.add(text);
+            ids.add(utteranceId);
+        }
+
+        @Override
+        public void stop() {
+            stops++;
+        }
+
+        @Override
+        public void schedule(Runnable task, long delayMillis) {
+            tasks.add(task);
+            dueTimes.add(now + delayMillis);
+        }
+
+        @Override
+        public long now() {
+            return now;
+        }
+
+        String lastId() {
+            return ids.get(ids.size() - 1);
+        }
+
+        void advance(long millis) {
+            now += millis;
+            for (int i = 0; i < tasks.size(); i++) {
+                if (dueTimes.get(i) <= now) {
+                    Runnable task = tasks.remove(i);
+                    dueTimes.remove(i);
+                    task.run();
+                    i = -1;
+                }
+            }
+        }
+    }
+
+    private FakeOutput output;
+    private UtteranceScheduler scheduler;
+
+    @Before
+    public void setUp() {
+        output = new FakeOutput();
+        scheduler = new UtteranceScheduler(output);
+    }
+
+    private void finishCurrent() {
+        scheduler.onStart(output.lastId());
+        scheduler.onDone(output.lastId());
+    }
+
+    @Test
+    public void speaksByClassThenArrivalOnceReady() {
+        scheduler.enqueue("info", UtteranceScheduler.PRIORITY_INFO, null, false);
+        scheduler.enqueue("status 1", UtteranceScheduler.PRIORITY_STATUS, null, false);
+        scheduler.enqueue("status 2", UtteranceScheduler.PRIORITY_STATUS, null, false);
+        scheduler.enqueue("turn", UtteranceScheduler.PRIORITY_MANEUVER, null, false);
+        assertTrue(output.spoken.isEmpty());
+
+        // Waiting for the engine does not count against the deadlines.
+        output.now = 20000;
+        scheduler.setReady(true);
+        finishCurrent();
+        finishCurrent();
+        finishCurrent();
+
+        assertEquals(Arrays.asList("turn", "status 1", "status 2", "info"), output.spoken);
+        assertEquals(0, scheduler.getExpiredCount());
+    }
+
+    @Test
+    public void maneuverCutsOffInfo() {
+        scheduler.setReady(true);
+        scheduler.enqueue("info", UtteranceScheduler.PRIORITY_INFO, null, false);
+
+        scheduler.enqueue("turn", UtteranceScheduler.PRIORITY_MANEUVER, "instruction", false);
+
+        assertEquals(Arrays.asList("info", "turn"), output.spoken);
+        assertEquals(1, output.stops);
+        assertEquals(1, scheduler.getPreemptedCount());
+    }
+
+    @Test
+    public void onlySafetyCutsOffATurnWhichIsThenRepeated() {
+        scheduler.setReady(true);
+        scheduler.enqueue("turn", UtteranceScheduler.PRIORITY_MANEUVER, "instruction", false);
+        scheduler.enqueue("status", UtteranceScheduler.PRIORITY_STATUS, null, true);
+        assertEquals(0, output.stops);
+
+        scheduler.enqueue("stop", UtteranceScheduler.PRIORITY_SAFETY, null, false);
+        finishCurrent();
+        finishCurrent();
+
+        assertEquals(Arrays.asList("turn", "stop", "turn", "status"), output.spoken);
+        assertEquals(1, output.stops);
+    }
+
+    @Test
+    public void newerMessageWithTheSameKeyReplacesTheQueuedOne() {
+        scheduler.setReady(true);
+        scheduler.enqueue("busy", UtteranceScheduler.PRIORITY_MANEUVER, null, false);
+        scheduler.enqueue("30 m", UtteranceScheduler.PRIORITY_MANEUVER, "instruction", false);
+        scheduler.enqueue("8 m", UtteranceScheduler.PRIORITY_MANEUVER, "instruction", false);
+
+        finishCurrent();
+
+        assertEquals(Arrays.asList("busy", "8 m"), output.spoken);
+        assertEquals(1, scheduler.getCoalescedCount());
+        assertEquals(0, scheduler.getQueueDepth());
+    }
+
+    @Test
+    public void messageQueuedPastItsDeadlineIsDropped() {
+        scheduler.setReady(true);
+        scheduler.enqueue("long turn", UtteranceScheduler.PRIORITY_MANEUVER, null, false);
+        scheduler.enqueue("status", UtteranceScheduler.PRIORITY_STATUS, null, false);
+
+        output.now += 9000;
+        finishCurrent();
+
+        assertEquals(Arrays.asList("long turn"), output.spoken);
+        assertEquals(1, scheduler.getExpiredCount());
+        assertFalse(scheduler.isBusy());
+    }
+
+    @Test
+    public void keyedStatusIsRateLimited() {
+        scheduler.setReady(true);
+        scheduler.enqueue("10 m", UtteranceScheduler.PRIORITY_STATUS, "distance", false);
+        finishCurrent();
+
+        output.advance(1000);
+        scheduler.enqueue("9 m", UtteranceScheduler.PRIORITY_STATUS, "distance", false);
+        scheduler.enqueue("8 m", UtteranceScheduler.PRIORITY_STATUS, "distance", false);
+        assertEquals(Arrays.asList("10 m"), output.spoken);
+
+        // Woken when the key's interval is over, with the latest version.
+        output.advance(2000);
+        assertEquals(Arrays.asList("10 m", "8 m"), output.spoken);
+    }
+
+    @Test
+    public void flushDropsQueuedMessagesOfTheSameOrLowerClass() {
+        scheduler.setReady(true);
+        scheduler.enqueue("turn", UtteranceScheduler.PRIORITY_MANEUVER, null, false);
+        scheduler.enqueue("old status", UtteranceScheduler.PRIORITY_STATUS, null, false);
+        scheduler.enqueue("info", UtteranceScheduler.PRIORITY_INFO, null, false);
+
+        scheduler.enqueue("answer", UtteranceScheduler.PRIORITY_STATUS, null, true);
+        finishCurrent();
+        finishCurrent();
+
+        assertEquals(Arrays.asList("turn", "answer"), output.spoken);
+        assertFalse(scheduler.isBusy());
+    }
+
+    @Test
+    public void lostCompletionIsGivenUpOn() {
+        scheduler.setReady(true);
+        scheduler.enqueue("turn", UtteranceScheduler.PRIORITY_MANEUVER, null, false);
+        scheduler.enqueue("status", UtteranceScheduler.PRIORITY_STATUS, null, false);
+        String turnId = output.lastId();
+
+        // Never reported done: the watchdog moves on well before the status would expire.
+        output.advance(7000);
+
+        assertEquals(Arrays.asList("turn", "status"), output.spoken);
+        assertEquals(1, scheduler.getTimedOutCount());
+        assertEquals(1, output.stops);
+        // A late callback for the abandoned one changes nothing.
+        scheduler.onDone(turnId);
+        assertTrue(scheduler.isBusy());
+    }
+}
@@ -0,0 +1,188 @@
+package com.soundcampus.benchmark;
+
+import com.soundcampus.data.CampusLocation;
+import com.soundcampus.data.CampusMapReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+// Import throughput of the locations table on the desktop SQLite (sqlite-jdbc), since the
+// Android framework database is not available on the JVM. The "rows" counter is rows/second.
+// The schema and statements mirror DatabaseHelper.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class DatabaseImportBenchmark {
+    private static final String CREATE_TABLE_LOCATIONS = "CREATE TABLE locations (id TEXT PRIMARY KEY, "
+            + "name TEXT NOT NULL, latitude REAL NOT NULL, longitude REAL NOT NULL, description TEXT, "
+            + "category TEXT, floor_count INTEGER, facilities TEXT)";
+    private static final String CREATE_INDEX_LOCATIONS_NAME =
+            "CREATE INDEX IF NOT EXISTS idx_locations_name ON locations (name)";
+    private static final String INSERT_LOCATION = "INSERT OR REPLACE INTO locations (id, name, latitude, "
+            + "longitude, description, category, floor_count, facilities) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Rows {
+        public long rows;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            rows = 0;
+        }
+    }
+
+    @Param({"1000", "10000", "100000"})
+    int rowCount;
+
+    private String json;
+    private File databaseFile;
+    private Connection connection;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() throws IOException {
+        json = SyntheticCampus.campusJson(rowCount, 23);
+        databaseFile = File.createTempFile("soundcampus", ".db");
+    }
+
+    @Setup(Level.Invocation)
+    public void openDatabase() throws SQLException {
+        deleteDatabase();
+        connection = DriverManager.getConnection("jdbc:sqlite:" + databaseFile.getAbsolutePath());
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(CREATE_TABLE_LOCATIONS);
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void closeDatabase() throws SQLException {
+        connection.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownTrial() {
+        deleteDatabase();
+    }
+
+    // The original insertDefaultLocations: one literal SQL string per row, each its own transaction.
+    @Benchmark
+    public int perRowExecSql(Rows rows) throws Exception {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(CREATE_INDEX_LOCATIONS_NAME);
+        }
+        final Statement statement = connection.createStatement();
+        final int[] count = new int[1];
+        CampusMapReader.read(new StringReader(json), new LocationHandler() {
+            @Override
+            public void onLocation(CampusLocation location, int floorCount, List<String> facilities) {
+                try {
+                    statement.execute("INSERT OR REPLACE INTO locations VALUES ('" + location.getId() + "', '"
+                            + location.getName() + "', " + location.getLatitude() + ", " + location.getLongitude()
+                            + ", '" + location.getDescription() + "', '" + location.getCategory() + "', "
+                            + floorCount + ", '" + String.join(",", facilities) + "')");
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+                count[0]++;
+            }
+        });
+        statement.close();
+        rows.rows += count[0];
+        return count[0];
+    }
+
+    @Benchmark
+    public int compiledStatementEagerIndex(Rows rows) throws Exception {
+        int count = bulkImport(false, false);
+        rows.rows += count;
+        return count;
+    }
+
+    @Benchmark
+    public int bulkImport(Rows rows) throws Exception {
+        int count = bulkImport(true, true);
+        rows.rows += count;
+        return count;
+    }
+
+    private int bulkImport(boolean writeAheadLog, boolean deferIndex) throws Exception {
+        try (Statement statement = connection.createStatement()) {
+            if (writeAheadLog) {
+                statement.execute("PRAGMA journal_mode=WAL");
+            }
+            if (!deferIndex) {
+                statement.execute(CREATE_INDEX_LOCATIONS_NAME);
+            }
+        }
+        connection.setAutoCommit(false);
+        final PreparedStatement insert = connection.prepareStatement(INSERT_LOCATION);
+        final int[] count = new int[1];
+        CampusMapReader.read(new StringReader(json), new LocationHandler() {
+            @Override
+            public void onLocation(CampusLocation location, int floorCount, List<String> facilities) {
+                try {
+                    insert.clearParameters();
+                    insert.setString(1, location.getId());
+                    insert.setString(2, location.getName());
+                    insert.setDouble(3, location.getLatitude());
+                    insert.setDouble(4, location.getLongitude());
+                    insert.setString(5, location.getDescription());
+                    insert.setString(6, location.getCategory());
+                    insert.setLong(7, floorCount);
+                    insert.setString(8, String.join(",", facilities));
+                    insert.executeUpdate();
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+                count[0]++;
+            }
+        });
+        insert.close();
+        if (deferIndex) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(CREATE_INDEX_LOCATIONS_NAME);
+            }
+        }
+        connection.commit();
+        connection.setAutoCommit(true);
+        return count[0];
+    }
+
+    private void deleteDatabase() {
+        for (String suffix : new String[]{"", "-wal", "-shm", "-journal"}) {
+            new File(databaseFile.getPath() + suffix).delete();
+        }
+    }
+
+    private abstract static class LocationHandler implements CampusMapReader.Handler {
+        @Override
+        public void onCampusName(String name) {
+        }
+
+        @Override
+        public void onPath(String fromId, String toId, double distance) {
+        }
+
+        @Override
+        public void onAccessibilityFeature(String feature) {
+        }
+    }
+}
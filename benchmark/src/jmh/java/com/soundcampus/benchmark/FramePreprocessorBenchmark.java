@@ -0,0 +1,90 @@
+package com.soundcampus.benchmark;
+
+import com.soundcampus.ocr.FramePreprocessor;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+// Cost of the OCR pre-processing stage per camera frame, on synthetic luminance planes shaped like
+// CameraX output for a portrait phone (landscape sensor, rotation 90, padded row stride).
+// changedFrame alternates two signs and always produces a frame for ML Kit; steadyFrame is the same
+// sign under sensor noise and an exposure shift and should be skipped.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FramePreprocessorBenchmark {
+    private static final int ROTATION = 90;
+    private static final int FRAME_COUNT = 8;
+    private static final int ROW_PADDING = 64;
+
+    @Param({"1280x720", "1920x1080"})
+    String resolution;
+
+    private int width;
+    private int height;
+    private int rowStride;
+    private byte[][] changing;
+    private byte[][] steady;
+    private FramePreprocessor preprocessor;
+    private int frame;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        String[] size = resolution.split("x");
+        width = Integer.parseInt(size[0]);
+        height = Integer.parseInt(size[1]);
+        rowStride = width + ROW_PADDING;
+        Random random = new Random(41);
+        changing = new byte[FRAME_COUNT][];
+        steady = new byte[FRAME_COUNT][];
+        for (int i = 0; i < FRAME_COUNT; i++) {
+            changing[i] = sign(i % 2 == 0 ? 3 : 5, 0, random);
+            steady[i] = sign(3, random.nextInt(21) - 10, random);
+        }
+        preprocessor = new FramePreprocessor();
+    }
+
+    @Benchmark
+    public Object changedFrame() {
+        FramePreprocessor.Frame result = preprocessor.process(
+                changing[frame++ % FRAME_COUNT], rowStride, width, height, ROTATION, false);
+        preprocessor.release(result);
+        return result;
+    }
+
+    @Benchmark
+    public Object steadyFrame() {
+        FramePreprocessor.Frame result = preprocessor.process(
+                steady[frame++ % FRAME_COUNT], rowStride, width, height, ROTATION, false);
+        preprocessor.release(result);
+        return result;
+    }
+
+    // A light background gradient with rows of dark glyph-sized blocks; lines sets how many rows of
+    // text the sign has, exposure shifts the whole frame.
+    private byte[] sign(int lines, int exposure, Random random) {
+        byte[] plane = new byte[rowStride * height];
+        int glyph = height / 20;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int value = 170 + x * 40 / width + exposure + random.nextInt(7) - 3;
+                int line = (y - height / 4) / (glyph * 2);
+                boolean inLine = y >= height / 4 && line < lines && (y - height / 4) % (glyph * 2) < glyph;
+                boolean inGlyph = x >= width / 6 && x < width * 5 / 6 && (x / glyph) % 3 != 2;
+                if (inLine && inGlyph && ((x * 7 + y * 3) / 5) % 4 != 0) {
+                    value = 40 + exposure + random.nextInt(7) - 3;
+                }
+                plane[y * rowStride + x] = (byte) Math.max(0, Math.min(255, value));
+            }
+        }
+        return plane;
+    }
+}
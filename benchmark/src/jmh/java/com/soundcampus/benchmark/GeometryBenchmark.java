@@ -0,0 +1,84 @@
+package com.soundcampus.benchmark;
+
+import com.soundcampus.utils.LocationHelper;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class GeometryBenchmark {
+    @Param({"100", "10000", "100000"})
+    int poiCount;
+
+    private double originLatitude;
+    private double originLongitude;
+    private double[] latitudes;
+    private double[] longitudes;
+    private double[] results;
+
+    @Setup
+    public void setUp() {
+        double[][] points = SyntheticCampus.randomPoints(poiCount, 7);
+        latitudes = points[0];
+        longitudes = points[1];
+        results = new double[poiCount];
+        originLatitude = latitudes[0];
+        originLongitude = longitudes[0];
+    }
+
+    @Benchmark
+    public double haversineDistanceLoop() {
+        double sum = 0;
+        for (int i = 0; i < poiCount; i++) {
+            sum += LocationHelper.haversineDistance(originLatitude, originLongitude, latitudes[i], longitudes[i]);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double calculateDistanceLoop() {
+        double sum = 0;
+        for (int i = 0; i < poiCount; i++) {
+            sum += LocationHelper.calculateDistance(originLatitude, originLongitude, latitudes[i], longitudes[i]);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double[] calculateDistancesBatch() {
+        LocationHelper.calculateDistances(originLatitude, originLongitude, latitudes, longitudes, results, poiCount);
+        return results;
+    }
+
+    @Benchmark
+    public double sphericalBearingLoop() {
+        double sum = 0;
+        for (int i = 0; i < poiCount; i++) {
+            sum += LocationHelper.sphericalBearing(originLatitude, originLongitude, latitudes[i], longitudes[i]);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double calculateBearingLoop() {
+        double sum = 0;
+        for (int i = 0; i < poiCount; i++) {
+            sum += LocationHelper.calculateBearing(originLatitude, originLongitude, latitudes[i], longitudes[i]);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double[] calculateBearingsBatch() {
+        LocationHelper.calculateBearings(originLatitude, originLongitude, latitudes, longitudes, results, poiCount);
+        return results;
+    }
+}
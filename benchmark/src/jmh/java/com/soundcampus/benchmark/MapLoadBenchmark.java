@@ -0,0 +1,68 @@
+package com.soundcampus.benchmark;
+
+import com.soundcampus.navigation.CampusMapFile;
+import com.soundcampus.navigation.PathGraph;
+import com.soundcampus.navigation.SpatialIndex;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+// Time from "nothing in memory" to a queryable spatial index and path graph: parsing the
+// JSON source against opening the compiled, memory-mapped campus map file.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MapLoadBenchmark {
+    @Param({"100", "10000", "100000"})
+    int poiCount;
+
+    private String json;
+    private File mapFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        json = SyntheticCampus.campusJson(poiCount, 23);
+        mapFile = File.createTempFile("campus_map", ".scm");
+        CampusMapFile.compile(new StringReader(json), mapFile, 0);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        mapFile.delete();
+    }
+
+    @Benchmark
+    public int loadFromJson() {
+        PathGraph graph = PathGraph.fromJson(new StringReader(json));
+        double[] latitudes = new double[graph.getNodeCount()];
+        double[] longitudes = new double[graph.getNodeCount()];
+        for (int node = 0; node < graph.getNodeCount(); node++) {
+            latitudes[node] = graph.getLatitude(node);
+            longitudes[node] = graph.getLongitude(node);
+        }
+        return SpatialIndex.build(latitudes, longitudes).size() + graph.getEdgeCount();
+    }
+
+    @Benchmark
+    public int openMappedIndex() throws IOException {
+        CampusMapFile file = CampusMapFile.open(mapFile);
+        return file.getSpatialIndex().size() + file.getLocationCount();
+    }
+
+    @Benchmark
+    public int openMappedIndexAndGraph() throws IOException {
+        CampusMapFile file = CampusMapFile.open(mapFile);
+        return file.getSpatialIndex().size() + file.toPathGraph().getEdgeCount();
+    }
+}
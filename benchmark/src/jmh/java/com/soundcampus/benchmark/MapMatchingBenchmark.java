@@ -0,0 +1,86 @@
+package com.soundcampus.benchmark;
+
+import com.soundcampus.navigation.MapMatcher;
+import com.soundcampus.navigation.PathGraph;
+import com.soundcampus.navigation.SegmentIndex;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+// Per-fix latency budget for online map matching: p99 must stay under 1 ms.
+// gridSide 71 is ~10k undirected edges.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MapMatchingBenchmark {
+    private static final int FIX_COUNT = 4096;
+    private static final int STEPS_PER_BLOCK = 7;
+    private static final double GPS_NOISE_METERS = 6;
+
+    @Param({"71", "100"})
+    int gridSide;
+
+    private PathGraph graph;
+    private SegmentIndex segmentIndex;
+    private MapMatcher matcher;
+    private double[] latitudes;
+    private double[] longitudes;
+    private int fix;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        graph = SyntheticCampus.grid(gridSide, 23);
+        segmentIndex = SegmentIndex.build(graph);
+        matcher = new MapMatcher(graph, segmentIndex);
+
+        Random random = new Random(29);
+        latitudes = new double[FIX_COUNT];
+        longitudes = new double[FIX_COUNT];
+        int row = gridSide / 2;
+        int column = gridSide / 2;
+        int count = 0;
+        while (count < FIX_COUNT) {
+            int direction = random.nextInt(4);
+            int nextRow = row + (direction == 0 ? 1 : direction == 1 ? -1 : 0);
+            int nextColumn = column + (direction == 2 ? 1 : direction == 3 ? -1 : 0);
+            if (nextRow < 0 || nextColumn < 0 || nextRow >= gridSide || nextColumn >= gridSide) {
+                continue;
+            }
+            for (int step = 0; step < STEPS_PER_BLOCK && count < FIX_COUNT; step++, count++) {
+                double f = step / (double) STEPS_PER_BLOCK;
+                double latitude = SyntheticCampus.latitude(row) + (SyntheticCampus.latitude(nextRow)
+                        - SyntheticCampus.latitude(row)) * f;
+                double longitude = SyntheticCampus.longitude(column) + (SyntheticCampus.longitude(nextColumn)
+                        - SyntheticCampus.longitude(column)) * f;
+                latitudes[count] = latitude + random.nextGaussian() * GPS_NOISE_METERS / 111320.0;
+                longitudes[count] = longitude + random.nextGaussian() * GPS_NOISE_METERS
+                        / (111320.0 * Math.cos(Math.toRadians(latitude)));
+            }
+            row = nextRow;
+            column = nextColumn;
+        }
+    }
+
+    @Benchmark
+    public MapMatcher.Match matchFix() {
+        int i = fix;
+        fix = (fix + 1) % FIX_COUNT;
+        if (i == 0) {
+            matcher.reset();
+        }
+        return matcher.match(latitudes[i], longitudes[i]);
+    }
+
+    @Benchmark
+    public SegmentIndex buildSegmentIndex() {
+        return SegmentIndex.build(graph);
+    }
+}
@@ -0,0 +1,54 @@
+package com.soundcampus.benchmark;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.soundcampus.navigation.PathGraph;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+// Run with -prof gc to compare allocation between the streaming reader and the tree baseline.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MapParsingBenchmark {
+    @Param({"100", "10000", "100000"})
+    int poiCount;
+
+    private String json;
+
+    @Setup
+    public void setUp() {
+        json = SyntheticCampus.campusJson(poiCount, 23);
+    }
+
+    @Benchmark
+    public PathGraph parsePathGraph() {
+        return PathGraph.fromJson(new StringReader(json));
+    }
+
+    @Benchmark
+    public PathGraph parsePathGraphFromTree() {
+        JsonObject root = JsonParser.parseReader(new StringReader(json)).getAsJsonObject();
+        PathGraph.Builder builder = new PathGraph.Builder();
+        for (JsonElement element : root.getAsJsonArray("locations")) {
+            JsonObject location = element.getAsJsonObject();
+            builder.addNode(location.get("id").getAsString(),
+                    location.get("latitude").getAsDouble(), location.get("longitude").getAsDouble());
+        }
+        for (JsonElement element : root.getAsJsonArray("paths")) {
+            JsonObject path = element.getAsJsonObject();
+            builder.addEdge(path.get("from").getAsString(), path.get("to").getAsString(),
+                    path.get("distance").getAsDouble());
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,77 @@
+package com.soundcampus.benchmark;
+
+import com.soundcampus.navigation.SpatialIndex;
+import com.soundcampus.utils.LocationHelper;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class NearestLocationBenchmark {
+    private static final int QUERY_COUNT = 1024;
+
+    @Param({"100", "10000", "100000"})
+    int poiCount;
+
+    private double[] latitudes;
+    private double[] longitudes;
+    private double[] queryLatitudes;
+    private double[] queryLongitudes;
+    private SpatialIndex index;
+    private int query;
+
+    @Setup
+    public void setUp() {
+        double[][] points = SyntheticCampus.randomPoints(poiCount, 11);
+        latitudes = points[0];
+        longitudes = points[1];
+        double[][] queries = SyntheticCampus.randomPoints(poiCount, 13);
+        queryLatitudes = new double[QUERY_COUNT];
+        queryLongitudes = new double[QUERY_COUNT];
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            queryLatitudes[i] = queries[0][i % poiCount];
+            queryLongitudes[i] = queries[1][i % poiCount];
+        }
+        index = SpatialIndex.build(latitudes, longitudes);
+    }
+
+    @Benchmark
+    public int linearScanNearest() {
+        int q = nextQuery();
+        int nearest = -1;
+        double minDistance = Double.MAX_VALUE;
+        for (int i = 0; i < poiCount; i++) {
+            double distance = LocationHelper.haversineDistance(
+                    queryLatitudes[q], queryLongitudes[q], latitudes[i], longitudes[i]);
+            if (distance < minDistance) {
+                minDistance = distance;
+                nearest = i;
+            }
+        }
+        return nearest;
+    }
+
+    @Benchmark
+    public int spatialIndexNearest() {
+        int q = nextQuery();
+        return index.nearest(queryLatitudes[q], queryLongitudes[q]);
+    }
+
+    @Benchmark
+    public SpatialIndex buildSpatialIndex() {
+        return SpatialIndex.build(latitudes, longitudes);
+    }
+
+    private int nextQuery() {
+        query = (query + 1) & (QUERY_COUNT - 1);
+        return query;
+    }
+}
@@ -0,0 +1,57 @@
+package com.soundcampus.benchmark;
+
+import com.soundcampus.ocr.OcrResultCache;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+// What a cache answer costs instead of an ML Kit run: hashing one pre-processed frame (the size
+// FramePreprocessor hands on for 720p and 1080p input) and looking it up in a full cache.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class OcrResultCacheBenchmark {
+    private static final int WIDTH = 682;
+    private static final int HEIGHT = 576;
+    private static final int ENTRIES = 128;
+
+    private OcrResultCache cache;
+    private byte[] frame;
+    private long[] hashes;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        cache = new OcrResultCache(ENTRIES, Long.MAX_VALUE, 6);
+        Random random = new Random(43);
+        frame = new byte[WIDTH * HEIGHT * 3 / 2];
+        for (int i = 0; i < WIDTH * HEIGHT; i++) {
+            frame[i] = (byte) (random.nextInt(4) == 0 ? 50 : 190);
+        }
+        hashes = new long[ENTRIES];
+        for (int i = 0; i < ENTRIES; i++) {
+            hashes[i] = random.nextLong() | 1;
+            cache.put(hashes[i], "标识" + i);
+        }
+    }
+
+    @Benchmark
+    public long hashFrame() {
+        return cache.hash(frame, WIDTH, HEIGHT);
+    }
+
+    // Half the probes are a cached sign with four bits flipped, half match nothing.
+    @Benchmark
+    public String lookup() {
+        int i = next++;
+        long hash = hashes[i % ENTRIES];
+        return cache.get(i % 2 == 0 ? hash ^ 0x8421L : ~hash);
+    }
+}
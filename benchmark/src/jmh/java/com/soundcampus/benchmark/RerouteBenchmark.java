@@ -0,0 +1,80 @@
+package com.soundcampus.benchmark;
+
+import com.soundcampus.data.CampusLocation;
+import com.soundcampus.data.Route;
+import com.soundcampus.navigation.PathGraph;
+import com.soundcampus.navigation.RouteCalculator;
+import com.soundcampus.navigation.RouteReplanner;
+import com.soundcampus.navigation.SegmentIndex;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+// Reroute latency with the destination tree already grown (replan) against
+// a from-scratch A* route to the same destination (recompute).
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RerouteBenchmark {
+    private static final int POSITION_COUNT = 256;
+
+    @Param({"32", "100", "224"})
+    int gridSide;
+
+    private Route route;
+    private RouteCalculator calculator;
+    private RouteReplanner replanner;
+    private CampusLocation[] nodes;
+    private double[] latitudes;
+    private double[] longitudes;
+    private int position;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        PathGraph graph = SyntheticCampus.grid(gridSide, 31);
+        calculator = new RouteCalculator(graph);
+        replanner = new RouteReplanner(graph, SegmentIndex.build(graph), calculator);
+
+        Random random = new Random(37);
+        CampusLocation start = SyntheticCampus.location(graph, random.nextInt(graph.getNodeCount()));
+        CampusLocation destination = SyntheticCampus.location(graph, random.nextInt(graph.getNodeCount()));
+        route = calculator.calculateRoute(start, destination);
+        replanner.start(route);
+
+        nodes = new CampusLocation[POSITION_COUNT];
+        latitudes = new double[POSITION_COUNT];
+        longitudes = new double[POSITION_COUNT];
+        for (int i = 0; i < POSITION_COUNT; i++) {
+            int node = random.nextInt(graph.getNodeCount());
+            nodes[i] = SyntheticCampus.location(graph, node);
+            latitudes[i] = graph.getLatitude(node) + SyntheticCampus.GRID_STEP_DEGREES * 0.3;
+            longitudes[i] = graph.getLongitude(node);
+            replanner.replan(route, latitudes[i], longitudes[i]);
+        }
+    }
+
+    @Benchmark
+    public Route replan() {
+        int i = nextPosition();
+        return replanner.replan(route, latitudes[i], longitudes[i]);
+    }
+
+    @Benchmark
+    public Route recompute() {
+        int i = nextPosition();
+        return calculator.calculateRoute(nodes[i], route.getDestination());
+    }
+
+    private int nextPosition() {
+        position = (position + 1) & (POSITION_COUNT - 1);
+        return position;
+    }
+}
@@ -0,0 +1,66 @@
+package com.soundcampus.benchmark;
+
+import com.soundcampus.data.CampusLocation;
+import com.soundcampus.data.Route;
+import com.soundcampus.navigation.ContractionHierarchy;
+import com.soundcampus.navigation.PathGraph;
+import com.soundcampus.navigation.RouteCalculator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RouteBenchmark {
+    private static final int PAIR_COUNT = 256;
+
+    @Param({"32", "100", "224"})
+    int gridSide;
+
+    private CampusLocation[] starts;
+    private CampusLocation[] destinations;
+    private RouteCalculator aStarCalculator;
+    private RouteCalculator hierarchyCalculator;
+    private int pair;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        PathGraph graph = SyntheticCampus.grid(gridSide, 17);
+        aStarCalculator = new RouteCalculator(graph);
+        hierarchyCalculator = new RouteCalculator(graph, ContractionHierarchy.build(graph));
+
+        Random random = new Random(19);
+        starts = new CampusLocation[PAIR_COUNT];
+        destinations = new CampusLocation[PAIR_COUNT];
+        for (int i = 0; i < PAIR_COUNT; i++) {
+            starts[i] = SyntheticCampus.location(graph, random.nextInt(graph.getNodeCount()));
+            destinations[i] = SyntheticCampus.location(graph, random.nextInt(graph.getNodeCount()));
+        }
+    }
+
+    @Benchmark
+    public Route aStarRoute() {
+        int i = nextPair();
+        return aStarCalculator.calculateRoute(starts[i], destinations[i]);
+    }
+
+    @Benchmark
+    public Route contractionHierarchyRoute() {
+        int i = nextPair();
+        return hierarchyCalculator.calculateRoute(starts[i], destinations[i]);
+    }
+
+    private int nextPair() {
+        pair = (pair + 1) & (PAIR_COUNT - 1);
+        return pair;
+    }
+}
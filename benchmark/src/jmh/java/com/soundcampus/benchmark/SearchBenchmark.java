@@ -0,0 +1,104 @@
+package com.soundcampus.benchmark;
+
+import com.ibm.icu.text.Transliterator;
+import com.soundcampus.data.CampusLocation;
+import com.soundcampus.navigation.SearchIndex;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+// SearchIndex over synthetic campus names, with desktop ICU standing in for android.icu. Queries
+// cover an exact name, a dictated homophone (管 for 馆), full pinyin, initials, a pinyin typo, a
+// short prefix and a facility. SampleTime reports the percentiles the 5 ms budget applies to.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SearchBenchmark {
+    private static final String[] AREAS = {"东区", "西区", "南区", "北区", "中心", "新校区", "老校区", "滨江"};
+    private static final String[] BUILDINGS = {
+            "教学楼", "图书馆", "实验楼", "食堂", "宿舍楼", "体育馆", "行政楼", "报告厅", "医务室", "游泳馆",
+            "艺术中心", "学生活动中心", "计算机中心", "档案馆", "博物馆", "超市", "咖啡厅", "打印店", "邮局", "银行",
+            "篮球场", "足球场", "网球场", "音乐厅", "会议中心", "研究生院", "外语学院", "化学实验室", "物理楼", "校医院"
+    };
+    private static final String[] CATEGORIES = {"教学", "图书", "餐饮", "住宿", "运动", "行政", "服务", "科研"};
+    private static final String[] FACILITIES = {
+            "电梯", "无障碍卫生间", "自习室", "打印机", "饮水机", "自动取款机", "盲道", "无障碍坡道"
+    };
+    private static final int RESULT_COUNT = 10;
+
+    @Param({"1000", "100000"})
+    int poiCount;
+
+    @Param({"图书馆", "图书管", "tushuguan", "tsg", "tushugaun", "实验", "无障碍坡道"})
+    String query;
+
+    private List<CampusLocation> locations;
+    private SearchIndex index;
+    private final int[] result = new int[RESULT_COUNT];
+    private final float[] scores = new float[RESULT_COUNT];
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(17);
+        locations = new ArrayList<>(poiCount);
+        List<String> facilities = new ArrayList<>(poiCount);
+        for (int i = 0; i < poiCount; i++) {
+            String building = BUILDINGS[random.nextInt(BUILDINGS.length)];
+            String name = AREAS[random.nextInt(AREAS.length)] + building + (i / BUILDINGS.length % 50 + 1) + "号";
+            if (i < BUILDINGS.length) {
+                name = BUILDINGS[i];
+            }
+            String description = "位于" + AREAS[random.nextInt(AREAS.length)] + "，靠近"
+                    + BUILDINGS[random.nextInt(BUILDINGS.length)];
+            locations.add(new CampusLocation("poi" + i, name, 39.9 + random.nextDouble() * 0.02,
+                    116.4 + random.nextDouble() * 0.02, description, CATEGORIES[random.nextInt(CATEGORIES.length)]));
+            facilities.add(FACILITIES[random.nextInt(FACILITIES.length)] + ","
+                    + FACILITIES[random.nextInt(FACILITIES.length)]);
+        }
+        index = SearchIndex.build(locations, facilities, new IcuRomanizer());
+    }
+
+    @Benchmark
+    public int search() {
+        return index.search(query, result, scores);
+    }
+
+    // What the Spinner offered before: exact substring of the name, nothing else.
+    @Benchmark
+    public int nameContainsScan() {
+        int found = 0;
+        for (int i = 0; i < locations.size(); i++) {
+            if (locations.get(i).getName().contains(query) && found < RESULT_COUNT) {
+                result[found++] = i;
+            }
+        }
+        return found;
+    }
+
+    private static class IcuRomanizer implements SearchIndex.Romanizer {
+        private final Transliterator transliterator = Transliterator.getInstance("Han-Latin; Latin-ASCII");
+        private final Map<Character, String> cache = new HashMap<>();
+
+        @Override
+        public String romanize(char c) {
+            String syllable = cache.get(c);
+            if (syllable == null) {
+                syllable = transliterator.transliterate(String.valueOf(c)).trim().toLowerCase(Locale.ROOT);
+                cache.put(c, syllable);
+            }
+            return syllable;
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.soundcampus.benchmark;
+
+import com.soundcampus.data.LocationQueries;
+import com.soundcampus.utils.LocationHelper;
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+// The LocationQueries statements behind MapManager.query*, run on desktop SQLite (sqlite-jdbc)
+// against reading every row back and filtering on the heap. Rows are synthetic POIs at roughly
+// one per 20 x 20 m, so a 100 m radius holds about 80 of them.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SpatialQueryBenchmark {
+    private static final String[] CATEGORIES = {
+            "teaching", "library", "dining", "dormitory", "gym", "laboratory", "office", "service"
+    };
+    private static final int QUERY_COUNT = 256;
+    private static final double RADIUS_METERS = 100;
+    private static final int NEAREST_COUNT = 5;
+
+    @Param({"10000", "100000", "1000000"})
+    int rowCount;
+
+    private File databaseFile;
+    private Connection connection;
+    private PreparedStatement scanAll;
+    private PreparedStatement rtreeInBounds;
+    private PreparedStatement rtreeWithinRadius;
+    private PreparedStatement scanWithinRadius;
+    private PreparedStatement rtreeNearest;
+    private PreparedStatement categoryNearest;
+    private double[] queryLatitudes;
+    private double[] queryLongitudes;
+    private int query;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, SQLException {
+        databaseFile = File.createTempFile("soundcampus", ".db");
+        databaseFile.delete();
+        connection = DriverManager.getConnection("jdbc:sqlite:" + databaseFile.getAbsolutePath());
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("PRAGMA journal_mode=WAL");
+            statement.execute("CREATE TABLE locations (id TEXT PRIMARY KEY, name TEXT NOT NULL, "
+                    + "latitude REAL NOT NULL, longitude REAL NOT NULL, description TEXT, category TEXT, "
+                    + "floor_count INTEGER, facilities TEXT)");
+            statement.execute(LocationQueries.CREATE_TABLE_RTREE);
+        }
+
+        double[][] points = SyntheticCampus.randomPoints(rowCount, 31);
+        connection.setAutoCommit(false);
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO locations "
+                + "(id, name, latitude, longitude, description, category) VALUES (?, ?, ?, ?, ?, ?)")) {
+            for (int i = 0; i < rowCount; i++) {
+                insert.setString(1, "poi" + i);
+                insert.setString(2, "地点" + i);
+                insert.setDouble(3, points[0][i]);
+                insert.setDouble(4, points[1][i]);
+                insert.setString(5, "");
+                insert.setString(6, CATEGORIES[i % CATEGORIES.length]);
+                insert.executeUpdate();
+            }
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(LocationQueries.REBUILD_RTREE);
+            statement.execute(LocationQueries.CREATE_INDEX_CATEGORY);
+            for (String sql : LocationQueries.CREATE_RTREE_TRIGGERS) {
+                statement.execute(sql);
+            }
+            statement.execute("ANALYZE");
+        }
+        connection.commit();
+        connection.setAutoCommit(true);
+
+        scanAll = connection.prepareStatement(
+                "SELECT id, name, latitude, longitude, description, category FROM locations");
+        rtreeInBounds = connection.prepareStatement(LocationQueries.inBounds(true));
+        rtreeWithinRadius = connection.prepareStatement(LocationQueries.withinRadius(true));
+        scanWithinRadius = connection.prepareStatement(LocationQueries.withinRadius(false));
+        rtreeNearest = connection.prepareStatement(LocationQueries.nearestInCategory(true));
+        categoryNearest = connection.prepareStatement(LocationQueries.nearestInCategoryUnbounded());
+
+        double[][] queries = SyntheticCampus.randomPoints(QUERY_COUNT, 37);
+        double scale = Math.sqrt(rowCount) / Math.sqrt(QUERY_COUNT);
+        queryLatitudes = new double[QUERY_COUNT];
+        queryLongitudes = new double[QUERY_COUNT];
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            queryLatitudes[i] = SyntheticCampus.ORIGIN_LATITUDE
+                    + (queries[0][i] - SyntheticCampus.ORIGIN_LATITUDE) * scale;
+            queryLongitudes[i] = SyntheticCampus.ORIGIN_LONGITUDE
+                    + (queries[1][i] - SyntheticCampus.ORIGIN_LONGITUDE) * scale;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        connection.close();
+        for (String suffix : new String[]{"", "-wal", "-shm"}) {
+            new File(databaseFile.getPath() + suffix).delete();
+        }
+    }
+
+    // What getAllLocations followed by a filter costs when nothing is cached.
+    @Benchmark
+    public int heapScanWithinRadius() throws SQLException {
+        int q = nextQuery();
+        int found = 0;
+        try (ResultSet rows = scanAll.executeQuery()) {
+            while (rows.next()) {
+                String id = rows.getString(1);
+                String name = rows.getString(2);
+                double latitude = rows.getDouble(3);
+                double longitude = rows.getDouble(4);
+                rows.getString(5);
+                rows.getString(6);
+                if (LocationHelper.calculateDistance(queryLatitudes[q], queryLongitudes[q], latitude, longitude)
+                        <= RADIUS_METERS && id != null && name != null) {
+                    found++;
+                }
+            }
+        }
+        return found;
+    }
+
+    @Benchmark
+    public int sqlScanWithinRadius() throws SQLException {
+        int q = nextQuery();
+        return run(scanWithinRadius,
+                LocationQueries.withinRadiusArgs(queryLatitudes[q], queryLongitudes[q], RADIUS_METERS));
+    }
+
+    @Benchmark
+    public int rtreeWithinRadius() throws SQLException {
+        int q = nextQuery();
+        return run(rtreeWithinRadius,
+                LocationQueries.withinRadiusArgs(queryLatitudes[q], queryLongitudes[q], RADIUS_METERS));
+    }
+
+    @Benchmark
+    public int rtreeInBounds() throws SQLException {
+        int q = nextQuery();
+        double delta = 0.001;
+        return run(rtreeInBounds, LocationQueries.inBoundsArgs(queryLatitudes[q] - delta, queryLongitudes[q] - delta,
+                queryLatitudes[q] + delta, queryLongitudes[q] + delta));
+    }
+
+    // Same rounds as MapManager.queryNearestInCategory.
+    @Benchmark
+    public int rtreeNearestInCategory() throws SQLException {
+        int q = nextQuery();
+        String category = CATEGORIES[q % CATEGORIES.length];
+        for (int round = 0; ; round++) {
+            double radius = LocationQueries.nearestSearchRadius(round);
+            if (Double.isInfinite(radius)) {
+                return run(categoryNearest, LocationQueries.nearestInCategoryUnboundedArgs(
+                        queryLatitudes[q], queryLongitudes[q], category, NEAREST_COUNT));
+            }
+            int found = run(rtreeNearest, LocationQueries.nearestInCategoryArgs(
+                    queryLatitudes[q], queryLongitudes[q], radius, category, NEAREST_COUNT));
+            if (found == NEAREST_COUNT) {
+                return found;
+            }
+        }
+    }
+
+    @Benchmark
+    public int categoryIndexNearest() throws SQLException {
+        int q = nextQuery();
+        return run(categoryNearest, LocationQueries.nearestInCategoryUnboundedArgs(
+                queryLatitudes[q], queryLongitudes[q], CATEGORIES[q % CATEGORIES.length], NEAREST_COUNT));
+    }
+
+    private static int run(PreparedStatement statement, String[] args) throws SQLException {
+        for (int i = 0; i < args.length; i++) {
+            statement.setString(i + 1, args[i]);
+        }
+        int found = 0;
+        try (ResultSet rows = statement.executeQuery()) {
+            while (rows.next()) {
+                rows.getString(1);
+                rows.getString(2);
+                rows.getDouble(3);
+                rows.getDouble(4);
+                found++;
+            }
+        }
+        return found;
+    }
+
+    private int nextQuery() {
+        query = (query + 1) & (QUERY_COUNT - 1);
+        return query;
+    }
+}
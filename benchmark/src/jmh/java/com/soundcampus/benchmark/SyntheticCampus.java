@@ -0,0 +1,121 @@
+package com.soundcampus.benchmark;
+
+import com.soundcampus.data.CampusLocation;
+import com.soundcampus.navigation.PathGraph;
+import com.soundcampus.utils.LocationHelper;
+import java.util.Random;
+
+final class SyntheticCampus {
+    static final double ORIGIN_LATITUDE = 39.9042;
+    static final double ORIGIN_LONGITUDE = 116.4074;
+    static final double GRID_STEP_DEGREES = 0.0002;
+
+    private SyntheticCampus() {
+    }
+
+    static String nodeId(int row, int column) {
+        return "n" + row + "_" + column;
+    }
+
+    static double latitude(int row) {
+        return ORIGIN_LATITUDE + row * GRID_STEP_DEGREES;
+    }
+
+    static double longitude(int column) {
+        return ORIGIN_LONGITUDE + column * GRID_STEP_DEGREES;
+    }
+
+    static PathGraph grid(int side, long seed) {
+        Random random = new Random(seed);
+        PathGraph.Builder builder = new PathGraph.Builder();
+        for (int row = 0; row < side; row++) {
+            for (int column = 0; column < side; column++) {
+                builder.addNode(nodeId(row, column), latitude(row), longitude(column));
+            }
+        }
+        for (int row = 0; row < side; row++) {
+            for (int column = 0; column < side; column++) {
+                if (column + 1 < side) {
+                    builder.addEdge(nodeId(row, column), nodeId(row, column + 1),
+                            walkingDistance(row, column, row, column + 1, random));
+                }
+                if (row + 1 < side) {
+                    builder.addEdge(nodeId(row, column), nodeId(row + 1, column),
+                            walkingDistance(row, column, row + 1, column, random));
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    static CampusLocation location(PathGraph graph, int node) {
+        return new CampusLocation(graph.getNodeId(node), graph.getNodeId(node),
+                graph.getLatitude(node), graph.getLongitude(node), "", "waypoint");
+    }
+
+    static double[][] randomPoints(int count, long seed) {
+        Random random = new Random(seed);
+        double[] latitudes = new double[count];
+        double[] longitudes = new double[count];
+        double span = Math.sqrt(count) * GRID_STEP_DEGREES;
+        for (int i = 0; i < count; i++) {
+            latitudes[i] = ORIGIN_LATITUDE + random.nextDouble() * span;
+            longitudes[i] = ORIGIN_LONGITUDE + random.nextDouble() * span;
+        }
+        return new double[][]{latitudes, longitudes};
+    }
+
+    static String campusJson(int poiCount, long seed) {
+        Random random = new Random(seed);
+        int side = (int) Math.ceil(Math.sqrt(poiCount));
+        StringBuilder json = new StringBuilder(poiCount * 256);
+        json.append("{\"campus_name\":\"benchmark\",\"locations\":[");
+        for (int i = 0; i < poiCount; i++) {
+            int row = i / side;
+            int column = i % side;
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"id\":\"").append(nodeId(row, column))
+                    .append("\",\"name\":\"教学楼").append(i)
+                    .append("\",\"latitude\":").append(latitude(row))
+                    .append(",\"longitude\":").append(longitude(column))
+                    .append(",\"description\":\"自动生成的位置\",\"category\":\"teaching\"")
+                    .append(",\"floor_count\":").append(1 + random.nextInt(8))
+                    .append(",\"facilities\":[\"教室\",\"自习室\"]}");
+        }
+        json.append("],\"paths\":[");
+        boolean first = true;
+        for (int i = 0; i < poiCount; i++) {
+            int row = i / side;
+            int column = i % side;
+            if (column + 1 < side && i + 1 < poiCount) {
+                first = appendPath(json, first, row, column, row, column + 1, random);
+            }
+            if (i + side < poiCount) {
+                first = appendPath(json, first, row, column, row + 1, column, random);
+            }
+        }
+        json.append("],\"accessibility_features\":[\"盲道覆盖主要路径\"]}");
+        return json.toString();
+    }
+
+    private static boolean appendPath(StringBuilder json, boolean first, int fromRow, int fromColumn,
+                                      int toRow, int toColumn, Random random) {
+        if (!first) {
+            json.append(',');
+        }
+        json.append("{\"from\":\"").append(nodeId(fromRow, fromColumn))
+                .append("\",\"to\":\"").append(nodeId(toRow, toColumn))
+                .append("\",\"distance\":")
+                .append(Math.round(walkingDistance(fromRow, fromColumn, toRow, toColumn, random)))
+                .append('}');
+        return false;
+    }
+
+    private static double walkingDistance(int fromRow, int fromColumn, int toRow, int toColumn, Random random) {
+        double straight = LocationHelper.calculateDistance(
+                latitude(fromRow), longitude(fromColumn), latitude(toRow), longitude(toColumn));
+        return straight * (1.0 + random.nextDouble() * 0.3);
+    }
+}
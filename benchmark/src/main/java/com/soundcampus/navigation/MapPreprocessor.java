@@ -0,0 +1,113 @@
+package com.soundcampus.navigation;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+public class MapPreprocessor {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: MapPreprocessor <campus_map.json> <campus_map_ch.bin>"
+                    + " [--benchmark <queries>] [--map-file <campus_map.scm>]");
+            System.exit(1);
+        }
+        int queries = 0;
+        String mapFile = null;
+        for (int i = 2; i + 1 < args.length; i += 2) {
+            if ("--benchmark".equals(args[i])) {
+                queries = Integer.parseInt(args[i + 1]);
+            } else if ("--map-file".equals(args[i])) {
+                mapFile = args[i + 1];
+            }
+        }
+
+        PathGraph graph;
+        try (Reader reader = new InputStreamReader(new FileInputStream(args[0]), StandardCharsets.UTF_8)) {
+            graph = PathGraph.fromJson(reader);
+        }
+
+        long buildStart = System.nanoTime();
+        ContractionHierarchy hierarchy = ContractionHierarchy.build(graph);
+        long buildMillis = (System.nanoTime() - buildStart) / 1000000;
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(args[1])))) {
+            hierarchy.writeTo(out);
+        }
+        System.out.println("nodes=" + graph.getNodeCount()
+                + " edges=" + graph.getEdgeCount()
+                + " shortcuts=" + hierarchy.getShortcutCount()
+                + " buildMs=" + buildMillis);
+
+        if (mapFile != null) {
+            File output = new File(mapFile);
+            try (Reader reader = new InputStreamReader(new FileInputStream(args[0]), StandardCharsets.UTF_8)) {
+                CampusMapFile.compile(reader, output, 0);
+            }
+            System.out.println("mapFile=" + output + " bytes=" + output.length());
+        }
+
+        if (queries > 0) {
+            benchmark(graph, hierarchy, queries);
+        }
+    }
+
+    static void benchmark(PathGraph graph, ContractionHierarchy hierarchy, int queries) {
+        AStarSearch search = new AStarSearch(graph);
+        Random random = new Random(42);
+        int nodeCount = graph.getNodeCount();
+        int[] sources = new int[queries];
+        int[] targets = new int[queries];
+        for (int i = 0; i < queries; i++) {
+            sources[i] = random.nextInt(nodeCount);
+            targets[i] = random.nextInt(nodeCount);
+        }
+
+        long[] searchNanos = new long[queries];
+        long[] hierarchyNanos = new long[queries];
+        int mismatches = 0;
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < queries; i++) {
+                long start = System.nanoTime();
+                int[] plain = search.findPath(sources[i], targets[i]);
+                searchNanos[i] = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                int[] contracted = hierarchy.findPath(sources[i], targets[i]);
+                hierarchyNanos[i] = System.nanoTime() - start;
+
+                if (round == 1 && (plain == null) != (contracted == null)) {
+                    mismatches++;
+                } else if (round == 1 && plain != null
+                        && Math.abs(search.getPathDistance(targets[i]) - hierarchy.getLastDistance()) > 0.01f) {
+                    mismatches++;
+                }
+            }
+        }
+
+        System.out.println("A*   " + summarize(searchNanos));
+        System.out.println("CH   " + summarize(hierarchyNanos));
+        System.out.println("distance mismatches=" + mismatches);
+    }
+
+    private static String summarize(long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        long total = 0;
+        for (long value : sorted) {
+            total += value;
+        }
+        return String.format("mean=%.1fus p50=%.1fus p99=%.1fus",
+                total / (double) sorted.length / 1000.0,
+                sorted[sorted.length / 2] / 1000.0,
+                sorted[(int) (sorted.length * 0.99)] / 1000.0);
+    }
+}
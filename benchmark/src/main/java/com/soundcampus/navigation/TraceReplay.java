@@ -0,0 +1,483 @@
+package com.soundcampus.navigation;
+
+import com.soundcampus.data.CampusLocation;
+import com.soundcampus.data.NavigationInstruction;
+import com.soundcampus.data.Route;
+import com.soundcampus.navigation.NavigationSimulator.Event;
+import com.soundcampus.navigation.NavigationSimulator.Fix;
+import com.soundcampus.navigation.NavigationSimulator.Result;
+import com.soundcampus.utils.LocationHelper;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+import javax.xml.parsers.SAXParserFactory;
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.DefaultHandler;
+
+// Replays the recorded walks of a manifest through NavigationSimulator and reports timelines and timing.
+public class TraceReplay {
+    // A turn counts as reached from this far before it along the route; about two fixes at walking pace.
+    private static final double REACHED_METERS = 3;
+    // Fixes further than this from the route say nothing about progress along it.
+    private static final double CORRIDOR_METERS = 40;
+
+    // How much later than expected the candidate announced each instruction and the arrival.
+    public static class TimingError {
+        private int matched = 0;
+        private int missed = 0;
+        private int fixes = 0;
+        private long totalLateMillis = 0;
+        private long totalAbsoluteMillis = 0;
+        private long maxLateMillis = 0;
+
+        public void add(Result reference, Result candidate) {
+            add(reference.timeline, candidate);
+        }
+
+        // Only the events in timeline are looked for, so event types it lacks are never counted as missed.
+        // Instruction indices refer to the new route after a reroute, so later events are not compared.
+        public void add(List<Event> timeline, Result candidate) {
+            fixes += candidate.fixNanos.length;
+            List<Event> pending = new ArrayList<>();
+            long rerouteMillis = Long.MAX_VALUE;
+            for (Event event : candidate.timeline) {
+                if (Event.REROUTE.equals(event.type)) {
+                    rerouteMillis = event.traceTimeMillis;
+                    break;
+                }
+                pending.add(event);
+            }
+            for (Event expected : timeline) {
+                if (Event.REROUTE.equals(expected.type)) {
+                    continue;
+                }
+                if (expected.traceTimeMillis >= rerouteMillis) {
+                    break;
+                }
+                Event found = null;
+                for (Event event : pending) {
+                    if (event.type.equals(expected.type) && event.instructionIndex == expected.instructionIndex) {
+                        found = event;
+                        break;
+                    }
+                }
+                if (found == null) {
+                    missed++;
+                    continue;
+                }
+                pending.remove(found);
+                long late = found.traceTimeMillis - expected.traceTimeMillis;
+                matched++;
+                totalLateMillis += late;
+                totalAbsoluteMillis += Math.abs(late);
+                maxLateMillis = Math.max(maxLateMillis, late);
+            }
+        }
+
+        public int getFixes() {
+            return fixes;
+        }
+
+        public int getMissed() {
+            return missed;
+        }
+
+        public double getMeanLateMillis() {
+            return matched > 0 ? totalLateMillis / (double) matched : 0;
+        }
+
+        public double getMeanAbsoluteMillis() {
+            return matched > 0 ? totalAbsoluteMillis / (double) matched : 0;
+        }
+
+        public long getMaxLateMillis() {
+            return maxLateMillis;
+        }
+
+        public String format() {
+            return String.format(Locale.ROOT, "fixes=%d meanLateMs=%.0f meanAbsErrMs=%.0f maxLateMs=%d missed=%d",
+                    fixes, getMeanLateMillis(), getMeanAbsoluteMillis(), maxLateMillis, missed);
+        }
+    }
+
+    // When the walk actually reached each turn and the destination: the first fix within REACHED_METERS of a
+    // turn point or past it makes the next instruction current, and the first fix within the arrival radius
+    // arrives. Only turns whose next instruction both trigger rules speak get an event.
+    public static List<Event> referenceTimeline(Route route, List<Fix> trace) {
+        List<Event> timeline = new ArrayList<>();
+        int count = route.getPathPointCount();
+        if (trace.isEmpty() || count < 2) {
+            return timeline;
+        }
+        double originLatitude = route.getPathLatitude(0);
+        double originLongitude = route.getPathLongitude(0);
+        double metersPerDegreeLatitude = Math.toRadians(LocationHelper.EARTH_RADIUS_METERS);
+        double metersPerDegreeLongitude = metersPerDegreeLatitude * Math.cos(Math.toRadians(originLatitude));
+        double[] xs = new double[count];
+        double[] ys = new double[count];
+        double[] along = new double[count];
+        for (int i = 0; i < count; i++) {
+            xs[i] = (route.getPathLongitude(i) - originLongitude) * metersPerDegreeLongitude;
+            ys[i] = (route.getPathLatitude(i) - originLatitude) * metersPerDegreeLatitude;
+            if (i > 0) {
+                along[i] = along[i - 1] + Math.hypot(xs[i] - xs[i - 1], ys[i] - ys[i - 1]);
+            }
+        }
+
+        // Instruction distances come from edge weights; scaled onto the polyline as ManeuverFences does.
+        List<NavigationInstruction> instructions = route.getInstructions();
+        double total = 0;
+        for (NavigationInstruction instruction : instructions) {
+            total += instruction.getDistanceMeters();
+        }
+        double scale = total > 0 ? along[count - 1] / total : 1;
+        List<Integer> nextIndices = new ArrayList<>();
+        List<Double> turns = new ArrayList<>();
+        double legStart = 0;
+        for (int i = 0; i + 1 < instructions.size(); i++) {
+            double turn = legStart + instructions.get(i).getDistanceMeters() * scale;
+            NavigationInstruction.Direction direction = instructions.get(i).getDirection();
+            if ((direction == NavigationInstruction.Direction.LEFT || direction == NavigationInstruction.Direction.RIGHT)
+                    && instructions.get(i + 1).getDirection() != NavigationInstruction.Direction.ARRIVED) {
+                nextIndices.add(i + 1);
+                turns.add(turn);
+            }
+            legStart = turn;
+        }
+
+        long startTime = trace.get(0).timeMillis;
+        double progress = 0;
+        int next = 0;
+        for (Fix fix : trace) {
+            double x = (fix.longitude - originLongitude) * metersPerDegreeLongitude;
+            double y = (fix.latitude - originLatitude) * metersPerDegreeLatitude;
+            double best = CORRIDOR_METERS * CORRIDOR_METERS;
+            for (int i = 0; i + 1 < count; i++) {
+                double dx = xs[i + 1] - xs[i];
+                double dy = ys[i + 1] - ys[i];
+                double lengthSquared = dx * dx + dy * dy;
+                double t = lengthSquared > 0 ? ((x - xs[i]) * dx + (y - ys[i]) * dy) / lengthSquared : 0;
+                t = Math.max(0, Math.min(1, t));
+                double ex = xs[i] + t * dx - x;
+                double ey = ys[i] + t * dy - y;
+                double distanceSquared = ex * ex + ey * ey;
+                if (distanceSquared <= best) {
+                    best = distanceSquared;
+                    // Progress never goes back, so a fix near an earlier stretch of the route changes nothing.
+                    progress = Math.max(progress, along[i] + t * (along[i + 1] - along[i]));
+                }
+            }
+            while (next < turns.size() && progress >= turns.get(next) - REACHED_METERS) {
+                int index = nextIndices.get(next++);
+                timeline.add(new Event(fix.timeMillis - startTime, Event.ANNOUNCE, index, instructions.get(index)));
+            }
+            if (LocationHelper.calculateDistance(fix.latitude, fix.longitude, route.getDestination().getLatitude(),
+                    route.getDestination().getLongitude()) < NavigationEngine.ARRIVAL_RADIUS_METERS) {
+                timeline.add(new Event(fix.timeMillis - startTime, Event.ARRIVED, -1, null));
+                break;
+            }
+        }
+        return timeline;
+    }
+
+    public static List<Fix> readTrace(File file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            if (file.getName().toLowerCase(Locale.ROOT).endsWith(".gpx")) {
+                return readGpx(in);
+            }
+            return readCsv(new InputStreamReader(in, StandardCharsets.UTF_8));
+        }
+    }
+
+    public static List<Fix> readCsv(Reader reader) throws IOException {
+        List<Fix> fixes = new ArrayList<>();
+        BufferedReader lines = new BufferedReader(reader);
+        String line;
+        while ((line = lines.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || !Character.isDigit(line.charAt(0))) {
+                continue;
+            }
+            String[] parts = line.split(",");
+            fixes.add(new Fix(
+                    Long.parseLong(parts[0].trim()),
+                    Double.parseDouble(parts[1].trim()),
+                    Double.parseDouble(parts[2].trim()),
+                    parts.length > 3 && !parts[3].trim().isEmpty() ? Double.parseDouble(parts[3].trim()) : 0
+            ));
+        }
+        return fixes;
+    }
+
+    public static List<Fix> readGpx(InputStream in) throws IOException {
+        final List<Fix> fixes = new ArrayList<>();
+        try {
+            SAXParserFactory.newInstance().newSAXParser().parse(in, new DefaultHandler() {
+                private final StringBuilder text = new StringBuilder();
+                private double latitude;
+                private double longitude;
+                private long time = -1;
+
+                @Override
+                public void startElement(String uri, String localName, String qName, Attributes attributes) {
+                    text.setLength(0);
+                    if ("trkpt".equals(qName)) {
+                        latitude = Double.parseDouble(attributes.getValue("lat"));
+                        longitude = Double.parseDouble(attributes.getValue("lon"));
+                        time = -1;
+                    }
+                }
+
+                @Override
+                public void characters(char[] ch, int start, int length) {
+                    text.append(ch, start, length);
+                }
+
+                @Override
+                public void endElement(String uri, String localName, String qName) {
+                    if ("time".equals(qName)) {
+                        time = parseGpxTime(text.toString().trim());
+                    } else if ("trkpt".equals(qName)) {
+                        long fixTime = time >= 0 ? time
+                                : fixes.isEmpty() ? 0 : fixes.get(fixes.size() - 1).timeMillis + 1000;
+                        fixes.add(new Fix(fixTime, latitude, longitude));
+                    }
+                }
+            });
+        } catch (Exception e) {
+            throw new IOException("Invalid GPX trace", e);
+        }
+        return fixes;
+    }
+
+    static long parseGpxTime(String value) {
+        String text = value.endsWith("Z") ? value.substring(0, value.length() - 1) : value;
+        long millis = 0;
+        int dot = text.indexOf('.');
+        if (dot >= 0) {
+            String fraction = (text.substring(dot + 1) + "000").substring(0, 3);
+            millis = Long.parseLong(fraction);
+            text = text.substring(0, dot);
+        }
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss", Locale.ROOT);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        try {
+            return format.parse(text).getTime() + millis;
+        } catch (ParseException e) {
+            throw new IllegalArgumentException("Invalid GPX time: " + value, e);
+        }
+    }
+
+    private static CampusLocation nodeLocation(PathGraph graph, String id) {
+        int node = graph.indexOf(id);
+        if (node < 0) {
+            throw new IllegalArgumentException("Unknown location: " + id);
+        }
+        return new CampusLocation(id, id, graph.getLatitude(node), graph.getLongitude(node), "", "");
+    }
+
+    private static List<String> readTimeline(File file) throws IOException {
+        List<String> events = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split(",");
+                if (parts.length > 2 && Character.isDigit(parts[0].charAt(0))) {
+                    events.add(parts[1] + ":" + parts[2]);
+                }
+            }
+        }
+        return events;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: TraceReplay <campus_map.json> <manifest.csv>"
+                    + " [--speedup <factor>] [--timeline-dir <dir>] [--raw] [--compare-sampling]"
+                    + " [--polling] [--compare-triggers]");
+            System.err.println("Manifest rows: trace_file,start_id,destination_id[,expected_timeline.csv]");
+            System.exit(1);
+        }
+
+        double speedup = 0;
+        File timelineDir = null;
+        boolean matching = true;
+        boolean compareSampling = false;
+        boolean polling = false;
+        boolean compareTriggers = false;
+        for (int i = 2; i < args.length; i++) {
+            if ("--speedup".equals(args[i]) && i + 1 < args.length) {
+                speedup = Double.parseDouble(args[++i]);
+            } else if ("--timeline-dir".equals(args[i]) && i + 1 < args.length) {
+                timelineDir = new File(args[++i]);
+                timelineDir.mkdirs();
+            } else if ("--raw".equals(args[i])) {
+                matching = false;
+            } else if ("--compare-sampling".equals(args[i])) {
+                compareSampling = true;
+            } else if ("--polling".equals(args[i])) {
+                polling = true;
+            } else if ("--compare-triggers".equals(args[i])) {
+                compareTriggers = true;
+            }
+        }
+
+        PathGraph graph;
+        try (Reader reader = new InputStreamReader(new FileInputStream(args[0]), StandardCharsets.UTF_8)) {
+            graph = PathGraph.fromJson(reader);
+        }
+        RouteCalculator calculator = new RouteCalculator(graph);
+        NavigationSimulator simulator = new NavigationSimulator(speedup, matching ? graph : null);
+        simulator.setPolling(polling);
+        NavigationSimulator other = new NavigationSimulator(speedup, matching ? graph : null);
+        other.setPolling(!polling);
+
+        File manifest = new File(args[1]);
+        File baseDir = manifest.getAbsoluteFile().getParentFile();
+        int walks = 0;
+        int arrivals = 0;
+        int mismatches = 0;
+        List<Long> allFixNanos = new ArrayList<>();
+        TimingError fixedTiming = new TimingError();
+        TimingError adaptiveTiming = new TimingError();
+        TimingError fenceTiming = new TimingError();
+        TimingError pollingTiming = new TimingError();
+        List<Long> otherFixNanos = new ArrayList<>();
+
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(manifest), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#") || line.startsWith("trace_file")) {
+                    continue;
+                }
+                String[] parts = line.split(",");
+                File traceFile = new File(baseDir, parts[0].trim());
+                Route route = calculator.calculateRoute(
+                        nodeLocation(graph, parts[1].trim()), nodeLocation(graph, parts[2].trim()));
+                List<Fix> trace = readTrace(traceFile);
+                Result result = simulator.run(route, trace);
+                if (compareTriggers) {
+                    // Both rules against where the walk actually reached each turn and the destination.
+                    List<Event> expected = referenceTimeline(route, trace);
+                    Result alternative = other.run(route, trace);
+                    Result fences = polling ? alternative : result;
+                    Result polled = polling ? result : alternative;
+                    TimingError walkFences = new TimingError();
+                    TimingError walkPolling = new TimingError();
+                    walkFences.add(expected, fences);
+                    walkPolling.add(expected, polled);
+                    fenceTiming.add(expected, fences);
+                    pollingTiming.add(expected, polled);
+                    for (long nanos : alternative.fixNanos) {
+                        otherFixNanos.add(nanos);
+                    }
+                    System.out.println(String.format(Locale.ROOT, "%s fences: meanFixUs=%.2f %s | polling: meanFixUs=%.2f %s",
+                            parts[0].trim(), fences.getMeanFixMicros(), walkFences.format(),
+                            polled.getMeanFixMicros(), walkPolling.format()));
+                }
+                if (compareSampling) {
+                    TimingError walkFixed = new TimingError();
+                    TimingError walkAdaptive = new TimingError();
+                    Result fixed = simulator.run(route, trace, NavigationSimulator.SAMPLING_FIXED);
+                    Result adaptive = simulator.run(route, trace, NavigationSimulator.SAMPLING_ADAPTIVE);
+                    walkFixed.add(result, fixed);
+                    walkAdaptive.add(result, adaptive);
+                    fixedTiming.add(result, fixed);
+                    adaptiveTiming.add(result, adaptive);
+                    System.out.println(parts[0].trim() + " all: fixes=" + result.fixNanos.length
+                            + " | fixed: " + walkFixed.format() + " | adaptive: " + walkAdaptive.format());
+                }
+                walks++;
+                if (result.arrived) {
+                    arrivals++;
+                }
+                for (long nanos : result.fixNanos) {
+                    allFixNanos.add(nanos);
+                }
+
+                if (timelineDir != null) {
+                    File out = new File(timelineDir, traceFile.getName() + ".timeline.csv");
+                    try (PrintWriter writer = new PrintWriter(new OutputStreamWriter(
+                            new FileOutputStream(out), StandardCharsets.UTF_8))) {
+                        writer.println("trace_time_ms,event,instruction_index,direction,distance_m,description");
+                        for (Event event : result.timeline) {
+                            writer.println(event.toCsv());
+                        }
+                    }
+                }
+
+                String verdict = "";
+                if (parts.length > 3) {
+                    List<String> expected = readTimeline(new File(baseDir, parts[3].trim()));
+                    List<String> actual = new ArrayList<>();
+                    for (Event event : result.timeline) {
+                        actual.add(event.type + ":" + event.instructionIndex);
+                    }
+                    if (!expected.equals(actual)) {
+                        mismatches++;
+                        verdict = " MISMATCH expected=" + expected + " actual=" + actual;
+                    }
+                }
+
+                Event last = result.timeline.isEmpty() ? null : result.timeline.get(result.timeline.size() - 1);
+                System.out.println(String.format(Locale.ROOT,
+                        "%s fixes=%d events=%d arrived=%s lastEventMs=%d reroutes=%d maxRerouteUs=%.1f"
+                                + " meanFixUs=%.2f p99FixUs=%.2f speedup=%.0fx%s",
+                        parts[0].trim(), result.fixNanos.length, result.timeline.size(), result.arrived,
+                        last != null ? last.traceTimeMillis : -1,
+                        result.getRerouteCount(), result.getMaxRerouteMicros(),
+                        result.getMeanFixMicros(), result.getFixPercentileMicros(0.99),
+                        result.getSpeedup(), verdict));
+            }
+        }
+
+        long[] nanos = new long[allFixNanos.size()];
+        for (int i = 0; i < nanos.length; i++) {
+            nanos[i] = allFixNanos.get(i);
+        }
+        Result total = new Result(new ArrayList<Event>(), nanos, 0, 0, false);
+        System.out.println(String.format(Locale.ROOT,
+                "walks=%d arrived=%d mismatches=%d fixes=%d meanFixUs=%.2f p99FixUs=%.2f maxFixUs=%.2f",
+                walks, arrivals, mismatches, nanos.length,
+                total.getMeanFixMicros(), total.getFixPercentileMicros(0.99), total.getFixPercentileMicros(1.0)));
+        if (compareTriggers) {
+            long[] otherNanos = new long[otherFixNanos.size()];
+            for (int i = 0; i < otherNanos.length; i++) {
+                otherNanos[i] = otherFixNanos.get(i);
+            }
+            Result alternative = new Result(new ArrayList<Event>(), otherNanos, 0, 0, false);
+            System.out.println(String.format(Locale.ROOT, "triggers %s: meanFixUs=%.2f p99FixUs=%.2f"
+                            + " | %s: meanFixUs=%.2f p99FixUs=%.2f",
+                    polling ? "polling" : "fences", total.getMeanFixMicros(), total.getFixPercentileMicros(0.99),
+                    polling ? "fences" : "polling", alternative.getMeanFixMicros(),
+                    alternative.getFixPercentileMicros(0.99)));
+            System.out.println("triggers fences: " + fenceTiming.format());
+            System.out.println("triggers polling: " + pollingTiming.format());
+        }
+        if (compareSampling) {
+            System.out.println("sampling fixed (" + SamplingPolicy.FIXED_INTERVAL_MILLIS + " ms / "
+                    + SamplingPolicy.FIXED_MIN_DISTANCE_METERS + " m): " + fixedTiming.format());
+            System.out.println("sampling adaptive: " + adaptiveTiming.format());
+        }
+        if (mismatches > 0) {
+            System.exit(2);
+        }
+    }
+}
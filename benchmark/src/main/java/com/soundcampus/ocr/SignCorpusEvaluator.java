@@ -0,0 +1,156 @@
+package com.soundcampus.ocr;
+
+import com.soundcampus.data.CampusLocation;
+import com.soundcampus.data.CampusMapReader;
+import com.soundcampus.navigation.SearchIndex;
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+// Scores SignResolver against a labelled corpus of recognized sign text, e.g.
+// ./gradlew :benchmark:evaluateSigns --args="../app/src/main/res/raw/campus_map.json src/jmh/resources/ocr/sign_corpus.tsv"
+// --pad adds that many random names to the index so latency can be read at campus-database scale.
+public class SignCorpusEvaluator {
+    private static final int TIMING_ROUNDS = 200;
+    private static final String PAD_CHARS = "东西南北中新老楼馆院室厅场园中心教学实验图书食堂宿舍体育行政医务艺术会议研究办公服务";
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: SignCorpusEvaluator <campus_map.json> <corpus.tsv> [--pad <count>]");
+            System.err.println("Corpus rows: text<TAB>expected_id or -[<TAB>directional]");
+            System.exit(1);
+        }
+        int pad = 0;
+        for (int i = 2; i < args.length; i++) {
+            if ("--pad".equals(args[i]) && i + 1 < args.length) {
+                pad = Integer.parseInt(args[++i]);
+            }
+        }
+
+        final List<CampusLocation> locations = new ArrayList<>();
+        final List<String> facilities = new ArrayList<>();
+        try (Reader reader = new InputStreamReader(new FileInputStream(args[0]), StandardCharsets.UTF_8)) {
+            CampusMapReader.read(reader, new CampusMapReader.Handler() {
+                @Override
+                public void onCampusName(String name) {
+                }
+
+                @Override
+                public void onLocation(CampusLocation location, int floorCount, List<String> locationFacilities) {
+                    locations.add(location);
+                    StringBuilder joined = new StringBuilder();
+                    for (String facility : locationFacilities) {
+                        joined.append(joined.length() > 0 ? "," : "").append(facility);
+                    }
+                    facilities.add(joined.toString());
+                }
+
+                @Override
+                public void onPath(String fromId, String toId, double distance) {
+                }
+
+                @Override
+                public void onAccessibilityFeature(String feature) {
+                }
+            });
+        }
+        Random random = new Random(7);
+        for (int i = 0; i < pad; i++) {
+            StringBuilder name = new StringBuilder();
+            int length = 3 + random.nextInt(4);
+            for (int c = 0; c < length; c++) {
+                name.append(PAD_CHARS.charAt(random.nextInt(PAD_CHARS.length())));
+            }
+            locations.add(new CampusLocation("pad" + i, name.append(i).toString(), 0, 0, "", ""));
+            facilities.add("");
+        }
+        SignResolver resolver = new SignResolver(SearchIndex.build(locations, facilities, null), locations);
+
+        List<String[]> rows = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(args[1]), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty() || line.startsWith("#") || line.startsWith("text\t")) {
+                    continue;
+                }
+                String[] parts = line.split("\t");
+                parts[0] = parts[0].replace("\\n", "\n");
+                rows.add(parts);
+            }
+        }
+
+        int truePositives = 0;
+        int falsePositives = 0;
+        int falseNegatives = 0;
+        int trueNegatives = 0;
+        int directionalCorrect = 0;
+        for (String[] row : rows) {
+            String expected = row[1].trim();
+            boolean expectDirectional = row.length > 2 && "directional".equals(row[2].trim());
+            SignResolver.Match match = resolver.match(row[0], Double.NaN, Double.NaN);
+            String actual = match != null ? match.getLocation().getId() : "-";
+            String verdict;
+            if (actual.equals(expected)) {
+                if ("-".equals(expected)) {
+                    trueNegatives++;
+                    verdict = "ok";
+                } else {
+                    truePositives++;
+                    verdict = "ok";
+                    if (match.isDirectional() == expectDirectional) {
+                        directionalCorrect++;
+                    } else {
+                        verdict = "KIND";
+                    }
+                }
+            } else {
+                if (!"-".equals(actual)) {
+                    falsePositives++;
+                }
+                if (!"-".equals(expected)) {
+                    falseNegatives++;
+                }
+                verdict = "-".equals(actual) ? "MISS" : "WRONG";
+            }
+            System.out.println(String.format(Locale.ROOT, "%-5s %-8s %-8s %s",
+                    verdict, expected, actual, row[0].replace("\n", "\\n")));
+        }
+
+        long[] nanos = new long[rows.size() * TIMING_ROUNDS];
+        int sample = 0;
+        for (int round = 0; round < TIMING_ROUNDS; round++) {
+            for (String[] row : rows) {
+                long start = System.nanoTime();
+                resolver.match(row[0], Double.NaN, Double.NaN);
+                nanos[sample++] = System.nanoTime() - start;
+            }
+        }
+        // The first rounds include JIT warm-up, which a long-running camera session has paid already.
+        long[] steady = Arrays.copyOfRange(nanos, nanos.length / 2, nanos.length);
+        Arrays.sort(steady);
+        long total = 0;
+        for (long value : steady) {
+            total += value;
+        }
+
+        System.out.println(String.format(Locale.ROOT,
+                "signs=%d pois=%d tp=%d fp=%d fn=%d tn=%d precision=%.3f recall=%.3f directional=%d/%d"
+                        + " meanUs=%.1f p99Us=%.1f maxUs=%.1f",
+                rows.size(), locations.size(), truePositives, falsePositives, falseNegatives, trueNegatives,
+                truePositives + falsePositives > 0 ? truePositives / (double) (truePositives + falsePositives) : 1,
+                truePositives + falseNegatives > 0 ? truePositives / (double) (truePositives + falseNegatives) : 1,
+                directionalCorrect, truePositives,
+                total / (double) steady.length / 1000.0,
+                steady[(int) Math.min(steady.length - 1, Math.ceil(steady.length * 0.99) - 1)] / 1000.0,
+                steady[steady.length - 1] / 1000.0));
+    }
+}